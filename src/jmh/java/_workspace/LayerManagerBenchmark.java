@@ -0,0 +1,83 @@
+package _workspace;
+
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.layers.LayerList;
+import gov.nasa.worldwind.layers.RenderableLayer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CustomLayerManager#makeAnnotationText(LayerList)} on large layer lists.
+ * <p>
+ * The manager only needs its window to register as a select listener, a do nothing proxy stands in for
+ * it so no GL context is created.
+ *
+ * @author viorel.florian
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class LayerManagerBenchmark {
+
+  /** layers in the list */
+  @Param({ "100", "1000", "10000" })
+  public int layers;
+
+  /** manager */
+  private CustomLayerManager manager;
+
+  /** list */
+  private LayerList list;
+
+  /**
+   * Builds the manager and the layer list, every other layer disabled
+   */
+  @Setup(Level.Trial)
+  public void create() {
+    WorldWindow wwd = (WorldWindow) Proxy.newProxyInstance(WorldWindow.class.getClassLoader(),
+        new Class<?>[] { WorldWindow.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+          }
+        });
+    this.manager = new CustomLayerManager(wwd);
+    this.list = new LayerList();
+    for (int i = 0; i < this.layers; i++) {
+      RenderableLayer layer = new RenderableLayer();
+      layer.setName("Layer " + i);
+      layer.setEnabled(i % 2 == 0);
+      this.list.add(layer);
+    }
+    this.list.add(this.manager);
+  }
+
+  /**
+   * Compose the text
+   *
+   * @return text
+   */
+  @Benchmark
+  public String makeAnnotationText() {
+    return this.manager.makeAnnotationText(this.list);
+  }
+}
@@ -0,0 +1,105 @@
+package _workspace.shapes;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import _workspace.shapes.layout.ShapeLayout;
+
+import utility.MyLogger;
+
+/**
+ * Legacy .mbc persistence: {@link AbstractDomeShape#saveMe(File, String)} and
+ * {@link ShapeLoaderFromFile#parseLegacy(File, ShapeLayout)}, the parse stage of a legacy load. Log4j is
+ * switched off to keep the console quiet, the info panel append of each logged message is still measured.
+ *
+ * @author viorel.florian
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ShapePersistenceBenchmark {
+
+  /** shape being saved */
+  private DomeShape shape;
+
+  /** file written by saveMe */
+  private File saved;
+
+  /** legacy file read by the parser */
+  private File legacy;
+
+  /** layout the parsed rows go to */
+  private ShapeLayout layout;
+
+  /**
+   * Creates the shape and the legacy file
+   *
+   * @throws Exception
+   */
+  @Setup(org.openjdk.jmh.annotations.Level.Trial)
+  public void create() throws Exception {
+    MyLogger.getLogger().setLevel(Level.OFF);
+    this.shape = new DomeShape((_workspace.MoonWorkspaceInternalFrame) null, Position.fromDegrees(12.5, -45.25,
+        120), 40, 25, 40, 0, 0, 0);
+    this.saved = File.createTempFile("saveMe", ".mbc");
+    this.legacy = File.createTempFile("loadShape", ".mbc");
+    this.shape.saveMe(this.legacy, this.shape.getIdentifier());
+    this.layout = new ShapeLayout(1024);
+  }
+
+  /**
+   * Clears the parsed rows
+   */
+  @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+  public void clear() {
+    this.layout = new ShapeLayout(1024);
+  }
+
+  /**
+   * Deletes the files
+   */
+  @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+  public void delete() {
+    this.saved.delete();
+    this.legacy.delete();
+  }
+
+  /**
+   * Save the shape
+   */
+  @Benchmark
+  public void saveMe() {
+    this.shape.saveMe(this.saved, this.shape.getIdentifier());
+  }
+
+  /**
+   * Parse the legacy file
+   *
+   * @return <code>true</code> if a row was added
+   */
+  @Benchmark
+  public boolean parseLegacy() {
+    if (this.layout.size() >= 1 << 20) {
+      this.layout = new ShapeLayout(1024);
+    }
+    return ShapeLoaderFromFile.parseLegacy(this.legacy, this.layout);
+  }
+}
@@ -0,0 +1,232 @@
+package _workspace.shapes;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ShapesPool} under contention.
+ * <p>
+ * The pool is filled with detached shapes (no workspace, no GL), every thread then works on the same
+ * pool: random lookups by identifier, add / remove of its own shapes, renames of its own shapes, and a
+ * mixed group of readers and one writer.
+ *
+ * @author viorel.florian
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ShapesPoolBenchmark {
+
+  /**
+   * Shared pool content
+   */
+  @State(Scope.Benchmark)
+  public static class Pool {
+
+    /** shapes already in the pool */
+    @Param({ "10000" })
+    public int size;
+
+    /** pool */
+    ShapesPool pool;
+
+    /** identifiers of the shapes already in the pool */
+    String[] identifiers;
+
+    /** next thread number */
+    final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * Fills the pool
+     *
+     * @throws Exception
+     */
+    @Setup(Level.Trial)
+    public void fill() throws Exception {
+      this.pool = new ShapesPool();
+      this.identifiers = new String[this.size];
+      for (int i = 0; i < this.size; i++) {
+        IShape shape = shape(i);
+        this.identifiers[i] = shape.getIdentifier();
+        this.pool.addShape(shape);
+      }
+    }
+
+    /**
+     * Empties the pool
+     *
+     * @throws Exception
+     */
+    @TearDown(Level.Trial)
+    public void empty() throws Exception {
+      this.pool.clear();
+    }
+  }
+
+  /**
+   * Shapes owned by one thread
+   */
+  @State(Scope.Thread)
+  public static class Own {
+
+    /** shapes of this thread, not in the pool between two invocations */
+    IShape[] shapes;
+
+    /** renamed shape */
+    IShape renamed;
+
+    /** its two identifiers */
+    String first, second;
+
+    /** next shape */
+    int next;
+
+    /**
+     * Creates the shapes of this thread
+     *
+     * @param pool
+     *
+     * @throws Exception
+     */
+    @Setup(Level.Trial)
+    public void create(Pool pool) throws Exception {
+      int thread = pool.threads.getAndIncrement();
+      this.shapes = new IShape[64];
+      for (int i = 0; i < this.shapes.length; i++) {
+        this.shapes[i] = shape(i);
+        this.shapes[i].setIdentifier("Own " + thread + " " + i);
+      }
+      this.first = "Renamed " + thread + " a";
+      this.second = "Renamed " + thread + " b";
+      this.renamed = shape(thread);
+      this.renamed.setIdentifier(this.first);
+      pool.pool.addShape(this.renamed);
+    }
+
+    /**
+     * Next shape to add
+     *
+     * @return shape
+     */
+    IShape next() {
+      IShape shape = this.shapes[this.next];
+      this.next = (this.next + 1) & (this.shapes.length - 1);
+      return shape;
+    }
+  }
+
+  /**
+   * Detached dome, spread around the globe
+   *
+   * @param i
+   *
+   * @return shape
+   */
+  static IShape shape(int i) {
+    return new DomeShape((_workspace.MoonWorkspaceInternalFrame) null, Position.fromDegrees((i * 7) % 180 - 90,
+        (i * 13) % 360 - 180, 0), 10, 10, 10, 0, 0, 0);
+  }
+
+  /**
+   * Lookup of a random identifier
+   *
+   * @param pool
+   *
+   * @return shape
+   *
+   * @throws Exception
+   */
+  @Benchmark
+  @Threads(4)
+  public IShape get(Pool pool) throws Exception {
+    return pool.pool.getShape(pool.identifiers[ThreadLocalRandom.current().nextInt(pool.size)]);
+  }
+
+  /**
+   * Add then remove a shape of this thread
+   *
+   * @param pool
+   * @param own
+   *
+   * @return removed shape
+   *
+   * @throws Exception
+   */
+  @Benchmark
+  @Threads(4)
+  public IShape addRemove(Pool pool, Own own) throws Exception {
+    IShape shape = own.next();
+    pool.pool.addShape(shape);
+    return pool.pool.removeShape(shape.getIdentifier());
+  }
+
+  /**
+   * Rename a shape of this thread back and forth
+   *
+   * @param pool
+   * @param own
+   *
+   * @throws Exception
+   */
+  @Benchmark
+  @Threads(4)
+  public void updateIdentifier(Pool pool, Own own) throws Exception {
+    pool.pool.updateIdentifier(own.first, own.second);
+    pool.pool.updateIdentifier(own.second, own.first);
+  }
+
+  /**
+   * Readers of the mixed group
+   *
+   * @param pool
+   *
+   * @return shape
+   *
+   * @throws Exception
+   */
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(3)
+  public IShape mixedGet(Pool pool) throws Exception {
+    return this.get(pool);
+  }
+
+  /**
+   * Writer of the mixed group
+   *
+   * @param pool
+   * @param own
+   *
+   * @return removed shape
+   *
+   * @throws Exception
+   */
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public IShape mixedAddRemove(Pool pool, Own own) throws Exception {
+    return this.addRemove(pool, own);
+  }
+}
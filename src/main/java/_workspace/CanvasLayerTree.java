@@ -42,6 +42,19 @@ public class CanvasLayerTree extends RenderableLayer {
 
 	}
 	
+    /**
+     * Unregisters the hot spot controller, then disposes the tree
+     *
+     * @see gov.nasa.worldwind.layers.RenderableLayer#dispose()
+     */
+    @Override
+    public void dispose()
+    {
+        this.parantframe.getWwGLCanvas().removeSelectListener(this.controller);
+        this.parantframe.getWwGLCanvas().getInputHandler().removeMouseMotionListener(this.controller);
+        super.dispose();
+    }
+
     public void insertBeforeCompass(Layer layer)
     {
         // Insert the layer into the layer list just before the compass.
@@ -93,6 +93,16 @@ public class CustomLayerManager extends RenderableLayer implements SelectListene
         this.wwd.addSelectListener(this);
     }
 
+    /**
+     * Stops listening to the world window.
+     */
+    @Override
+    public void dispose()
+    {
+        this.wwd.removeSelectListener(this);
+        super.dispose();
+    }
+
     /**
      * Get the <code>ScreenAnnotation</code> used to display the layer list.
      *
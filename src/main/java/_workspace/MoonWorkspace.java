@@ -1,7 +1,14 @@
 package _workspace;
 
+import gov.nasa.worldwind.Model;
+
 public interface MoonWorkspace {
-	 void newMoonWorkspace();
+	 /**
+	  * Opens a new workspace, on the event thread
+	  * 
+	  * @param model taken from the {@link WorkspaceModelPool}, off the event thread
+	  */
+	 void newMoonWorkspace(Model model);
 	 public void setLastSelectedIntFr(MoonWorkspaceInternalFrame f);
 	 public MoonWorkspaceInternalFrame getLastSelectedIntFr();
 
@@ -1,6 +1,9 @@
 package _workspace;
 
-import java.util.ArrayList;
+import gov.nasa.worldwind.Model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 
@@ -9,8 +12,8 @@ import java.util.ArrayList;
 public class MoonWorkspaceFactory implements MoonWorkspace {
 	/** instance */
 	private static MoonWorkspaceFactory instance = null;
-	/** internalFrames */
-	static ArrayList<MoonWorkspaceInternalFrame> internalFrames = new ArrayList<MoonWorkspaceInternalFrame>();
+	/** internalFrames, added on the event thread, removed from any thread closing a workspace */
+	static final List<MoonWorkspaceInternalFrame> internalFrames = new CopyOnWriteArrayList<MoonWorkspaceInternalFrame>();
 	/** lastSelectedIntFr */
 	private MoonWorkspaceInternalFrame lastSelectedIntFr = null;
 	
@@ -37,10 +40,10 @@ public class MoonWorkspaceFactory implements MoonWorkspace {
 	}
 
 	/**
-	 * @see _workspace.MoonWorkspace#newMoonWorkspace()
+	 * @see _workspace.MoonWorkspace#newMoonWorkspace(gov.nasa.worldwind.Model)
 	 */
-	public void newMoonWorkspace() {
-		internalFrames.add(new MoonWorkspaceInternalFrame());
+	public void newMoonWorkspace(Model model) {
+		internalFrames.add(new MoonWorkspaceInternalFrame(model));
 	}
 
 	/**
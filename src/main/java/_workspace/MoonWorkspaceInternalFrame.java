@@ -1,8 +1,6 @@
 package _workspace;
 
 import gov.nasa.worldwind.Model;
-import gov.nasa.worldwind.WorldWind;
-import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
 import gov.nasa.worldwind.layers.AnnotationLayer;
 import gov.nasa.worldwind.layers.LayerList;
@@ -20,6 +18,14 @@ import javax.swing.event.InternalFrameListener;
 
 import utility.MyLogger;
 import _workspace.shapes.ShapeListener;
+import _workspace.shapes.ShapeSelection;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.cluster.ClusterLayer;
+import _workspace.shapes.layout.LayoutSession;
+import _workspace.shapes.render.InstancedDomeLayer;
+import _workspace.shapes.spatial.CollisionDetector;
+import _workspace.shapes.spatial.ShapeIndex;
+import _workspace.shapes.spatial.ShapePicker;
 
 /**
  * TODO DESCRIPTION
@@ -52,10 +58,27 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
   /** annotationLayer */
   private AnnotationLayer annotationLayer = new AnnotationLayer();
 
+  /** redrawScheduler */
+  private RedrawScheduler redrawScheduler;
+
+  /** shapeListener */
+  private ShapeListener shapeListener;
+
+  /** shapes of this workspace, with their index, layers, picker and selection */
+  private WorkspaceShapes shapes;
+
+  /** layout file of this workspace */
+  private final LayoutSession layoutSession = new LayoutSession();
+
+  /** resources were released */
+  private boolean released = false;
+
   /**
-   * Constructs a new instance.
+   * Constructs a new instance, on the event thread.
+   *
+   * @param m model of the workspace, see {@link WorkspaceModelPool#take()}
    */
-  protected MoonWorkspaceInternalFrame() {
+  protected MoonWorkspaceInternalFrame(Model m) {
     super("New workspace " + (++openFrameCount), true, // resizable
         true, // closable
         true, // maximizable
@@ -66,12 +89,15 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
     // System.out.println("Creating Moon");
     MyLogger.info(this, "Creating Moon canvas");
 
-    this.setWwGLCanvas(new gov.nasa.worldwind.awt.WorldWindowGLCanvas());
-    MyLogger.info(this, "Canvas is double buffered:  " + this.getWwGLCanvas().isDoubleBuffered());
-    Model m = (Model) WorldWind.createConfigurationComponent(AVKey.MODEL_CLASS_NAME);
+    this.setWwGLCanvas(SharedWorldRegistry.getInstance().createCanvas());
+    MyLogger.info(this, "Canvas is double buffered:  {}", Boolean.valueOf(this.getWwGLCanvas().isDoubleBuffered()));
 
     // initializam Canvasul ptr Luna
     this.getWwGLCanvas().setModel(m); // adauga model-ul la canvas
+    this.redrawScheduler = new RedrawScheduler(this.getWwGLCanvas());
+    this.shapes = new WorkspaceShapes(m.getGlobe(), this.redrawScheduler);
+    // shapes are picked by shapePicker, not by a pick pass
+    this.rendLayer.setPickEnabled(false);
 
     this.setSize(480, 320);
     this.setLocation(XOFFSET * openFrameCount, YOFFSET * openFrameCount);
@@ -84,7 +110,10 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
     MyLogger.info(this, "Moon Canvas added");
 
     BaseFrame.getInstance().getDesktop().add(this);
+    // clusters first, the shapes drawn after them leave out the clustered ones
+    this.getLayers().add(this.getClusterLayer());
     this.getLayers().add(this.getRendLayer());
+    this.getLayers().add(this.getDomeLayer());
     this.getLayers().add(this.getAnnotationLayer());
     // TODO make this optional
     this.getLayers().add(new CustomLayerManager(this.getWwGLCanvas()));
@@ -99,7 +128,7 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
     }
     this.setVisible(true);
 
-    new ShapeListener(this);
+    this.shapeListener = new ShapeListener(this);
     this.getRendLayer().setName("Renderable layer");
     this.getAnnotationLayer().setName("Anotation Layer");
   }
@@ -134,6 +163,69 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
     return this.wwGLCanvas;
   }
 
+  /**
+   * Get redrawScheduler, use it instead of calling redraw on the canvas.
+   * 
+   * @return redrawScheduler
+   */
+  public RedrawScheduler getRedrawScheduler() {
+    return this.redrawScheduler;
+  }
+
+  /**
+   * Get shapesPool, the shapes of this workspace.
+   * 
+   * @return shapesPool
+   */
+  public ShapesPool getShapesPool() {
+    return this.shapes.getPool();
+  }
+
+  /**
+   * Get shapeIndex, follows the shapes pool.
+   * 
+   * @return shapeIndex
+   */
+  public ShapeIndex getShapeIndex() {
+    return this.shapes.getIndex();
+  }
+
+  /**
+   * Get shapePicker, follows the shapes pool.
+   * 
+   * @return shapePicker
+   */
+  public ShapePicker getShapePicker() {
+    return this.shapes.getPicker();
+  }
+
+  /**
+   * Get collisionDetector, follows the shapes pool.
+   * 
+   * @return collisionDetector
+   */
+  public CollisionDetector getCollisionDetector() {
+    return this.shapes.getCollisionDetector();
+  }
+
+  /**
+   * Get selection, the shapes the panels act on.
+   * 
+   * @return selection
+   */
+  public ShapeSelection getSelection() {
+    return this.shapes.getSelection();
+  }
+
+  /**
+   * Get layoutSession.
+   * 
+   * @return layoutSession
+   */
+  public LayoutSession getLayoutSession() {
+    return this.layoutSession;
+  }
+
   /**
    * Set rendLayer.
    * 
@@ -171,13 +263,12 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
       MyLogger.getLogger().info("Adding LayerTree");
       this.canvasLT = new CanvasLayerTree(this);
       this.layerTreeStatus = true;
-      System.gc();
     } else if (this.layerTreeStatus == true) {
       MyLogger.getLogger().info("Removing LayerTree");
       this.getLayers().remove(this.canvasLT);
+      this.canvasLT.dispose();
       this.canvasLT = null;
       this.layerTreeStatus = false;
-      System.gc();
     }
   }
 
@@ -195,7 +286,8 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
    */
   @Override
   public void internalFrameClosed(InternalFrameEvent e) {
-    this.del_This_If_LastSelected();
+    // frames disposed without a closing event
+    this.release();
   }
 
   /**
@@ -203,7 +295,47 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
    */
   @Override
   public void internalFrameClosing(InternalFrameEvent e) {
+    // the canvas still has its GL context, the shutdown can free the GL resources
+    this.release();
+  }
+
+  /**
+   * Releases everything the workspace holds, once: its shapes leave the pool, the listeners are
+   * unregistered, the shared world is released and the canvas shuts down, see {@link WorkspaceCanvas}.
+   */
+  private void release() {
+    if (this.released) {
+      return;
+    }
+    this.released = true;
     this.del_This_If_LastSelected();
+    MoonWorkspaceFactory.internalFrames.remove(this);
+    this.removeInternalFrameListener(this);
+    this.redrawScheduler.stop();
+    this.shapeListener.dispose();
+    int evicted = this.evictShapes();
+
+    // the shared layers leave the model first, the canvas shutdown disposes the layers left
+    WorldWindowGLCanvas canvas = this.getWwGLCanvas();
+    SharedWorldRegistry.getInstance().release(canvas.getModel());
+    SharedWorldRegistry.getInstance().releaseCanvas(canvas);
+    this.canvasLT = null;
+
+    MyLogger.event(this, "Workspace closed", "shapesEvicted", Integer.valueOf(evicted), "redrawsRequested",
+        Long.valueOf(this.redrawScheduler.getRequestedCount()), "redrawsIssued",
+        Long.valueOf(this.redrawScheduler.getIssuedCount()));
+  }
+
+  /**
+   * Empties the pool and unwires what follows it, see {@link WorkspaceShapes#release()}, and the layers
+   *
+   * @return number of shapes evicted
+   */
+  private int evictShapes() {
+    int evicted = this.shapes.release();
+    this.getRendLayer().removeAllRenderables();
+    this.getAnnotationLayer().removeAllAnnotations();
+    return evicted;
   }
 
   /**
@@ -258,6 +390,24 @@ public class MoonWorkspaceInternalFrame extends JInternalFrame implements Intern
     this.annotationLayer = annotationLayer;
   }
 
+  /**
+   * Get domeLayer, draws the domes of the renderable layer.
+   *
+   * @return domeLayer
+   */
+  public InstancedDomeLayer getDomeLayer() {
+    return this.shapes.getDomeLayer();
+  }
+
+  /**
+   * Get clusterLayer, stands for the domes too small to tell apart.
+   *
+   * @return clusterLayer
+   */
+  public ClusterLayer getClusterLayer() {
+    return this.shapes.getClusterLayer();
+  }
+
   /**
    * Get annotationLayer.
    * 
@@ -0,0 +1,156 @@
+package _workspace;
+
+import gov.nasa.worldwind.WorldWindow;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.Timer;
+
+/**
+ * Coalesces the redraw requests of one workspace.
+ * <p>
+ * Any number of {@link #requestRedraw()} calls, from any thread, result in at most one
+ * {@link WorldWindow#redraw()} per display refresh interval, issued on the Event Dispatch Thread. The
+ * requested and issued counts are kept for diagnostics.
+ *
+ * @author viorel.florian
+ */
+public class RedrawScheduler {
+
+  /** refresh rate used when the display does not tell */
+  private static final int DEFAULT_REFRESH_RATE = 60;
+
+  /** window */
+  private final WorldWindow wwd;
+
+  /** minimum time between two redraws, in milliseconds */
+  private final int interval;
+
+  /** one shot timer issuing the redraw */
+  private final Timer timer;
+
+  /** a redraw is scheduled */
+  private final AtomicBoolean pending = new AtomicBoolean();
+
+  /** time of the last redraw, in milliseconds */
+  private volatile long lastIssued = 0;
+
+  /** requested */
+  private final AtomicLong requested = new AtomicLong();
+
+  /** issued */
+  private final AtomicLong issued = new AtomicLong();
+
+  /**
+   * Constructs a new instance, paced at the display refresh rate.
+   *
+   * @param wwd
+   */
+  public RedrawScheduler(WorldWindow wwd) {
+    this(wwd, 1000 / refreshRate());
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param wwd
+   * @param interval minimum time between two redraws, in milliseconds
+   */
+  public RedrawScheduler(WorldWindow wwd, int interval) {
+    super();
+    this.wwd = wwd;
+    this.interval = Math.max(1, interval);
+    this.timer = new Timer(this.interval, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        RedrawScheduler.this.issue();
+      }
+    });
+    this.timer.setRepeats(false);
+  }
+
+  /**
+   * Refresh rate of the default screen
+   *
+   * @return refresh rate, in Hz
+   */
+  private static int refreshRate() {
+    if (GraphicsEnvironment.isHeadless()) {
+      return DEFAULT_REFRESH_RATE;
+    }
+    int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode()
+        .getRefreshRate();
+    return rate == DisplayMode.REFRESH_RATE_UNKNOWN || rate <= 0 ? DEFAULT_REFRESH_RATE : rate;
+  }
+
+  /**
+   * Asks for a redraw, returns at once
+   */
+  public void requestRedraw() {
+    this.requested.incrementAndGet();
+    if (this.pending.compareAndSet(false, true)) {
+      long wait = this.lastIssued + this.interval - System.currentTimeMillis();
+      this.timer.setInitialDelay((int) Math.max(0, Math.min(wait, this.interval)));
+      this.timer.restart();
+    }
+  }
+
+  /**
+   * Issues the redraw, on the EDT
+   */
+  void issue() {
+    // requests made while redrawing schedule the next frame
+    this.pending.set(false);
+    this.lastIssued = System.currentTimeMillis();
+    this.issued.incrementAndGet();
+    this.wwd.redraw();
+  }
+
+  /**
+   * Drops a scheduled redraw
+   */
+  public void stop() {
+    this.timer.stop();
+    this.pending.set(false);
+  }
+
+  /**
+   * Get number of redraws asked for.
+   *
+   * @return requested
+   */
+  public long getRequestedCount() {
+    return this.requested.get();
+  }
+
+  /**
+   * Get number of redraws actually issued.
+   *
+   * @return issued
+   */
+  public long getIssuedCount() {
+    return this.issued.get();
+  }
+
+  /**
+   * Get interval.
+   *
+   * @return minimum time between two redraws, in milliseconds
+   */
+  public int getInterval() {
+    return this.interval;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "Redraws requested: " + this.getRequestedCount() + ", issued: " + this.getIssuedCount();
+  }
+}
@@ -0,0 +1,153 @@
+package _workspace;
+
+import gov.nasa.worldwind.BasicModel;
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.layers.LayerList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import utility.MyLogger;
+
+/**
+ * Reference counted world state shared by all the workspaces.
+ * <p>
+ * The configured globe (with its elevation model) and layers (imagery, stars, scale bar, compass) are
+ * built once. Each workspace gets its own {@link Model} over them, so it can add and reorder its own
+ * renderable and annotation layers; enabling or disabling a shared layer shows in every workspace. The
+ * canvases share one GL context, hence one texture cache for the imagery tiles. The shared state is
+ * disposed when the last model is released.
+ *
+ * @author viorel.florian
+ */
+public final class SharedWorldRegistry {
+
+  /** registry instance */
+  private static final SharedWorldRegistry instance = new SharedWorldRegistry();
+
+  /**
+   * Get instance
+   *
+   * @return registry singleton instance
+   */
+  public static SharedWorldRegistry getInstance() {
+    return instance;
+  }
+
+  /** shared globe, <code>null</code> when no model is in use */
+  private Globe globe;
+
+  /** shared layers, in configuration order */
+  private final List<Layer> layers = new ArrayList<Layer>();
+
+  /** models in use */
+  private int references = 0;
+
+  /** live canvases, new canvases share the GL resources of the first one */
+  private final List<WorkspaceCanvas> canvases = new ArrayList<WorkspaceCanvas>();
+
+  /**
+   * Constructs a new instance.
+   */
+  private SharedWorldRegistry() {
+    super();
+  }
+
+  /**
+   * New model over the shared globe and layers, building them if needed. Release it with
+   * {@link #release(Model)}.
+   *
+   * @return model of one workspace
+   */
+  public synchronized Model acquire() {
+    if (this.globe == null) {
+      Model configured = (Model) WorldWind.createConfigurationComponent(AVKey.MODEL_CLASS_NAME);
+      this.globe = configured.getGlobe();
+      for (Layer layer : configured.getLayers()) {
+        this.layers.add(layer);
+      }
+      // the configured model was only a way to build them
+      configured.getLayers().clear();
+      configured.setGlobe(null);
+      MyLogger.info(this, "Shared world built, {} layers", Integer.valueOf(this.layers.size()));
+    }
+    this.references++;
+    return new BasicModel(this.globe, new LayerList(this.layers.toArray(new Layer[this.layers.size()])));
+  }
+
+  /**
+   * Releases a model, the shared state is disposed with the last one
+   *
+   * @param model as returned by {@link #acquire()}
+   */
+  public synchronized void release(Model model) {
+    // detach the model, the shared globe and layers no longer notify it
+    for (Layer layer : this.layers) {
+      model.getLayers().remove(layer);
+    }
+    model.setGlobe(null);
+
+    if (--this.references > 0) {
+      return;
+    }
+    this.references = 0;
+    for (Layer layer : this.layers) {
+      layer.dispose();
+    }
+    this.layers.clear();
+    this.globe = null;
+    MyLogger.info(this, "Shared world disposed");
+  }
+
+  /**
+   * Tells if a layer belongs to the shared state
+   *
+   * @param layer
+   *
+   * @return <code>true</code> if shared by all the workspaces
+   */
+  public synchronized boolean isShared(Layer layer) {
+    return this.layers.contains(layer);
+  }
+
+  /**
+   * New canvas, sharing the GL context of the live canvases. Call {@link #releaseCanvas(WorldWindowGLCanvas)}
+   * once it is closed.
+   *
+   * @return canvas
+   */
+  public synchronized WorldWindowGLCanvas createCanvas() {
+    WorldWindow shareWith = this.canvases.isEmpty() ? null : this.canvases.get(0);
+    WorkspaceCanvas canvas = shareWith == null ? new WorkspaceCanvas() : new WorkspaceCanvas(shareWith);
+    this.canvases.add(canvas);
+    return canvas;
+  }
+
+  /**
+   * Forgets a closed canvas and shuts it down, later canvases share with the remaining ones. The shared
+   * GPU resource cache is only cleared with the last canvas.
+   *
+   * @param canvas as returned by {@link #createCanvas()}
+   */
+  public synchronized void releaseCanvas(WorldWindowGLCanvas canvas) {
+    if (!this.canvases.remove(canvas)) {
+      return;
+    }
+    ((WorkspaceCanvas) canvas).shutdown(this.canvases.isEmpty());
+  }
+
+  /**
+   * Get number of models in use.
+   *
+   * @return references
+   */
+  public synchronized int getReferenceCount() {
+    return this.references;
+  }
+}
@@ -0,0 +1,50 @@
+package _workspace;
+
+import gov.nasa.worldwind.WorldWindow;
+import gov.nasa.worldwind.WorldWindowImpl;
+import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+
+/**
+ * Canvas of one workspace.
+ * <p>
+ * The canvases share the GL context, hence the GPU resource cache, of the first one (see
+ * {@link SharedWorldRegistry#createCanvas()}), and a WorldWind shutdown clears the cache it sees. Only the
+ * last live canvas shuts down with the shared cache; the others get an empty cache of their own first, so
+ * their shutdown only disposes their input handler and the layers left in their model.
+ *
+ * @author viorel.florian
+ */
+public class WorkspaceCanvas extends WorldWindowGLCanvas {
+
+  /** */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a new instance, with its own GL context.
+   */
+  public WorkspaceCanvas() {
+    super();
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param shareWith canvas whose GL context and GPU resource cache are shared
+   */
+  public WorkspaceCanvas(WorldWindow shareWith) {
+    super(shareWith);
+  }
+
+  /**
+   * Shuts the canvas down
+   *
+   * @param last <code>true</code> if no other canvas uses the shared GPU resource cache, which is cleared
+   *          then
+   */
+  public void shutdown(boolean last) {
+    if (!last) {
+      this.wwd.initGpuResourceCache(WorldWindowImpl.createGpuResourceCache());
+    }
+    this.shutdown();
+  }
+}
@@ -0,0 +1,132 @@
+package _workspace;
+
+import gov.nasa.worldwind.Model;
+
+import java.util.concurrent.ExecutionException;
+
+import utility.MyLogger;
+import utility.tasks.Task;
+import utility.tasks.TaskCategory;
+import utility.tasks.TaskService;
+
+/**
+ * Keeps one spare workspace {@link Model} (globe, elevation model, layers) ready.
+ * <p>
+ * The spare is built in the background, as an {@link TaskCategory#IO} task, once {@link #prewarm()} is
+ * called at startup. {@link #take()} hands it over and schedules the next one, so File &gt; New only
+ * builds the canvas and the workspace layers. Spares come from the {@link SharedWorldRegistry}: the
+ * first one builds the shared world, and holding a spare keeps it alive between workspaces.
+ *
+ * @author viorel.florian
+ */
+public final class WorkspaceModelPool {
+
+  /** pool instance */
+  private static final WorkspaceModelPool instance = new WorkspaceModelPool();
+
+  /**
+   * Get instance
+   *
+   * @return pool singleton instance
+   */
+  public static WorkspaceModelPool getInstance() {
+    return instance;
+  }
+
+  /** spare being built or ready, <code>null</code> if none, guarded by this */
+  private Task<Model> spare;
+
+  /** models handed over */
+  private int taken = 0;
+
+  /** models handed over ready */
+  private int hits = 0;
+
+  /**
+   * Constructs a new instance.
+   */
+  private WorkspaceModelPool() {
+    super();
+  }
+
+  /**
+   * Starts building a spare model, unless there already is one
+   */
+  public synchronized void prewarm() {
+    if (this.spare == null) {
+      this.spare = TaskService.getInstance().submit(new Task<Model>(TaskCategory.IO, "Workspace prewarm") {
+        @Override
+        protected Model call() throws Exception {
+          return createModel();
+        }
+
+        @Override
+        protected void failed(Throwable cause) {
+          MyLogger.error(WorkspaceModelPool.this, "Spare workspace could not be built", cause);
+        }
+      });
+    }
+  }
+
+  /**
+   * Tells if a spare model is ready to be taken
+   *
+   * @return <code>true</code> if {@link #take()} will not build nor wait
+   */
+  public synchronized boolean isReady() {
+    return this.spare != null && this.spare.isDone() && !this.spare.isCancelled();
+  }
+
+  /**
+   * Takes the spare model and starts building the next one. Waits for a spare that is still being built,
+   * builds one right away if there is none or it failed.
+   *
+   * @return model, owned by the caller
+   */
+  public Model take() {
+    Task<Model> task;
+    synchronized (this) {
+      task = this.spare;
+      this.spare = null;
+      this.taken++;
+      if (task != null && task.isDone()) {
+        this.hits++;
+      }
+    }
+
+    Model model = null;
+    if (task != null) {
+      try {
+        model = task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // logged by the task
+      } catch (RuntimeException e) {
+        // cancelled
+      }
+    }
+    if (model == null) {
+      model = createModel();
+    }
+    this.prewarm();
+    return model;
+  }
+
+  /**
+   * Builds a model over the shared world
+   *
+   * @return new model, release it to the {@link SharedWorldRegistry}
+   */
+  static Model createModel() {
+    return SharedWorldRegistry.getInstance().acquire();
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public synchronized String toString() {
+    return "Workspace models taken: " + this.taken + ", ready: " + this.hits;
+  }
+}
@@ -0,0 +1,150 @@
+package _workspace;
+
+import gov.nasa.worldwind.globes.Globe;
+import _workspace.shapes.OverlapHighlighter;
+import _workspace.shapes.ShapeSelection;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.cluster.ClusterLayer;
+import _workspace.shapes.render.InstancedDomeLayer;
+import _workspace.shapes.spatial.CollisionDetector;
+import _workspace.shapes.spatial.ShapeIndex;
+import _workspace.shapes.spatial.ShapePicker;
+
+/**
+ * The shapes of one workspace and everything that follows its pool: spatial index, collision detector,
+ * overlap highlights, selection, dome and cluster layers, picker. Wired on construction, unwired by
+ * {@link #release()}; none of it needs a display.
+ * <p>
+ * The layers are added to the model by {@link MoonWorkspaceInternalFrame}, the canvas shutdown disposes
+ * them with their GL resources.
+ *
+ * @author viorel.florian
+ */
+public final class WorkspaceShapes {
+
+  /** shapes of the workspace */
+  private final ShapesPool pool = new ShapesPool();
+
+  /** spatial index over the pool */
+  private final ShapeIndex index;
+
+  /** overlaps between the shapes of the pool */
+  private final CollisionDetector collisionDetector;
+
+  /** highlights the shapes in conflict */
+  private final OverlapHighlighter overlapHighlighter;
+
+  /** selected shapes, follows the pool */
+  private final ShapeSelection selection = new ShapeSelection();
+
+  /** draws the domes of the pool at once */
+  private final InstancedDomeLayer domeLayer = new InstancedDomeLayer();
+
+  /** stands for the groups of domes too small to tell apart */
+  private final ClusterLayer clusterLayer = new ClusterLayer();
+
+  /** finds the dome under the cursor, over the pool */
+  private final ShapePicker picker;
+
+  /**
+   * Constructs a new instance, with an empty pool.
+   *
+   * @param globe the shapes are on
+   * @param redrawScheduler redraws the workspace when a highlight changed, <code>null</code> for none
+   */
+  public WorkspaceShapes(Globe globe, RedrawScheduler redrawScheduler) {
+    super();
+    this.index = new ShapeIndex(globe.getRadius());
+    this.index.attach(this.pool);
+    this.collisionDetector = new CollisionDetector(this.pool, this.index);
+    this.overlapHighlighter = new OverlapHighlighter(this.collisionDetector, redrawScheduler);
+    this.pool.addPoolListener(this.selection);
+    this.domeLayer.attach(this.pool);
+    this.clusterLayer.attach(this.pool);
+    this.domeLayer.setFilter(this.clusterLayer);
+    this.picker = new ShapePicker(globe);
+    this.picker.attach(this.pool);
+    this.picker.setFilter(this.clusterLayer);
+  }
+
+  /**
+   * Empties the pool, the parts that follow it forget its shapes, then unwires them
+   *
+   * @return number of shapes evicted
+   */
+  public int release() {
+    int evicted = this.pool.clear();
+    this.overlapHighlighter.dispose();
+    this.collisionDetector.detach();
+    this.index.detach(this.pool);
+    this.domeLayer.detach(this.pool);
+    this.clusterLayer.detach(this.pool);
+    this.picker.detach(this.pool);
+    this.pool.removePoolListener(this.selection);
+    this.selection.clear();
+    return evicted;
+  }
+
+  /**
+   * Get pool.
+   *
+   * @return pool
+   */
+  public ShapesPool getPool() {
+    return this.pool;
+  }
+
+  /**
+   * Get index.
+   *
+   * @return index
+   */
+  public ShapeIndex getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Get collisionDetector.
+   *
+   * @return collisionDetector
+   */
+  public CollisionDetector getCollisionDetector() {
+    return this.collisionDetector;
+  }
+
+  /**
+   * Get selection.
+   *
+   * @return selection
+   */
+  public ShapeSelection getSelection() {
+    return this.selection;
+  }
+
+  /**
+   * Get domeLayer.
+   *
+   * @return domeLayer
+   */
+  public InstancedDomeLayer getDomeLayer() {
+    return this.domeLayer;
+  }
+
+  /**
+   * Get clusterLayer.
+   *
+   * @return clusterLayer
+   */
+  public ClusterLayer getClusterLayer() {
+    return this.clusterLayer;
+  }
+
+  /**
+   * Get picker.
+   *
+   * @return picker
+   */
+  public ShapePicker getPicker() {
+    return this.picker;
+  }
+}
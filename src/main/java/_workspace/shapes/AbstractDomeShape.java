@@ -0,0 +1,634 @@
+/**
+ *
+ */
+package _workspace.shapes;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.BasicShapeAttributes;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.Ellipsoid;
+import gov.nasa.worldwind.render.Material;
+import gov.nasa.worldwind.render.ShapeAttributes;
+import gov.nasa.worldwind.render.airspaces.Geometry;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utility.MyLogger;
+
+import _workspace.MoonWorkspaceFactory;
+import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.render.DomeLod;
+import _workspace.shapes.render.InstancedDomeLayer;
+import _workspace.shapes.render.UnitMeshCache;
+import _workspace.shapes.render.UnitMeshSource;
+
+/**
+ * @author Viorel Florian Common code of the ellipsoid based "Dome" shapes
+ *         <p>
+ *         A shape is either created <i>attached</i> (added to the workspace
+ *         layer and to the pool right away, as the toolbar does) or
+ *         <i>detached</i> (geometry only, see {@link ShapeLoadPipeline}) and
+ *         inserted later in bulk.
+ */
+public abstract class AbstractDomeShape extends Ellipsoid implements IShape,
+		UnitMeshSource {
+	/** numbers of the shapes created without a workspace */
+	private static final AtomicInteger detachedIDs = new AtomicInteger();
+
+	/** highlight attributes of the domes that overlap another one */
+	private static final ShapeAttributes CONFLICT_ATTRIBUTES = new BasicShapeAttributes();
+
+	static {
+		CONFLICT_ATTRIBUTES.setInteriorMaterial(Material.RED);
+		CONFLICT_ATTRIBUTES.setInteriorOpacity(0.8);
+		CONFLICT_ATTRIBUTES.setOutlineMaterial(Material.RED);
+	}
+
+	/** selectedIntFr */
+	MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory
+			.getInstance().getLastSelectedIntFr();
+
+	/** domeName */
+	private String domeName = "";
+
+	/** handle in the shapes pool, only known when added by {@link #attach()} */
+	private int poolHandle = ShapesPool.NO_HANDLE;
+
+	/** geometry changed since the last save, a new shape is not saved yet */
+	private volatile boolean dirty = true;
+
+	/** incremented whenever the drawn geometry changes, previews included */
+	private volatile int geometryVersion = 0;
+
+	/** previewed values are not in the cached shape data yet, see {@link #preview} */
+	private boolean previewed = false;
+
+	/** highlight asked for by the selection, see {@link #setHighlighted(boolean)} */
+	private boolean selectedHighlight = false;
+
+	/** overlaps another dome, see {@link #setConflicting(boolean)} */
+	private boolean conflicting = false;
+
+	/** highlight attributes to restore once the conflict is resolved */
+	private ShapeAttributes plainHighlightAttributes;
+
+	/**
+	 * Creates an empty shape, geometry is set by the subclass
+	 */
+	protected AbstractDomeShape() {
+		super();
+	}
+
+	/**
+	 * @param pos
+	 * @param northSouthRadius
+	 * @param verticalRadius
+	 * @param eastWestRadius
+	 */
+	protected AbstractDomeShape(Position pos, double northSouthRadius,
+			double verticalRadius, double eastWestRadius) {
+		super(pos, northSouthRadius, verticalRadius, eastWestRadius);
+		this.setAttributes(new BasicShapeAttributes());
+	}
+
+	/**
+	 * @param pos
+	 * @param northSouthRadius
+	 * @param verticalRadius
+	 * @param eastWestRadius
+	 * @param heading
+	 *            in degrees
+	 * @param tilt
+	 *            in degrees
+	 * @param roll
+	 *            in degrees
+	 */
+	protected AbstractDomeShape(Position pos, double northSouthRadius,
+			double verticalRadius, double eastWestRadius, double heading,
+			double tilt, double roll) {
+		super(pos, northSouthRadius, verticalRadius, eastWestRadius, Angle
+				.fromDegrees(heading), Angle.fromDegrees(tilt), Angle
+				.fromDegrees(roll));
+		this.setAttributes(new BasicShapeAttributes());
+	}
+
+	/**
+	 * Adds this shape to the pool and to its workspace, and redraws. Nothing
+	 * is drawn if the pool refuses the shape.
+	 *
+	 * @throws Exception
+	 */
+	protected void attach() throws Exception {
+		this.addToPool();
+		this.selectedIntFr.getRendLayer().addRenderable(this);
+		this.selectedIntFr.getRedrawScheduler().requestRedraw();
+		ShapeListener.lastSelectedObj = this;
+	}
+
+	/**
+	 * Get the workspace this shape belongs to
+	 *
+	 * @return workspace
+	 */
+	public MoonWorkspaceInternalFrame getWorkspace() {
+		return this.selectedIntFr;
+	}
+
+	/**
+	 * Sets the workspace of a detached shape
+	 *
+	 * @param workspace
+	 */
+	void setWorkspace(MoonWorkspaceInternalFrame workspace) {
+		this.selectedIntFr = workspace;
+	}
+
+	/**
+	 * Get the pool of the workspace this shape belongs to
+	 *
+	 * @return pool, <code>null</code> without a workspace
+	 */
+	ShapesPool getShapesPool() {
+		return this.selectedIntFr == null ? null : this.selectedIntFr
+				.getShapesPool();
+	}
+
+	/**
+	 * @return next number for the name of a new shape of this kind, counted
+	 *         per workspace
+	 */
+	protected int nextID() {
+		ShapesPool pool = this.getShapesPool();
+		return pool == null ? detachedIDs.incrementAndGet() : pool
+				.nextSequence(this.getClass());
+	}
+
+	/**
+	 * Next name of the form "prefix NN" that no shape of the pool has, loaded
+	 * or renamed shapes may hold names the sequence did not reach yet
+	 *
+	 * @param prefix
+	 *            name of the kind
+	 * @return name
+	 */
+	protected String nextName(String prefix) {
+		ShapesPool pool = this.getShapesPool();
+		while (true) {
+			int id = this.nextID();
+			String name = id < 10 ? prefix + " 0" + id : prefix + " " + id;
+			try {
+				if (pool == null || pool.getShape(name) == null) {
+					return name;
+				}
+			} catch (Exception e) {
+				// not a valid identifier, cannot be taken either
+				return name;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+
+	private void addToPool() throws Exception {
+		this.poolHandle = this.getShapesPool().addShape(this);
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+
+	private void removeFromPool() throws Exception {
+		ShapesPool pool = this.getShapesPool();
+		if (this.poolHandle == ShapesPool.NO_HANDLE
+				|| pool.removeShape(this.poolHandle) == null) {
+			pool.removeShape(this.getIdentifier());
+		}
+		this.poolHandle = ShapesPool.NO_HANDLE;
+	}
+
+	/**
+	 * @return next free name for this kind of shape
+	 */
+	protected abstract String generateName();
+
+	/**
+	 * @see _workspace.shapes.IShape#setIdentifier(java.lang.String)
+	 */
+	@Override
+	public void setIdentifier(String name) {
+		this.domeName = name;
+	}
+
+	/**
+	 * @return Current name of the Dome
+	 * @see _workspace.shapes.IShape#getIdentifier()
+	 */
+	@Override
+	public String getIdentifier() {
+		return this.domeName;
+	}
+
+	/**
+	 *
+	 * @throws Exception
+	 */
+	@Override
+	public void removeMe() throws Exception {
+		this.removeFromPool();
+		this.selectedIntFr.getRendLayer().removeRenderable(this);
+		this.selectedIntFr.getRedrawScheduler().requestRedraw();
+		ShapeListener.lastSelectedObj = null;
+	}
+
+	/**
+	 * @see _workspace.shapes.IShape#isDirty()
+	 */
+	@Override
+	public boolean isDirty() {
+		return this.dirty;
+	}
+
+	/**
+	 * @see _workspace.shapes.IShape#setDirty(boolean)
+	 */
+	@Override
+	public void setDirty(boolean dirty) {
+		this.dirty = dirty;
+	}
+
+	/**
+	 * Get geometryVersion, renderers compare it to know if the shape changed
+	 * since they last drew it.
+	 *
+	 * @return geometryVersion
+	 */
+	public int getGeometryVersion() {
+		return this.geometryVersion;
+	}
+
+	/**
+	 * Highlights the shape, a conflicting shape stays highlighted as such
+	 *
+	 * @see gov.nasa.worldwind.render.AbstractShape#setHighlighted(boolean)
+	 */
+	@Override
+	public void setHighlighted(boolean highlighted) {
+		this.selectedHighlight = highlighted;
+		super.setHighlighted(highlighted || this.conflicting);
+	}
+
+	/**
+	 * Flags the shape as overlapping another one: it is highlighted in red,
+	 * over the selection highlight, until the conflict is resolved
+	 *
+	 * @param conflicting
+	 */
+	public void setConflicting(boolean conflicting) {
+		if (conflicting == this.conflicting) {
+			return;
+		}
+		this.conflicting = conflicting;
+		if (conflicting) {
+			this.plainHighlightAttributes = this.getHighlightAttributes();
+			this.setHighlightAttributes(CONFLICT_ATTRIBUTES);
+		} else {
+			this.setHighlightAttributes(this.plainHighlightAttributes);
+			this.plainHighlightAttributes = null;
+		}
+		super.setHighlighted(this.selectedHighlight || conflicting);
+	}
+
+	/**
+	 * Get conflicting.
+	 *
+	 * @return <code>true</code> if the shape overlaps another one
+	 */
+	public boolean isConflicting() {
+		return this.conflicting;
+	}
+
+	/**
+	 * Marks the shape dirty and tells the pool listeners
+	 */
+	protected void geometryChanged() {
+		this.geometryVersion++;
+		this.dirty = true;
+		ShapesPool pool = this.getShapesPool();
+		if (pool != null) {
+			pool.fireShapeChanged(this);
+		}
+	}
+
+	/**
+	 * Also called by the dragger, through moveTo
+	 * 
+	 * @see gov.nasa.worldwind.render.RigidShape#setCenterPosition(gov.nasa.worldwind.geom.Position)
+	 */
+	@Override
+	public void setCenterPosition(Position centerPosition) {
+		super.setCenterPosition(centerPosition);
+		this.geometryChanged();
+	}
+
+	/**
+	 * @see gov.nasa.worldwind.render.RigidShape#setNorthSouthRadius(double)
+	 */
+	@Override
+	public void setNorthSouthRadius(double northSouthRadius) {
+		super.setNorthSouthRadius(northSouthRadius);
+		this.geometryChanged();
+	}
+
+	/**
+	 * @see gov.nasa.worldwind.render.RigidShape#setEastWestRadius(double)
+	 */
+	@Override
+	public void setEastWestRadius(double eastWestRadius) {
+		super.setEastWestRadius(eastWestRadius);
+		this.geometryChanged();
+	}
+
+	/**
+	 * @see gov.nasa.worldwind.render.RigidShape#setVerticalRadius(double)
+	 */
+	@Override
+	public void setVerticalRadius(double verticalRadius) {
+		super.setVerticalRadius(verticalRadius);
+		this.geometryChanged();
+	}
+
+	/**
+	 * @see gov.nasa.worldwind.render.RigidShape#setHeading(gov.nasa.worldwind.geom.Angle)
+	 */
+	@Override
+	public void setHeading(Angle heading) {
+		super.setHeading(heading);
+		this.geometryChanged();
+	}
+
+	/**
+	 * @see gov.nasa.worldwind.render.RigidShape#setTilt(gov.nasa.worldwind.geom.Angle)
+	 */
+	@Override
+	public void setTilt(Angle tilt) {
+		super.setTilt(tilt);
+		this.geometryChanged();
+	}
+
+	/**
+	 * @see gov.nasa.worldwind.render.RigidShape#setRoll(gov.nasa.worldwind.geom.Angle)
+	 */
+	@Override
+	public void setRoll(Angle roll) {
+		super.setRoll(roll);
+		this.geometryChanged();
+	}
+
+	/**
+	 * @return east-west radius over north-south radius for this kind of shape
+	 */
+	protected double getEastWestRatio() {
+		return 1;
+	}
+
+	/**
+	 * @return vertical radius over north-south radius for this kind of shape
+	 */
+	protected double getVerticalRatio() {
+		return 1;
+	}
+
+	/**
+	 * Sets the size, keeping the proportions of this kind of shape. The pool
+	 * listeners are told once, not once per radius.
+	 *
+	 * @param size
+	 *            north-south radius, in meters
+	 */
+	public void resizeTo(double size) {
+		this.transform(size, null, null, null);
+	}
+
+	/**
+	 * Sets the orientation, the pool listeners are told once
+	 *
+	 * @param heading
+	 *            <code>null</code> leaves it unchanged
+	 * @param tilt
+	 *            <code>null</code> leaves it unchanged
+	 * @param roll
+	 *            <code>null</code> leaves it unchanged
+	 */
+	public void orientTo(Angle heading, Angle tilt, Angle roll) {
+		this.transform(Double.NaN, heading, tilt, roll);
+	}
+
+	/**
+	 * Sets size and orientation, the pool listeners are told once
+	 *
+	 * @param size
+	 *            north-south radius in meters, <code>NaN</code> leaves it
+	 *            unchanged
+	 * @param heading
+	 *            <code>null</code> leaves it unchanged
+	 * @param tilt
+	 *            <code>null</code> leaves it unchanged
+	 * @param roll
+	 *            <code>null</code> leaves it unchanged
+	 */
+	void transform(double size, Angle heading, Angle tilt, Angle roll) {
+		this.preview(size, heading, tilt, roll);
+		this.previewed = false;
+		this.reset();
+		this.geometryChanged();
+	}
+
+	/**
+	 * Sets size and orientation for display only: the shape is drawn with
+	 * the new values, but it is not marked dirty and the pool listeners
+	 * (index, collisions) are not told until {@link #transform} commits them.
+	 * <p>
+	 * Only the fields change: the WorldWind setters would drop the cached
+	 * shape data on every value. The dome layer draws from the fields; a
+	 * shape that draws itself drops its cached data once, when it is next
+	 * drawn, so a slider drag costs at most one rebuild per shape and frame.
+	 *
+	 * @param size
+	 *            north-south radius in meters, <code>NaN</code> leaves it
+	 *            unchanged
+	 * @param heading
+	 *            <code>null</code> leaves it unchanged
+	 * @param tilt
+	 *            <code>null</code> leaves it unchanged
+	 * @param roll
+	 *            <code>null</code> leaves it unchanged
+	 */
+	void preview(double size, Angle heading, Angle tilt, Angle roll) {
+		if (!Double.isNaN(size)) {
+			if (size <= 0) {
+				throw new IllegalArgumentException("Invalid size: " + size);
+			}
+			this.northSouthRadius = size;
+			this.eastWestRadius = size * this.getEastWestRatio();
+			this.verticalRadius = size * this.getVerticalRatio();
+		}
+		if (heading != null) {
+			this.heading = normalized(heading);
+		}
+		if (tilt != null) {
+			this.tilt = normalized(tilt);
+		}
+		if (roll != null) {
+			this.roll = normalized(roll);
+		}
+		this.previewed = true;
+		this.geometryVersion++;
+	}
+
+	/**
+	 * @param angle
+	 * @return the same angle in [0, 360) degrees
+	 */
+	private static Angle normalized(Angle angle) {
+		double degrees = angle.getDegrees() % 360;
+		if (degrees < 0) {
+			degrees += 360;
+		}
+		return degrees == angle.getDegrees() ? angle : Angle.fromDegrees(degrees);
+	}
+
+	/**
+	 * Leaves the drawing to the dome layer of the workspace when it draws
+	 * this shape, or to the cluster marker standing for it; highlighted
+	 * shapes still draw themselves, picking is done by the shape picker of
+	 * the workspace
+	 *
+	 * @see gov.nasa.worldwind.render.AbstractShape#render(gov.nasa.worldwind.render.DrawContext)
+	 */
+	@Override
+	public void render(DrawContext dc) {
+		if (!dc.isPickingMode() && this.selectedIntFr != null
+				&& (this.selectedIntFr.getDomeLayer().draws(this) || this.selectedIntFr
+						.getClusterLayer().hides(this))) {
+			return;
+		}
+		if (this.previewed) {
+			this.previewed = false;
+			this.reset();
+		}
+		super.render(dc);
+	}
+
+	/**
+	 * Takes the mesh detail from the level of detail of the dome layer, the
+	 * same the layer would use, instead of testing each detail in turn
+	 *
+	 * @see gov.nasa.worldwind.render.Ellipsoid#computeSubdivisions(gov.nasa.worldwind.render.DrawContext,
+	 *      gov.nasa.worldwind.render.RigidShape.ShapeData)
+	 */
+	@Override
+	protected void computeSubdivisions(DrawContext dc, ShapeData shapeData) {
+		if (this.selectedIntFr == null || shapeData.getReferencePoint() == null) {
+			super.computeSubdivisions(dc, shapeData);
+			return;
+		}
+		InstancedDomeLayer layer = this.selectedIntFr.getDomeLayer();
+		double radius = Math.max(this.getNorthSouthRadius(),
+				Math.max(this.getEastWestRadius(), this.getVerticalRadius()));
+		int detail = layer.getLod().select(layer.getLodView(dc),
+				shapeData.getReferencePoint(), radius);
+		this.subdivisions = Math.max(DomeLod.MIN_DETAIL, detail);
+	}
+
+	/**
+	 * Uses the unit sphere shared by all the domes, see
+	 * {@link UnitMeshCache}, instead of one tessellation per shape class
+	 *
+	 * @see gov.nasa.worldwind.render.Ellipsoid#makeGeometry(gov.nasa.worldwind.render.RigidShape.ShapeData)
+	 */
+	@Override
+	protected void makeGeometry(ShapeData shapeData) {
+		UnitMeshCache cache = UnitMeshCache.getInstance();
+		int detail = this.getSubdivisions();
+		shapeData.addMesh(0,
+				cache.get(UnitMeshCache.Kind.SPHERE, detail, this));
+		shapeData.setVboCacheKey(detail,
+				cache.getVboKey(UnitMeshCache.Kind.SPHERE, detail));
+	}
+
+	/**
+	 * @see _workspace.shapes.render.UnitMeshSource#makeUnitMesh(_workspace.shapes.render.UnitMeshCache.Kind,
+	 *      int, gov.nasa.worldwind.render.airspaces.Geometry)
+	 */
+	@Override
+	public void makeUnitMesh(UnitMeshCache.Kind kind, int detail,
+			Geometry mesh) {
+		this.makeUnitSphere(detail, mesh);
+	}
+
+	/**
+	 * saves this object to file
+	 *
+	 * @param file
+	 *            - file object
+	 * @param name
+	 *            - object identifier
+	 */
+	public void saveMe(File file, String name) {
+
+		Properties p = new Properties();
+
+		p.setProperty("dome.name", name);
+
+		Position pos = this.getCenterPosition();
+
+		p.setProperty("dome.centerPosition.latitude",
+				String.valueOf(pos.getLatitude().getDegrees()));
+		p.setProperty("dome.centerPosition.longitude",
+				String.valueOf(pos.getLongitude().getDegrees()));
+		p.setProperty("dome.centerPosition.elevation",
+				String.valueOf(pos.getElevation()));
+
+		p.setProperty("dome.nsRadius",
+				String.valueOf(this.getNorthSouthRadius()));
+		p.setProperty("dome.evRadius", String.valueOf(this.getEastWestRadius()));
+		p.setProperty("dome.vertRadius",
+				String.valueOf(this.getVerticalRadius()));
+
+		p.setProperty("dome.tilt", String.valueOf(0));
+		p.setProperty("dome.roll", String.valueOf(0));
+		p.setProperty("dome.heading", String.valueOf(0));
+
+		MyLogger.error(this, "Tilt, Roll, Heading - will not be saved");
+		try {
+
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				p.store(out, "My Shape's properties");
+			} finally {
+				out.close();
+			}
+
+		} catch (FileNotFoundException e) {
+
+			e.printStackTrace();
+
+		} catch (IOException e) {
+
+			e.printStackTrace();
+
+		}
+
+	}
+
+}// EOF
@@ -0,0 +1,199 @@
+package _workspace.shapes;
+
+import gov.nasa.worldwind.geom.Angle;
+
+import java.util.Collections;
+import java.util.List;
+
+import _workspace.MoonWorkspaceFactory;
+import _workspace.MoonWorkspaceInternalFrame;
+
+/**
+ * Size and orientation change applied to many shapes at once.
+ * <p>
+ * Each shape keeps the proportions of its kind (see {@link AbstractDomeShape#resizeTo(double)}) and tells
+ * its pool once, whatever number of values change; {@link #applyTo(MoonWorkspaceInternalFrame)} asks for a
+ * single redraw at the end. Meant to be called from the EDT, which is then the thread the pool listeners
+ * hear from: the shapes are not drawn while they change. Setting the values is a few microseconds per shape,
+ * so batches are not split over threads.
+ * <p>
+ * A preview transform only changes what is drawn, see {@link #setPreview(boolean)}; the same transform
+ * without preview commits the change.
+ *
+ * @author viorel.florian
+ */
+public class BatchTransform {
+
+  /** north-south radius in meters, <code>NaN</code> leaves it unchanged */
+  private double size = Double.NaN;
+
+  /** <code>null</code> leaves it unchanged */
+  private Angle heading;
+
+  /** <code>null</code> leaves it unchanged */
+  private Angle tilt;
+
+  /** <code>null</code> leaves it unchanged */
+  private Angle roll;
+
+  /** display only, the pools are not told */
+  private boolean preview = false;
+
+  /**
+   * Constructs a new instance, changing nothing until set.
+   */
+  public BatchTransform() {
+    super();
+  }
+
+  /**
+   * @param size north-south radius, in meters
+   * @return transform changing the size only
+   */
+  public static BatchTransform resize(double size) {
+    BatchTransform transform = new BatchTransform();
+    transform.setSize(size);
+    return transform;
+  }
+
+  /**
+   * @param heading in degrees, <code>NaN</code> leaves it unchanged
+   * @param tilt in degrees, <code>NaN</code> leaves it unchanged
+   * @param roll in degrees, <code>NaN</code> leaves it unchanged
+   * @return transform changing the orientation only
+   */
+  public static BatchTransform orient(double heading, double tilt, double roll) {
+    BatchTransform transform = new BatchTransform();
+    transform.setHeading(heading);
+    transform.setTilt(tilt);
+    transform.setRoll(roll);
+    return transform;
+  }
+
+  /**
+   * Set size.
+   *
+   * @param size north-south radius in meters, <code>NaN</code> leaves it unchanged
+   */
+  public void setSize(double size) {
+    this.size = size;
+  }
+
+  /**
+   * Set heading.
+   *
+   * @param degrees <code>NaN</code> leaves it unchanged
+   */
+  public void setHeading(double degrees) {
+    this.heading = angle(degrees);
+  }
+
+  /**
+   * Set tilt.
+   *
+   * @param degrees <code>NaN</code> leaves it unchanged
+   */
+  public void setTilt(double degrees) {
+    this.tilt = angle(degrees);
+  }
+
+  /**
+   * Set roll.
+   *
+   * @param degrees <code>NaN</code> leaves it unchanged
+   */
+  public void setRoll(double degrees) {
+    this.roll = angle(degrees);
+  }
+
+  /**
+   * Set preview. A preview transform is cheap: the shapes are drawn with the new values but neither marked
+   * dirty nor reindexed nor checked for collisions, as during a slider drag.
+   *
+   * @param preview
+   */
+  public void setPreview(boolean preview) {
+    this.preview = preview;
+  }
+
+  /**
+   * Get preview.
+   *
+   * @return <code>true</code> for a display only transform
+   */
+  public boolean isPreview() {
+    return this.preview;
+  }
+
+  /**
+   * @param degrees
+   * @return angle, <code>null</code> for <code>NaN</code>
+   */
+  private static Angle angle(double degrees) {
+    return Double.isNaN(degrees) ? null : Angle.fromDegrees(degrees);
+  }
+
+  /**
+   * Transforms the selection of the last selected workspace, see {@link #applyTo(MoonWorkspaceInternalFrame)}
+   *
+   * @return number of shapes transformed, 0 without a workspace or a selection
+   */
+  public int applyToSelection() {
+    MoonWorkspaceInternalFrame workspace = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
+    return workspace == null ? 0 : this.applyTo(workspace);
+  }
+
+  /**
+   * Transforms the selection of the workspace, or its last hovered shape when nothing is selected, then
+   * asks for one redraw
+   *
+   * @param workspace
+   *
+   * @return number of shapes transformed, 0 if none was selected
+   */
+  public int applyTo(MoonWorkspaceInternalFrame workspace) {
+    List<IShape> shapes = workspace.getSelection().getShapes();
+    Object hovered = ShapeListener.lastSelectedObj;
+    if (shapes.isEmpty() && hovered instanceof AbstractDomeShape
+        && ((AbstractDomeShape) hovered).getWorkspace() == workspace) {
+      shapes = Collections.singletonList((IShape) hovered);
+    }
+    int transformed = this.applyTo(shapes);
+    if (transformed > 0) {
+      workspace.getRedrawScheduler().requestRedraw();
+    }
+    return transformed;
+  }
+
+  /**
+   * Transforms the shapes on the calling thread. Shapes that are not domes are skipped.
+   *
+   * @param shapes
+   *
+   * @return number of shapes transformed
+   */
+  public int applyTo(List<? extends IShape> shapes) {
+    int transformed = 0;
+    for (IShape shape : shapes) {
+      if (!(shape instanceof AbstractDomeShape)) {
+        continue;
+      }
+      if (this.preview) {
+        ((AbstractDomeShape) shape).preview(this.size, this.heading, this.tilt, this.roll);
+      } else {
+        ((AbstractDomeShape) shape).transform(this.size, this.heading, this.tilt, this.roll);
+      }
+      transformed++;
+    }
+    return transformed;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return (this.preview ? "Preview" : "Transform") + " size: " + this.size + ", heading: " + this.heading
+        + ", tilt: " + this.tilt + ", roll: " + this.roll;
+  }
+}
@@ -166,4 +166,19 @@ public class CompoundConnector /* extends ExtrudedPolygon */implements IShape {
   public void saveMe(File newFile, String identifier) {
   }
 
+  /**
+   * @see _workspace.shapes.IShape#isDirty()
+   */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
+
+  /**
+   * @see _workspace.shapes.IShape#setDirty(boolean)
+   */
+  @Override
+  public void setDirty(boolean dirty) {
+  }
+
 }
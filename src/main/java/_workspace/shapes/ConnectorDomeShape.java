@@ -5,36 +5,15 @@ package _workspace.shapes;
 
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwindx.examples.util.ShapeUtils;
-import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.render.BasicShapeAttributes;
-import gov.nasa.worldwind.render.Ellipsoid;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.Properties;
-
-import utility.MyLogger;
-
-import _workspace.MoonWorkspaceFactory;
 import _workspace.MoonWorkspaceInternalFrame;
 
 /**
  * @author Viorel Florian Creates and manages "Dome" objects
  */
-public class ConnectorDomeShape extends Ellipsoid implements IShape {
-	/** selectedIntFr */
-	MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory
-			.getInstance().getLastSelectedIntFr();
-
-	// static ArrayList<DomeShape> domes = new ArrayList<DomeShape>();
-	/** domeName */
-	private String domeName = "";
-
-	/** nextID */
-	static int nextID = 0;
+public class ConnectorDomeShape extends AbstractDomeShape {
 
 	/**
 	 * @param wwd
@@ -55,12 +34,8 @@ public class ConnectorDomeShape extends Ellipsoid implements IShape {
 		this.setEastWestRadius(diam / 3.5);
 		this.setAttributes(new BasicShapeAttributes());
 
-		this.domeName = this.generateName();
-		// domes.add(this);
-		this.selectedIntFr.getRendLayer().addRenderable(this);
-		this.selectedIntFr.getWwGLCanvas().redraw();
-		this.addToPool();
-		ShapeListener.lastSelectedObj = this;
+		this.setIdentifier(this.generateName());
+		this.attach();
 	}
 
 	/**
@@ -75,144 +50,70 @@ public class ConnectorDomeShape extends Ellipsoid implements IShape {
 	 *            sizes in meters, , with basic attributes
 	 * @throws Exception
 	 */
-	public ConnectorDomeShape(WorldWindow wwd, Position pos,
-			double northSouthRadius, double verticalRadius,
-			double eastWestRadius) throws Exception {
+	public ConnectorDomeShape(WorldWindow wwd, Position pos, double northSouthRadius,
+			double verticalRadius, double eastWestRadius) throws Exception {
 		super(pos, northSouthRadius, verticalRadius, eastWestRadius);
-		this.setAttributes(new BasicShapeAttributes());
-		this.domeName = this.generateName();
-		this.selectedIntFr.getRendLayer().addRenderable(this);
-		this.selectedIntFr.getWwGLCanvas().redraw();
-		this.addToPool();
-		ShapeListener.lastSelectedObj = this;
+		this.setIdentifier(this.generateName());
+		this.attach();
 	}
 
-	public ConnectorDomeShape(WorldWindow wwd, Position pos,
-			double northSouthRadius, double verticalRadius,
-			double eastWestRadius, double heading, double tilt, double roll)
-			throws Exception {
-		super(pos, northSouthRadius, verticalRadius, eastWestRadius, Angle
-				.fromDegrees(heading), Angle.fromDegrees(tilt), Angle
-				.fromDegrees(roll));
-		//break
-		this.setAttributes(new BasicShapeAttributes());
-		this.domeName = this.generateName();
-		this.selectedIntFr.getRendLayer().addRenderable(this);
-		this.selectedIntFr.getWwGLCanvas().redraw();
-		this.addToPool();
-		ShapeListener.lastSelectedObj = this;
-	}
-
-	/**
-	 * 
-	 * @throws Exception
-	 */
-
-	private void addToPool() throws Exception {
-		ShapesPool.getInstance().addShape(this);
+	public ConnectorDomeShape(WorldWindow wwd, Position pos, double northSouthRadius,
+			double verticalRadius, double eastWestRadius, double heading,
+			double tilt, double roll) throws Exception {
+		super(pos, northSouthRadius, verticalRadius, eastWestRadius, heading,
+				tilt, roll);
+		this.setIdentifier(this.generateName());
+		this.attach();
 	}
 
 	/**
+	 * Creates a detached "Dome": it is neither added to the workspace layer
+	 * nor to the pool, see {@link ShapeLoadPipeline}
 	 * 
-	 * @throws Exception
+	 * @param workspace
+	 * @param pos
+	 * @param northSouthRadius
+	 * @param verticalRadius
+	 * @param eastWestRadius
+	 * @param heading
+	 * @param tilt
+	 * @param roll
 	 */
-
-	private void removeFromPool() throws Exception {
-		ShapesPool.getInstance().removeShape(this.getIdentifier());
+	ConnectorDomeShape(MoonWorkspaceInternalFrame workspace, Position pos,
+			double northSouthRadius, double verticalRadius,
+			double eastWestRadius, double heading, double tilt, double roll) {
+		super(pos, northSouthRadius, verticalRadius, eastWestRadius, heading,
+				tilt, roll);
+		this.setWorkspace(workspace);
+		this.setIdentifier(this.generateName());
 	}
 
 	/**
-	 * TODO DESCRIPTION
+	 * Connectors are 3.5 times longer than wide
 	 * 
-	 * @return
-	 */
-	private String generateName() {
-		nextID++;
-		if (nextID < 10) {
-			return "Connector Dome " + "0" + nextID;
-		}
-		return "Connector Dome " + nextID;
-	}
-
-	/**
-	 * @see _workspace.shapes.IShape#setIdentifier(java.lang.String)
-	 */
-	@Override
-	public void setIdentifier(String name) {
-		this.domeName = name;
-	}
-
-	/**
-	 * @return Current name of the Dome
-	 * @see _workspace.shapes.IShape#getIdentifier()
+	 * @see _workspace.shapes.AbstractDomeShape#getEastWestRatio()
 	 */
 	@Override
-	public String getIdentifier() {
-		return this.domeName;
+	protected double getEastWestRatio() {
+		return 1 / 3.5;
 	}
 
 	/**
+	 * Connectors are 3.5 times longer than high
 	 * 
-	 * @throws Exception
+	 * @see _workspace.shapes.AbstractDomeShape#getVerticalRatio()
 	 */
 	@Override
-	public void removeMe() throws Exception {
-		this.removeFromPool();
-		this.selectedIntFr.getRendLayer().removeRenderable(this);
-		this.selectedIntFr.getWwGLCanvas().redraw();
-		ShapeListener.lastSelectedObj = null;
+	protected double getVerticalRatio() {
+		return 1 / 3.5;
 	}
 
 	/**
-	 * saves this object to file
-	 * 
-	 * @param file
-	 *            - file object
-	 * @param name
-	 *            - object identifier
+	 * @see _workspace.shapes.AbstractDomeShape#generateName()
 	 */
-	public void saveMe(File file, String name) {
-
-		Properties p = new Properties();
-
-		p.setProperty("dome.name", name);
-
-		Position pos = this.getCenterPosition();
-
-		p.setProperty("dome.centerPosition.latitude",
-				String.valueOf(pos.getLatitude().getDegrees()));
-		p.setProperty("dome.centerPosition.longitude",
-				String.valueOf(pos.getLongitude().getDegrees()));
-		p.setProperty("dome.centerPosition.elevation",
-				String.valueOf(pos.getElevation()));
-
-		p.setProperty("dome.nsRadius",
-				String.valueOf(this.getNorthSouthRadius()));
-		p.setProperty("dome.evRadius", String.valueOf(this.getEastWestRadius()));
-		p.setProperty("dome.vertRadius",
-				String.valueOf(this.getVerticalRadius()));
-
-		p.setProperty("dome.tilt", String.valueOf(0));
-		p.setProperty("dome.roll", String.valueOf(0));
-		p.setProperty("dome.heading",
-				String.valueOf(0));
-		
-		MyLogger.error(this, "Tilt, Roll, Heading - will not be saved");
-
-		try {
-
-			p.store(new FileOutputStream(file), "My Shape's properties");
-
-		} catch (FileNotFoundException e) {
-
-			e.printStackTrace();
-
-		} catch (IOException e) {
-
-			e.printStackTrace();
-
-		}
-
+	@Override
+	protected String generateName() {
+		return this.nextName("Connector Dome");
 	}
 
 }// EOF
@@ -49,4 +49,18 @@ void removeMe() throws Exception;
  * @param identifier
  */
 public void saveMe(File newFile, String identifier);
+
+/**
+ * Tells if the geometry (position, radii, heading, tilt, roll) changed since the last save
+ * 
+ * @return dirty
+ */
+public boolean isDirty();
+
+/**
+ * Set dirty, cleared by the layout session once the shape is saved
+ * 
+ * @param dirty
+ */
+public void setDirty(boolean dirty);
 }
\ No newline at end of file
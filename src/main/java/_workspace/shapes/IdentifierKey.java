@@ -0,0 +1,119 @@
+package _workspace.shapes;
+
+/**
+ * Case insensitive shape identifier, as used by the {@link ShapesPool} index.
+ * <p>
+ * The hash is computed once, character by character, so no upper case copy of the identifier is ever
+ * built. The pool keeps one mutable probe per thread to look up plain strings without allocating.
+ *
+ * @author viorel.florian
+ */
+public final class IdentifierKey {
+
+  /** identifier, as given */
+  private String identifier;
+
+  /** case insensitive hash */
+  private int hash;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param identifier
+   */
+  private IdentifierKey(String identifier) {
+    this.set(identifier);
+  }
+
+  /**
+   * Key of an identifier, <code>null</code> is the "null" identifier as it always was in the pool
+   *
+   * @param identifier
+   *
+   * @return key
+   *
+   * @throws Exception if identifier is empty
+   */
+  public static IdentifierKey of(String identifier) throws Exception {
+    if (identifier != null && identifier.length() == 0) {
+      throw new Exception("Empty identifier.");
+    }
+    return new IdentifierKey(identifier);
+  }
+
+  /**
+   * Reusable probe, never store it in a map
+   *
+   * @return new probe
+   */
+  static IdentifierKey probe() {
+    return new IdentifierKey("null");
+  }
+
+  /**
+   * Points this key to another identifier, only for probes
+   *
+   * @param identifier
+   *
+   * @return this
+   */
+  IdentifierKey set(String identifier) {
+    String id = identifier == null ? "null" : identifier;
+    int h = 0;
+    for (int i = 0; i < id.length(); i++) {
+      h = 31 * h + Character.toLowerCase(Character.toUpperCase(id.charAt(i)));
+    }
+    this.identifier = id;
+    this.hash = h;
+    return this;
+  }
+
+  /**
+   * Tells if the identifier is empty
+   *
+   * @return <code>true</code> if empty
+   */
+  boolean isEmpty() {
+    return this.identifier.length() == 0;
+  }
+
+  /**
+   * Get identifier, as given when the key was created.
+   *
+   * @return identifier
+   */
+  public String getIdentifier() {
+    return this.identifier;
+  }
+
+  /**
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+
+  /**
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof IdentifierKey)) {
+      return false;
+    }
+    IdentifierKey other = (IdentifierKey) obj;
+    return this.hash == other.hash && this.identifier.equalsIgnoreCase(other.identifier);
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return this.identifier;
+  }
+}
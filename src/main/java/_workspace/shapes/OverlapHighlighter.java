@@ -0,0 +1,69 @@
+package _workspace.shapes;
+
+import java.util.List;
+
+import _workspace.RedrawScheduler;
+import _workspace.shapes.spatial.CollisionDetector;
+import _workspace.shapes.spatial.CollisionListener;
+
+/**
+ * Highlights the domes that overlap another one as the collision detector finds them, a dragged dome and
+ * its partners turn red while they overlap and back when the conflict is resolved. See
+ * {@link AbstractDomeShape#setConflicting(boolean)}.
+ *
+ * @author viorel.florian
+ */
+public class OverlapHighlighter implements CollisionListener {
+
+  /** detector listened to */
+  private final CollisionDetector detector;
+
+  /** redraws the workspace when a highlight changed */
+  private final RedrawScheduler redrawScheduler;
+
+  /**
+   * Constructs a new instance, listening to the detector until {@link #dispose()}. The domes already in
+   * conflict are highlighted right away.
+   *
+   * @param detector
+   * @param redrawScheduler
+   */
+  public OverlapHighlighter(CollisionDetector detector, RedrawScheduler redrawScheduler) {
+    super();
+    this.detector = detector;
+    this.redrawScheduler = redrawScheduler;
+    detector.addCollisionListener(this);
+    for (IShape shape : detector.getOverlapping()) {
+      this.overlapsChanged(shape, detector.getOverlaps(shape));
+    }
+  }
+
+  /**
+   * Stops listening, the highlights are cleared
+   */
+  public void dispose() {
+    this.detector.removeCollisionListener(this);
+    for (IShape shape : this.detector.getOverlapping()) {
+      if (shape instanceof AbstractDomeShape) {
+        ((AbstractDomeShape) shape).setConflicting(false);
+      }
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.spatial.CollisionListener#overlapsChanged(_workspace.shapes.IShape, java.util.List)
+   */
+  @Override
+  public void overlapsChanged(IShape shape, List<IShape> overlaps) {
+    if (!(shape instanceof AbstractDomeShape)) {
+      return;
+    }
+    AbstractDomeShape dome = (AbstractDomeShape) shape;
+    if (dome.isConflicting() != !overlaps.isEmpty()) {
+      dome.setConflicting(!overlaps.isEmpty());
+      if (this.redrawScheduler != null) {
+        this.redrawScheduler.requestRedraw();
+      }
+    }
+  }
+}
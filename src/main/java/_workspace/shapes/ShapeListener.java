@@ -4,21 +4,34 @@
 package _workspace.shapes;
 
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
-import gov.nasa.worldwind.event.SelectEvent;
-import gov.nasa.worldwind.event.SelectListener;
-import gov.nasa.worldwind.pick.PickedObjectList;
-import gov.nasa.worldwind.render.Annotation;
-import gov.nasa.worldwind.render.Ellipsoid;
-import gov.nasa.worldwind.render.GlobeAnnotation;
-import gov.nasa.worldwind.util.BasicDragger;
+import gov.nasa.worldwind.geom.Position;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import utility.MyLogger;
 import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.spatial.ShapePicker;
 
 /**
- * TODO DESCRIPTION
+ * Mouse interaction with the shapes of a workspace: hover, selection and dragging.
+ * <p>
+ * The shape under the cursor comes from the {@link ShapePicker} of the workspace, a ray cast on the CPU,
+ * so hovering and clicking do not need a pick pass of the window.
  * 
  * @author viorel.florian
  */
 public class ShapeListener {
+
+  /** time the cursor rests on a shape before its annotation shows, in milliseconds */
+  public static final int HOVER_DELAY = 600;
+
   /** wwd */
   private WorldWindowGLCanvas wwd;
 
@@ -28,8 +41,6 @@ public class ShapeListener {
   // protected IShape lastToolTip;
   // protected ShapeAttributes lastAttrs;
   // protected Annotation lastAnnotation;
-  /** dragger */
-  protected BasicDragger dragger = null;
 
   /** currentWorkspace */
   MoonWorkspaceInternalFrame currentWorkspace = null;
@@ -37,6 +48,27 @@ public class ShapeListener {
   /** lastSelectedObj */
   public static Object lastSelectedObj = null;
 
+  /** mouseListener, registered on the input handler of wwd */
+  private MouseAdapter mouseListener;
+
+  /** shows the tooltip of the hovered shape */
+  private Timer hoverTimer;
+
+  /** tooltips of the shapes */
+  private ShapeTooltips tooltips;
+
+  /** shape under the cursor */
+  AbstractDomeShape hovered = null;
+
+  /** shape being dragged */
+  AbstractDomeShape dragged = null;
+
+  /** ground position of the cursor at the last drag step */
+  Position dragPosition = null;
+
+  /** the dragged shape moved since the press */
+  boolean dragMoved = false;
+
   /**
    * Constructs a new instance.
    * 
@@ -45,60 +77,214 @@ public class ShapeListener {
   public ShapeListener(MoonWorkspaceInternalFrame mwif) {
     this.currentWorkspace = mwif;
     this.wwd = mwif.getWwGLCanvas();
-    this.dragger = new BasicDragger(this.wwd);
+    this.tooltips = new ShapeTooltips(mwif.getAnnotationLayer(), mwif.getRedrawScheduler());
     this.initializeSelectionMonitoring();
   }
 
   /**
-   * TODO DESCRIPTION
+   * Logs the components the dropped shape ended up overlapping
+   * 
+   * @param obj
+   */
+  void reportOverlaps(Object obj) {
+    if (!(obj instanceof IShape)) {
+      return;
+    }
+    List<IShape> overlaps = this.currentWorkspace.getCollisionDetector().getOverlaps((IShape) obj);
+    if (!overlaps.isEmpty()) {
+      MyLogger.info(this, "{} overlaps {} components", ((IShape) obj).getIdentifier(), Integer.valueOf(overlaps.size()));
+    }
+  }
+
+  /**
+   * Listens to the mouse before the view does, so dragging a shape does not pan the globe
    */
   public void initializeSelectionMonitoring() {
+    this.hoverTimer = new Timer(HOVER_DELAY, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        ShapeListener.this.showHover();
+      }
+    });
+    this.hoverTimer.setRepeats(false);
+
+    this.mouseListener = new MouseAdapter() {
+      @Override
+      public void mouseMoved(MouseEvent e) {
+        ShapeListener.this.hover(ShapeListener.this.pick(e));
+      }
+
+      @Override
+      public void mouseExited(MouseEvent e) {
+        ShapeListener.this.hover(null);
+      }
 
-    this.wwd.addSelectListener(new SelectListener() {
-      public void selected(SelectEvent event) {
-        if (event.getTopObject() instanceof Ellipsoid) {
-          // TODO works only on mouse over
-          lastSelectedObj = event.getTopObject();
-
-          // Have rollover events highlight the rolled-over object.
-          if (event.getEventAction().equals(SelectEvent.ROLLOVER)
-              && !ShapeListener.this.dragger.isDragging()) {
-            // if (highlight(event.getTopObject()))
-            ShapeListener.this.wwd.redraw();
-          }
-          // Have hover events popup an annotation about the hovered-over object.
-          else if (event.getEventAction().equals(SelectEvent.HOVER)
-              && !ShapeListener.this.dragger.isDragging()) {
-            // if (showToolTip(event.getTopObject(), event))
-
-            Object obj = event.getTopObject();
-            Annotation ann = new GlobeAnnotation(obj.getClass().getName(),
-                ((Ellipsoid) obj).getCenterPosition());
-            currentWorkspace.getAnnotationLayer().addAnnotation(ann);
-
-            ShapeListener.this.wwd.redraw();
-          }
-
-          // Have drag events drag the selected object.
-          else if (event.getEventAction().equals(SelectEvent.DRAG_END)
-              || event.getEventAction().equals(SelectEvent.DRAG)) {
-            // Delegate dragging computations to a dragger.
-            ShapeListener.this.dragger.selected(event);
-
-            // We missed any roll-over events while dragging, so highlight any under the cursor now,
-            // or de-highlight the dragged shape if it's no longer under the cursor.
-            if (event.getEventAction().equals(SelectEvent.DRAG_END)) {
-              PickedObjectList pol = ShapeListener.this.wwd.getObjectsAtCurrentPosition();
-              if (pol != null) {
-                // highlight(pol.getTopObject());
-                ShapeListener.this.wwd.repaint();
-              }
-
-            }
-          }
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        if (SwingUtilities.isLeftMouseButton(e)) {
+          ShapeListener.this.select(ShapeListener.this.pick(e), e.isControlDown());
         }
       }
-    });
+
+      @Override
+      public void mousePressed(MouseEvent e) {
+        if (SwingUtilities.isLeftMouseButton(e)) {
+          ShapeListener.this.startDrag(ShapeListener.this.pick(e), e);
+        }
+      }
+
+      @Override
+      public void mouseDragged(MouseEvent e) {
+        if (ShapeListener.this.dragged != null) {
+          ShapeListener.this.drag(e);
+          // the view must not pan
+          e.consume();
+        }
+      }
+
+      @Override
+      public void mouseReleased(MouseEvent e) {
+        if (ShapeListener.this.dragged != null && ShapeListener.this.endDrag()) {
+          e.consume();
+        }
+      }
+    };
+    this.wwd.getInputHandler().addMouseListener(this.mouseListener);
+    this.wwd.getInputHandler().addMouseMotionListener(this.mouseListener);
+  }
+
+  /**
+   * @param e
+   * @return dome under the cursor, <code>null</code> if none
+   */
+  AbstractDomeShape pick(MouseEvent e) {
+    ShapePicker picker = this.currentWorkspace.getShapePicker();
+    picker.setGlobe(this.wwd.getModel().getGlobe(), this.wwd.getSceneController().getVerticalExaggeration());
+    return picker.pick(this.wwd.getView(), e.getPoint());
+  }
+
+  /**
+   * Follows the shape under the cursor, its tooltip shows after {@link #HOVER_DELAY}
+   * 
+   * @param shape <code>null</code> when the cursor leaves the shapes
+   */
+  void hover(AbstractDomeShape shape) {
+    if (this.dragged != null) {
+      return;
+    }
+    if (shape != null) {
+      lastSelectedObj = shape;
+      this.hoverTimer.restart();
+    } else {
+      this.hoverTimer.stop();
+      this.tooltips.hide();
+    }
+    if (shape != this.hovered) {
+      this.hovered = shape;
+      this.currentWorkspace.getRedrawScheduler().requestRedraw();
+    }
+  }
+
+  /**
+   * Pops up the tooltip of the hovered shape
+   */
+  void showHover() {
+    if (this.hovered == null || this.dragged != null) {
+      return;
+    }
+    this.tooltips.show(this.hovered, this.hovered.getCenterPosition());
+  }
+
+  /**
+   * Updates the selection of the workspace after a click
+   * 
+   * @param shape clicked, <code>null</code> for the ground
+   * @param ctrl Ctrl was down, the click adds to or removes from the selection
+   */
+  void select(IShape shape, boolean ctrl) {
+    ShapeSelection selection = this.currentWorkspace.getSelection();
+    if (shape != null) {
+      if (ctrl) {
+        selection.toggle(shape);
+      } else {
+        selection.select(shape);
+      }
+    } else if (!ctrl) {
+      // a click on the ground clears the selection
+      selection.clear();
+    } else {
+      return;
+    }
+    this.currentWorkspace.getRedrawScheduler().requestRedraw();
+  }
+
+  /**
+   * @param shape pressed, <code>null</code> for the ground
+   * @param e
+   */
+  void startDrag(AbstractDomeShape shape, MouseEvent e) {
+    if (shape == null) {
+      return;
+    }
+    Position ground = this.wwd.getView().computePositionFromScreenPoint(e.getX(), e.getY());
+    if (ground == null) {
+      return;
+    }
+    this.dragged = shape;
+    this.dragPosition = ground;
+    this.hoverTimer.stop();
+    this.tooltips.hide();
+  }
+
+  /**
+   * Moves the dragged shape by the move of the cursor on the ground
+   * 
+   * @param e
+   */
+  void drag(MouseEvent e) {
+    Position ground = this.wwd.getView().computePositionFromScreenPoint(e.getX(), e.getY());
+    if (ground == null) {
+      // off the globe
+      return;
+    }
+    this.dragged.move(new Position(ground.getLatitude().subtract(this.dragPosition.getLatitude()), ground
+        .getLongitude().subtract(this.dragPosition.getLongitude()), 0));
+    this.dragPosition = ground;
+    this.dragMoved = true;
+    this.currentWorkspace.getRedrawScheduler().requestRedraw();
+  }
+
+  /**
+   * Drops the dragged shape
+   * 
+   * @return <code>true</code> if it was moved
+   */
+  boolean endDrag() {
+    boolean moved = this.dragMoved;
+    if (moved) {
+      this.reportOverlaps(this.dragged);
+      this.currentWorkspace.getRedrawScheduler().requestRedraw();
+    }
+    this.dragged = null;
+    this.dragPosition = null;
+    this.dragMoved = false;
+    return moved;
+  }
+
+  /**
+   * Stops listening to the window, forgets the selection if it belongs to this workspace
+   */
+  public void dispose() {
+    this.wwd.getInputHandler().removeMouseListener(this.mouseListener);
+    this.wwd.getInputHandler().removeMouseMotionListener(this.mouseListener);
+    this.hoverTimer.stop();
+    this.tooltips.dispose();
+    this.hovered = null;
+    this.dragged = null;
+    if (lastSelectedObj instanceof AbstractDomeShape
+        && ((AbstractDomeShape) lastSelectedObj).getWorkspace() == this.currentWorkspace) {
+      lastSelectedObj = null;
+    }
   }
 
   /*
@@ -0,0 +1,320 @@
+package _workspace.shapes;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import utility.MyLogger;
+import utility.tasks.Task;
+import utility.tasks.TaskCategory;
+import utility.tasks.TaskService;
+import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.layout.LayoutJournal;
+import _workspace.shapes.layout.MappedLayout;
+import _workspace.shapes.layout.LayoutSession;
+import _workspace.shapes.layout.ShapeLayout;
+import _workspace.shapes.layout.ShapeTable;
+import _workspace.shapes.spatial.CollisionDetector;
+
+/**
+ * Loads many shapes into a workspace without blocking the Event Dispatch Thread.
+ * <p>
+ * Stages:
+ * <ol>
+ * <li>parse - legacy .mbc files are parsed in parallel, in the {@link TaskCategory#COMPUTE} lane, a layout
+ * file is mapped</li>
+ * <li>build - detached shapes are created in batches, off the EDT</li>
+ * <li>insert - on the EDT, all shapes are added to the pool and the renderable layer at once,
+ * followed by a single redraw</li>
+ * </ol>
+ * Runs as an {@link TaskCategory#IO} task, submit it to the {@link TaskService}. Progress is reported as
+ * work done out of work to do: for legacy files the parsed files count first, then the shapes built. A
+ * cancelled pipeline leaves the workspace untouched. A loaded layout file becomes the {@link LayoutSession} file,
+ * so the next save to it is incremental.
+ *
+ * @author viorel.florian
+ */
+public class ShapeLoadPipeline extends Task<List<IShape>> {
+
+  /** shapes built between two progress updates */
+  private static final int BATCH_SIZE = 512;
+
+  /** files parsed by one worker task */
+  private static final int PARSE_CHUNK = 256;
+
+  /** workspace */
+  private final MoonWorkspaceInternalFrame workspace;
+
+  /** legacy files, <code>null</code> when loading a layout file */
+  private final File[] legacyFiles;
+
+  /** layout file, <code>null</code> when loading legacy files */
+  private final File layoutFile;
+
+  /** identifier saved in the file, per built shape */
+  private String[] savedIdentifiers;
+
+  /** number of shapes added by the insert stage */
+  private int inserted = 0;
+
+  /** progress units done before the build stage, the parsed files */
+  private int parsed = 0;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param workspace
+   * @param legacyFiles
+   * @param layoutFile
+   */
+  private ShapeLoadPipeline(MoonWorkspaceInternalFrame workspace, File[] legacyFiles, File layoutFile) {
+    super(TaskCategory.IO, "Load");
+    this.workspace = workspace;
+    this.legacyFiles = legacyFiles;
+    this.layoutFile = layoutFile;
+  }
+
+  /**
+   * Pipeline loading a directory worth of legacy .mbc files
+   *
+   * @param workspace
+   * @param files
+   *
+   * @return new pipeline, not started
+   */
+  public static ShapeLoadPipeline forLegacyFiles(MoonWorkspaceInternalFrame workspace, File[] files) {
+    return new ShapeLoadPipeline(workspace, files, null);
+  }
+
+  /**
+   * Pipeline loading a binary layout file
+   *
+   * @param workspace
+   * @param file
+   *
+   * @return new pipeline, not started
+   */
+  public static ShapeLoadPipeline forLayout(MoonWorkspaceInternalFrame workspace, File file) {
+    return new ShapeLoadPipeline(workspace, null, file);
+  }
+
+  /**
+   * Get number of shapes added to the workspace, valid once the pipeline is done.
+   *
+   * @return inserted
+   */
+  public int getInserted() {
+    return this.inserted;
+  }
+
+  /**
+   * @see utility.tasks.Task#call()
+   */
+  @Override
+  protected List<IShape> call() throws Exception {
+    ShapeTable table = this.layoutFile != null ? LayoutJournal.open(this.layoutFile) : this.parseLegacy();
+    try {
+      return this.build(table);
+    } finally {
+      // the shapes hold copies of the rows, the mapping would only keep the file locked
+      if (table instanceof MappedLayout) {
+        ((MappedLayout) table).close();
+      }
+    }
+  }
+
+  /**
+   * Parse stage, legacy files are split in chunks parsed in parallel
+   *
+   * @return parsed rows, in file order
+   *
+   * @throws Exception
+   */
+  private ShapeTable parseLegacy() throws Exception {
+    final File[] files = this.legacyFiles;
+    List<Future<ShapeLayout>> chunks = new ArrayList<Future<ShapeLayout>>();
+    // sizes of the chunks as they complete, in any order
+    final BlockingQueue<Integer> completed = new LinkedBlockingQueue<Integer>();
+    try {
+      for (int start = 0; start < files.length; start += PARSE_CHUNK) {
+        final int from = start;
+        final int to = Math.min(files.length, start + PARSE_CHUNK);
+        chunks.add(TaskService.getInstance().submit(TaskCategory.COMPUTE, new Callable<ShapeLayout>() {
+          @Override
+          public ShapeLayout call() {
+            try {
+              ShapeLayout chunk = new ShapeLayout(to - from);
+              for (int i = from; i < to && !Thread.currentThread().isInterrupted(); i++) {
+                ShapeLoaderFromFile.parseLegacy(files[i], chunk);
+              }
+              return chunk;
+            } finally {
+              completed.add(Integer.valueOf(to - from));
+            }
+          }
+        }));
+      }
+
+      // twice the files: parsing them, then building at most as many shapes
+      int total = 2 * files.length;
+      this.setProgress(0, total);
+      for (int i = 0; i < chunks.size(); i++) {
+        // interrupted when the load is cancelled
+        this.parsed += completed.take().intValue();
+        this.setProgress(this.parsed, total);
+      }
+
+      ShapeLayout all = new ShapeLayout(files.length);
+      for (Future<ShapeLayout> chunk : chunks) {
+        ShapeLayout part = chunk.get();
+        for (int i = 0; i < part.size(); i++) {
+          all.add(part.getKind(i), part.getIdentifier(i), part.getLatitude(i), part.getLongitude(i),
+              part.getElevation(i), part.getNsRadius(i), part.getEwRadius(i), part.getVertRadius(i),
+              part.getHeading(i), part.getTilt(i), part.getRoll(i));
+        }
+      }
+      return all;
+    } finally {
+      // no-op for the chunks already parsed, stops the others when the load is cancelled
+      for (Future<ShapeLayout> chunk : chunks) {
+        chunk.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Build stage, creates detached shapes
+   *
+   * @param table
+   *
+   * @return shapes, not yet in the pool nor in the workspace
+   *
+   * @throws InterruptedException if cancelled
+   */
+  private List<IShape> build(ShapeTable table) throws InterruptedException {
+    int n = table.size();
+    List<IShape> shapes = new ArrayList<IShape>(n);
+    Set<String> taken = new HashSet<String>();
+    this.savedIdentifiers = new String[n];
+
+    for (int i = 0; i < n; i++) {
+      if (i % BATCH_SIZE == 0) {
+        if (this.isCancelled() || Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException("Load cancelled");
+        }
+        this.setProgress(this.parsed + i, this.parsed + n);
+      }
+
+      Position pos = Position.fromDegrees(table.getLatitude(i), table.getLongitude(i), table.getElevation(i));
+      AbstractDomeShape shape;
+      switch (table.getKind(i)) {
+        case FLAT_DOME:
+          shape = new FlatDomeShape(this.workspace, pos, table.getNsRadius(i), table.getVertRadius(i),
+              table.getEwRadius(i), table.getHeading(i), table.getTilt(i), table.getRoll(i));
+          break;
+        case CONNECTOR_DOME:
+          shape = new ConnectorDomeShape(this.workspace, pos, table.getNsRadius(i), table.getVertRadius(i),
+              table.getEwRadius(i), table.getHeading(i), table.getTilt(i), table.getRoll(i));
+          break;
+        default:
+          shape = new DomeShape(this.workspace, pos, table.getNsRadius(i), table.getVertRadius(i),
+              table.getEwRadius(i), table.getHeading(i), table.getTilt(i), table.getRoll(i));
+      }
+      this.savedIdentifiers[i] = table.getIdentifier(i);
+      this.restoreIdentifier(shape, this.savedIdentifiers[i], taken);
+      shapes.add(shape);
+    }
+    this.setProgress(this.parsed + n, this.parsed + n);
+    return shapes;
+  }
+
+  /**
+   * Gives the shape back its saved identifier, unless it is used in the pool or earlier in this load
+   *
+   * @param shape
+   * @param identifier
+   * @param taken upper case identifiers used so far by this load
+   */
+  private void restoreIdentifier(IShape shape, String identifier, Set<String> taken) {
+    try {
+      if (identifier != null && identifier.length() > 0
+          && !taken.contains(ShapesPool.validateIdentifier(identifier))
+          && this.workspace.getShapesPool().getShape(identifier) == null) {
+        shape.setIdentifier(identifier);
+      }
+      taken.add(ShapesPool.validateIdentifier(shape.getIdentifier()));
+    } catch (Exception e) {
+      MyLogger.error(this, "Identifier could not be restored: " + identifier, e);
+    }
+  }
+
+  /**
+   * @see utility.tasks.Task#cancelled()
+   */
+  @Override
+  protected void cancelled() {
+    MyLogger.info(this, "Load cancelled, workspace left unchanged");
+  }
+
+  /**
+   * Insert stage, runs on the EDT
+   *
+   * @see utility.tasks.Task#succeeded(java.lang.Object)
+   */
+  @Override
+  protected void succeeded(List<IShape> shapes) {
+    CollisionDetector detector = this.workspace.getCollisionDetector();
+    List<IShape> added;
+    detector.beginBulk();
+    try {
+      added = this.workspace.getShapesPool().addShapes(shapes);
+    } finally {
+      detector.endBulk();
+    }
+    if (added.size() < shapes.size()) {
+      MyLogger.error(this, (shapes.size() - added.size()) + " components skipped, identifier already in use");
+    }
+    this.workspace.getRendLayer().addRenderables(added);
+    this.workspace.getRedrawScheduler().requestRedraw();
+    this.inserted = added.size();
+    if (this.layoutFile != null) {
+      this.bindSession(shapes, added);
+    }
+    MyLogger.event(this, "Components loaded", "components", Integer.valueOf(this.inserted));
+  }
+
+  /**
+   * Binds the layout session to the loaded file
+   *
+   * @param shapes built shapes, in row order
+   * @param added shapes that made it into the pool
+   */
+  private void bindSession(List<IShape> shapes, List<IShape> added) {
+    Map<IShape, Boolean> live = new IdentityHashMap<IShape, Boolean>(added.size() * 2);
+    for (IShape shape : added) {
+      live.put(shape, Boolean.TRUE);
+    }
+
+    Map<String, IShape> loaded = new HashMap<String, IShape>(shapes.size() * 2);
+    for (int i = 0; i < shapes.size(); i++) {
+      IShape shape = shapes.get(i);
+      String saved = this.savedIdentifiers[i];
+      boolean restored = live.containsKey(shape) && shape.getIdentifier().equalsIgnoreCase(saved);
+      if (restored || !loaded.containsKey(saved)) {
+        loaded.put(saved, restored ? shape : null);
+      }
+    }
+    this.workspace.getLayoutSession().bind(this.layoutFile, loaded);
+  }
+}
@@ -1,85 +1,65 @@
 package _workspace.shapes;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.Properties;
 
 import utility.MyLogger;
-import _workspace.MoonWorkspaceFactory;
-import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.layout.ShapeKind;
+import _workspace.shapes.layout.ShapeLayout;
 
 /**
- * Provides a static way to load shapes from a file
- * 
+ * Parses the legacy .mbc shape files, see {@link ShapeLoadPipeline} for loading them into a workspace
+ *
  * @author viorel.florian
  */
 public class ShapeLoaderFromFile {
-  /** selectedIntFr */
-  static MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
-  
+
   /**
-   * Constructs a new instance.
+   * Parses a legacy .mbc properties file and appends its shape to the layout
+   *
+   * @param file
+   * @param into
+   *
+   * @return <code>true</code> if a row was added
    */
-  
-  
-  
-  public static void loadShape(File file){
-    
-
-      
-      Properties property = new Properties();
+  public static boolean parseLegacy(File file, ShapeLayout into) {
+    Properties property = new Properties();
 
+    try {
+      FileInputStream in = new FileInputStream(file);
       try {
-
-      property.load(new FileInputStream(file));
-
-      } catch (Exception e){
-        MyLogger.error(null, "Error while trying to load component from file", e);
-        e.printStackTrace();
-        return;
+        property.load(in);
+      } finally {
+        in.close();
       }
+    } catch (Exception e) {
+      MyLogger.error(ShapeLoaderFromFile.class, "Error while trying to load component from file", e);
+      return false;
+    }
 
+    String shapeName = property.getProperty("dome.name");
+    ShapeKind kind = ShapeKind.fromLegacyName(shapeName);
+    if (kind == null) {
+      MyLogger.error(ShapeLoaderFromFile.class, "Unknown component type: " + shapeName);
+      return false;
+    }
 
-      String shapeName = property.getProperty("dome.name");
-      
-      
+    try {
       double latitude = Double.parseDouble(property.getProperty("dome.centerPosition.latitude"));
       double longitude = Double.parseDouble(property.getProperty("dome.centerPosition.longitude"));
       double elevation = Double.parseDouble(property.getProperty("dome.centerPosition.elevation"));
-      
+
       double nsRadius = Double.parseDouble(property.getProperty("dome.nsRadius"));
       double evRadius = Double.parseDouble(property.getProperty("dome.evRadius"));
       double vertRadius = Double.parseDouble(property.getProperty("dome.vertRadius"));
-      
-//      double tilt = Double.parseDouble(property.getProperty("dome.tilt"));
-//      double roll = Double.parseDouble(property.getProperty("dome.roll"));
-//      double heading = Double.parseDouble(property.getProperty("dome.heading"));
-      
-      //TODO implement distinction between dome.name values
-      try {
-    	  if(shapeName.startsWith("Dome")){
-    		  new DomeShape(selectedIntFr.getWwGLCanvas(), Position.fromDegrees(latitude, longitude, elevation), nsRadius, vertRadius, evRadius);
-    	  }
-    	  if(shapeName.startsWith("Flat Dome")){
-    		  new DomeShape(selectedIntFr.getWwGLCanvas(), Position.fromDegrees(latitude, longitude, elevation), nsRadius, vertRadius, evRadius);
-    	  }
-    	  if(shapeName.startsWith("Connector Dome")){
-    		  new DomeShape(selectedIntFr.getWwGLCanvas(), Position.fromDegrees(latitude, longitude, elevation), nsRadius, vertRadius, evRadius);
-    	  }
-    	  
-    	  
-    	  
-        
-      } catch (Exception e) {
-        MyLogger.error(null, "Error while trying to create component", e);
-        e.printStackTrace();
-        return;
-      }
-      
-      
-    }
-}//EOF
-
 
+      // tilt, roll and heading were never written with real values by the .mbc format
+      into.add(kind, shapeName, latitude, longitude, elevation, nsRadius, evRadius, vertRadius, 0, 0, 0);
+      return true;
+    } catch (RuntimeException e) {
+      MyLogger.error(ShapeLoaderFromFile.class, "Invalid component file: " + file.getName(), e);
+      return false;
+    }
+  }
+}// EOF
@@ -0,0 +1,158 @@
+package _workspace.shapes;
+
+import gov.nasa.worldwind.render.Highlightable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shapes selected in one workspace, in selection order.
+ * <p>
+ * Selected shapes are highlighted. The selection follows the pool of its workspace, removed shapes
+ * leave the selection. Panels act on the whole selection through a {@link BatchTransform}.
+ *
+ * @author viorel.florian
+ */
+public class ShapeSelection implements ShapesPoolListener {
+
+  /** selected shapes */
+  private final Set<IShape> shapes = new LinkedHashSet<IShape>();
+
+  /**
+   * Constructs a new, empty, instance.
+   */
+  public ShapeSelection() {
+    super();
+  }
+
+  /**
+   * Selects only the given shape
+   *
+   * @param shape
+   */
+  public synchronized void select(IShape shape) {
+    this.clear();
+    this.add(shape);
+  }
+
+  /**
+   * Adds a shape to the selection
+   *
+   * @param shape
+   *
+   * @return <code>true</code> if it was not selected yet
+   */
+  public synchronized boolean add(IShape shape) {
+    if (!this.shapes.add(shape)) {
+      return false;
+    }
+    highlight(shape, true);
+    return true;
+  }
+
+  /**
+   * Removes a shape from the selection
+   *
+   * @param shape
+   *
+   * @return <code>true</code> if it was selected
+   */
+  public synchronized boolean remove(IShape shape) {
+    if (!this.shapes.remove(shape)) {
+      return false;
+    }
+    highlight(shape, false);
+    return true;
+  }
+
+  /**
+   * Adds the shape if not selected, removes it otherwise
+   *
+   * @param shape
+   *
+   * @return <code>true</code> if it is selected now
+   */
+  public synchronized boolean toggle(IShape shape) {
+    return this.remove(shape) ? false : this.add(shape);
+  }
+
+  /**
+   * Empties the selection
+   */
+  public synchronized void clear() {
+    for (IShape shape : this.shapes) {
+      highlight(shape, false);
+    }
+    this.shapes.clear();
+  }
+
+  /**
+   * @param shape
+   *
+   * @return <code>true</code> if selected
+   */
+  public synchronized boolean contains(IShape shape) {
+    return this.shapes.contains(shape);
+  }
+
+  /**
+   * Get number of selected shapes.
+   *
+   * @return size
+   */
+  public synchronized int size() {
+    return this.shapes.size();
+  }
+
+  /**
+   * @return <code>true</code> if nothing is selected
+   */
+  public synchronized boolean isEmpty() {
+    return this.shapes.isEmpty();
+  }
+
+  /**
+   * Get a snapshot of the selected shapes.
+   *
+   * @return shapes, in selection order
+   */
+  public synchronized List<IShape> getShapes() {
+    return new ArrayList<IShape>(this.shapes);
+  }
+
+  /**
+   * @param shape
+   * @param on
+   */
+  private static void highlight(IShape shape, boolean on) {
+    if (shape instanceof Highlightable) {
+      ((Highlightable) shape).setHighlighted(on);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeAdded(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeAdded(IShape shape) {
+    // new shapes are not selected
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeRemoved(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeRemoved(IShape shape) {
+    this.remove(shape);
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeChanged(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeChanged(IShape shape) {
+    // the selection does not depend on the geometry
+  }
+}
@@ -0,0 +1,248 @@
+package _workspace.shapes;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.layers.AnnotationLayer;
+import gov.nasa.worldwind.render.GlobeAnnotation;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.swing.Timer;
+
+import _workspace.RedrawScheduler;
+
+/**
+ * Tooltips of the shapes of a workspace, shown in its annotation layer.
+ * <p>
+ * One tooltip is shown at a time: showing another one takes the previous annotation down. Annotations
+ * taken down go back to a small pool and are reused, so the layer never holds more than the tooltips on
+ * screen. A tooltip left up expires after {@link #getTimeToLive()}; a sweep timer runs while tooltips are up.
+ *
+ * @author viorel.florian
+ */
+public class ShapeTooltips {
+
+  /** default time a tooltip stays up, in milliseconds */
+  public static final long DEFAULT_TIME_TO_LIVE = 5000;
+
+  /** most annotations kept for reuse */
+  public static final int POOL_SIZE = 4;
+
+  /** time between two sweeps, in milliseconds */
+  private static final int SWEEP_INTERVAL = 500;
+
+  /** layer the tooltips are shown in */
+  private final AnnotationLayer layer;
+
+  /** redraws after a change, <code>null</code> for none */
+  private final RedrawScheduler redrawScheduler;
+
+  /** annotations up -> time they expire, in milliseconds */
+  private final Map<GlobeAnnotation, Long> shown = new IdentityHashMap<GlobeAnnotation, Long>();
+
+  /** annotations taken down, ready for reuse */
+  private final Deque<GlobeAnnotation> pool = new ArrayDeque<GlobeAnnotation>();
+
+  /** the tooltip up, <code>null</code> if none */
+  private GlobeAnnotation current;
+
+  /** shape of the tooltip up */
+  private IShape currentShape;
+
+  /** time a tooltip stays up, in milliseconds */
+  private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+  /** takes down the expired tooltips */
+  private final Timer sweepTimer;
+
+  /** annotations created, for checks */
+  private int created = 0;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param layer the tooltips are shown in
+   * @param redrawScheduler redraws after a change, <code>null</code> for none
+   */
+  public ShapeTooltips(AnnotationLayer layer, RedrawScheduler redrawScheduler) {
+    super();
+    this.layer = layer;
+    this.redrawScheduler = redrawScheduler;
+    this.sweepTimer = new Timer(SWEEP_INTERVAL, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        ShapeTooltips.this.evictExpired(System.currentTimeMillis());
+      }
+    });
+  }
+
+  /**
+   * Shows the tooltip of a shape, in place of the one up. Showing the same shape again keeps it up longer.
+   *
+   * @param shape
+   * @param position where the tooltip points
+   */
+  public synchronized void show(IShape shape, Position position) {
+    long expires = System.currentTimeMillis() + this.timeToLive;
+    if (this.current != null && this.currentShape == shape) {
+      this.current.setPosition(position);
+      this.shown.put(this.current, Long.valueOf(expires));
+      return;
+    }
+    this.hide();
+
+    GlobeAnnotation annotation = this.pool.poll();
+    if (annotation == null) {
+      annotation = new GlobeAnnotation("", position);
+      annotation.setAlwaysOnTop(true);
+      annotation.setPickEnabled(false);
+      this.created++;
+    }
+    annotation.setText(textOf(shape));
+    annotation.setPosition(position);
+    this.layer.addAnnotation(annotation);
+    this.shown.put(annotation, Long.valueOf(expires));
+    this.current = annotation;
+    this.currentShape = shape;
+    this.sweepTimer.start();
+    this.redraw();
+  }
+
+  /**
+   * Takes down the tooltip up, if any
+   */
+  public synchronized void hide() {
+    if (this.current != null) {
+      this.takeDown(this.current);
+      this.shown.remove(this.current);
+      this.current = null;
+      this.currentShape = null;
+      this.stopSweepIfIdle();
+      this.redraw();
+    }
+  }
+
+  /**
+   * Takes down the tooltips that expired
+   *
+   * @param now in milliseconds
+   * @return number of tooltips taken down
+   */
+  public synchronized int evictExpired(long now) {
+    int evicted = 0;
+    for (Iterator<Map.Entry<GlobeAnnotation, Long>> it = this.shown.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<GlobeAnnotation, Long> entry = it.next();
+      if (entry.getValue().longValue() <= now) {
+        GlobeAnnotation annotation = entry.getKey();
+        it.remove();
+        this.takeDown(annotation);
+        if (annotation == this.current) {
+          this.current = null;
+          this.currentShape = null;
+        }
+        evicted++;
+      }
+    }
+    if (evicted > 0) {
+      this.stopSweepIfIdle();
+      this.redraw();
+    }
+    return evicted;
+  }
+
+  /**
+   * Takes down all the tooltips and stops the sweep
+   */
+  public synchronized void dispose() {
+    this.hide();
+    this.pool.clear();
+    this.sweepTimer.stop();
+  }
+
+  /**
+   * @param annotation removed from the layer and kept for reuse if the pool has room
+   */
+  private void takeDown(GlobeAnnotation annotation) {
+    this.layer.removeAnnotation(annotation);
+    if (this.pool.size() < POOL_SIZE) {
+      this.pool.push(annotation);
+    }
+  }
+
+  /**
+   * Stops the sweep when no tooltip is up
+   */
+  private void stopSweepIfIdle() {
+    if (this.shown.isEmpty()) {
+      this.sweepTimer.stop();
+    }
+  }
+
+  /**
+   * Redraws, if there is a scheduler
+   */
+  private void redraw() {
+    if (this.redrawScheduler != null) {
+      this.redrawScheduler.requestRedraw();
+    }
+  }
+
+  /**
+   * @param shape
+   * @return identifier of the shape, its kind when it has none
+   */
+  private static String textOf(IShape shape) {
+    Object id = shape.getIdentifier();
+    return id != null ? id.toString() : shape.getClass().getName();
+  }
+
+  /**
+   * Get the shape whose tooltip is up.
+   *
+   * @return shape, <code>null</code> if none
+   */
+  public synchronized IShape getCurrentShape() {
+    return this.currentShape;
+  }
+
+  /**
+   * Get number of tooltips up.
+   *
+   * @return at most one
+   */
+  public synchronized int getShownCount() {
+    return this.shown.size();
+  }
+
+  /**
+   * Get number of annotations created, for checks.
+   *
+   * @return created, reused ones counted once
+   */
+  public synchronized int getCreatedCount() {
+    return this.created;
+  }
+
+  /**
+   * Get timeToLive.
+   *
+   * @return time a tooltip stays up, in milliseconds
+   */
+  public synchronized long getTimeToLive() {
+    return this.timeToLive;
+  }
+
+  /**
+   * Set timeToLive. Applies to the tooltips shown afterwards.
+   *
+   * @param timeToLive time a tooltip stays up, in milliseconds
+   */
+  public synchronized void setTimeToLive(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+}
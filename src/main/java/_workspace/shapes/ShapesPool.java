@@ -1,41 +1,174 @@
 package _workspace.shapes;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Pool of shapes
+ * Pool of shapes of one workspace
+ * <p>
+ * Each {@link _workspace.MoonWorkspaceInternalFrame} owns its pool, so identifiers only have to be unique
+ * within a workspace and lookups, saves and full scans only see the shapes of that workspace.
+ * <p>
+ * Thread safe without a global lock: the identifier index is a {@link ConcurrentHashMap}, so loaders,
+ * autosave and the EDT can use the pool at the same time. Every add is a single atomic
+ * <code>putIfAbsent</code>; iteration always goes over a snapshot.
+ * <p>
+ * Identifiers are case insensitive {@link IdentifierKey}s, string lookups go through a per thread probe
+ * and allocate nothing. Each added shape also gets an int handle, valid until it is removed, for the
+ * callers that look the same shape up over and over. Handles of removed shapes are given to the shapes
+ * added later, so they stay as dense as the pool; the handle table grows by chunks and is never copied.
  * 
  * @author viorel.florian
  */
 public final class ShapesPool {
 
-  /** pool instance */
-  private final static ShapesPool poolInstance = new ShapesPool();
-  
   /**
-   * Get instance
    * 
-   * @return pool singleton instance
+   * Constructs a new, empty, instance.
    */
-  public static ShapesPool getInstance() {
-    return poolInstance;
+  public ShapesPool() {
+    super();
   }
   
+  /** handle of an unknown shape */
+  public static final int NO_HANDLE = -1;
+
+  /** pool, identifier -> slot */
+  private final ConcurrentMap<IdentifierKey, Slot> pool = new ConcurrentHashMap<IdentifierKey, Slot>(256, 0.75f,
+      Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+
+  /** handle given back by a removed shape */
+  private static final int RELEASED = -2;
+
+  /** size of the first chunk of the handle table, each next chunk is twice as large */
+  private static final int FIRST_CHUNK_BITS = 8;
+
+  /** handle -> shape, in chunks of 2^(FIRST_CHUNK_BITS + i) handles created on demand */
+  private final AtomicReferenceArray<AtomicReferenceArray<IShape>> handles = new AtomicReferenceArray<AtomicReferenceArray<IShape>>(
+      32 - FIRST_CHUNK_BITS);
+
+  /** handles given back by removed shapes */
+  private final Queue<Integer> freeHandles = new ConcurrentLinkedQueue<Integer>();
+
+  /** next handle never given */
+  private final AtomicInteger nextHandle = new AtomicInteger();
+
+  /** kind of shape -> last number given to a new shape of that kind */
+  private final ConcurrentMap<Class<?>, AtomicInteger> sequences = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+
+  /** listeners */
+  private final List<ShapesPoolListener> listeners = new CopyOnWriteArrayList<ShapesPoolListener>();
+
+  /** lookup probe, one per thread */
+  private final ThreadLocal<IdentifierKey> probe = new ThreadLocal<IdentifierKey>() {
+    @Override
+    protected IdentifierKey initialValue() {
+      return IdentifierKey.probe();
+    }
+  };
+
   /**
-   * 
-   * Constructs a new instance.
+   * Pool entry
    */
-  private ShapesPool() {
-    super();
+  private static final class Slot {
+
+    /** shape */
+    final IShape shape;
+
+    /** handle, {@link #NO_HANDLE} until given, RELEASED once the shape is removed; shared by renames */
+    final AtomicInteger handle;
+
+    /**
+     * Constructs a new instance, without a handle.
+     *
+     * @param shape
+     */
+    Slot(IShape shape) {
+      this(shape, new AtomicInteger(NO_HANDLE));
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param shape
+     * @param handle
+     */
+    Slot(IShape shape, AtomicInteger handle) {
+      this.shape = shape;
+      this.handle = handle;
+    }
   }
   
-  /** pool */
-  private final Map<String, IShape> pool = new HashMap<String, IShape>();
-  
   
+  /**
+   * Add a listener
+   *
+   * @param listener
+   */
+  public void addPoolListener(ShapesPoolListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Remove a listener
+   *
+   * @param listener
+   */
+  public void removePoolListener(ShapesPoolListener listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Get number of listeners.
+   *
+   * @return listeners registered
+   */
+  public int getPoolListenerCount() {
+    return this.listeners.size();
+  }
+
+  /**
+   * Tells the listeners that the geometry of a shape changed, called by the shapes themselves
+   *
+   * @param shape
+   */
+  public void fireShapeChanged(IShape shape) {
+    for (ShapesPoolListener listener : this.listeners) {
+      listener.shapeChanged(shape);
+    }
+  }
+
+  /**
+   * @param shape
+   */
+  private void fireShapeAdded(IShape shape) {
+    for (ShapesPoolListener listener : this.listeners) {
+      listener.shapeAdded(shape);
+    }
+  }
+
+  /**
+   * @param shape
+   */
+  private void fireShapeRemoved(IShape shape) {
+    for (ShapesPoolListener listener : this.listeners) {
+      listener.shapeRemoved(shape);
+    }
+  }
+
   /**
    * Validate identifier
    *  
@@ -54,6 +187,23 @@ public final class ShapesPool {
     
     return _identifier; 
   }
+
+  /**
+   * Points the probe of the current thread to the identifier, allocates nothing
+   *
+   * @param identifier
+   *
+   * @return probe, only valid for lookups
+   *
+   * @throws Exception if identifier is empty
+   */
+  private IdentifierKey probe(String identifier) throws Exception {
+    IdentifierKey key = this.probe.get().set(identifier);
+    if (key.isEmpty()) {
+      throw new Exception("Empty identifier.");
+    }
+    return key;
+  }
   
   /**
    * 
@@ -67,10 +217,49 @@ public final class ShapesPool {
    */
   public IShape getShape(String identifier) throws Exception {
     
-    synchronized (this.pool) {      
-    
-      return this.pool.get(validateIdentifier(identifier));
+    Slot slot = this.pool.get(this.probe(identifier));
+    return slot == null ? null : slot.shape;
+  }
+
+  /**
+   * Get shape by key
+   *
+   * @param key
+   *
+   * @return shape, <code>null</code> if none
+   */
+  public IShape getShape(IdentifierKey key) {
+    Slot slot = this.pool.get(key);
+    return slot == null ? null : slot.shape;
+  }
+
+  /**
+   * Get shape by handle
+   *
+   * @param handle as returned by {@link #addShape(IShape)}
+   *
+   * @return shape, <code>null</code> if it was removed
+   */
+  public IShape getShape(int handle) {
+    if (handle < 0) {
+      return null;
     }
+    AtomicReferenceArray<IShape> chunk = this.handles.get(chunkOf(handle));
+    return chunk == null ? null : chunk.get(offsetOf(handle));
+  }
+
+  /**
+   * Get handle of the shape with the given identifier
+   *
+   * @param identifier
+   *
+   * @return handle, {@link #NO_HANDLE} if there is no such shape
+   *
+   * @throws Exception
+   */
+  public int getHandle(String identifier) throws Exception {
+    Slot slot = this.pool.get(this.probe(identifier));
+    return slot == null ? NO_HANDLE : Math.max(NO_HANDLE, slot.handle.get());
   }
   
   /**
@@ -79,33 +268,141 @@ public final class ShapesPool {
    * @see ShapesPool#addShape(String, IShape)
    * 
    * @param shape
+   * 
+   * @return handle of the shape
+   * 
    * @throws Exception 
    */
-  public void addShape(IShape shape) throws Exception {
+  public int addShape(IShape shape) throws Exception {
     
-    this.addShape(shape.getIdentifier(), shape);
+    return this.addShape(shape.getIdentifier(), shape);
   }
   
   /**
    * Add shape with specific identifier
    * @param identifier
    * @param shape
+   * 
+   * @return handle of the shape
+   * 
    * @throws Exception 
    */
-  public void addShape(String identifier, IShape shape) throws Exception {
+  public int addShape(String identifier, IShape shape) throws Exception {
         
-    String _identifier = validateIdentifier(identifier);
+    IdentifierKey key = IdentifierKey.of(identifier);
+    Slot slot = new Slot(shape);
     
-    synchronized (this.pool) {
-            
-      if (this.pool.get(_identifier) != null) {
-        throw new Exception("Invalid (already exist) identifier: " + identifier);
-      }
-      
-      this.pool.put(_identifier, shape);
+    if (this.pool.putIfAbsent(key, slot) != null) {
+      throw new Exception("Invalid (already exist) identifier: " + identifier);
     }
+    int handle = this.giveHandle(slot);
+    this.fireShapeAdded(shape);
+    return handle;
   }
   
+  /**
+   * Add many shapes. Shapes whose identifier is empty or already taken are skipped.
+   *
+   * @param shapes
+   *
+   * @return the shapes that were added
+   */
+  public List<IShape> addShapes(Collection<? extends IShape> shapes) {
+    List<IShape> added = new ArrayList<IShape>(shapes.size());
+
+    for (IShape shape : shapes) {
+      IdentifierKey key;
+      try {
+        key = IdentifierKey.of(shape.getIdentifier());
+      } catch (Exception e) {
+        continue;
+      }
+      Slot slot = new Slot(shape);
+      if (this.pool.putIfAbsent(key, slot) == null) {
+        this.giveHandle(slot);
+        added.add(shape);
+        this.fireShapeAdded(shape);
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Gives a handle to a slot that was just inserted, a free one if any
+   *
+   * @param slot
+   *
+   * @return handle, {@link #NO_HANDLE} if the shape was removed in between
+   */
+  private int giveHandle(Slot slot) {
+    Integer free = this.freeHandles.poll();
+    int handle = free != null ? free.intValue() : this.nextHandle.getAndIncrement();
+    this.chunkFor(handle).set(offsetOf(handle), slot.shape);
+    if (!slot.handle.compareAndSet(NO_HANDLE, handle)) {
+      // removed before the handle was set, the remove left it to us
+      this.freeHandle(handle);
+      return NO_HANDLE;
+    }
+    return handle;
+  }
+
+  /**
+   * Takes the handle back from a slot that was just removed
+   *
+   * @param slot
+   */
+  private void releaseHandle(Slot slot) {
+    int handle = slot.handle.getAndSet(RELEASED);
+    if (handle >= 0) {
+      this.freeHandle(handle);
+    }
+  }
+
+  /**
+   * Clears a handle and makes it free
+   *
+   * @param handle
+   */
+  private void freeHandle(int handle) {
+    this.chunkFor(handle).set(offsetOf(handle), null);
+    this.freeHandles.add(Integer.valueOf(handle));
+  }
+
+  /**
+   * Get the chunk of a handle, creating it if needed
+   *
+   * @param handle
+   *
+   * @return chunk
+   */
+  private AtomicReferenceArray<IShape> chunkFor(int handle) {
+    int index = chunkOf(handle);
+    AtomicReferenceArray<IShape> chunk = this.handles.get(index);
+    if (chunk == null) {
+      this.handles.compareAndSet(index, null, new AtomicReferenceArray<IShape>(1 << (FIRST_CHUNK_BITS + index)));
+      chunk = this.handles.get(index);
+    }
+    return chunk;
+  }
+
+  /**
+   * @param handle
+   * @return index of the chunk holding the handle
+   */
+  private static int chunkOf(int handle) {
+    long biased = (long) handle + (1 << FIRST_CHUNK_BITS);
+    return 63 - Long.numberOfLeadingZeros(biased) - FIRST_CHUNK_BITS;
+  }
+
+  /**
+   * @param handle
+   * @return position of the handle in its chunk
+   */
+  private static int offsetOf(int handle) {
+    long biased = (long) handle + (1 << FIRST_CHUNK_BITS);
+    return (int) (biased - Long.highestOneBit(biased));
+  }
+
   /**
    * Remove shape from list by identifier
    * 
@@ -117,14 +414,41 @@ public final class ShapesPool {
    */
   public IShape removeShape(String identifier) throws Exception {
     
-    synchronized (this.pool) {
-      
-      return this.pool.remove(validateIdentifier(identifier));
+    Slot slot = this.pool.remove(this.probe(identifier));
+    if (slot == null) {
+      return null;
     }
+    this.releaseHandle(slot);
+    this.fireShapeRemoved(slot.shape);
+    return slot.shape;
+  }
+
+  /**
+   * Remove shape by handle
+   *
+   * @param handle
+   *
+   * @return removed shape, <code>null</code> if none
+   *
+   * @throws Exception
+   */
+  public IShape removeShape(int handle) throws Exception {
+    IShape shape = this.getShape(handle);
+    if (shape == null) {
+      return null;
+    }
+    IdentifierKey key = this.probe(shape.getIdentifier());
+    Slot slot = this.pool.get(key);
+    if (slot == null || slot.handle.get() != handle || !this.pool.remove(key, slot)) {
+      return null;
+    }
+    this.releaseHandle(slot);
+    this.fireShapeRemoved(shape);
+    return shape;
   }
   
   /**
-   * Update shape identifier
+   * Update shape identifier, the handle of the shape does not change
    * 
    * @param oldIdentifier
    * @param newIdentifier
@@ -133,26 +457,101 @@ public final class ShapesPool {
    */
   public void updateIdentifier(String oldIdentifier, String newIdentifier) throws Exception {
     
-    String _oldIdentifier = validateIdentifier(oldIdentifier);
-    String _newIdentifier = validateIdentifier(newIdentifier);
+    IdentifierKey _oldIdentifier = IdentifierKey.of(oldIdentifier);
+    IdentifierKey _newIdentifier = IdentifierKey.of(newIdentifier);
+
+    Slot slot = this.pool.get(_oldIdentifier);
+    if (slot == null) {
+      throw new Exception("Invalid (does NOT exist) OLD identifier: " + oldIdentifier);
+    }
     
-    synchronized (this.pool) {  //make this thread safe. make sure no concurrent identifier updates for the same shape
-      
-      if (this.pool.get(_oldIdentifier) == null) {
-        throw new Exception("Invalid (does NOT exist) OLD identifier: " + _oldIdentifier);
-      }
+    if (_oldIdentifier.equals(_newIdentifier)) {
+      return;
+    }
 
-      if (this.pool.get(_newIdentifier) != null) {
-        throw new Exception("Invalid (already exist) NEW identifier: " + _newIdentifier);
-      }
+    // claim the new identifier first, no one can take it in between
+    Slot renamed = new Slot(slot.shape, slot.handle);
+    if (this.pool.putIfAbsent(_newIdentifier, renamed) != null) {
+      throw new Exception("Invalid (already exist) NEW identifier: " + newIdentifier);
+    }
 
-      IShape shape = this.removeShape(_oldIdentifier);
-      this.addShape(_newIdentifier, shape);
+    // only release the old identifier if it still points to the same shape
+    if (!this.pool.remove(_oldIdentifier, slot)) {
+      this.pool.remove(_newIdentifier, renamed);
+      throw new Exception("Concurrent update of OLD identifier: " + oldIdentifier);
     }
   }
   
+  /**
+   * Get a snapshot of all entries, later changes of the pool are not reflected
+   * 
+   * @return upper case identifier -> shape entries
+   */
   public Set<Entry<String, IShape>> getAllShapesEntries(){
-    return this.pool.entrySet();
+    Set<Entry<String, IShape>> entries = new HashSet<Entry<String, IShape>>(this.pool.size() * 2);
+    for (Entry<IdentifierKey, Slot> entry : this.pool.entrySet()) {
+      entries.add(new SimpleImmutableEntry<String, IShape>(entry.getKey().getIdentifier().toUpperCase(),
+          entry.getValue().shape));
+    }
+    return Collections.unmodifiableSet(entries);
+  }
+
+  /**
+   * Get a copy of all shapes currently in the pool
+   *
+   * @return all shapes
+   */
+  public List<IShape> getAllShapes() {
+    List<IShape> shapes = new ArrayList<IShape>(this.pool.size());
+    for (Slot slot : this.pool.values()) {
+      shapes.add(slot.shape);
+    }
+    return shapes;
+  }
+
+  /**
+   * Get number of shapes in the pool.
+   *
+   * @return size
+   */
+  public int size() {
+    return this.pool.size();
+  }
+
+  /**
+   * Next number for the name of a new shape, counted per kind, so every workspace starts at 1
+   *
+   * @param kind class of the shape
+   *
+   * @return 1 for the first shape of that kind
+   */
+  public int nextSequence(Class<?> kind) {
+    AtomicInteger sequence = this.sequences.get(kind);
+    if (sequence == null) {
+      AtomicInteger created = new AtomicInteger();
+      sequence = this.sequences.putIfAbsent(kind, created);
+      if (sequence == null) {
+        sequence = created;
+      }
+    }
+    return sequence.incrementAndGet();
+  }
+
+  /**
+   * Removes all the shapes, the listeners are told about each one
+   *
+   * @return number of shapes removed
+   */
+  public int clear() {
+    int removed = 0;
+    for (Entry<IdentifierKey, Slot> entry : this.pool.entrySet()) {
+      if (this.pool.remove(entry.getKey(), entry.getValue())) {
+        this.releaseHandle(entry.getValue());
+        this.fireShapeRemoved(entry.getValue().shape);
+        removed++;
+      }
+    }
+    return removed;
   }
   
   
@@ -0,0 +1,34 @@
+package _workspace.shapes;
+
+/**
+ * Notified when shapes enter or leave the {@link ShapesPool}, or change their geometry while in it.
+ * <p>
+ * Calls come from whatever thread changed the pool or the shape, listeners have to be thread safe and
+ * quick.
+ *
+ * @author viorel.florian
+ */
+public interface ShapesPoolListener {
+
+  /**
+   * Shape was added to the pool
+   *
+   * @param shape
+   */
+  public void shapeAdded(IShape shape);
+
+  /**
+   * Shape was removed from the pool
+   *
+   * @param shape
+   */
+  public void shapeRemoved(IShape shape);
+
+  /**
+   * Position, radii or orientation of a shape changed. Also sent for shapes that are not (yet) in the
+   * pool, listeners ignore the shapes they do not know.
+   *
+   * @param shape
+   */
+  public void shapeChanged(IShape shape);
+}
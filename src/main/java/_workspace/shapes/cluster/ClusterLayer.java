@@ -0,0 +1,196 @@
+package _workspace.shapes.cluster;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.layers.AbstractLayer;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.Material;
+import gov.nasa.worldwind.render.PointPlacemark;
+import gov.nasa.worldwind.render.PointPlacemarkAttributes;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import _workspace.shapes.AbstractDomeShape;
+import _workspace.shapes.IShape;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.ShapesPoolListener;
+import _workspace.shapes.render.DomeFilter;
+import _workspace.shapes.render.LodView;
+
+/**
+ * Replaces the groups of domes too small to tell apart by one marker showing their number.
+ * <p>
+ * The layer follows the pool of its workspace through a {@link ShapeClusterTree}, updated shape by shape.
+ * Each frame it cuts the tree for the current view and draws one marker per cluster; the dome layer and
+ * the domes themselves ask {@link #hides(AbstractDomeShape)} to leave the clustered domes out. Highlighted
+ * domes are always drawn. Markers are reused from frame to frame.
+ *
+ * @author viorel.florian
+ */
+public class ClusterLayer extends AbstractLayer implements ShapesPoolListener, DomeFilter {
+
+  /** default size on screen under which a group becomes a cluster, in pixels */
+  public static final double DEFAULT_CLUSTER_PIXELS = 48;
+
+  /** aggregation of the shapes of the pool */
+  private final ShapeClusterTree tree = new ShapeClusterTree();
+
+  /** clusters of the last frame */
+  private final List<ShapeClusterTree.Cluster> clusters = new ArrayList<ShapeClusterTree.Cluster>();
+
+  /** markers, reused */
+  private final List<PointPlacemark> markers = new ArrayList<PointPlacemark>();
+
+  /** look of the markers */
+  private final PointPlacemarkAttributes markerAttributes = new PointPlacemarkAttributes();
+
+  /** size on screen under which a group becomes a cluster, in pixels */
+  private double clusterPixels = DEFAULT_CLUSTER_PIXELS;
+
+  /** time stamp of the frame the tree was last cut for */
+  private long cutTimeStamp = -1;
+
+  /**
+   * Constructs a new, empty, instance.
+   */
+  public ClusterLayer() {
+    super();
+    this.setName("Clusters layer");
+    this.setPickEnabled(false);
+    this.markerAttributes.setUsePointAsDefaultImage(true);
+    this.markerAttributes.setLineMaterial(new Material(new Color(255, 170, 0)));
+    this.markerAttributes.setScale(12d);
+    this.markerAttributes.setLabelColor("ffffffff");
+    this.markerAttributes.setLabelScale(1.2);
+  }
+
+  /**
+   * Follows the pool, adding the shapes already in it
+   *
+   * @param pool
+   */
+  public void attach(ShapesPool pool) {
+    pool.addPoolListener(this);
+    for (IShape shape : pool.getAllShapes()) {
+      this.tree.add(shape);
+    }
+  }
+
+  /**
+   * Stops following the pool and forgets its shapes
+   *
+   * @param pool
+   */
+  public void detach(ShapesPool pool) {
+    pool.removePoolListener(this);
+    this.tree.clear();
+  }
+
+  /**
+   * Get tree.
+   *
+   * @return aggregation of the shapes
+   */
+  public ShapeClusterTree getTree() {
+    return this.tree;
+  }
+
+  /**
+   * Get clusterPixels.
+   *
+   * @return size on screen under which a group becomes a cluster, in pixels
+   */
+  public double getClusterPixels() {
+    return this.clusterPixels;
+  }
+
+  /**
+   * Set clusterPixels.
+   *
+   * @param clusterPixels size on screen under which a group becomes a cluster, in pixels
+   */
+  public void setClusterPixels(double clusterPixels) {
+    this.clusterPixels = clusterPixels;
+  }
+
+  /**
+   * @see _workspace.shapes.render.DomeFilter#hides(_workspace.shapes.AbstractDomeShape)
+   */
+  @Override
+  public boolean hides(AbstractDomeShape shape) {
+    return this.isEnabled() && !shape.isHighlighted() && this.tree.isClustered(shape);
+  }
+
+  /**
+   * Cuts the tree for the frame, once. The layer comes before the shapes in the layer list so the shapes
+   * see the clusters of the frame they are drawn in.
+   *
+   * @param dc
+   * @param view
+   */
+  public void prepare(DrawContext dc, LodView view) {
+    if (!this.isEnabled() || this.cutTimeStamp == dc.getFrameTimeStamp()) {
+      return;
+    }
+    this.cutTimeStamp = dc.getFrameTimeStamp();
+    this.tree.cut(view, dc.getGlobe(), this.clusterPixels, this.clusters);
+  }
+
+  /**
+   * @see gov.nasa.worldwind.layers.AbstractLayer#doRender(gov.nasa.worldwind.render.DrawContext)
+   */
+  @Override
+  protected void doRender(DrawContext dc) {
+    this.prepare(dc, LodView.fromView(dc.getView()));
+    for (int i = 0; i < this.clusters.size(); i++) {
+      ShapeClusterTree.Cluster cluster = this.clusters.get(i);
+      if (i == this.markers.size()) {
+        PointPlacemark created = new PointPlacemark(Position.ZERO);
+        created.setAltitudeMode(WorldWind.CLAMP_TO_GROUND);
+        created.setAttributes(this.markerAttributes);
+        this.markers.add(created);
+      }
+      PointPlacemark marker = this.markers.get(i);
+      marker.setPosition(new Position(cluster.getCenter(), 0));
+      marker.setLabelText(String.valueOf(cluster.getCount()));
+      marker.render(dc);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeAdded(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeAdded(IShape shape) {
+    this.tree.add(shape);
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeRemoved(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeRemoved(IShape shape) {
+    this.tree.remove(shape);
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeChanged(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeChanged(IShape shape) {
+    this.tree.update(shape);
+  }
+
+  /**
+   * @see gov.nasa.worldwind.layers.AbstractLayer#dispose()
+   */
+  @Override
+  public void dispose() {
+    this.tree.clear();
+    this.clusters.clear();
+    this.markers.clear();
+    super.dispose();
+  }
+}
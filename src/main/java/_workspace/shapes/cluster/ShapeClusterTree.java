@@ -0,0 +1,483 @@
+package _workspace.shapes.cluster;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.Ellipsoid;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import _workspace.shapes.IShape;
+import _workspace.shapes.render.LodView;
+
+/**
+ * Aggregation of the shape centers of a pool in a latitude / longitude quadtree, for clustering.
+ * <p>
+ * Every shape sits in a cell of depth {@link #MAX_DEPTH}; every node keeps the number of shapes below it
+ * and the sum of their coordinates, so its cluster marker (count and centroid) is known without visiting
+ * the shapes. Adds, removes and moves update only the path from the cell to the root, nodes are created
+ * on demand and dropped when empty.
+ * <p>
+ * {@link #cut(LodView, Globe, double, List)} walks down from the root and stops at the nodes small enough
+ * on screen: those become clusters, as the view zooms in they split into their children. The shapes below
+ * a cluster of the last cut are {@link #isClustered(IShape) clustered}. Works headless.
+ *
+ * @author viorel.florian
+ */
+public class ShapeClusterTree {
+
+  /** deepest level, cells of about 0.003 degrees */
+  public static final int MAX_DEPTH = 16;
+
+  /** fewest shapes shown as a cluster */
+  public static final int MIN_CLUSTER = 2;
+
+  /** lock, cuts and queries read, updates write */
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** root, the whole globe */
+  private final Node root = new Node(null, -90, 90, -180, 180, 0);
+
+  /** shape -> entry */
+  private final Map<IShape, Entry> entries = new IdentityHashMap<IShape, Entry>();
+
+  /** stamp of the last cut, nodes of that cut carry it */
+  private volatile long cutStamp = 0;
+
+  /**
+   * Constructs a new, empty, instance.
+   */
+  public ShapeClusterTree() {
+    super();
+  }
+
+  /**
+   * Adds a shape, or moves it if already there. Only ellipsoids have a center.
+   *
+   * @param shape
+   */
+  public void add(IShape shape) {
+    if (!(shape instanceof Ellipsoid)) {
+      return;
+    }
+    this.lock.writeLock().lock();
+    try {
+      Entry entry = this.entries.get(shape);
+      if (entry == null) {
+        entry = new Entry(shape);
+        this.entries.put(shape, entry);
+        this.read(entry);
+        this.root.insert(entry);
+      } else {
+        this.move(entry);
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param shape
+   */
+  public void remove(IShape shape) {
+    this.lock.writeLock().lock();
+    try {
+      Entry entry = this.entries.remove(shape);
+      if (entry != null) {
+        entry.cell.remove(entry);
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Follows the new center of a shape, ignores the shapes not in the tree
+   *
+   * @param shape
+   */
+  public void update(IShape shape) {
+    this.lock.writeLock().lock();
+    try {
+      Entry entry = this.entries.get(shape);
+      if (entry != null) {
+        this.move(entry);
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes all the shapes
+   */
+  public void clear() {
+    this.lock.writeLock().lock();
+    try {
+      this.entries.clear();
+      this.root.children = null;
+      this.root.count = 0;
+      this.root.sumLat = 0;
+      this.root.sumLon = 0;
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param entry
+   */
+  private void move(Entry entry) {
+    Position pos = ((Ellipsoid) entry.shape).getCenterPosition();
+    double lat = latitude(pos);
+    double lon = longitude(pos);
+    if (lat == entry.lat && lon == entry.lon) {
+      return;
+    }
+    entry.cell.remove(entry);
+    entry.lat = lat;
+    entry.lon = lon;
+    this.root.insert(entry);
+  }
+
+  /**
+   * @param entry
+   */
+  private void read(Entry entry) {
+    Position pos = ((Ellipsoid) entry.shape).getCenterPosition();
+    entry.lat = latitude(pos);
+    entry.lon = longitude(pos);
+  }
+
+  /**
+   * Get number of shapes.
+   *
+   * @return size
+   */
+  public int size() {
+    this.lock.readLock().lock();
+    try {
+      return this.entries.size();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the clusters of a view: the highest nodes of at least {@link #MIN_CLUSTER} shapes, in the
+   * frustum, whose footprint is smaller than the given size on screen
+   *
+   * @param view
+   * @param globe
+   * @param clusterPixels nodes smaller than this on screen are clusters
+   * @param clusters receives the clusters, cleared first
+   *
+   * @return number of shapes in the clusters
+   */
+  public int cut(LodView view, Globe globe, double clusterPixels, List<Cluster> clusters) {
+    clusters.clear();
+    this.lock.readLock().lock();
+    try {
+      long stamp = this.cutStamp + 1;
+      int clustered = this.cut(this.root, view, globe, clusterPixels, stamp, clusters);
+      this.cutStamp = stamp;
+      return clustered;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return number of shapes clustered below the node
+   */
+  private int cut(Node node, LodView view, Globe globe, double clusterPixels, long stamp, List<Cluster> clusters) {
+    if (node.count == 0) {
+      return 0;
+    }
+    if (node.parent != null) {
+      double meters = node.halfDiagonal(globe.getRadius());
+      Vec4 center = globe.computePointFromPosition(Angle.fromDegrees((node.minLat + node.maxLat) / 2),
+          Angle.fromDegrees((node.minLon + node.maxLon) / 2), 0);
+      if (!view.intersects(center.x, center.y, center.z, meters)) {
+        return 0;
+      }
+      if (node.count >= MIN_CLUSTER && view.pixelSize(center.x, center.y, center.z, meters) < clusterPixels) {
+        node.stamp = stamp;
+        clusters.add(new Cluster(node.count, LatLon.fromDegrees(node.sumLat / node.count, node.sumLon
+            / node.count)));
+        return node.count;
+      }
+    }
+    if (node.children == null) {
+      return 0;
+    }
+    int clustered = 0;
+    for (Node child : node.children) {
+      if (child != null) {
+        clustered += this.cut(child, view, globe, clusterPixels, stamp, clusters);
+      }
+    }
+    return clustered;
+  }
+
+  /**
+   * @param shape
+   * @return <code>true</code> if the shape is part of a cluster of the last cut
+   */
+  public boolean isClustered(IShape shape) {
+    this.lock.readLock().lock();
+    try {
+      Entry entry = this.entries.get(shape);
+      if (entry == null) {
+        return false;
+      }
+      long stamp = this.cutStamp;
+      for (Node n = entry.cell; n != null; n = n.parent) {
+        if (n.stamp == stamp) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get number of nodes, for checks.
+   *
+   * @return nodes, the root included
+   */
+  public int getNodeCount() {
+    this.lock.readLock().lock();
+    try {
+      return this.root.nodes();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @param pos
+   * @return latitude in degrees
+   */
+  private static double latitude(Position pos) {
+    return Math.max(-90, Math.min(90, pos.getLatitude().getDegrees()));
+  }
+
+  /**
+   * @param pos
+   * @return normalized longitude in degrees
+   */
+  private static double longitude(Position pos) {
+    return Angle.normalizedLongitude(pos.getLongitude()).getDegrees();
+  }
+
+  /**
+   * Group of shapes drawn as one marker
+   */
+  public static final class Cluster {
+
+    /** number of shapes */
+    private final int count;
+
+    /** centroid of the shape centers */
+    private final LatLon center;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param count
+     * @param center
+     */
+    Cluster(int count, LatLon center) {
+      this.count = count;
+      this.center = center;
+    }
+
+    /**
+     * Get count.
+     *
+     * @return number of shapes
+     */
+    public int getCount() {
+      return this.count;
+    }
+
+    /**
+     * Get center.
+     *
+     * @return centroid of the shape centers
+     */
+    public LatLon getCenter() {
+      return this.center;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      return this.count + " shapes at " + this.center;
+    }
+  }
+
+  /**
+   * Shape in the tree
+   */
+  private static final class Entry {
+
+    /** shape */
+    final IShape shape;
+
+    /** center latitude, in degrees */
+    double lat;
+
+    /** center longitude, in degrees */
+    double lon;
+
+    /** cell holding the entry */
+    Node cell;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param shape
+     */
+    Entry(IShape shape) {
+      this.shape = shape;
+    }
+  }
+
+  /**
+   * Quadtree node, its aggregate covers the whole subtree
+   */
+  private static final class Node {
+
+    /** parent, <code>null</code> for the root */
+    final Node parent;
+
+    /** bounds, in degrees */
+    final double minLat, maxLat, minLon, maxLon;
+
+    /** depth */
+    final int depth;
+
+    /** children, created on demand, <code>null</code> for cells */
+    Node[] children;
+
+    /** entries in this subtree */
+    int count;
+
+    /** sums of the entry coordinates, in degrees */
+    double sumLat, sumLon;
+
+    /** stamp of the last cut that made this node a cluster */
+    long stamp = -1;
+
+    /**
+     * Constructs a new instance.
+     */
+    Node(Node parent, double minLat, double maxLat, double minLon, double maxLon, int depth) {
+      this.parent = parent;
+      this.minLat = minLat;
+      this.maxLat = maxLat;
+      this.minLon = minLon;
+      this.maxLon = maxLon;
+      this.depth = depth;
+    }
+
+    /**
+     * Adds the entry to this node and the nodes below, down to its cell
+     *
+     * @param entry
+     */
+    void insert(Entry entry) {
+      Node node = this;
+      while (true) {
+        node.count++;
+        node.sumLat += entry.lat;
+        node.sumLon += entry.lon;
+        if (node.depth == MAX_DEPTH) {
+          entry.cell = node;
+          return;
+        }
+        node = node.childFor(entry.lat, entry.lon);
+      }
+    }
+
+    /**
+     * Removes an entry of this cell, dropping the nodes left empty
+     *
+     * @param entry
+     */
+    void remove(Entry entry) {
+      entry.cell = null;
+      for (Node n = this; n != null; n = n.parent) {
+        n.count--;
+        n.sumLat -= entry.lat;
+        n.sumLon -= entry.lon;
+        if (n.count == 0 && n.parent != null) {
+          n.parent.children[n.parent.indexOf(n.minLat, n.minLon)] = null;
+        }
+      }
+    }
+
+    /**
+     * @return index of the child holding the point
+     */
+    int indexOf(double lat, double lon) {
+      return (lat >= (this.minLat + this.maxLat) / 2 ? 2 : 0) + (lon >= (this.minLon + this.maxLon) / 2 ? 1 : 0);
+    }
+
+    /**
+     * @return child holding the point, created if missing
+     */
+    Node childFor(double lat, double lon) {
+      if (this.children == null) {
+        this.children = new Node[4];
+      }
+      int i = this.indexOf(lat, lon);
+      Node child = this.children[i];
+      if (child == null) {
+        double midLat = (this.minLat + this.maxLat) / 2;
+        double midLon = (this.minLon + this.maxLon) / 2;
+        child = new Node(this, i >= 2 ? midLat : this.minLat, i >= 2 ? this.maxLat : midLat,
+            i % 2 == 1 ? midLon : this.minLon, i % 2 == 1 ? this.maxLon : midLon, this.depth + 1);
+        this.children[i] = child;
+      }
+      return child;
+    }
+
+    /**
+     * @param globeRadius
+     * @return half the diagonal of the bounds, in meters
+     */
+    double halfDiagonal(double globeRadius) {
+      double lat = Math.toRadians(this.maxLat - this.minLat);
+      double lon = Math.toRadians(this.maxLon - this.minLon)
+          * Math.cos(Math.toRadians(Math.min(Math.abs(this.minLat), Math.abs(this.maxLat))));
+      return globeRadius * Math.sqrt(lat * lat + lon * lon) / 2;
+    }
+
+    /**
+     * @return nodes of this subtree
+     */
+    int nodes() {
+      int nodes = 1;
+      if (this.children != null) {
+        for (Node child : this.children) {
+          if (child != null) {
+            nodes += child.nodes();
+          }
+        }
+      }
+      return nodes;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package _workspace.shapes.layout;
+
+/**
+ * Constants of the binary layout file (<code>.mbcl</code>).
+ * <p>
+ * All values are big endian, as written by {@link java.io.DataOutputStream}:
+ *
+ * <pre>
+ * int      magic ("MBCL")
+ * short    version
+ * int      shape count (n)
+ * int      string count (s)
+ * UTF[s]   string table
+ * byte[n]  kind codes
+ * int[n]   identifier index in the string table
+ * double[n] latitude, longitude, elevation, ns radius, ew radius, vert radius, heading, tilt, roll
+ *           (one column after the other, in this order)
+ * </pre>
+ *
+ * @author viorel.florian
+ */
+public final class LayoutFormat {
+
+  /** magic number, "MBCL" */
+  public static final int MAGIC = 0x4D42434C;
+
+  /** current version */
+  public static final short VERSION = 1;
+
+  /** layout file extension */
+  public static final String EXTENSION = "mbcl";
+
+  /** legacy, one shape per file, extension */
+  public static final String LEGACY_EXTENSION = "mbc";
+
+  /** latitude column */
+  public static final int COL_LATITUDE = 0;
+
+  /** longitude column */
+  public static final int COL_LONGITUDE = 1;
+
+  /** elevation column */
+  public static final int COL_ELEVATION = 2;
+
+  /** north-south radius column */
+  public static final int COL_NS_RADIUS = 3;
+
+  /** east-west radius column */
+  public static final int COL_EW_RADIUS = 4;
+
+  /** vertical radius column */
+  public static final int COL_VERT_RADIUS = 5;
+
+  /** heading column */
+  public static final int COL_HEADING = 6;
+
+  /** tilt column */
+  public static final int COL_TILT = 7;
+
+  /** roll column */
+  public static final int COL_ROLL = 8;
+
+  /** number of double columns */
+  public static final int DOUBLE_COLUMNS = 9;
+
+  /** bytes used by one row in the column section (kind, identifier index, doubles) */
+  public static final int ROW_BYTES = 1 + 4 + 8 * DOUBLE_COLUMNS;
+
+  /**
+   * Constructs a new instance.
+   */
+  private LayoutFormat() {
+    super();
+  }
+}
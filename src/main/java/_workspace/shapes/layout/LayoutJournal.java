@@ -0,0 +1,354 @@
+package _workspace.shapes.layout;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append only journal of the changes made to a layout file since it was last written in full.
+ * <p>
+ * The journal of <code>base.mbcl</code> is <code>base.mbcj</code>, next to it. All values are big endian,
+ * as written by {@link java.io.DataOutputStream}:
+ *
+ * <pre>
+ * int      magic ("MBCJ")
+ * short    version
+ * records, until the end of the file:
+ *   byte   operation (1 = upsert, 2 = remove)
+ *   UTF    identifier
+ *   upsert only:
+ *   byte   kind code
+ *   double latitude, longitude, elevation, ns radius, ew radius, vert radius, heading, tilt, roll
+ * </pre>
+ *
+ * Identifiers are matched case insensitive, as in the shapes pool. A truncated last record (crash while
+ * appending) is ignored by {@link #replay(ShapeTable, File)}, and cut by {@link #repair(File)} before the
+ * journal is appended to again; an append that fails cuts what it wrote.
+ * <p>
+ * A compaction (see {@link LayoutSession#compact()}) first renames the journal to its
+ * {@link #compactingFile(File) compacting file}, so appends go on in a new journal while the base file is
+ * rewritten; readers apply the compacting file, when one was left behind, before the journal.
+ *
+ * @author viorel.florian
+ */
+public final class LayoutJournal {
+
+  /** magic number, "MBCJ" */
+  public static final int MAGIC = 0x4D42434A;
+
+  /** current version */
+  public static final short VERSION = 1;
+
+  /** journal file extension */
+  public static final String EXTENSION = "mbcj";
+
+  /** upsert record */
+  static final byte OP_UPSERT = 1;
+
+  /** remove record */
+  static final byte OP_REMOVE = 2;
+
+  /** stream buffer size */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** bytes of the header */
+  private static final int HEADER_BYTES = 4 + 2;
+
+  /** bytes of an upsert record after its identifier: kind code and values */
+  private static final int UPSERT_BYTES = 1 + LayoutFormat.DOUBLE_COLUMNS * 8;
+
+  /**
+   * Constructs a new instance.
+   */
+  private LayoutJournal() {
+    super();
+  }
+
+  /**
+   * Get the journal file of a layout file
+   *
+   * @param base layout file
+   *
+   * @return journal file, may not exist
+   */
+  public static File journalFile(File base) {
+    String name = base.getName();
+    String suffix = "." + LayoutFormat.EXTENSION;
+    if (name.endsWith(suffix)) {
+      name = name.substring(0, name.length() - suffix.length());
+    }
+    return new File(base.getAbsoluteFile().getParentFile(), name + "." + EXTENSION);
+  }
+
+  /**
+   * Get the journal being folded into a layout file by a compaction
+   *
+   * @param base layout file
+   *
+   * @return compacting file, may not exist
+   */
+  public static File compactingFile(File base) {
+    File journal = journalFile(base);
+    return new File(journal.getParentFile(), journal.getName() + ".compacting");
+  }
+
+  /**
+   * Appends the given changes to the journal of the layout file, the journal is created if needed
+   *
+   * @param base layout file
+   * @param upserts added or modified shapes
+   * @param removed identifiers of the removed shapes
+   *
+   * @return number of records written
+   *
+   * @throws IOException
+   */
+  public static int append(File base, ShapeLayout upserts, Collection<String> removed) throws IOException {
+    if (upserts.size() == 0 && removed.isEmpty()) {
+      return 0;
+    }
+
+    File journal = journalFile(base);
+    boolean header = !journal.isFile() || journal.length() == 0;
+    FileOutputStream file = new FileOutputStream(journal, true);
+    long start = file.getChannel().size();
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+    try {
+      if (header) {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+      }
+      for (String identifier : removed) {
+        out.writeByte(OP_REMOVE);
+        out.writeUTF(identifier);
+      }
+      for (int i = 0; i < upserts.size(); i++) {
+        out.writeByte(OP_UPSERT);
+        out.writeUTF(upserts.getIdentifier(i));
+        out.writeByte(upserts.getKind(i).getCode());
+        for (int c = 0; c < LayoutFormat.DOUBLE_COLUMNS; c++) {
+          out.writeDouble(upserts.column(c)[i]);
+        }
+      }
+      out.flush();
+      file.getFD().sync();
+    } catch (IOException e) {
+      // no torn record for the next append to follow
+      try {
+        file.getChannel().truncate(start);
+      } catch (IOException again) {
+        e.addSuppressed(again);
+      }
+      throw e;
+    } finally {
+      out.close();
+    }
+    return removed.size() + upserts.size();
+  }
+
+  /**
+   * Cuts the journal of a layout file after its last complete record, so the next append does not follow
+   * a record torn by a crash. A journal with a torn header is emptied.
+   *
+   * @param base layout file
+   *
+   * @return number of bytes cut, 0 if the journal was complete or does not exist
+   *
+   * @throws IOException if the journal is not one
+   */
+  public static long repair(File base) throws IOException {
+    File journal = journalFile(base);
+    if (!journal.isFile()) {
+      return 0;
+    }
+    long valid = 0;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal), BUFFER_SIZE));
+    try {
+      byte[] skipped = new byte[Math.max(0xFFFF, UPSERT_BYTES)];
+      try {
+        if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+          throw new IOException("Not a layout journal: " + journal);
+        }
+        valid = HEADER_BYTES;
+        int op;
+        while ((op = in.read()) != -1) {
+          if (op != OP_UPSERT && op != OP_REMOVE) {
+            throw new IOException("Corrupted journal, unknown record " + op + ": " + journal);
+          }
+          // the identifier, as written by writeUTF
+          int length = in.readUnsignedShort();
+          in.readFully(skipped, 0, length);
+          if (op == OP_UPSERT) {
+            in.readFully(skipped, 0, UPSERT_BYTES);
+          }
+          valid += 1 + 2 + length + (op == OP_UPSERT ? UPSERT_BYTES : 0);
+        }
+      } catch (EOFException e) {
+        // torn from here
+      }
+    } finally {
+      in.close();
+    }
+
+    long cut = journal.length() - valid;
+    if (cut > 0) {
+      RandomAccessFile file = new RandomAccessFile(journal, "rw");
+      try {
+        file.setLength(valid);
+      } finally {
+        file.close();
+      }
+    }
+    return cut;
+  }
+
+  /**
+   * Opens a layout file with its journals applied. Without journals the file is mapped, see
+   * {@link MappedLayout}, and the caller closes it when done; otherwise the content is copied and the file
+   * is not kept mapped.
+   *
+   * @param base layout file
+   *
+   * @return current content of the layout
+   *
+   * @throws IOException
+   */
+  public static ShapeTable open(File base) throws IOException {
+    File compacting = compactingFile(base);
+    File journal = journalFile(base);
+    if (!compacting.isFile() && !journal.isFile()) {
+      return MappedLayout.open(base);
+    }
+    MappedLayout mapped = MappedLayout.open(base);
+    try {
+      ShapeTable table = mapped;
+      if (compacting.isFile()) {
+        table = replay(table, compacting);
+      }
+      if (journal.isFile()) {
+        table = replay(table, journal);
+      }
+      return table;
+    } finally {
+      mapped.close();
+    }
+  }
+
+  /**
+   * Applies the journal records, in order, to a copy of the base table
+   *
+   * @param base
+   * @param journal
+   *
+   * @return new layout, rows keep the base order, new shapes come last
+   *
+   * @throws IOException
+   */
+  public static ShapeLayout replay(ShapeTable base, File journal) throws IOException {
+    ShapeLayout layout = ShapeLayout.copyOf(base);
+    Map<String, Integer> rows = new HashMap<String, Integer>(layout.size() * 2);
+    for (int i = 0; i < layout.size(); i++) {
+      rows.put(key(layout.getIdentifier(i)), Integer.valueOf(i));
+    }
+    BitSet removed = new BitSet(layout.size());
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal), BUFFER_SIZE));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a layout journal: " + journal);
+      }
+      short version = in.readShort();
+      if (version != VERSION) {
+        throw new IOException("Unsupported journal version " + version + ": " + journal);
+      }
+
+      double[] values = new double[LayoutFormat.DOUBLE_COLUMNS];
+      int op;
+      while ((op = in.read()) != -1) {
+        String identifier;
+        ShapeKind kind = null;
+        try {
+          identifier = in.readUTF();
+          if (op == OP_UPSERT) {
+            kind = ShapeKind.fromCode(in.readByte());
+            for (int c = 0; c < values.length; c++) {
+              values[c] = in.readDouble();
+            }
+          } else if (op != OP_REMOVE) {
+            throw new IOException("Corrupted journal, unknown record " + op + ": " + journal);
+          }
+        } catch (EOFException e) {
+          // last record was not completely written
+          break;
+        }
+
+        Integer row = rows.get(key(identifier));
+        if (op == OP_REMOVE) {
+          if (row != null) {
+            removed.set(row.intValue());
+            rows.remove(key(identifier));
+          }
+        } else if (row != null) {
+          layout.set(row.intValue(), kind, identifier, values[0], values[1], values[2], values[3], values[4],
+              values[5], values[6], values[7], values[8]);
+        } else {
+          rows.put(key(identifier), Integer.valueOf(layout.add(kind, identifier, values[0], values[1], values[2],
+              values[3], values[4], values[5], values[6], values[7], values[8])));
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Corrupted journal: " + journal, e);
+    } finally {
+      in.close();
+    }
+
+    if (removed.isEmpty()) {
+      return layout;
+    }
+    ShapeLayout kept = new ShapeLayout(layout.size() - removed.cardinality());
+    for (int i = 0; i < layout.size(); i++) {
+      if (!removed.get(i)) {
+        kept.add(layout.getKind(i), layout.getIdentifier(i), layout.getLatitude(i), layout.getLongitude(i),
+            layout.getElevation(i), layout.getNsRadius(i), layout.getEwRadius(i), layout.getVertRadius(i),
+            layout.getHeading(i), layout.getTilt(i), layout.getRoll(i));
+      }
+    }
+    return kept;
+  }
+
+  /**
+   * Deletes the journals of a layout file, if any
+   *
+   * @param base layout file
+   *
+   * @throws IOException
+   */
+  public static void discard(File base) throws IOException {
+    for (File journal : new File[] { journalFile(base), compactingFile(base) }) {
+      if (journal.exists() && !journal.delete()) {
+        throw new IOException("Journal could not be deleted: " + journal);
+      }
+    }
+  }
+
+  /**
+   * Identifier lookup key, case insensitive
+   *
+   * @param identifier
+   * @return key
+   */
+  static String key(String identifier) {
+    return ("" + identifier).toUpperCase();
+  }
+}
@@ -0,0 +1,88 @@
+package _workspace.shapes.layout;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads a binary layout file into a {@link ShapeLayout} with one sequential pass
+ *
+ * @see LayoutFormat
+ * @author viorel.florian
+ */
+public final class LayoutReader {
+
+  /** input buffer size */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Constructs a new instance.
+   */
+  private LayoutReader() {
+    super();
+  }
+
+  /**
+   * Reads the whole layout file
+   *
+   * @param file
+   *
+   * @return layout
+   *
+   * @throws IOException if the file can not be read or is not a layout file
+   */
+  public static ShapeLayout read(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    try {
+      if (in.readInt() != LayoutFormat.MAGIC) {
+        throw new IOException("Not a layout file: " + file);
+      }
+      short version = in.readShort();
+      if (version != LayoutFormat.VERSION) {
+        throw new IOException("Unsupported layout version " + version + ": " + file);
+      }
+
+      int n = in.readInt();
+      int stringCount = in.readInt();
+      // every string takes at least its length prefix, every row ROW_BYTES, as in MappedLayout
+      if (n < 0 || stringCount < 0 || 2L * stringCount > file.length()
+          || (long) n * LayoutFormat.ROW_BYTES > file.length()) {
+        throw new IOException("Corrupted layout header: " + file);
+      }
+
+      String[] strings = new String[stringCount];
+      for (int i = 0; i < stringCount; i++) {
+        strings[i] = in.readUTF();
+      }
+
+      ShapeLayout layout = new ShapeLayout(n);
+      layout.setSize(n);
+
+      ShapeKind[] kinds = layout.kindColumn();
+      for (int i = 0; i < n; i++) {
+        kinds[i] = ShapeKind.fromCode(in.readByte());
+      }
+      String[] identifiers = layout.identifierColumn();
+      for (int i = 0; i < n; i++) {
+        int index = in.readInt();
+        if (index < 0 || index >= stringCount) {
+          throw new IOException("Corrupted string index " + index + ": " + file);
+        }
+        identifiers[i] = strings[index];
+      }
+      for (int c = 0; c < LayoutFormat.DOUBLE_COLUMNS; c++) {
+        double[] column = layout.column(c);
+        for (int i = 0; i < n; i++) {
+          column[i] = in.readDouble();
+        }
+      }
+      return layout;
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Corrupted layout file: " + file, e);
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,451 @@
+package _workspace.shapes.layout;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import _workspace.shapes.IShape;
+
+/**
+ * Remembers which layout file the shapes of a workspace were last loaded from or saved to, and which shape each saved
+ * identifier belongs to, so the next save only has to write what changed.
+ * <p>
+ * A save to the bound file appends the added, modified ({@link IShape#isDirty()}) and removed shapes to
+ * the journal (see {@link LayoutJournal}); a save to any other file writes it in full and binds to it.
+ * <p>
+ * Saves come in two steps: {@link #prepareSave(File, Collection)} takes a snapshot of the shapes on the
+ * thread that owns them, {@link Save#run()} writes it from a background thread. Prepared saves are
+ * written in the order they were prepared. {@link #compact()} holds no lock while it rewrites the base
+ * file, saves go on meanwhile.
+ *
+ * @author viorel.florian
+ */
+public final class LayoutSession {
+
+  /** journal size under which a compaction is never needed */
+  private static final long MIN_COMPACT_BYTES = 1L << 20;
+
+  /** serializes the writes to the layout files, taken before the session monitor when both are needed */
+  private final Object fileLock = new Object();
+
+  /** bound layout file, <code>null</code> if none */
+  private File base;
+
+  /** saved identifier (upper case) -> shape it was saved from, <code>null</code> when no live shape matches */
+  private Map<String, IShape> persisted = new HashMap<String, IShape>();
+
+  /** incremented when the bound file is written in full or another file is bound */
+  private long generation = 0;
+
+  /** a compaction is running */
+  private boolean compacting = false;
+
+  /** the journal of the bound file is known to end with a complete record, see {@link LayoutJournal#repair(File)} */
+  private boolean journalRepaired = false;
+
+  /** prepared saves not written yet, in order */
+  private final LinkedList<Save> queue = new LinkedList<Save>();
+
+  /**
+   * Constructs a new, unbound, instance.
+   */
+  public LayoutSession() {
+    super();
+  }
+
+  /**
+   * Get bound layout file.
+   *
+   * @return base, <code>null</code> if none
+   */
+  public synchronized File getBaseFile() {
+    return this.base;
+  }
+
+  /**
+   * Tells if an incremental save to the given file is possible
+   *
+   * @param file
+   * @return <code>true</code> if bound to this file and the file exists
+   */
+  public synchronized boolean isBoundTo(File file) {
+    return this.base != null && file != null && this.base.getAbsoluteFile().equals(file.getAbsoluteFile())
+        && this.base.isFile();
+  }
+
+  /**
+   * Binds to a layout file that was just loaded. The loaded shapes are marked clean.
+   *
+   * @param file
+   * @param loaded saved identifier -> shape created for it, <code>null</code> for rows that did not get a
+   *          live shape with that identifier
+   */
+  public synchronized void bind(File file, Map<String, IShape> loaded) {
+    this.base = file;
+    this.generation++;
+    this.journalRepaired = false;
+    this.persisted = new HashMap<String, IShape>(loaded.size() * 2);
+    for (Map.Entry<String, IShape> entry : loaded.entrySet()) {
+      this.persisted.put(LayoutJournal.key(entry.getKey()), entry.getValue());
+      if (entry.getValue() != null) {
+        entry.getValue().setDirty(false);
+      }
+    }
+  }
+
+  /**
+   * Takes a snapshot of the shapes to save: the changes since the last save when bound to the file, all
+   * shapes otherwise. The shapes taken are marked clean right away, so changes made while the save is
+   * written go to the next one; they are marked dirty again if the save fails.
+   *
+   * @param file
+   * @param shapes all current shapes
+   *
+   * @return save to {@link Save#run() run}, or to {@link Save#abandon() abandon}
+   */
+  public synchronized Save prepareSave(File file, Collection<? extends IShape> shapes) {
+    Save save;
+    if (this.isBoundTo(file)) {
+      Map<String, IShape> current = new HashMap<String, IShape>(shapes.size() * 2);
+      ShapeLayout upserts = new ShapeLayout();
+      List<IShape> written = new ArrayList<IShape>();
+      for (IShape shape : shapes) {
+        String key = LayoutJournal.key(shape.getIdentifier());
+        current.put(key, shape);
+        if ((shape.isDirty() || this.persisted.get(key) != shape) && upserts.add(shape)) {
+          written.add(shape);
+        }
+      }
+      List<String> removed = new ArrayList<String>();
+      for (String key : this.persisted.keySet()) {
+        if (!current.containsKey(key)) {
+          removed.add(key);
+        }
+      }
+      save = new Save(null, upserts, removed, written);
+    } else {
+      ShapeLayout layout = new ShapeLayout(shapes.size());
+      List<IShape> written = new ArrayList<IShape>(shapes.size());
+      for (IShape shape : shapes) {
+        if (layout.add(shape)) {
+          written.add(shape);
+        }
+      }
+      save = new Save(file, layout, null, written);
+    }
+    for (IShape shape : save.written) {
+      shape.setDirty(false);
+    }
+    this.queue.add(save);
+    return save;
+  }
+
+  /**
+   * Writes the prepared saves up to the given one, in order. Runs under the file lock.
+   *
+   * @param last
+   */
+  private void drain(Save last) {
+    while (!last.done) {
+      Save next;
+      synchronized (this) {
+        next = this.queue.poll();
+      }
+      if (next == null) {
+        // abandoned
+        return;
+      }
+      next.write();
+    }
+  }
+
+  /**
+   * Tells if the journal grew enough, compared to the base file, to be folded back
+   *
+   * @return <code>true</code> if {@link #compact()} should run
+   */
+  public synchronized boolean needsCompaction() {
+    if (this.base == null || this.compacting) {
+      return false;
+    }
+    long journal = LayoutJournal.journalFile(this.base).length();
+    return journal > Math.max(MIN_COMPACT_BYTES, this.base.length() / 4);
+  }
+
+  /**
+   * Folds the journal into the bound file. The journal is set aside first, so saves go on appending to a
+   * new journal while the base file is rewritten; the rewrite is dropped if the file was written in full or
+   * unbound meanwhile. If the base file cannot be replaced the session binds to the new file written
+   * instead, see {@link LayoutWriter#replace(ShapeLayout, File)}.
+   *
+   * @return number of shapes in the compacted layout, -1 if there was nothing to compact
+   *
+   * @throws IOException
+   */
+  public int compact() throws IOException {
+    File file;
+    long started;
+    File set = null;
+    synchronized (this.fileLock) {
+      synchronized (this) {
+        if (this.base == null || this.compacting) {
+          return -1;
+        }
+        file = this.base;
+        started = this.generation;
+        this.compacting = true;
+      }
+      try {
+        set = LayoutJournal.compactingFile(file);
+        File journal = LayoutJournal.journalFile(file);
+        // a compacting file left by a crash is folded first, the journal then stays as it is
+        if (!set.isFile()) {
+          if (!journal.isFile()) {
+            set = null;
+            return -1;
+          }
+          Files.move(journal.toPath(), set.toPath());
+        }
+      } finally {
+        if (set == null) {
+          synchronized (this) {
+            this.compacting = false;
+          }
+        }
+      }
+    }
+
+    File tmp = LayoutWriter.compactFile(file);
+    try {
+      ShapeLayout layout;
+      try {
+        // read, not mapped: the base file is replaced below
+        layout = LayoutJournal.replay(LayoutReader.read(file), set);
+        LayoutWriter.write(layout, tmp);
+      } catch (IOException e) {
+        tmp.delete();
+        synchronized (this) {
+          if (this.generation != started) {
+            // written in full meanwhile, which may have deleted the journal being read
+            return -1;
+          }
+        }
+        throw e;
+      }
+
+      synchronized (this.fileLock) {
+        synchronized (this) {
+          if (this.generation != started) {
+            // written in full meanwhile, which dropped the journals
+            tmp.delete();
+            return -1;
+          }
+        }
+        File written = LayoutWriter.install(tmp, file);
+        if (!written.equals(file)) {
+          // the old file keeps the content it had, the appends made meanwhile follow the new one
+          File journal = LayoutJournal.journalFile(file);
+          if (journal.isFile()) {
+            Files.move(journal.toPath(), LayoutJournal.journalFile(written).toPath());
+          }
+          synchronized (this) {
+            this.base = written;
+          }
+        }
+        if (!set.delete()) {
+          throw new IOException("Journal could not be deleted: " + set);
+        }
+      }
+      return layout.size();
+    } finally {
+      synchronized (this) {
+        this.compacting = false;
+      }
+    }
+  }
+
+  /**
+   * Changes of the shapes, taken by {@link LayoutSession#prepareSave(File, Collection)}, to be written to
+   * the layout files
+   */
+  public final class Save {
+
+    /** file written in full, <code>null</code> for an incremental save */
+    private final File file;
+
+    /** rows written: all the shapes, or the added and modified ones */
+    private final ShapeLayout layout;
+
+    /** identifiers of the removed shapes, <code>null</code> for a full save */
+    private final List<String> removed;
+
+    /** shapes of the rows */
+    final List<IShape> written;
+
+    /** generation the snapshot was taken in */
+    private final long generation;
+
+    /** written, or failed */
+    boolean done = false;
+
+    /** journal records or rows written */
+    private int count = 0;
+
+    /** file holding the layout once written */
+    private File target;
+
+    /** why the write failed, <code>null</code> if it did not */
+    private IOException failure;
+
+    /**
+     * Constructs a new instance.
+     */
+    Save(File file, ShapeLayout layout, List<String> removed, List<IShape> written) {
+      this.file = file;
+      this.layout = layout;
+      this.removed = removed;
+      this.written = written;
+      this.generation = LayoutSession.this.generation;
+    }
+
+    /**
+     * Get incremental.
+     *
+     * @return <code>true</code> if the changes are appended to the journal of the bound file
+     */
+    public boolean isIncremental() {
+      return this.file == null;
+    }
+
+    /**
+     * Writes this save, after the saves prepared before it. Call it from a background thread.
+     *
+     * @return number of journal records written for an incremental save, of shapes for a full one
+     *
+     * @throws IOException
+     */
+    public int run() throws IOException {
+      synchronized (LayoutSession.this.fileLock) {
+        LayoutSession.this.drain(this);
+      }
+      if (this.failure != null) {
+        throw this.failure;
+      }
+      return this.count;
+    }
+
+    /**
+     * Drops a save that will not be run, its shapes are marked dirty again
+     */
+    public void abandon() {
+      synchronized (LayoutSession.this) {
+        if (!LayoutSession.this.queue.remove(this)) {
+          return;
+        }
+      }
+      this.markDirty();
+    }
+
+    /**
+     * Get target.
+     *
+     * @return file holding the layout once written, <code>null</code> before, or when an incremental save
+     *         was skipped because another file was bound since its snapshot
+     */
+    public File getTarget() {
+      return this.target;
+    }
+
+    /**
+     * Writes the files, under the file lock
+     */
+    void write() {
+      try {
+        if (this.file == null) {
+          this.append();
+        } else {
+          this.replace();
+        }
+      } catch (IOException e) {
+        this.failure = e;
+        this.markDirty();
+      } finally {
+        this.done = true;
+      }
+    }
+
+    /**
+     * Incremental save
+     *
+     * @throws IOException
+     */
+    private void append() throws IOException {
+      File bound;
+      boolean repaired;
+      synchronized (LayoutSession.this) {
+        bound = LayoutSession.this.base;
+        repaired = LayoutSession.this.journalRepaired;
+        if (LayoutSession.this.generation != this.generation) {
+          // bound to another file since the snapshot, which a later save covers
+          this.markDirty();
+          return;
+        }
+      }
+      if (!repaired) {
+        // a crash may have torn the last record, the records appended after it would never be read
+        LayoutJournal.repair(bound);
+        synchronized (LayoutSession.this) {
+          LayoutSession.this.journalRepaired = true;
+        }
+      }
+      this.count = LayoutJournal.append(bound, this.layout, this.removed);
+      this.target = bound;
+      synchronized (LayoutSession.this) {
+        for (String key : this.removed) {
+          LayoutSession.this.persisted.remove(key);
+        }
+        for (IShape shape : this.written) {
+          LayoutSession.this.persisted.put(LayoutJournal.key(shape.getIdentifier()), shape);
+        }
+      }
+    }
+
+    /**
+     * Full save
+     *
+     * @throws IOException
+     */
+    private void replace() throws IOException {
+      File installed = LayoutWriter.replace(this.layout, this.file);
+      LayoutJournal.discard(installed);
+      Map<String, IShape> saved = new HashMap<String, IShape>(this.written.size() * 2);
+      for (IShape shape : this.written) {
+        saved.put(LayoutJournal.key(shape.getIdentifier()), shape);
+      }
+      synchronized (LayoutSession.this) {
+        LayoutSession.this.base = installed;
+        LayoutSession.this.persisted = saved;
+        LayoutSession.this.generation++;
+        // the journals were discarded
+        LayoutSession.this.journalRepaired = true;
+      }
+      this.count = this.layout.size();
+      this.target = installed;
+    }
+
+    /**
+     * Marks the shapes of the snapshot dirty, so the next save takes them again
+     */
+    private void markDirty() {
+      for (IShape shape : this.written) {
+        shape.setDirty(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package _workspace.shapes.layout;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link ShapeLayout} to a single binary layout file
+ *
+ * @see LayoutFormat
+ * @author viorel.florian
+ */
+public final class LayoutWriter {
+
+  /** output buffer size */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Constructs a new instance.
+   */
+  private LayoutWriter() {
+    super();
+  }
+
+  /**
+   * Writes the layout next to the file, then moves it over the file, so the file is never left half
+   * written. A file still mapped (by this or another process, on Windows) cannot be replaced: the layout
+   * then goes to a new file next to it, <code>name-1.mbcl</code>, <code>name-2.mbcl</code>, ... and the
+   * old file is left untouched.
+   *
+   * @param layout
+   * @param file
+   *
+   * @return file holding the layout, <code>file</code> unless it could not be replaced
+   *
+   * @throws IOException
+   */
+  public static File replace(ShapeLayout layout, File file) throws IOException {
+    File tmp = tmpFile(file);
+    write(layout, tmp);
+    return install(tmp, file);
+  }
+
+  /**
+   * @param file layout file
+   * @return file a new content of the layout file is written to before {@link #install(File, File)}
+   */
+  static File tmpFile(File file) {
+    return new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+  }
+
+  /**
+   * @param file layout file
+   * @return file a compaction writes the new content of the layout file to before
+   *         {@link #install(File, File)}, apart from {@link #tmpFile(File)} as full saves go on meanwhile
+   */
+  static File compactFile(File file) {
+    return new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".compact.tmp");
+  }
+
+  /**
+   * Moves a completely written layout over the file, or next to it when the file cannot be replaced, see
+   * {@link #replace(ShapeLayout, File)}
+   *
+   * @param tmp
+   * @param file
+   *
+   * @return file holding the layout
+   *
+   * @throws IOException
+   */
+  static File install(File tmp, File file) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    try {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      return file;
+    } catch (FileSystemException e) {
+      String name = file.getName();
+      String suffix = "." + LayoutFormat.EXTENSION;
+      if (name.endsWith(suffix)) {
+        name = name.substring(0, name.length() - suffix.length());
+      }
+      File other;
+      int n = 1;
+      do {
+        other = new File(dir, name + "-" + n++ + suffix);
+      } while (other.exists() || LayoutJournal.journalFile(other).exists());
+      Files.move(tmp.toPath(), other.toPath());
+      return other;
+    }
+  }
+
+  /**
+   * Writes the layout to the file, replacing its content. Use {@link #replace(ShapeLayout, File)} for a
+   * file that may be mapped.
+   *
+   * @param layout
+   * @param file
+   *
+   * @throws IOException
+   */
+  public static void write(ShapeLayout layout, File file) throws IOException {
+    int n = layout.size();
+
+    // string table
+    List<String> strings = new ArrayList<String>();
+    Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+    int[] identifierIndex = new int[n];
+    String[] identifiers = layout.identifierColumn();
+    for (int i = 0; i < n; i++) {
+      String s = identifiers[i] == null ? "" : identifiers[i];
+      Integer index = stringIndex.get(s);
+      if (index == null) {
+        index = Integer.valueOf(strings.size());
+        stringIndex.put(s, index);
+        strings.add(s);
+      }
+      identifierIndex[i] = index.intValue();
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    try {
+      out.writeInt(LayoutFormat.MAGIC);
+      out.writeShort(LayoutFormat.VERSION);
+      out.writeInt(n);
+      out.writeInt(strings.size());
+      for (String s : strings) {
+        out.writeUTF(s);
+      }
+
+      ShapeKind[] kinds = layout.kindColumn();
+      for (int i = 0; i < n; i++) {
+        out.writeByte(kinds[i].getCode());
+      }
+      for (int i = 0; i < n; i++) {
+        out.writeInt(identifierIndex[i]);
+      }
+      for (int c = 0; c < LayoutFormat.DOUBLE_COLUMNS; c++) {
+        double[] column = layout.column(c);
+        for (int i = 0; i < n; i++) {
+          out.writeDouble(column[i]);
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,302 @@
+package _workspace.shapes.layout;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only view of a layout file mapped in memory.
+ * <p>
+ * Nothing is copied or parsed up front: values are decoded straight from the mapped buffer when
+ * asked for, so opening even a very large layout only costs the header, the string table
+ * offsets and one pass over the kind and identifier columns to reject a corrupted file early.
+ * Identifiers are decoded on demand.
+ * <p>
+ * {@link #close()} releases the mapping right away instead of at garbage collection: a mapped file can
+ * be neither replaced nor truncated on Windows. The view cannot be used afterwards.
+ *
+ * @see LayoutFormat
+ * @author viorel.florian
+ */
+public class MappedLayout implements ShapeTable, Closeable {
+
+  /** buffer, <code>null</code> once closed */
+  private MappedByteBuffer buffer;
+
+  /** size */
+  private final int size;
+
+  /** offset of each string (its length prefix) in the buffer */
+  private final int[] stringOffsets;
+
+  /** offset of the kind column */
+  private final int kindBase;
+
+  /** offset of the identifier index column */
+  private final int identifierBase;
+
+  /** offset of the first double column */
+  private final int doubleBase;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param buffer
+   * @param source used in error messages
+   *
+   * @throws IOException if the buffer does not hold a valid layout
+   */
+  private MappedLayout(MappedByteBuffer buffer, File source) throws IOException {
+    this.buffer = buffer;
+    try {
+      if (buffer.getInt(0) != LayoutFormat.MAGIC) {
+        throw new IOException("Not a layout file: " + source);
+      }
+      short version = buffer.getShort(4);
+      if (version != LayoutFormat.VERSION) {
+        throw new IOException("Unsupported layout version " + version + ": " + source);
+      }
+      this.size = buffer.getInt(6);
+      int stringCount = buffer.getInt(10);
+      // every string takes at least its length prefix, every row ROW_BYTES
+      if (this.size < 0 || stringCount < 0 || 14 + 2L * stringCount > buffer.limit()
+          || (long) this.size * LayoutFormat.ROW_BYTES > buffer.limit()) {
+        throw new IOException("Corrupted layout header: " + source);
+      }
+
+      this.stringOffsets = new int[stringCount];
+      int offset = 14;
+      for (int i = 0; i < stringCount; i++) {
+        this.stringOffsets[i] = offset;
+        offset += 2 + buffer.getChar(offset);
+      }
+
+      this.kindBase = offset;
+      this.identifierBase = this.kindBase + this.size;
+      this.doubleBase = this.identifierBase + 4 * this.size;
+      if ((long) offset + (long) this.size * LayoutFormat.ROW_BYTES > buffer.limit()) {
+        throw new IOException("Truncated layout file: " + source);
+      }
+
+      // checked once here so the getters cannot fail on a corrupted file
+      for (int i = 0; i < this.size; i++) {
+        int index = buffer.getInt(this.identifierBase + 4 * i);
+        if (index < 0 || index >= stringCount) {
+          throw new IOException("Corrupted string index " + index + ": " + source);
+        }
+        ShapeKind.fromCode(buffer.get(this.kindBase + i));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Corrupted layout file: " + source, e);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated layout file: " + source, e);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated layout file: " + source, e);
+    }
+  }
+
+  /**
+   * Maps the layout file in memory
+   *
+   * @param file
+   *
+   * @return mapped layout
+   *
+   * @throws IOException
+   */
+  public static MappedLayout open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Layout file too large to map: " + file);
+      }
+      // the mapping stays valid after the channel is closed
+      return new MappedLayout(channel.map(FileChannel.MapMode.READ_ONLY, 0, length), file);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Unmaps the file. The JDK has no public way to do it, so the cleaner of the buffer is invoked by
+   * reflection; when that fails the mapping is left to the garbage collector.
+   *
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() {
+    MappedByteBuffer mapped = this.buffer;
+    if (mapped == null) {
+      return;
+    }
+    // any later access fails on null instead of reading unmapped memory
+    this.buffer = null;
+    try {
+      // Java 9 and later
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      invokeCleaner.invoke(theUnsafe.get(null), mapped);
+      return;
+    } catch (Exception e) {
+      // older JVM, try its cleaner
+    }
+    try {
+      Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(mapped);
+      if (cleaner != null) {
+        Method clean = cleaner.getClass().getMethod("clean");
+        clean.setAccessible(true);
+        clean.invoke(cleaner);
+      }
+    } catch (Exception e) {
+      // unmapped at garbage collection
+    }
+  }
+
+  /**
+   * Offset of a value in a double column
+   *
+   * @param column
+   * @param i row
+   * @return absolute buffer offset
+   */
+  private int doubleAt(int column, int i) {
+    return this.doubleBase + 8 * (column * this.size + i);
+  }
+
+  /**
+   * Decodes a string of the string table (modified UTF-8, as written by {@link java.io.DataOutputStream#writeUTF})
+   *
+   * @param index
+   * @return string
+   */
+  private String decodeString(int index) {
+    int offset = this.stringOffsets[index];
+    int length = this.buffer.getChar(offset);
+    char[] chars = new char[length];
+    int count = 0;
+    int p = offset + 2;
+    int end = p + length;
+    while (p < end) {
+      int b = this.buffer.get(p++) & 0xff;
+      if (b < 0x80) {
+        chars[count++] = (char) b;
+      } else if ((b & 0xe0) == 0xc0) {
+        chars[count++] = (char) (((b & 0x1f) << 6) | (this.buffer.get(p++) & 0x3f));
+      } else {
+        int b2 = this.buffer.get(p++) & 0x3f;
+        int b3 = this.buffer.get(p++) & 0x3f;
+        chars[count++] = (char) (((b & 0x0f) << 12) | (b2 << 6) | b3);
+      }
+    }
+    return new String(chars, 0, count);
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#size()
+   */
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getKind(int)
+   */
+  @Override
+  public ShapeKind getKind(int i) {
+    return ShapeKind.fromCode(this.buffer.get(this.kindBase + i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getIdentifier(int)
+   */
+  @Override
+  public String getIdentifier(int i) {
+    return this.decodeString(this.buffer.getInt(this.identifierBase + 4 * i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getLatitude(int)
+   */
+  @Override
+  public double getLatitude(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_LATITUDE, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getLongitude(int)
+   */
+  @Override
+  public double getLongitude(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_LONGITUDE, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getElevation(int)
+   */
+  @Override
+  public double getElevation(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_ELEVATION, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getNsRadius(int)
+   */
+  @Override
+  public double getNsRadius(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_NS_RADIUS, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getEwRadius(int)
+   */
+  @Override
+  public double getEwRadius(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_EW_RADIUS, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getVertRadius(int)
+   */
+  @Override
+  public double getVertRadius(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_VERT_RADIUS, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getHeading(int)
+   */
+  @Override
+  public double getHeading(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_HEADING, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getTilt(int)
+   */
+  @Override
+  public double getTilt(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_TILT, i));
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getRoll(int)
+   */
+  @Override
+  public double getRoll(int i) {
+    return this.buffer.getDouble(this.doubleAt(LayoutFormat.COL_ROLL, i));
+  }
+}
@@ -0,0 +1,115 @@
+package _workspace.shapes.layout;
+
+import _workspace.shapes.ConnectorDomeShape;
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.FlatDomeShape;
+import _workspace.shapes.IShape;
+
+/**
+ * Kinds of shapes that can be stored in a layout file
+ *
+ * @author viorel.florian
+ */
+public enum ShapeKind {
+
+  /** plain dome */
+  DOME((byte) 1, "Dome"),
+
+  /** flat dome (half height) */
+  FLAT_DOME((byte) 2, "Flat Dome"),
+
+  /** connector dome */
+  CONNECTOR_DOME((byte) 3, "Connector Dome");
+
+  /** code written to file */
+  private final byte code;
+
+  /** name prefix used by the legacy .mbc files */
+  private final String legacyPrefix;
+
+  /** kinds indexed by code, avoids the values() copy on every lookup */
+  private static final ShapeKind[] BY_CODE = new ShapeKind[4];
+
+  static {
+    for (ShapeKind kind : values()) {
+      BY_CODE[kind.code] = kind;
+    }
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param code
+   * @param legacyPrefix
+   */
+  private ShapeKind(byte code, String legacyPrefix) {
+    this.code = code;
+    this.legacyPrefix = legacyPrefix;
+  }
+
+  /**
+   * Get code.
+   *
+   * @return code
+   */
+  public byte getCode() {
+    return this.code;
+  }
+
+  /**
+   * Get kind by file code
+   *
+   * @param code
+   *
+   * @return kind
+   *
+   * @throws IllegalArgumentException if the code is unknown
+   */
+  public static ShapeKind fromCode(byte code) {
+    ShapeKind kind = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    if (kind == null) {
+      throw new IllegalArgumentException("Unknown shape kind: " + code);
+    }
+    return kind;
+  }
+
+  /**
+   * Get kind of a shape instance
+   *
+   * @param shape
+   *
+   * @return kind, or <code>null</code> if the shape can not be stored in a layout
+   */
+  public static ShapeKind of(IShape shape) {
+    if (shape instanceof FlatDomeShape) {
+      return FLAT_DOME;
+    }
+    if (shape instanceof ConnectorDomeShape) {
+      return CONNECTOR_DOME;
+    }
+    if (shape instanceof DomeShape) {
+      return DOME;
+    }
+    return null;
+  }
+
+  /**
+   * Get kind from a legacy shape name ("Dome 01", "Flat Dome 02", ...)
+   *
+   * @param name
+   *
+   * @return kind, or <code>null</code> if the name matches no kind
+   */
+  public static ShapeKind fromLegacyName(String name) {
+    if (name == null) {
+      return null;
+    }
+    // longer prefixes first, "Dome" would match all of them otherwise
+    for (ShapeKind kind : new ShapeKind[] { FLAT_DOME, CONNECTOR_DOME, DOME }) {
+      if (name.regionMatches(true, 0, kind.legacyPrefix, 0, kind.legacyPrefix.length())) {
+        return kind;
+      }
+    }
+    return null;
+  }
+}
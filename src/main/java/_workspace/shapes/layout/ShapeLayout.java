@@ -0,0 +1,364 @@
+package _workspace.shapes.layout;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.Ellipsoid;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import _workspace.shapes.IShape;
+
+/**
+ * Column oriented, in memory table of shapes. One row per shape, one primitive array per column.
+ * <p>
+ * This is the in memory form of a layout file (see {@link LayoutFormat}).
+ *
+ * @author viorel.florian
+ */
+public class ShapeLayout implements ShapeTable {
+
+  /** initial capacity */
+  private static final int DEFAULT_CAPACITY = 64;
+
+  /** size */
+  private int size = 0;
+
+  /** kinds */
+  private ShapeKind[] kinds;
+
+  /** identifiers */
+  private String[] identifiers;
+
+  /** latitudes, in degrees */
+  private double[] latitudes;
+
+  /** longitudes, in degrees */
+  private double[] longitudes;
+
+  /** elevations, in meters */
+  private double[] elevations;
+
+  /** north-south radii */
+  private double[] nsRadii;
+
+  /** east-west radii */
+  private double[] ewRadii;
+
+  /** vertical radii */
+  private double[] vertRadii;
+
+  /** headings, in degrees */
+  private double[] headings;
+
+  /** tilts, in degrees */
+  private double[] tilts;
+
+  /** rolls, in degrees */
+  private double[] rolls;
+
+  /**
+   * Constructs a new instance.
+   */
+  public ShapeLayout() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param capacity expected number of shapes
+   */
+  public ShapeLayout(int capacity) {
+    int c = Math.max(capacity, 1);
+    this.kinds = new ShapeKind[c];
+    this.identifiers = new String[c];
+    this.latitudes = new double[c];
+    this.longitudes = new double[c];
+    this.elevations = new double[c];
+    this.nsRadii = new double[c];
+    this.ewRadii = new double[c];
+    this.vertRadii = new double[c];
+    this.headings = new double[c];
+    this.tilts = new double[c];
+    this.rolls = new double[c];
+  }
+
+  /**
+   * Builds a layout from the given shapes. Shapes that can not be stored in a layout are skipped.
+   *
+   * @param shapes
+   *
+   * @return new layout
+   */
+  public static ShapeLayout fromShapes(Collection<? extends IShape> shapes) {
+    ShapeLayout layout = new ShapeLayout(shapes.size());
+    for (IShape shape : shapes) {
+      layout.add(shape);
+    }
+    return layout;
+  }
+
+  /**
+   * Copies all rows of the given table
+   *
+   * @param table
+   *
+   * @return new layout
+   */
+  public static ShapeLayout copyOf(ShapeTable table) {
+    int n = table.size();
+    ShapeLayout layout = new ShapeLayout(n);
+    for (int i = 0; i < n; i++) {
+      layout.add(table.getKind(i), table.getIdentifier(i), table.getLatitude(i), table.getLongitude(i),
+          table.getElevation(i), table.getNsRadius(i), table.getEwRadius(i), table.getVertRadius(i),
+          table.getHeading(i), table.getTilt(i), table.getRoll(i));
+    }
+    return layout;
+  }
+
+  /**
+   * Adds a row describing the given shape
+   *
+   * @param shape
+   *
+   * @return <code>true</code> if the shape was added, <code>false</code> if it can not be stored
+   */
+  public boolean add(IShape shape) {
+    ShapeKind kind = ShapeKind.of(shape);
+    if (kind == null || !(shape instanceof Ellipsoid)) {
+      return false;
+    }
+
+    Ellipsoid e = (Ellipsoid) shape;
+    Position pos = e.getCenterPosition();
+    this.add(kind, shape.getIdentifier(), pos.getLatitude().getDegrees(), pos.getLongitude().getDegrees(),
+        pos.getElevation(), e.getNorthSouthRadius(), e.getEastWestRadius(), e.getVerticalRadius(),
+        e.getHeading().getDegrees(), e.getTilt().getDegrees(), e.getRoll().getDegrees());
+    return true;
+  }
+
+  /**
+   * Adds a row
+   *
+   * @return index of the new row
+   */
+  public int add(ShapeKind kind, String identifier, double latitude, double longitude, double elevation,
+      double nsRadius, double ewRadius, double vertRadius, double heading, double tilt, double roll) {
+    this.ensureCapacity(this.size + 1);
+    int i = this.size++;
+    this.kinds[i] = kind;
+    this.identifiers[i] = identifier;
+    this.latitudes[i] = latitude;
+    this.longitudes[i] = longitude;
+    this.elevations[i] = elevation;
+    this.nsRadii[i] = nsRadius;
+    this.ewRadii[i] = ewRadius;
+    this.vertRadii[i] = vertRadius;
+    this.headings[i] = heading;
+    this.tilts[i] = tilt;
+    this.rolls[i] = roll;
+    return i;
+  }
+
+  /**
+   * Overwrites a row
+   *
+   * @param i row
+   */
+  public void set(int i, ShapeKind kind, String identifier, double latitude, double longitude, double elevation,
+      double nsRadius, double ewRadius, double vertRadius, double heading, double tilt, double roll) {
+    if (i < 0 || i >= this.size) {
+      throw new IndexOutOfBoundsException("Row " + i + " of " + this.size);
+    }
+    this.kinds[i] = kind;
+    this.identifiers[i] = identifier;
+    this.latitudes[i] = latitude;
+    this.longitudes[i] = longitude;
+    this.elevations[i] = elevation;
+    this.nsRadii[i] = nsRadius;
+    this.ewRadii[i] = ewRadius;
+    this.vertRadii[i] = vertRadius;
+    this.headings[i] = heading;
+    this.tilts[i] = tilt;
+    this.rolls[i] = roll;
+  }
+
+  /**
+   * Grows all columns so they can hold at least <code>capacity</code> rows
+   *
+   * @param capacity
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity <= this.kinds.length) {
+      return;
+    }
+    int c = Math.max(capacity, this.kinds.length * 2);
+    this.kinds = Arrays.copyOf(this.kinds, c);
+    this.identifiers = Arrays.copyOf(this.identifiers, c);
+    this.latitudes = Arrays.copyOf(this.latitudes, c);
+    this.longitudes = Arrays.copyOf(this.longitudes, c);
+    this.elevations = Arrays.copyOf(this.elevations, c);
+    this.nsRadii = Arrays.copyOf(this.nsRadii, c);
+    this.ewRadii = Arrays.copyOf(this.ewRadii, c);
+    this.vertRadii = Arrays.copyOf(this.vertRadii, c);
+    this.headings = Arrays.copyOf(this.headings, c);
+    this.tilts = Arrays.copyOf(this.tilts, c);
+    this.rolls = Arrays.copyOf(this.rolls, c);
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#size()
+   */
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getKind(int)
+   */
+  @Override
+  public ShapeKind getKind(int i) {
+    return this.kinds[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getIdentifier(int)
+   */
+  @Override
+  public String getIdentifier(int i) {
+    return this.identifiers[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getLatitude(int)
+   */
+  @Override
+  public double getLatitude(int i) {
+    return this.latitudes[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getLongitude(int)
+   */
+  @Override
+  public double getLongitude(int i) {
+    return this.longitudes[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getElevation(int)
+   */
+  @Override
+  public double getElevation(int i) {
+    return this.elevations[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getNsRadius(int)
+   */
+  @Override
+  public double getNsRadius(int i) {
+    return this.nsRadii[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getEwRadius(int)
+   */
+  @Override
+  public double getEwRadius(int i) {
+    return this.ewRadii[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getVertRadius(int)
+   */
+  @Override
+  public double getVertRadius(int i) {
+    return this.vertRadii[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getHeading(int)
+   */
+  @Override
+  public double getHeading(int i) {
+    return this.headings[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getTilt(int)
+   */
+  @Override
+  public double getTilt(int i) {
+    return this.tilts[i];
+  }
+
+  /**
+   * @see _workspace.shapes.layout.ShapeTable#getRoll(int)
+   */
+  @Override
+  public double getRoll(int i) {
+    return this.rolls[i];
+  }
+
+  /**
+   * Direct access to a double column, used by the writer. Only the first {@link #size()} values are valid.
+   *
+   * @param column one of the <code>LayoutFormat.COL_*</code> constants
+   *
+   * @return backing array of the column
+   */
+  double[] column(int column) {
+    switch (column) {
+      case LayoutFormat.COL_LATITUDE:
+        return this.latitudes;
+      case LayoutFormat.COL_LONGITUDE:
+        return this.longitudes;
+      case LayoutFormat.COL_ELEVATION:
+        return this.elevations;
+      case LayoutFormat.COL_NS_RADIUS:
+        return this.nsRadii;
+      case LayoutFormat.COL_EW_RADIUS:
+        return this.ewRadii;
+      case LayoutFormat.COL_VERT_RADIUS:
+        return this.vertRadii;
+      case LayoutFormat.COL_HEADING:
+        return this.headings;
+      case LayoutFormat.COL_TILT:
+        return this.tilts;
+      case LayoutFormat.COL_ROLL:
+        return this.rolls;
+      default:
+        throw new IllegalArgumentException("Unknown column: " + column);
+    }
+  }
+
+  /**
+   * Sets the row count after the columns have been filled directly, used by the reader.
+   *
+   * @param size
+   */
+  void setSize(int size) {
+    this.ensureCapacity(size);
+    this.size = size;
+  }
+
+  /**
+   * Direct access to the kind column, used by the reader and writer.
+   *
+   * @return backing array of the column
+   */
+  ShapeKind[] kindColumn() {
+    return this.kinds;
+  }
+
+  /**
+   * Direct access to the identifier column, used by the reader and writer.
+   *
+   * @return backing array of the column
+   */
+  String[] identifierColumn() {
+    return this.identifiers;
+  }
+}
@@ -0,0 +1,80 @@
+package _workspace.shapes.layout;
+
+/**
+ * Read access to a table of shape rows, no matter where the rows are stored
+ *
+ * @author viorel.florian
+ */
+public interface ShapeTable {
+
+  /**
+   * @return number of rows
+   */
+  public int size();
+
+  /**
+   * @param i row
+   * @return kind
+   */
+  public ShapeKind getKind(int i);
+
+  /**
+   * @param i row
+   * @return identifier
+   */
+  public String getIdentifier(int i);
+
+  /**
+   * @param i row
+   * @return latitude in degrees
+   */
+  public double getLatitude(int i);
+
+  /**
+   * @param i row
+   * @return longitude in degrees
+   */
+  public double getLongitude(int i);
+
+  /**
+   * @param i row
+   * @return elevation in meters
+   */
+  public double getElevation(int i);
+
+  /**
+   * @param i row
+   * @return north-south radius
+   */
+  public double getNsRadius(int i);
+
+  /**
+   * @param i row
+   * @return east-west radius
+   */
+  public double getEwRadius(int i);
+
+  /**
+   * @param i row
+   * @return vertical radius
+   */
+  public double getVertRadius(int i);
+
+  /**
+   * @param i row
+   * @return heading in degrees
+   */
+  public double getHeading(int i);
+
+  /**
+   * @param i row
+   * @return tilt in degrees
+   */
+  public double getTilt(int i);
+
+  /**
+   * @param i row
+   * @return roll in degrees
+   */
+  public double getRoll(int i);
+}
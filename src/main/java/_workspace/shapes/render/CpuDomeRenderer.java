@@ -0,0 +1,391 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.airspaces.Geometry;
+import gov.nasa.worldwind.util.OGLStackHandler;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+import javax.media.opengl.fixedfunc.GLLightingFunc;
+import javax.media.opengl.fixedfunc.GLPointerFunc;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Draws the dome instances without shaders: the unit mesh is copied once per instance, transformed on the
+ * CPU, and the whole population goes to the card in a single draw call.
+ * <p>
+ * Only the instances in the dirty range of {@link DomeInstances} are transformed again, the others keep
+ * their vertices. {@link #expand(DomeInstances, Geometry)} does not need GL and can be checked headless.
+ * All the instances share one mesh detail; the {@link DomeLod} only decides which are drawn, and
+ * {@link #drawProxies(DrawContext, DomeInstances, DomeLod)} draws the small ones as points for both
+ * renderers.
+ *
+ * @author viorel.florian
+ */
+public class CpuDomeRenderer {
+
+  /** unit mesh the arrays were built for */
+  private Geometry mesh;
+
+  /** unit mesh vertices, x y z */
+  private float[] unitVertices;
+
+  /** unit mesh normals, x y z */
+  private float[] unitNormals;
+
+  /** unit mesh triangles */
+  private int[] unitIndices;
+
+  /** transformed vertices of all the instances, relative to the origin */
+  private FloatBuffer vertices;
+
+  /** transformed normals of all the instances */
+  private FloatBuffer normals;
+
+  /** colors of all the instances, RGBA per vertex */
+  private FloatBuffer colors;
+
+  /** triangles of all the instances */
+  private IntBuffer indices;
+
+  /** triangles of the instances drawn this frame */
+  private IntBuffer visibleIndices;
+
+  /** positions then colors of the points drawn this frame */
+  private FloatBuffer points;
+
+  /** instances the buffers can hold */
+  private int capacity = 0;
+
+  /** layout of the instances when last expanded, see {@link DomeInstances#getLayout()} */
+  private int layout = -1;
+
+  /** instances expanded */
+  private int count = 0;
+
+  /** scratch point */
+  private final float[] point = new float[3];
+
+  /**
+   * Constructs a new instance.
+   */
+  public CpuDomeRenderer() {
+    super();
+  }
+
+  /**
+   * Forgets what was expanded, the next expand transforms every instance
+   */
+  public void invalidate() {
+    this.layout = -1;
+  }
+
+  /**
+   * Brings the arrays up to date with the instances and clears their dirty range. Call it under the lock
+   * of the instances.
+   *
+   * @param instances
+   * @param unitMesh shared unit mesh, see {@link UnitMeshCache}
+   *
+   * @return number of instances transformed
+   */
+  public int expand(DomeInstances instances, Geometry unitMesh) {
+    int size = instances.size();
+    boolean full = unitMesh != this.mesh || instances.getLayout() != this.layout || size > this.capacity;
+    if (unitMesh != this.mesh) {
+      this.readMesh(unitMesh);
+      this.capacity = 0;
+    }
+    if (size > this.capacity) {
+      this.allocate(Math.max(size, this.capacity * 2));
+    }
+    if (size > this.count) {
+      // triangles depend on the slot only
+      this.fillIndices(this.count, size);
+    }
+
+    int from = full ? 0 : instances.getDirtyFrom();
+    int to = full ? size : instances.getDirtyTo();
+    for (int slot = from; slot < to; slot++) {
+      this.expand(instances, slot);
+    }
+    this.layout = instances.getLayout();
+    this.count = size;
+    instances.clearDirty();
+    return Math.max(0, to - from);
+  }
+
+  /**
+   * @param instances
+   * @param slot
+   */
+  private void expand(DomeInstances instances, int slot) {
+    float[] data = instances.getData();
+    int c = slot * DomeInstances.FLOATS_PER_INSTANCE + 12;
+    int n = this.unitVertices.length / 3;
+    int base = slot * n;
+    for (int v = 0; v < n; v++) {
+      int i = v * 3;
+      instances.transform(slot, this.unitVertices[i], this.unitVertices[i + 1], this.unitVertices[i + 2],
+          this.point, 0);
+      this.vertices.put((base + v) * 3, this.point[0]);
+      this.vertices.put((base + v) * 3 + 1, this.point[1]);
+      this.vertices.put((base + v) * 3 + 2, this.point[2]);
+
+      // normalized by GL
+      instances.transformNormal(slot, this.unitNormals[i], this.unitNormals[i + 1], this.unitNormals[i + 2],
+          this.point, 0);
+      this.normals.put((base + v) * 3, this.point[0]);
+      this.normals.put((base + v) * 3 + 1, this.point[1]);
+      this.normals.put((base + v) * 3 + 2, this.point[2]);
+
+      for (int k = 0; k < 4; k++) {
+        this.colors.put((base + v) * 4 + k, data[c + k]);
+      }
+    }
+  }
+
+  /**
+   * @param unitMesh
+   */
+  private void readMesh(Geometry unitMesh) {
+    FloatBuffer v = ((FloatBuffer) unitMesh.getBuffer(Geometry.VERTEX)).duplicate();
+    v.rewind();
+    this.unitVertices = new float[unitMesh.getCount(Geometry.VERTEX) * 3];
+    v.get(this.unitVertices);
+
+    FloatBuffer n = ((FloatBuffer) unitMesh.getBuffer(Geometry.NORMAL)).duplicate();
+    n.rewind();
+    // one normal per vertex, the normal count of the unit sphere is not reliable
+    this.unitNormals = new float[this.unitVertices.length];
+    n.get(this.unitNormals);
+
+    IntBuffer e = ((IntBuffer) unitMesh.getBuffer(Geometry.ELEMENT)).duplicate();
+    e.rewind();
+    this.unitIndices = new int[unitMesh.getCount(Geometry.ELEMENT)];
+    e.get(this.unitIndices);
+
+    this.mesh = unitMesh;
+    this.count = 0;
+  }
+
+  /**
+   * @param instances number of instances to hold
+   */
+  private void allocate(int instances) {
+    int n = this.unitVertices.length / 3;
+    this.vertices = Buffers.newDirectFloatBuffer(instances * n * 3);
+    this.normals = Buffers.newDirectFloatBuffer(instances * n * 3);
+    this.colors = Buffers.newDirectFloatBuffer(instances * n * 4);
+    this.indices = Buffers.newDirectIntBuffer(instances * this.unitIndices.length);
+    this.visibleIndices = Buffers.newDirectIntBuffer(instances * this.unitIndices.length);
+    this.capacity = instances;
+    this.count = 0;
+  }
+
+  /**
+   * @param from first slot, inclusive
+   * @param to last slot, exclusive
+   */
+  private void fillIndices(int from, int to) {
+    int n = this.unitVertices.length / 3;
+    int ni = this.unitIndices.length;
+    for (int slot = from; slot < to; slot++) {
+      for (int k = 0; k < ni; k++) {
+        this.indices.put(slot * ni + k, slot * n + this.unitIndices[k]);
+      }
+    }
+  }
+
+  /**
+   * Get the expanded vertices, for checks.
+   *
+   * @return vertices, x y z relative to the origin of the instances
+   */
+  public FloatBuffer getVertices() {
+    return this.vertices;
+  }
+
+  /**
+   * Get the expanded normals, for checks.
+   *
+   * @return normals, x y z, not normalized
+   */
+  public FloatBuffer getNormals() {
+    return this.normals;
+  }
+
+  /**
+   * Get number of instances expanded.
+   *
+   * @return count
+   */
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Expands then draws the instances the level of detail shows as meshes. Call it under the lock of the
+   * instances, after their update and classification.
+   *
+   * @param dc
+   * @param instances
+   * @param unitMesh
+   * @param lod
+   */
+  public void draw(DrawContext dc, DomeInstances instances, Geometry unitMesh, DomeLod lod) {
+    this.expand(instances, unitMesh);
+    int visible = this.collectVisible(lod);
+    if (visible == 0) {
+      return;
+    }
+
+    GL2 gl = dc.getGL().getGL2();
+    OGLStackHandler ogsh = new OGLStackHandler();
+    ogsh.pushAttrib(gl, GL2.GL_ENABLE_BIT | GL2.GL_LIGHTING_BIT | GL2.GL_COLOR_BUFFER_BIT
+        | GL2.GL_DEPTH_BUFFER_BIT | GL2.GL_CURRENT_BIT);
+    ogsh.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+    ogsh.pushModelview(gl);
+    try {
+      beginDrawing(dc, gl);
+      loadModelview(dc, gl, instances);
+      gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+      gl.glEnableClientState(GLPointerFunc.GL_NORMAL_ARRAY);
+      gl.glEnableClientState(GLPointerFunc.GL_COLOR_ARRAY);
+      gl.glVertexPointer(3, GL.GL_FLOAT, 0, this.vertices.rewind());
+      gl.glNormalPointer(GL.GL_FLOAT, 0, this.normals.rewind());
+      gl.glColorPointer(4, GL.GL_FLOAT, 0, this.colors.rewind());
+      gl.glDrawElements(GL.GL_TRIANGLES, visible, GL.GL_UNSIGNED_INT, this.visibleIndices.rewind());
+    } finally {
+      ogsh.pop(gl);
+    }
+  }
+
+  /**
+   * Copies the triangles of the slots drawn as meshes
+   *
+   * @param lod
+   * @return number of indices to draw
+   */
+  private int collectVisible(DomeLod lod) {
+    int ni = this.unitIndices.length;
+    int[] order = lod.getOrder();
+    int n = lod.getMeshCount();
+    if (n == this.count) {
+      // everything is drawn, in slot order
+      this.indices.rewind();
+      this.visibleIndices.rewind();
+      this.indices.limit(n * ni);
+      this.visibleIndices.put(this.indices);
+      this.indices.clear();
+      return n * ni;
+    }
+    int[] triangles = new int[ni];
+    this.visibleIndices.clear();
+    for (int k = 0; k < n; k++) {
+      this.indices.position(order[k] * ni);
+      this.indices.get(triangles);
+      this.visibleIndices.put(triangles);
+    }
+    this.indices.clear();
+    return n * ni;
+  }
+
+  /**
+   * Draws the domes the level of detail shows as points, with their color. Call it under the lock of the
+   * instances, after their classification.
+   *
+   * @param dc
+   * @param instances
+   * @param lod
+   */
+  public void drawProxies(DrawContext dc, DomeInstances instances, DomeLod lod) {
+    int n = lod.getProxyCount();
+    if (n == 0) {
+      return;
+    }
+    if (this.points == null || this.points.capacity() < n * 7) {
+      this.points = Buffers.newDirectFloatBuffer(Math.max(n, 256) * 7);
+    }
+    float[] data = instances.getData();
+    int[] proxies = lod.getProxies();
+    this.points.clear();
+    for (int k = 0; k < n; k++) {
+      int i = proxies[k] * DomeInstances.FLOATS_PER_INSTANCE;
+      this.points.put(data[i + 3]).put(data[i + 7]).put(data[i + 11]);
+    }
+    for (int k = 0; k < n; k++) {
+      int i = proxies[k] * DomeInstances.FLOATS_PER_INSTANCE;
+      this.points.put(data, i + 12, 4);
+    }
+
+    GL2 gl = dc.getGL().getGL2();
+    OGLStackHandler ogsh = new OGLStackHandler();
+    ogsh.pushAttrib(gl, GL2.GL_ENABLE_BIT | GL2.GL_COLOR_BUFFER_BIT | GL2.GL_DEPTH_BUFFER_BIT
+        | GL2.GL_POINT_BIT | GL2.GL_CURRENT_BIT);
+    ogsh.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+    ogsh.pushModelview(gl);
+    try {
+      gl.glEnable(GL.GL_DEPTH_TEST);
+      gl.glEnable(GL.GL_BLEND);
+      gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+      gl.glEnable(GL2.GL_POINT_SMOOTH);
+      gl.glPointSize((float) lod.getProxyPixels());
+      loadModelview(dc, gl, instances);
+      gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+      gl.glEnableClientState(GLPointerFunc.GL_COLOR_ARRAY);
+      gl.glVertexPointer(3, GL.GL_FLOAT, 0, this.points.position(0));
+      gl.glColorPointer(4, GL.GL_FLOAT, 0, ((FloatBuffer) this.points.position(n * 3)).slice());
+      gl.glDrawArrays(GL.GL_POINTS, 0, n);
+    } finally {
+      ogsh.pop(gl);
+    }
+  }
+
+  /**
+   * Lighting from the eye, depth tested, blended, as WorldWind draws its shapes
+   *
+   * @param dc
+   * @param gl
+   */
+  static void beginDrawing(DrawContext dc, GL2 gl) {
+    gl.glEnable(GL.GL_DEPTH_TEST);
+    gl.glDepthMask(true);
+    gl.glEnable(GL.GL_BLEND);
+    gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+
+    gl.glMatrixMode(GL2.GL_MODELVIEW);
+    gl.glLoadIdentity();
+    gl.glEnable(GLLightingFunc.GL_LIGHTING);
+    gl.glEnable(GLLightingFunc.GL_LIGHT1);
+    gl.glEnable(GLLightingFunc.GL_NORMALIZE);
+    gl.glLightfv(GLLightingFunc.GL_LIGHT1, GLLightingFunc.GL_POSITION, new float[] { 0f, 0f, 1f, 0f }, 0);
+    gl.glLightfv(GLLightingFunc.GL_LIGHT1, GLLightingFunc.GL_DIFFUSE, new float[] { 1f, 1f, 1f, 1f }, 0);
+    gl.glLightfv(GLLightingFunc.GL_LIGHT1, GLLightingFunc.GL_AMBIENT, new float[] { 0.3f, 0.3f, 0.3f, 1f }, 0);
+    gl.glLightModeli(GL2.GL_LIGHT_MODEL_TWO_SIDE, GL.GL_FALSE);
+    gl.glEnable(GLLightingFunc.GL_COLOR_MATERIAL);
+    gl.glColorMaterial(GL.GL_FRONT, GLLightingFunc.GL_AMBIENT_AND_DIFFUSE);
+  }
+
+  /**
+   * Loads the modelview of the view translated to the origin of the instances, computed in double so the
+   * vertices keep their precision far from the center of the globe
+   *
+   * @param dc
+   * @param gl
+   * @param instances
+   */
+  static void loadModelview(DrawContext dc, GL2 gl, DomeInstances instances) {
+    Matrix modelview = dc.getView().getModelviewMatrix().multiply(
+        Matrix.fromTranslation(instances.getOrigin()));
+    double[] m = new double[16];
+    modelview.toArray(m, 0, false);
+    gl.glMatrixMode(GL2.GL_MODELVIEW);
+    gl.glLoadMatrixd(m, 0);
+  }
+}
@@ -0,0 +1,20 @@
+package _workspace.shapes.render;
+
+import _workspace.shapes.AbstractDomeShape;
+
+/**
+ * Leaves domes out of a frame, when something else stands for them.
+ *
+ * @author viorel.florian
+ */
+public interface DomeFilter {
+
+  /**
+   * Called from the render thread, once per dome and frame: keep it quick
+   *
+   * @param shape
+   *
+   * @return <code>true</code> if the dome is not drawn this frame
+   */
+  public boolean hides(AbstractDomeShape shape);
+}
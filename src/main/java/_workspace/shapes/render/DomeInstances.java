@@ -0,0 +1,419 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.Material;
+import gov.nasa.worldwind.render.ShapeAttributes;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import _workspace.shapes.AbstractDomeShape;
+
+/**
+ * Per instance data of the domes drawn by an {@link InstancedDomeLayer}, kept without any GL so it can be
+ * used and checked headless.
+ * <p>
+ * Each dome has a slot of {@link #FLOATS_PER_INSTANCE} floats: the first three rows of its render matrix
+ * (unit sphere to world, radii and orientation included, translated by {@link #getOrigin()} so floats
+ * keep their precision), then its RGBA color. Slots are packed: a removed dome is replaced by the last one.
+ * <p>
+ * Only the slots of the domes that changed are recomputed; {@link #getDirtyFrom()} and
+ * {@link #getDirtyTo()} tell the renderers which part of the data to upload again. Hidden and highlighted
+ * domes get an empty transform, WorldWind draws highlighted domes itself with their highlight attributes.
+ * Colors are read with the geometry: a new color shows after the next geometry or highlight change.
+ *
+ * @author viorel.florian
+ */
+public class DomeInstances {
+
+  /** floats per instance: three rows of the transform, then the color */
+  public static final int FLOATS_PER_INSTANCE = 16;
+
+  /** domes, by slot */
+  private AbstractDomeShape[] shapes = new AbstractDomeShape[64];
+
+  /** geometry version of each slot when last computed */
+  private int[] versions = new int[64];
+
+  /** slot was hidden or highlighted when last computed */
+  private boolean[] skipped = new boolean[64];
+
+  /** bounding radius of each slot, 0 if not drawn */
+  private float[] radii = new float[64];
+
+  /** slot needs to be computed again */
+  private boolean[] stale = new boolean[64];
+
+  /** dome -> slot */
+  private final Map<AbstractDomeShape, Integer> slots = new IdentityHashMap<AbstractDomeShape, Integer>();
+
+  /** instance data, FLOATS_PER_INSTANCE per slot */
+  private float[] data = new float[64 * FLOATS_PER_INSTANCE];
+
+  /** used slots */
+  private int count = 0;
+
+  /** first slot changed since the last upload, inclusive */
+  private int dirtyFrom = Integer.MAX_VALUE;
+
+  /** last slot changed since the last upload, exclusive */
+  private int dirtyTo = 0;
+
+  /** globe the transforms were computed on */
+  private Globe globe;
+
+  /** vertical exaggeration the transforms were computed with */
+  private double verticalExaggeration;
+
+  /** world point subtracted from every transform */
+  private Vec4 origin;
+
+  /** incremented when the data is reallocated or rebuilt */
+  private int layout = 0;
+
+  /**
+   * Constructs a new, empty, instance.
+   */
+  public DomeInstances() {
+    super();
+  }
+
+  /**
+   * Adds a dome
+   *
+   * @param shape
+   *
+   * @return <code>true</code> if it was not there yet
+   */
+  public synchronized boolean add(AbstractDomeShape shape) {
+    if (this.slots.containsKey(shape)) {
+      return false;
+    }
+    if (this.count == this.shapes.length) {
+      this.grow(this.count * 2);
+    }
+    int slot = this.count++;
+    this.shapes[slot] = shape;
+    this.slots.put(shape, Integer.valueOf(slot));
+    this.markStale(slot);
+    return true;
+  }
+
+  /**
+   * Removes a dome, the last one takes its slot
+   *
+   * @param shape
+   *
+   * @return <code>true</code> if it was there
+   */
+  public synchronized boolean remove(AbstractDomeShape shape) {
+    Integer removed = this.slots.remove(shape);
+    if (removed == null) {
+      return false;
+    }
+    int slot = removed.intValue();
+    int last = --this.count;
+    if (slot != last) {
+      AbstractDomeShape moved = this.shapes[last];
+      this.shapes[slot] = moved;
+      this.versions[slot] = this.versions[last];
+      this.skipped[slot] = this.skipped[last];
+      this.radii[slot] = this.radii[last];
+      System.arraycopy(this.data, last * FLOATS_PER_INSTANCE, this.data, slot * FLOATS_PER_INSTANCE,
+          FLOATS_PER_INSTANCE);
+      this.stale[slot] = this.stale[last];
+      this.slots.put(moved, Integer.valueOf(slot));
+      this.markDirty(slot);
+    }
+    this.shapes[last] = null;
+    this.stale[last] = false;
+    return true;
+  }
+
+  /**
+   * Removes all the domes
+   */
+  public synchronized void clear() {
+    Arrays.fill(this.shapes, 0, this.count, null);
+    Arrays.fill(this.stale, 0, this.count, false);
+    this.slots.clear();
+    this.count = 0;
+    this.dirtyFrom = Integer.MAX_VALUE;
+    this.dirtyTo = 0;
+    this.layout++;
+  }
+
+  /**
+   * @param shape
+   * @return <code>true</code> if the dome has a slot
+   */
+  public synchronized boolean contains(AbstractDomeShape shape) {
+    return this.slots.containsKey(shape);
+  }
+
+  /**
+   * Get number of domes.
+   *
+   * @return size
+   */
+  public synchronized int size() {
+    return this.count;
+  }
+
+  /**
+   * @param slot
+   * @return dome of the slot
+   */
+  public synchronized AbstractDomeShape getShape(int slot) {
+    return this.shapes[slot];
+  }
+
+  /**
+   * Get any dome, used to build the shared mesh.
+   *
+   * @return first dome, <code>null</code> if none
+   */
+  public synchronized AbstractDomeShape getFirst() {
+    return this.count == 0 ? null : this.shapes[0];
+  }
+
+  /**
+   * Brings the data up to date: the slots of the domes whose geometry or highlight changed since the last
+   * call are computed again, all of them if the globe or the exaggeration changed
+   *
+   * @param globe
+   * @param verticalExaggeration
+   *
+   * @return number of slots computed
+   */
+  public synchronized int update(Globe globe, double verticalExaggeration) {
+    if (this.count == 0) {
+      return 0;
+    }
+    if (globe != this.globe || verticalExaggeration != this.verticalExaggeration || this.origin == null) {
+      this.globe = globe;
+      this.verticalExaggeration = verticalExaggeration;
+      Matrix first = this.shapes[0].computeRenderMatrix(globe, verticalExaggeration);
+      this.origin = new Vec4(first.m14, first.m24, first.m34);
+      this.layout++;
+      Arrays.fill(this.stale, 0, this.count, true);
+    }
+
+    int computed = 0;
+    for (int slot = 0; slot < this.count; slot++) {
+      AbstractDomeShape shape = this.shapes[slot];
+      if (this.stale[slot] || this.versions[slot] != shape.getGeometryVersion()
+          || this.skipped[slot] != skip(shape)) {
+        this.compute(slot);
+        computed++;
+      }
+    }
+    return computed;
+  }
+
+  /**
+   * @param slot
+   */
+  private void compute(int slot) {
+    AbstractDomeShape shape = this.shapes[slot];
+    this.versions[slot] = shape.getGeometryVersion();
+    this.skipped[slot] = skip(shape);
+    this.stale[slot] = false;
+    this.markDirty(slot);
+
+    int i = slot * FLOATS_PER_INSTANCE;
+    if (this.skipped[slot]) {
+      Arrays.fill(this.data, i, i + FLOATS_PER_INSTANCE, 0f);
+      this.radii[slot] = 0f;
+      return;
+    }
+    this.radii[slot] = (float) Math.max(shape.getNorthSouthRadius(),
+        Math.max(shape.getEastWestRadius(), shape.getVerticalRadius()));
+
+    Matrix m = shape.computeRenderMatrix(this.globe, this.verticalExaggeration);
+    this.data[i] = (float) m.m11;
+    this.data[i + 1] = (float) m.m12;
+    this.data[i + 2] = (float) m.m13;
+    this.data[i + 3] = (float) (m.m14 - this.origin.x);
+    this.data[i + 4] = (float) m.m21;
+    this.data[i + 5] = (float) m.m22;
+    this.data[i + 6] = (float) m.m23;
+    this.data[i + 7] = (float) (m.m24 - this.origin.y);
+    this.data[i + 8] = (float) m.m31;
+    this.data[i + 9] = (float) m.m32;
+    this.data[i + 10] = (float) m.m33;
+    this.data[i + 11] = (float) (m.m34 - this.origin.z);
+
+    ShapeAttributes attributes = shape.getAttributes();
+    Material material = attributes != null ? attributes.getInteriorMaterial() : Material.WHITE;
+    Color diffuse = material.getDiffuse();
+    this.data[i + 12] = diffuse.getRed() / 255f;
+    this.data[i + 13] = diffuse.getGreen() / 255f;
+    this.data[i + 14] = diffuse.getBlue() / 255f;
+    this.data[i + 15] = attributes != null ? (float) attributes.getInteriorOpacity() : 1f;
+  }
+
+  /**
+   * @param shape
+   * @return <code>true</code> if the dome is not drawn as an instance
+   */
+  private static boolean skip(AbstractDomeShape shape) {
+    return !shape.isVisible() || shape.isHighlighted();
+  }
+
+  /**
+   * @param slot
+   */
+  private void markStale(int slot) {
+    this.stale[slot] = true;
+  }
+
+  /**
+   * @param slot
+   */
+  private void markDirty(int slot) {
+    this.dirtyFrom = Math.min(this.dirtyFrom, slot);
+    this.dirtyTo = Math.max(this.dirtyTo, slot + 1);
+  }
+
+  /**
+   * @param capacity
+   */
+  private void grow(int capacity) {
+    this.shapes = Arrays.copyOf(this.shapes, capacity);
+    this.versions = Arrays.copyOf(this.versions, capacity);
+    this.skipped = Arrays.copyOf(this.skipped, capacity);
+    this.radii = Arrays.copyOf(this.radii, capacity);
+    this.stale = Arrays.copyOf(this.stale, capacity);
+    this.data = Arrays.copyOf(this.data, capacity * FLOATS_PER_INSTANCE);
+    this.layout++;
+  }
+
+  /**
+   * Get the instance data, FLOATS_PER_INSTANCE per slot. Read it under the lock of this object.
+   *
+   * @return data, at least size() slots long
+   */
+  public float[] getData() {
+    return this.data;
+  }
+
+  /**
+   * Get first slot changed since the last {@link #clearDirty()}.
+   *
+   * @return slot, inclusive, <code>Integer.MAX_VALUE</code> if none
+   */
+  public synchronized int getDirtyFrom() {
+    return this.dirtyFrom;
+  }
+
+  /**
+   * Get last slot changed since the last {@link #clearDirty()}.
+   *
+   * @return slot, exclusive, 0 if none
+   */
+  public synchronized int getDirtyTo() {
+    return Math.min(this.dirtyTo, this.count);
+  }
+
+  /**
+   * Called by the renderer once the dirty slots are uploaded
+   */
+  public synchronized void clearDirty() {
+    this.dirtyFrom = Integer.MAX_VALUE;
+    this.dirtyTo = 0;
+  }
+
+  /**
+   * Get layout, changes when the data array is replaced or every slot is recomputed: renderers then
+   * upload everything.
+   *
+   * @return layout
+   */
+  public synchronized int getLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Get origin.
+   *
+   * @return world point the transforms are relative to, <code>null</code> before the first update
+   */
+  public synchronized Vec4 getOrigin() {
+    return this.origin;
+  }
+
+  /**
+   * Get the bounding radius of a slot.
+   *
+   * @param slot
+   * @return largest radius of the dome, in meters, 0 if it is not drawn as an instance
+   */
+  public float getRadius(int slot) {
+    return this.radii[slot];
+  }
+
+  /**
+   * Transforms a point of the unit mesh with the transform of a slot
+   *
+   * @param slot
+   * @param x
+   * @param y
+   * @param z
+   * @param out receives x, y, z relative to the origin, from offset
+   * @param offset
+   */
+  public void transform(int slot, float x, float y, float z, float[] out, int offset) {
+    int i = slot * FLOATS_PER_INSTANCE;
+    float[] d = this.data;
+    out[offset] = d[i] * x + d[i + 1] * y + d[i + 2] * z + d[i + 3];
+    out[offset + 1] = d[i + 4] * x + d[i + 5] * y + d[i + 6] * z + d[i + 7];
+    out[offset + 2] = d[i + 8] * x + d[i + 9] * y + d[i + 10] * z + d[i + 11];
+  }
+
+  /**
+   * Transforms a normal of the unit mesh with the inverse transpose of the transform of a slot. The
+   * transform is a rotation after a scale by the radii, so its inverse transpose divides each column by
+   * its squared length, the squared radius.
+   *
+   * @param slot
+   * @param x
+   * @param y
+   * @param z
+   * @param out receives x, y, z, not normalized, from offset
+   * @param offset
+   */
+  public void transformNormal(int slot, float x, float y, float z, float[] out, int offset) {
+    int i = slot * FLOATS_PER_INSTANCE;
+    float[] d = this.data;
+    x *= inverseSquare(d[i], d[i + 4], d[i + 8]);
+    y *= inverseSquare(d[i + 1], d[i + 5], d[i + 9]);
+    z *= inverseSquare(d[i + 2], d[i + 6], d[i + 10]);
+    out[offset] = d[i] * x + d[i + 1] * y + d[i + 2] * z;
+    out[offset + 1] = d[i + 4] * x + d[i + 5] * y + d[i + 6] * z;
+    out[offset + 2] = d[i + 8] * x + d[i + 9] * y + d[i + 10] * z;
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @param z
+   * @return 1 over the squared length of the column, 0 for the empty transform
+   */
+  private static float inverseSquare(float x, float y, float z) {
+    float square = x * x + y * y + z * z;
+    return square > 0 ? 1 / square : 0;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public synchronized String toString() {
+    return "Dome instances: " + this.count;
+  }
+}
@@ -0,0 +1,285 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.geom.Vec4;
+
+import java.util.Arrays;
+
+/**
+ * Level of detail of the domes, from their size on screen.
+ * <p>
+ * A dome outside the frustum or smaller than {@link #getCullPixels()} is not drawn. Below
+ * {@link #getProxyPixels()} it is drawn as a point of its color. Above, its unit mesh detail grows with its
+ * size so that a triangle edge stays around {@link #getEdgePixels()}, from {@link #MIN_DETAIL} to
+ * {@link #MAX_DETAIL} subdivisions.
+ * <p>
+ * {@link #classify(DomeInstances, LodView, DomeFilter)} sorts all the instances by level once per frame: the slots of
+ * each detail level follow each other in {@link #getOrder()}. No GL is needed, see {@link LodView}.
+ *
+ * @author viorel.florian
+ */
+public class DomeLod {
+
+  /** level of a dome that is not drawn */
+  public static final int CULLED = -2;
+
+  /** level of a dome drawn as a point */
+  public static final int PROXY = -1;
+
+  /** coarsest mesh */
+  public static final int MIN_DETAIL = 1;
+
+  /** finest mesh */
+  public static final int MAX_DETAIL = 4;
+
+  /** smaller domes are not drawn, in pixels */
+  private double cullPixels = 1;
+
+  /** smaller domes are drawn as points, in pixels */
+  private double proxyPixels = 6;
+
+  /** wanted length of a triangle edge, in pixels */
+  private double edgePixels = 16;
+
+  /** level of each slot, from the last classify */
+  private int[] levels = new int[0];
+
+  /** drawn slots, by level */
+  private int[] order = new int[0];
+
+  /** first index in order of each level */
+  private final int[] starts = new int[MAX_DETAIL + 2];
+
+  /** slots drawn as points */
+  private int[] proxies = new int[0];
+
+  /** number of slots drawn as points */
+  private int proxyCount = 0;
+
+  /** number of slots not drawn */
+  private int culledCount = 0;
+
+  /**
+   * Constructs a new instance with the default thresholds.
+   */
+  public DomeLod() {
+    super();
+  }
+
+  /**
+   * @param view
+   * @param center
+   * @param radius bounding radius
+   *
+   * @return {@link #CULLED}, {@link #PROXY} or the mesh detail
+   */
+  public int select(LodView view, Vec4 center, double radius) {
+    return this.select(view, center.x, center.y, center.z, radius);
+  }
+
+  /**
+   * @param view
+   * @param x
+   * @param y
+   * @param z
+   * @param radius bounding radius
+   *
+   * @return {@link #CULLED}, {@link #PROXY} or the mesh detail
+   */
+  public int select(LodView view, double x, double y, double z, double radius) {
+    if (radius <= 0 || !view.intersects(x, y, z, radius)) {
+      return CULLED;
+    }
+    double pixels = view.pixelSize(x, y, z, radius);
+    if (pixels < this.cullPixels) {
+      return CULLED;
+    }
+    if (pixels < this.proxyPixels) {
+      return PROXY;
+    }
+    return this.detailFor(pixels);
+  }
+
+  /**
+   * @param pixels diameter on screen
+   * @return mesh detail, each level halves the edges
+   */
+  public int detailFor(double pixels) {
+    // level 0 has about one edge per radius
+    double edges = pixels / 2 / this.edgePixels;
+    int detail = edges <= 1 ? 0 : (int) Math.ceil(Math.log(edges) / Math.log(2));
+    return Math.max(MIN_DETAIL, Math.min(MAX_DETAIL, detail));
+  }
+
+  /**
+   * Sorts the instances by level. Call it under the lock of the instances, after their update.
+   *
+   * @param instances
+   * @param view
+   * @param filter domes it hides are culled, <code>null</code> for none
+   */
+  public void classify(DomeInstances instances, LodView view, DomeFilter filter) {
+    int n = instances.size();
+    if (this.levels.length < n) {
+      int capacity = Math.max(n, this.levels.length * 2);
+      this.levels = new int[capacity];
+      this.order = new int[capacity];
+      this.proxies = new int[capacity];
+    }
+    Arrays.fill(this.starts, 0);
+    this.proxyCount = 0;
+    this.culledCount = 0;
+
+    float[] data = instances.getData();
+    Vec4 origin = instances.getOrigin();
+    for (int slot = 0; slot < n; slot++) {
+      int i = slot * DomeInstances.FLOATS_PER_INSTANCE;
+      int level = filter != null && filter.hides(instances.getShape(slot)) ? CULLED : this.select(view, origin.x
+          + data[i + 3], origin.y + data[i + 7], origin.z + data[i + 11], instances.getRadius(slot));
+      this.levels[slot] = level;
+      if (level >= 0) {
+        this.starts[level + 1]++;
+      } else if (level == PROXY) {
+        this.proxies[this.proxyCount++] = slot;
+      } else {
+        this.culledCount++;
+      }
+    }
+
+    for (int level = 1; level < this.starts.length; level++) {
+      this.starts[level] += this.starts[level - 1];
+    }
+    int[] next = Arrays.copyOf(this.starts, MAX_DETAIL + 1);
+    for (int slot = 0; slot < n; slot++) {
+      int level = this.levels[slot];
+      if (level >= 0) {
+        this.order[next[level]++] = slot;
+      }
+    }
+  }
+
+  /**
+   * Get the drawn slots, sorted by level.
+   *
+   * @return slots, see {@link #getStart(int)} and {@link #getCount(int)}
+   */
+  public int[] getOrder() {
+    return this.order;
+  }
+
+  /**
+   * @param detail
+   * @return index in {@link #getOrder()} of the first slot of that detail
+   */
+  public int getStart(int detail) {
+    return this.starts[detail];
+  }
+
+  /**
+   * @param detail
+   * @return number of slots of that detail
+   */
+  public int getCount(int detail) {
+    return this.starts[detail + 1] - this.starts[detail];
+  }
+
+  /**
+   * @return number of slots drawn as meshes
+   */
+  public int getMeshCount() {
+    return this.starts[MAX_DETAIL + 1];
+  }
+
+  /**
+   * Get the slots drawn as points.
+   *
+   * @return slots, {@link #getProxyCount()} of them
+   */
+  public int[] getProxies() {
+    return this.proxies;
+  }
+
+  /**
+   * Get proxyCount.
+   *
+   * @return number of slots drawn as points
+   */
+  public int getProxyCount() {
+    return this.proxyCount;
+  }
+
+  /**
+   * Get culledCount.
+   *
+   * @return number of slots not drawn
+   */
+  public int getCulledCount() {
+    return this.culledCount;
+  }
+
+  /**
+   * Get cullPixels.
+   *
+   * @return smallest size drawn, in pixels
+   */
+  public double getCullPixels() {
+    return this.cullPixels;
+  }
+
+  /**
+   * Set cullPixels.
+   *
+   * @param cullPixels smallest size drawn, in pixels
+   */
+  public void setCullPixels(double cullPixels) {
+    this.cullPixels = cullPixels;
+  }
+
+  /**
+   * Get proxyPixels.
+   *
+   * @return smallest size drawn as a mesh, in pixels
+   */
+  public double getProxyPixels() {
+    return this.proxyPixels;
+  }
+
+  /**
+   * Set proxyPixels.
+   *
+   * @param proxyPixels smallest size drawn as a mesh, in pixels
+   */
+  public void setProxyPixels(double proxyPixels) {
+    this.proxyPixels = proxyPixels;
+  }
+
+  /**
+   * Get edgePixels.
+   *
+   * @return wanted length of a triangle edge, in pixels
+   */
+  public double getEdgePixels() {
+    return this.edgePixels;
+  }
+
+  /**
+   * Set edgePixels.
+   *
+   * @param edgePixels wanted length of a triangle edge, in pixels
+   */
+  public void setEdgePixels(double edgePixels) {
+    this.edgePixels = edgePixels;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder("LOD meshes:");
+    for (int detail = MIN_DETAIL; detail <= MAX_DETAIL; detail++) {
+      text.append(' ').append(detail).append('=').append(this.getCount(detail));
+    }
+    return text.append(", points: ").append(this.proxyCount).append(", culled: ").append(this.culledCount)
+        .toString();
+  }
+}
@@ -0,0 +1,396 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.airspaces.Geometry;
+import gov.nasa.worldwind.util.OGLStackHandler;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+import javax.media.opengl.GL2ES2;
+import javax.media.opengl.GL2GL3;
+import javax.media.opengl.fixedfunc.GLPointerFunc;
+
+import utility.MyLogger;
+
+import com.jogamp.common.nio.Buffers;
+
+/**
+ * Draws the dome instances with one instanced draw call per mesh detail: the unit meshes are uploaded
+ * once, the instance data of {@link DomeInstances} goes to a texture buffer the vertex shader reads by
+ * <code>gl_InstanceID</code>, through the slots of that detail sorted by {@link DomeLod}.
+ * <p>
+ * JOGL 2.0 has no instanced vertex attributes, so the shader fetches the transform rows and the color
+ * from the texture buffer (GLSL 1.20 with <code>GL_EXT_gpu_shader4</code>). Only the dirty range of the
+ * instance data is uploaded again, the slot order is uploaded each frame. Check {@link #isSupported(GL)} first, {@link CpuDomeRenderer} draws
+ * the same data without shaders.
+ *
+ * @author viorel.florian
+ */
+public class GpuDomeRenderer {
+
+  /**
+   * reads the instance of the vertex, transforms and lights it, the normal with the inverse transpose of
+   * the transform (see {@link DomeInstances#transformNormal})
+   */
+  private static final String VERTEX_SHADER = "#version 120\n" //
+      + "#extension GL_EXT_gpu_shader4 : require\n" //
+      + "uniform samplerBuffer instances;\n" //
+      + "uniform samplerBuffer order;\n" //
+      + "uniform int first;\n" //
+      + "varying vec4 color;\n" //
+      + "void main() {\n" //
+      + "  int i = int(texelFetchBuffer(order, first + gl_InstanceID).x) * 4;\n" //
+      + "  vec4 r0 = texelFetchBuffer(instances, i);\n" //
+      + "  vec4 r1 = texelFetchBuffer(instances, i + 1);\n" //
+      + "  vec4 r2 = texelFetchBuffer(instances, i + 2);\n" //
+      + "  vec4 c = texelFetchBuffer(instances, i + 3);\n" //
+      + "  vec4 v = vec4(gl_Vertex.xyz, 1.0);\n" //
+      + "  vec3 s = r0.xyz * r0.xyz + r1.xyz * r1.xyz + r2.xyz * r2.xyz;\n" //
+      + "  vec3 u = gl_Normal / max(s, vec3(1e-20));\n" //
+      + "  vec3 n = vec3(dot(r0.xyz, u), dot(r1.xyz, u), dot(r2.xyz, u));\n" //
+      + "  float light = 0.3 + 0.7 * max(0.0, normalize(gl_NormalMatrix * n).z);\n" //
+      + "  color = vec4(c.rgb * light, c.a);\n" //
+      + "  gl_Position = gl_ModelViewProjectionMatrix * vec4(dot(r0, v), dot(r1, v), dot(r2, v), 1.0);\n" //
+      + "}\n";
+
+  /** writes the color of the instance */
+  private static final String FRAGMENT_SHADER = "#version 120\n" //
+      + "varying vec4 color;\n" //
+      + "void main() {\n" //
+      + "  gl_FragColor = color;\n" //
+      + "}\n";
+
+  /** GL names: program, instance data and its texture, slot order and its texture */
+  private int program, instanceBuffer, instanceTexture, orderBuffer, orderTexture;
+
+  /** GL names of the mesh vertices, normals and triangles, by detail */
+  private final int[][] meshBuffers = new int[DomeLod.MAX_DETAIL + 1][];
+
+  /** triangle indices in the mesh, by detail */
+  private final int[] elementCounts = new int[DomeLod.MAX_DETAIL + 1];
+
+  /** slot order, one slot per texel */
+  private FloatBuffer order;
+
+  /** instances the instance buffer can hold */
+  private int capacity = 0;
+
+  /** layout of the instances when last uploaded, see {@link DomeInstances#getLayout()} */
+  private int layout = -1;
+
+  /** shaders did not compile, the renderer is unusable */
+  private boolean failed = false;
+
+  /**
+   * Constructs a new instance, GL resources are created on the first draw.
+   */
+  public GpuDomeRenderer() {
+    super();
+  }
+
+  /**
+   * @param gl
+   * @return <code>true</code> if the context can draw instances from a texture buffer
+   */
+  public static boolean isSupported(GL gl) {
+    return gl.isGL2() && gl.isExtensionAvailable("GL_EXT_gpu_shader4")
+        && (gl.isExtensionAvailable("GL_ARB_draw_instanced") || gl.isExtensionAvailable("GL_EXT_draw_instanced"))
+        && (gl.isExtensionAvailable("GL_ARB_texture_buffer_object")
+        || gl.isExtensionAvailable("GL_EXT_texture_buffer_object"))
+        && gl.isFunctionAvailable("glDrawElementsInstanced") && gl.isFunctionAvailable("glTexBuffer");
+  }
+
+  /**
+   * Get failed.
+   *
+   * @return <code>true</code> if the shaders could not be built, use the CPU renderer instead
+   */
+  public boolean isFailed() {
+    return this.failed;
+  }
+
+  /**
+   * Forgets what was uploaded, the next draw uploads every instance
+   */
+  public void invalidate() {
+    this.layout = -1;
+  }
+
+  /**
+   * Uploads what changed then draws the instances the level of detail shows as meshes. Call it under the
+   * lock of the instances, after their update and classification.
+   *
+   * @param dc
+   * @param instances
+   * @param lod
+   * @param source builds the unit meshes missing from the {@link UnitMeshCache}
+   *
+   * @return <code>false</code> if nothing could be drawn, the shaders did not build
+   */
+  public boolean draw(DrawContext dc, DomeInstances instances, DomeLod lod, UnitMeshSource source) {
+    GL2 gl = dc.getGL().getGL2();
+    if (this.failed || (this.program == 0 && !this.createProgram(gl))) {
+      return false;
+    }
+    this.uploadInstances(gl, instances);
+    if (lod.getMeshCount() == 0) {
+      return true;
+    }
+    this.uploadOrder(gl, lod);
+
+    OGLStackHandler ogsh = new OGLStackHandler();
+    ogsh.pushAttrib(gl, GL2.GL_ENABLE_BIT | GL2.GL_COLOR_BUFFER_BIT | GL2.GL_DEPTH_BUFFER_BIT
+        | GL2.GL_TEXTURE_BIT);
+    ogsh.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+    ogsh.pushModelview(gl);
+    try {
+      CpuDomeRenderer.beginDrawing(dc, gl);
+      CpuDomeRenderer.loadModelview(dc, gl, instances);
+      gl.glUseProgram(this.program);
+      gl.glActiveTexture(GL.GL_TEXTURE1);
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, this.orderTexture);
+      gl.glActiveTexture(GL.GL_TEXTURE0);
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, this.instanceTexture);
+      gl.glUniform1i(gl.glGetUniformLocation(this.program, "instances"), 0);
+      gl.glUniform1i(gl.glGetUniformLocation(this.program, "order"), 1);
+      int first = gl.glGetUniformLocation(this.program, "first");
+
+      gl.glEnableClientState(GLPointerFunc.GL_VERTEX_ARRAY);
+      gl.glEnableClientState(GLPointerFunc.GL_NORMAL_ARRAY);
+      for (int detail = DomeLod.MIN_DETAIL; detail <= DomeLod.MAX_DETAIL; detail++) {
+        int count = lod.getCount(detail);
+        if (count == 0) {
+          continue;
+        }
+        int[] mesh = this.meshBuffers[detail];
+        if (mesh == null) {
+          mesh = this.uploadMesh(gl, detail, UnitMeshCache.getInstance().get(UnitMeshCache.Kind.SPHERE, detail,
+              source));
+        }
+        gl.glUniform1i(first, lod.getStart(detail));
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, mesh[0]);
+        gl.glVertexPointer(3, GL.GL_FLOAT, 0, 0);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, mesh[1]);
+        gl.glNormalPointer(GL.GL_FLOAT, 0, 0);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, mesh[2]);
+        gl.glDrawElementsInstanced(GL.GL_TRIANGLES, this.elementCounts[detail], GL.GL_UNSIGNED_INT, 0, count);
+      }
+    } finally {
+      gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+      gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+      gl.glActiveTexture(GL.GL_TEXTURE1);
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, 0);
+      gl.glActiveTexture(GL.GL_TEXTURE0);
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, 0);
+      gl.glUseProgram(0);
+      ogsh.pop(gl);
+    }
+    return true;
+  }
+
+  /**
+   * @param gl
+   * @return <code>true</code> if the program was built
+   */
+  private boolean createProgram(GL2 gl) {
+    int vertex = this.compile(gl, GL2ES2.GL_VERTEX_SHADER, VERTEX_SHADER);
+    int fragment = this.compile(gl, GL2ES2.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+    if (vertex == 0 || fragment == 0) {
+      gl.glDeleteShader(vertex);
+      gl.glDeleteShader(fragment);
+      this.failed = true;
+      return false;
+    }
+    int p = gl.glCreateProgram();
+    gl.glAttachShader(p, vertex);
+    gl.glAttachShader(p, fragment);
+    gl.glLinkProgram(p);
+    gl.glDeleteShader(vertex);
+    gl.glDeleteShader(fragment);
+    int[] status = new int[1];
+    gl.glGetProgramiv(p, GL2ES2.GL_LINK_STATUS, status, 0);
+    if (status[0] == GL.GL_FALSE) {
+      MyLogger.error(this, "Instanced dome program did not link: " + this.programLog(gl, p));
+      gl.glDeleteProgram(p);
+      this.failed = true;
+      return false;
+    }
+    this.program = p;
+
+    int[] names = new int[2];
+    gl.glGenBuffers(2, names, 0);
+    this.instanceBuffer = names[0];
+    this.orderBuffer = names[1];
+    gl.glGenTextures(2, names, 0);
+    this.instanceTexture = names[0];
+    this.orderTexture = names[1];
+    MyLogger.info(this, "Instanced dome rendering enabled");
+    return true;
+  }
+
+  /**
+   * @param gl
+   * @param type
+   * @param source
+   * @return shader, 0 if it did not compile
+   */
+  private int compile(GL2 gl, int type, String source) {
+    int shader = gl.glCreateShader(type);
+    gl.glShaderSource(shader, 1, new String[] { source }, null, 0);
+    gl.glCompileShader(shader);
+    int[] status = new int[1];
+    gl.glGetShaderiv(shader, GL2ES2.GL_COMPILE_STATUS, status, 0);
+    if (status[0] == GL.GL_FALSE) {
+      int[] length = new int[1];
+      gl.glGetShaderiv(shader, GL2ES2.GL_INFO_LOG_LENGTH, length, 0);
+      byte[] log = new byte[Math.max(1, length[0])];
+      gl.glGetShaderInfoLog(shader, log.length, null, 0, log, 0);
+      MyLogger.error(this, "Instanced dome shader did not compile: " + new String(log).trim());
+      gl.glDeleteShader(shader);
+      return 0;
+    }
+    return shader;
+  }
+
+  /**
+   * @param gl
+   * @param p
+   * @return link log
+   */
+  private String programLog(GL2 gl, int p) {
+    int[] length = new int[1];
+    gl.glGetProgramiv(p, GL2ES2.GL_INFO_LOG_LENGTH, length, 0);
+    byte[] log = new byte[Math.max(1, length[0])];
+    gl.glGetProgramInfoLog(p, log.length, null, 0, log, 0);
+    return new String(log).trim();
+  }
+
+  /**
+   * @param gl
+   * @param detail
+   * @param unitMesh
+   * @return GL names of the vertices, normals and triangles
+   */
+  private int[] uploadMesh(GL2 gl, int detail, Geometry unitMesh) {
+    int[] names = new int[3];
+    gl.glGenBuffers(3, names, 0);
+    // one normal per vertex, the normal count of the unit sphere is not reliable
+    upload(gl, GL.GL_ARRAY_BUFFER, names[0], unitMesh.getBuffer(Geometry.VERTEX),
+        unitMesh.getCount(Geometry.VERTEX) * 3 * Buffers.SIZEOF_FLOAT);
+    upload(gl, GL.GL_ARRAY_BUFFER, names[1], unitMesh.getBuffer(Geometry.NORMAL),
+        unitMesh.getCount(Geometry.VERTEX) * 3 * Buffers.SIZEOF_FLOAT);
+    this.elementCounts[detail] = unitMesh.getCount(Geometry.ELEMENT);
+    upload(gl, GL.GL_ELEMENT_ARRAY_BUFFER, names[2], unitMesh.getBuffer(Geometry.ELEMENT),
+        this.elementCounts[detail] * Buffers.SIZEOF_INT);
+    this.meshBuffers[detail] = names;
+    return names;
+  }
+
+  /**
+   * @param gl
+   * @param target
+   * @param name
+   * @param data
+   * @param bytes
+   */
+  private static void upload(GL2 gl, int target, int name, Buffer data, int bytes) {
+    Buffer source = data instanceof FloatBuffer ? ((FloatBuffer) data).duplicate() : ((IntBuffer) data)
+        .duplicate();
+    source.rewind();
+    gl.glBindBuffer(target, name);
+    gl.glBufferData(target, bytes, source, GL.GL_STATIC_DRAW);
+    gl.glBindBuffer(target, 0);
+  }
+
+  /**
+   * Uploads the dirty range, everything when the layout changed or the buffer is too small
+   *
+   * @param gl
+   * @param instances
+   */
+  private void uploadInstances(GL2 gl, DomeInstances instances) {
+    int size = instances.size();
+    FloatBuffer data = FloatBuffer.wrap(instances.getData());
+    int slotBytes = DomeInstances.FLOATS_PER_INSTANCE * Buffers.SIZEOF_FLOAT;
+    gl.glBindBuffer(GL2GL3.GL_TEXTURE_BUFFER, this.instanceBuffer);
+    if (instances.getLayout() != this.layout || size > this.capacity) {
+      this.capacity = Math.max(size, this.capacity * 2);
+      gl.glBufferData(GL2GL3.GL_TEXTURE_BUFFER, (long) this.capacity * slotBytes, null, GL2ES2.GL_DYNAMIC_DRAW);
+      data.limit(size * DomeInstances.FLOATS_PER_INSTANCE);
+      gl.glBufferSubData(GL2GL3.GL_TEXTURE_BUFFER, 0, (long) size * slotBytes, data);
+      this.layout = instances.getLayout();
+
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, this.instanceTexture);
+      gl.glTexBuffer(GL2GL3.GL_TEXTURE_BUFFER, GL.GL_RGBA32F, this.instanceBuffer);
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, 0);
+    } else if (instances.getDirtyFrom() < instances.getDirtyTo()) {
+      int from = instances.getDirtyFrom();
+      int to = instances.getDirtyTo();
+      data.position(from * DomeInstances.FLOATS_PER_INSTANCE);
+      data.limit(to * DomeInstances.FLOATS_PER_INSTANCE);
+      gl.glBufferSubData(GL2GL3.GL_TEXTURE_BUFFER, (long) from * slotBytes, (long) (to - from) * slotBytes,
+          data);
+    }
+    gl.glBindBuffer(GL2GL3.GL_TEXTURE_BUFFER, 0);
+    instances.clearDirty();
+  }
+
+  /**
+   * Uploads the slots drawn as meshes, sorted by detail
+   *
+   * @param gl
+   * @param lod
+   */
+  private void uploadOrder(GL2 gl, DomeLod lod) {
+    int n = lod.getMeshCount();
+    boolean grown = this.order == null || this.order.capacity() < n * 4;
+    if (grown) {
+      this.order = Buffers.newDirectFloatBuffer(Math.max(n, this.order == null ? 256 : this.order.capacity() / 2)
+          * 4);
+    }
+    int[] slots = lod.getOrder();
+    this.order.clear();
+    for (int k = 0; k < n; k++) {
+      this.order.put(slots[k]).put(0f).put(0f).put(0f);
+    }
+    this.order.flip();
+
+    gl.glBindBuffer(GL2GL3.GL_TEXTURE_BUFFER, this.orderBuffer);
+    if (grown) {
+      gl.glBufferData(GL2GL3.GL_TEXTURE_BUFFER, this.order.capacity() * Buffers.SIZEOF_FLOAT, null,
+          GL2ES2.GL_STREAM_DRAW);
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, this.orderTexture);
+      gl.glTexBuffer(GL2GL3.GL_TEXTURE_BUFFER, GL.GL_RGBA32F, this.orderBuffer);
+      gl.glBindTexture(GL2GL3.GL_TEXTURE_BUFFER, 0);
+    }
+    gl.glBufferSubData(GL2GL3.GL_TEXTURE_BUFFER, 0, n * 4 * Buffers.SIZEOF_FLOAT, this.order);
+    gl.glBindBuffer(GL2GL3.GL_TEXTURE_BUFFER, 0);
+  }
+
+  /**
+   * Deletes the GL resources, with the context of the canvas current
+   *
+   * @param gl
+   */
+  public void dispose(GL2 gl) {
+    if (this.program != 0) {
+      gl.glDeleteProgram(this.program);
+      gl.glDeleteBuffers(2, new int[] { this.instanceBuffer, this.orderBuffer }, 0);
+      gl.glDeleteTextures(2, new int[] { this.instanceTexture, this.orderTexture }, 0);
+    }
+    for (int detail = 0; detail < this.meshBuffers.length; detail++) {
+      if (this.meshBuffers[detail] != null && this.program != 0) {
+        gl.glDeleteBuffers(3, this.meshBuffers[detail], 0);
+      }
+      this.meshBuffers[detail] = null;
+    }
+    this.program = 0;
+    this.order = null;
+    this.capacity = 0;
+    this.layout = -1;
+  }
+}
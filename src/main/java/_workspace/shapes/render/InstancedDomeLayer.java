@@ -0,0 +1,260 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.layers.AbstractLayer;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.airspaces.Geometry;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+import utility.MyLogger;
+import _workspace.shapes.AbstractDomeShape;
+import _workspace.shapes.IShape;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.ShapesPoolListener;
+
+/**
+ * Draws all the domes of a workspace at once instead of one shape at a time.
+ * <p>
+ * The layer follows the pool of its workspace and keeps the per dome data in {@link DomeInstances}: only
+ * the domes that changed since the last frame are computed and uploaded again. When the card can draw
+ * instances the whole population is one instanced draw call ({@link GpuDomeRenderer}), otherwise the mesh
+ * is expanded on the CPU and drawn with one call ({@link CpuDomeRenderer}).
+ * <p>
+ * Each frame the {@link DomeLod} of the layer leaves out the domes outside the view or too small to see,
+ * draws the small ones as points and gives the others a mesh detail from their size on screen (the CPU
+ * renderer uses {@link #CPU_DETAIL} for all).
+ * <p>
+ * The domes stay in the renderable layer of the workspace, which still draws the highlighted ones; they
+ * skip their own drawing while {@link #draws(AbstractDomeShape)}. Disabling this layer gives them back their
+ * own drawing. Picking does not draw, see {@link _workspace.shapes.spatial.ShapePicker}.
+ *
+ * @author viorel.florian
+ */
+public class InstancedDomeLayer extends AbstractLayer implements ShapesPoolListener {
+
+  /** mesh detail of the CPU renderer */
+  public static final int CPU_DETAIL = 2;
+
+  /** domes of the workspace */
+  private final DomeInstances instances = new DomeInstances();
+
+  /** level of detail of the domes */
+  private final DomeLod lod = new DomeLod();
+
+  /** hides domes drawn some other way, <code>null</code> for none */
+  private DomeFilter filter;
+
+  /** view of the frame being drawn */
+  private LodView view;
+
+  /** time stamp of the frame the view was taken for */
+  private long viewTimeStamp = -1;
+
+  /** draws without shaders */
+  private final CpuDomeRenderer cpuRenderer = new CpuDomeRenderer();
+
+  /** draws with one instanced call, <code>null</code> until the first frame or if not supported */
+  private GpuDomeRenderer gpuRenderer;
+
+  /** the GL support was checked */
+  private boolean gpuChecked = false;
+
+  /** instanced drawing may be used */
+  private boolean gpuEnabled = true;
+
+  /** the GPU renderer drew the last frame */
+  private boolean gpuUsed = false;
+
+  /**
+   * Constructs a new, empty, instance.
+   */
+  public InstancedDomeLayer() {
+    super();
+    this.setName("Domes layer");
+    this.setPickEnabled(false);
+  }
+
+  /**
+   * Follows the pool, adding the domes already in it
+   *
+   * @param pool
+   */
+  public void attach(ShapesPool pool) {
+    pool.addPoolListener(this);
+    for (IShape shape : pool.getAllShapes()) {
+      this.shapeAdded(shape);
+    }
+  }
+
+  /**
+   * Stops following the pool and forgets its domes
+   *
+   * @param pool
+   */
+  public void detach(ShapesPool pool) {
+    pool.removePoolListener(this);
+    this.instances.clear();
+  }
+
+  /**
+   * @param shape
+   * @return <code>true</code> if this layer draws the dome, which then does not draw itself
+   */
+  public boolean draws(AbstractDomeShape shape) {
+    return this.isEnabled() && !shape.isHighlighted() && this.instances.contains(shape);
+  }
+
+  /**
+   * Get the level of detail of the view being drawn, shared by the domes the layer does not draw
+   *
+   * @param dc
+   * @return view, taken once per frame
+   */
+  public LodView getLodView(DrawContext dc) {
+    if (this.view == null || this.viewTimeStamp != dc.getFrameTimeStamp()) {
+      this.view = LodView.fromView(dc.getView());
+      this.viewTimeStamp = dc.getFrameTimeStamp();
+    }
+    return this.view;
+  }
+
+  /**
+   * Set filter.
+   *
+   * @param filter hides domes drawn some other way, <code>null</code> for none
+   */
+  public void setFilter(DomeFilter filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Get filter.
+   *
+   * @return filter, <code>null</code> for none
+   */
+  public DomeFilter getFilter() {
+    return this.filter;
+  }
+
+  /**
+   * Get lod.
+   *
+   * @return level of detail thresholds and the last classification
+   */
+  public DomeLod getLod() {
+    return this.lod;
+  }
+
+  /**
+   * Get instances.
+   *
+   * @return per dome data
+   */
+  public DomeInstances getInstances() {
+    return this.instances;
+  }
+
+  /**
+   * Set gpuEnabled.
+   *
+   * @param gpuEnabled <code>false</code> draws with the CPU renderer even if instancing is supported
+   */
+  public void setGpuEnabled(boolean gpuEnabled) {
+    this.gpuEnabled = gpuEnabled;
+  }
+
+  /**
+   * Get gpuEnabled.
+   *
+   * @return gpuEnabled
+   */
+  public boolean isGpuEnabled() {
+    return this.gpuEnabled;
+  }
+
+  /**
+   * @see gov.nasa.worldwind.layers.AbstractLayer#doRender(gov.nasa.worldwind.render.DrawContext)
+   */
+  @Override
+  protected void doRender(DrawContext dc) {
+    AbstractDomeShape first = this.instances.getFirst();
+    if (first == null) {
+      return;
+    }
+    if (!this.gpuChecked) {
+      this.gpuChecked = true;
+      if (GpuDomeRenderer.isSupported(dc.getGL())) {
+        this.gpuRenderer = new GpuDomeRenderer();
+      } else {
+        MyLogger.info(this, "Instanced drawing not supported, domes are drawn by the CPU renderer");
+      }
+    }
+
+    synchronized (this.instances) {
+      this.instances.update(dc.getGlobe(), dc.getVerticalExaggeration());
+      this.lod.classify(this.instances, this.getLodView(dc), this.filter);
+      boolean gpu = this.gpuEnabled && this.gpuRenderer != null && !this.gpuRenderer.isFailed();
+      if (gpu != this.gpuUsed) {
+        // the other renderer missed the dirty ranges in between
+        this.cpuRenderer.invalidate();
+        if (this.gpuRenderer != null) {
+          this.gpuRenderer.invalidate();
+        }
+        this.gpuUsed = gpu;
+      }
+      if (!gpu || !this.gpuRenderer.draw(dc, this.instances, this.lod, first)) {
+        this.gpuUsed = false;
+        Geometry mesh = UnitMeshCache.getInstance().get(UnitMeshCache.Kind.SPHERE, CPU_DETAIL, first);
+        this.cpuRenderer.draw(dc, this.instances, mesh, this.lod);
+      }
+      this.cpuRenderer.drawProxies(dc, this.instances, this.lod);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeAdded(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeAdded(IShape shape) {
+    if (shape instanceof AbstractDomeShape) {
+      this.instances.add((AbstractDomeShape) shape);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeRemoved(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeRemoved(IShape shape) {
+    if (shape instanceof AbstractDomeShape) {
+      this.instances.remove((AbstractDomeShape) shape);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeChanged(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeChanged(IShape shape) {
+    // changes are found by geometry version on the next frame, previews included
+  }
+
+  /**
+   * Deletes the GL resources when the context is current, they go with the context otherwise
+   *
+   * @see gov.nasa.worldwind.layers.AbstractLayer#dispose()
+   */
+  @Override
+  public void dispose() {
+    GLContext context = GLContext.getCurrent();
+    if (this.gpuRenderer != null && context != null) {
+      GL gl = context.getGL();
+      this.gpuRenderer.dispose(gl.getGL2());
+    }
+    this.gpuRenderer = null;
+    this.gpuChecked = false;
+    this.instances.clear();
+    super.dispose();
+  }
+}
@@ -0,0 +1,124 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Frustum;
+import gov.nasa.worldwind.geom.Plane;
+import gov.nasa.worldwind.geom.Vec4;
+
+/**
+ * What the level of detail of a dome depends on: the eye, the frustum and the size of a pixel, all in
+ * model coordinates.
+ * <p>
+ * Taken from the WorldWind {@link View} once per frame with {@link #fromView(View)}, or built without any
+ * view or GL with {@link #perspective(Angle, int, int, double, double)} to check a {@link DomeLod} headless.
+ * Instances are immutable.
+ *
+ * @author viorel.florian
+ */
+public class LodView {
+
+  /** eye point */
+  private final double eyeX, eyeY, eyeZ;
+
+  /** frustum planes, a b c d each, normals pointing inside */
+  private final double[] planes;
+
+  /** size of a pixel at distance 1, in meters */
+  private final double pixelScale;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param eye eye point, in model coordinates
+   * @param frustum in model coordinates
+   * @param pixelScale size of a pixel at distance 1, in meters
+   */
+  public LodView(Vec4 eye, Frustum frustum, double pixelScale) {
+    super();
+    this.eyeX = eye.x;
+    this.eyeY = eye.y;
+    this.eyeZ = eye.z;
+    Plane[] all = frustum.getAllPlanes();
+    this.planes = new double[all.length * 4];
+    for (int p = 0; p < all.length; p++) {
+      Vec4 n = all[p].getVector();
+      this.planes[p * 4] = n.x;
+      this.planes[p * 4 + 1] = n.y;
+      this.planes[p * 4 + 2] = n.z;
+      this.planes[p * 4 + 3] = n.w;
+    }
+    this.pixelScale = pixelScale;
+  }
+
+  /**
+   * @param view
+   * @return the current state of the view
+   */
+  public static LodView fromView(View view) {
+    return new LodView(view.getEyePoint(), view.getFrustumInModelCoordinates(),
+        view.computePixelSizeAtDistance(1));
+  }
+
+  /**
+   * View at the origin looking down the negative Z axis, as a camera before its modelview
+   *
+   * @param fieldOfView horizontal
+   * @param width viewport width, in pixels
+   * @param height viewport height, in pixels
+   * @param near near clip distance, in meters
+   * @param far far clip distance, in meters
+   *
+   * @return the view
+   */
+  public static LodView perspective(Angle fieldOfView, int width, int height, double near, double far) {
+    Frustum frustum = Frustum.fromPerspective(fieldOfView, width, height, near, far);
+    return new LodView(Vec4.ZERO, frustum, 2 * fieldOfView.tanHalfAngle() / width);
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @param z
+   * @param radius
+   *
+   * @return <code>true</code> if the sphere is at least partly inside the frustum
+   */
+  public boolean intersects(double x, double y, double z, double radius) {
+    for (int p = 0; p < this.planes.length; p += 4) {
+      double distance = this.planes[p] * x + this.planes[p + 1] * y + this.planes[p + 2] * z + this.planes[p + 3];
+      if (distance <= -radius) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param x
+   * @param y
+   * @param z
+   * @param radius
+   *
+   * @return diameter of the sphere on screen, in pixels, infinite when the eye is inside it
+   */
+  public double pixelSize(double x, double y, double z, double radius) {
+    double dx = x - this.eyeX;
+    double dy = y - this.eyeY;
+    double dz = z - this.eyeZ;
+    double distance = Math.sqrt(dx * dx + dy * dy + dz * dz) - radius;
+    if (distance <= 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return 2 * radius / (this.pixelScale * distance);
+  }
+
+  /**
+   * Get pixelScale.
+   *
+   * @return size of a pixel at distance 1, in meters
+   */
+  public double getPixelScale() {
+    return this.pixelScale;
+  }
+}
@@ -0,0 +1,145 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.render.airspaces.Geometry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit meshes shared by all the shapes of the application, one per kind and detail level.
+ * <p>
+ * A dome differs from the others of its kind only by its position, radii and orientation, which WorldWind
+ * applies as a render matrix: the mesh itself is the same unit shape for all of them. Each mesh is
+ * tessellated once, kept for the life of the application (there are only a few detail levels) and
+ * uploaded once, under {@link #getVboKey(Kind, int)}, in the GPU cache shared by the workspaces.
+ *
+ * @author viorel.florian
+ */
+public final class UnitMeshCache {
+
+  /**
+   * Unit shapes, the flat and connector domes are spheres scaled by their radii
+   */
+  public static enum Kind {
+    /** sphere of radius 1 */
+    SPHERE
+  }
+
+  /** cache instance */
+  private static final UnitMeshCache instance = new UnitMeshCache();
+
+  /** kind and detail -> mesh */
+  private final ConcurrentMap<Object, Geometry> meshes = new ConcurrentHashMap<Object, Geometry>();
+
+  /** kind and detail -> GPU cache key */
+  private final ConcurrentMap<Object, String> vboKeys = new ConcurrentHashMap<Object, String>();
+
+  /** lookups */
+  private final AtomicLong requested = new AtomicLong();
+
+  /** tessellations */
+  private final AtomicLong built = new AtomicLong();
+
+  /**
+   * Get instance
+   *
+   * @return cache singleton instance
+   */
+  public static UnitMeshCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Constructs a new instance.
+   */
+  private UnitMeshCache() {
+    super();
+  }
+
+  /**
+   * @param kind
+   * @param detail
+   * @return map key
+   */
+  private static Object key(Kind kind, int detail) {
+    return kind.name() + '/' + detail;
+  }
+
+  /**
+   * Get the unit mesh, tessellated by the source the first time. Meshes are shared, never modify them.
+   *
+   * @param kind
+   * @param detail subdivisions
+   * @param source builds the mesh when missing
+   *
+   * @return shared mesh
+   */
+  public Geometry get(Kind kind, int detail, UnitMeshSource source) {
+    this.requested.incrementAndGet();
+    Object key = key(kind, detail);
+    Geometry mesh = this.meshes.get(key);
+    if (mesh == null) {
+      Geometry created = new Geometry();
+      source.makeUnitMesh(kind, detail, created);
+      mesh = this.meshes.putIfAbsent(key, created);
+      if (mesh == null) {
+        mesh = created;
+        this.built.incrementAndGet();
+      }
+    }
+    return mesh;
+  }
+
+  /**
+   * Get the key of the mesh in the GPU resource cache, the same for every shape using it
+   *
+   * @param kind
+   * @param detail subdivisions
+   *
+   * @return key
+   */
+  public String getVboKey(Kind kind, int detail) {
+    Object key = key(kind, detail);
+    String vboKey = this.vboKeys.get(key);
+    if (vboKey == null) {
+      String created = UnitMeshCache.class.getName() + '/' + key;
+      vboKey = this.vboKeys.putIfAbsent(key, created);
+      if (vboKey == null) {
+        vboKey = created;
+      }
+    }
+    return vboKey;
+  }
+
+  /**
+   * Get number of meshes.
+   *
+   * @return size
+   */
+  public int size() {
+    return this.meshes.size();
+  }
+
+  /**
+   * Get memory used by the meshes.
+   *
+   * @return size, in bytes
+   */
+  public long getSizeInBytes() {
+    long bytes = 0;
+    for (Geometry mesh : this.meshes.values()) {
+      bytes += mesh.getSizeInBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "Unit meshes: " + this.size() + " (" + this.getSizeInBytes() / 1024 + " KB), requested: "
+        + this.requested.get() + ", built: " + this.built.get();
+  }
+}
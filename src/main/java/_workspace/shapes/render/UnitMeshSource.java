@@ -0,0 +1,20 @@
+package _workspace.shapes.render;
+
+import gov.nasa.worldwind.render.airspaces.Geometry;
+
+/**
+ * Builds the unit meshes kept by the {@link UnitMeshCache}, usually the first shape that needs one
+ *
+ * @author viorel.florian
+ */
+public interface UnitMeshSource {
+
+  /**
+   * Tessellates a unit mesh, centered on the origin, with a radius of 1
+   *
+   * @param kind
+   * @param detail subdivisions
+   * @param mesh filled with the vertices, normals, texture coordinates and indices
+   */
+  public void makeUnitMesh(UnitMeshCache.Kind kind, int detail, Geometry mesh);
+}
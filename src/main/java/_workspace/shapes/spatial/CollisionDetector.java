@@ -0,0 +1,308 @@
+package _workspace.shapes.spatial;
+
+import gov.nasa.worldwind.render.Ellipsoid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import _workspace.shapes.IShape;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.ShapesPoolListener;
+
+/**
+ * Finds the shapes that overlap each other.
+ * <p>
+ * Broad phase: {@link ShapeIndex#withinRadius} around the shape, with its largest radius. Narrow phase:
+ * exact ellipsoid / ellipsoid test, see {@link EllipsoidVolume}.
+ * <p>
+ * The detector follows the pool of its workspace: whenever a shape is added, moves or is resized (drag included) its
+ * overlaps are recomputed, so {@link #getOverlapping()} always tells which shapes are in conflict. Bulk loads
+ * go between {@link #beginBulk()} and {@link #endBulk()}, which checks all the shapes in one pass at the end.
+ * Listeners hear about every shape whose overlaps changed, the partners of the moved shape included.
+ *
+ * @author viorel.florian
+ */
+public class CollisionDetector implements ShapesPoolListener {
+
+  /** pool whose shapes are checked */
+  private final ShapesPool pool;
+
+  /** index used by the broad phase, over the pool */
+  private final ShapeIndex index;
+
+  /** shape -> shapes it overlaps, symmetric, only shapes with overlaps */
+  private final Map<IShape, Set<IShape>> overlaps = new IdentityHashMap<IShape, Set<IShape>>();
+
+  /** listeners */
+  private final List<CollisionListener> listeners = new CopyOnWriteArrayList<CollisionListener>();
+
+  /** bulk loads running, adds are not checked one by one meanwhile */
+  private final AtomicInteger bulk = new AtomicInteger();
+
+  /**
+   * Constructs a new instance, following the pool until {@link #detach()}.
+   *
+   * @param pool
+   * @param index attached to the same pool
+   */
+  public CollisionDetector(ShapesPool pool, ShapeIndex index) {
+    super();
+    this.pool = pool;
+    this.index = index;
+    pool.addPoolListener(this);
+  }
+
+  /**
+   * Stops following the pool
+   */
+  public void detach() {
+    this.pool.removePoolListener(this);
+  }
+
+  /**
+   * Add a listener
+   *
+   * @param listener
+   */
+  public void addCollisionListener(CollisionListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Remove a listener
+   *
+   * @param listener
+   */
+  public void removeCollisionListener(CollisionListener listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Tells if two shapes overlap
+   *
+   * @param a
+   * @param b
+   *
+   * @return <code>true</code> if both are ellipsoids and share at least one point
+   */
+  public boolean overlaps(IShape a, IShape b) {
+    if (a == b || !(a instanceof Ellipsoid) || !(b instanceof Ellipsoid)) {
+      return false;
+    }
+    double radius = this.index.getGlobeRadius();
+    return EllipsoidVolume.of((Ellipsoid) a, radius).overlaps(EllipsoidVolume.of((Ellipsoid) b, radius));
+  }
+
+  /**
+   * Shapes of the index that overlap the given shape, it does not have to be indexed
+   *
+   * @param shape
+   *
+   * @return overlapping shapes
+   */
+  public List<IShape> findOverlaps(IShape shape) {
+    List<IShape> found = new ArrayList<IShape>();
+    if (!(shape instanceof Ellipsoid)) {
+      return found;
+    }
+    Ellipsoid e = (Ellipsoid) shape;
+    double radius = this.index.getGlobeRadius();
+    EllipsoidVolume volume = EllipsoidVolume.of(e, radius);
+
+    for (IShape candidate : this.index.withinRadius(e.getCenterPosition(), volume.maxRadius)) {
+      if (candidate != shape && candidate instanceof Ellipsoid
+          && volume.overlaps(EllipsoidVolume.of((Ellipsoid) candidate, radius))) {
+        found.add(candidate);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Recomputes the overlaps of one shape
+   *
+   * @param shape
+   *
+   * @return shapes it now overlaps
+   */
+  public List<IShape> check(IShape shape) {
+    List<IShape> found = this.index.contains(shape) ? this.findOverlaps(shape) : new ArrayList<IShape>();
+    Map<IShape, List<IShape>> changed;
+    synchronized (this.overlaps) {
+      changed = this.set(shape, found);
+    }
+    this.fireOverlapsChanged(changed);
+    return found;
+  }
+
+  /**
+   * Recomputes the overlaps of all the shapes of the pool
+   *
+   * @return number of shapes with overlaps
+   */
+  public int checkAll() {
+    for (IShape shape : this.pool.getAllShapes()) {
+      this.check(shape);
+    }
+    synchronized (this.overlaps) {
+      return this.overlaps.size();
+    }
+  }
+
+  /**
+   * Starts a bulk load: the shapes added until {@link #endBulk()} are checked together at its end
+   */
+  public void beginBulk() {
+    this.bulk.incrementAndGet();
+  }
+
+  /**
+   * Ends a bulk load, the last one to end runs {@link #checkAll()}
+   */
+  public void endBulk() {
+    if (this.bulk.decrementAndGet() == 0) {
+      this.checkAll();
+    }
+  }
+
+  /**
+   * Replaces the overlaps of a shape, under the overlaps lock
+   *
+   * @param shape
+   * @param found
+   *
+   * @return shape -> its overlaps now, for the shape and each partner whose overlaps changed
+   */
+  private Map<IShape, List<IShape>> set(IShape shape, List<IShape> found) {
+    Map<IShape, List<IShape>> changed = new IdentityHashMap<IShape, List<IShape>>();
+    Set<IShape> old = this.overlaps.remove(shape);
+    Set<IShape> now = Collections.newSetFromMap(new IdentityHashMap<IShape, Boolean>());
+    now.addAll(found);
+    if (old != null) {
+      for (IShape other : old) {
+        if (!now.contains(other)) {
+          this.unlink(other, shape);
+          changed.put(other, null);
+        }
+      }
+    }
+    for (IShape other : now) {
+      this.link(shape, other);
+      if (this.link(other, shape)) {
+        changed.put(other, null);
+      }
+    }
+    if (old == null ? !now.isEmpty() : !old.equals(now)) {
+      changed.put(shape, null);
+    }
+    for (Map.Entry<IShape, List<IShape>> entry : changed.entrySet()) {
+      Set<IShape> set = this.overlaps.get(entry.getKey());
+      entry.setValue(set == null ? new ArrayList<IShape>() : new ArrayList<IShape>(set));
+    }
+    return changed;
+  }
+
+  /**
+   * Tells the listeners, outside the overlaps lock
+   *
+   * @param changed shape -> its overlaps now
+   */
+  private void fireOverlapsChanged(Map<IShape, List<IShape>> changed) {
+    for (Map.Entry<IShape, List<IShape>> entry : changed.entrySet()) {
+      for (CollisionListener listener : this.listeners) {
+        listener.overlapsChanged(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @param a
+   * @param b
+   * @return <code>true</code> if b was not linked yet
+   */
+  private boolean link(IShape a, IShape b) {
+    Set<IShape> set = this.overlaps.get(a);
+    if (set == null) {
+      set = Collections.newSetFromMap(new IdentityHashMap<IShape, Boolean>());
+      this.overlaps.put(a, set);
+    }
+    return set.add(b);
+  }
+
+  /**
+   * @param a
+   * @param b
+   */
+  private void unlink(IShape a, IShape b) {
+    Set<IShape> set = this.overlaps.get(a);
+    if (set != null && set.remove(b) && set.isEmpty()) {
+      this.overlaps.remove(a);
+    }
+  }
+
+  /**
+   * Get the shapes in conflict with at least one other shape.
+   *
+   * @return snapshot of the overlapping shapes
+   */
+  public Set<IShape> getOverlapping() {
+    synchronized (this.overlaps) {
+      Set<IShape> all = Collections.newSetFromMap(new IdentityHashMap<IShape, Boolean>());
+      all.addAll(this.overlaps.keySet());
+      return all;
+    }
+  }
+
+  /**
+   * Get the known overlaps of a shape.
+   *
+   * @param shape
+   *
+   * @return snapshot, empty if none
+   */
+  public List<IShape> getOverlaps(IShape shape) {
+    synchronized (this.overlaps) {
+      Set<IShape> set = this.overlaps.get(shape);
+      return set == null ? new ArrayList<IShape>() : new ArrayList<IShape>(set);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeAdded(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeAdded(IShape shape) {
+    // bulk loads pay one pass at the end instead, see endBulk()
+    if (this.bulk.get() == 0 && this.index.contains(shape)) {
+      this.check(shape);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeRemoved(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeRemoved(IShape shape) {
+    Map<IShape, List<IShape>> changed;
+    synchronized (this.overlaps) {
+      changed = this.set(shape, new ArrayList<IShape>());
+    }
+    this.fireOverlapsChanged(changed);
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeChanged(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeChanged(IShape shape) {
+    if (this.index.contains(shape)) {
+      this.check(shape);
+    }
+  }
+}
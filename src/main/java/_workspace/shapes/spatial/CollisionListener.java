@@ -0,0 +1,21 @@
+package _workspace.shapes.spatial;
+
+import java.util.List;
+
+import _workspace.shapes.IShape;
+
+/**
+ * Notified by the {@link CollisionDetector} when the overlaps of a shape change
+ *
+ * @author viorel.florian
+ */
+public interface CollisionListener {
+
+  /**
+   * The overlaps of a shape changed, called from the thread that moved the shape
+   *
+   * @param shape
+   * @param overlaps shapes it overlaps now, empty when the conflict is resolved
+   */
+  public void overlapsChanged(IShape shape, List<IShape> overlaps);
+}
@@ -0,0 +1,210 @@
+package _workspace.shapes.spatial;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.Ellipsoid;
+
+/**
+ * World space volume of an {@link Ellipsoid}, on a spherical globe.
+ * <p>
+ * The shape is kept as its center and the symmetric matrix <code>S = M M<sup>T</sup></code>, where
+ * <code>M</code> maps the unit sphere onto the shape with the same orientation rules as
+ * {@link gov.nasa.worldwind.render.RigidShape} (local east / north / up frame, then roll, tilt and heading,
+ * then the east-west, north-south and vertical radii). Skew is not supported.
+ * <p>
+ * {@link #overlaps(EllipsoidVolume)} is exact: it evaluates the Perram-Wertheim contact function
+ * <code>F(l) = l (1 - l) r<sup>T</sup> ((1 - l) S<sub>a</sub> + l S<sub>b</sub>)<sup>-1</sup> r</code>, which is
+ * concave on [0, 1]; the ellipsoids overlap when its maximum is not above 1.
+ *
+ * @author viorel.florian
+ */
+public final class EllipsoidVolume {
+
+  /** golden section iterations, narrows [0, 1] below 1e-8 */
+  private static final int ITERATIONS = 40;
+
+  /** inverse golden ratio */
+  private static final double PHI = (Math.sqrt(5) - 1) / 2;
+
+  /** center */
+  final double cx, cy, cz;
+
+  /** shape matrix, upper triangle */
+  final double s00, s01, s02, s11, s12, s22;
+
+  /** largest radius */
+  final double maxRadius;
+
+  /** smallest radius */
+  final double minRadius;
+
+  /**
+   * Constructs a new instance.
+   */
+  private EllipsoidVolume(double cx, double cy, double cz, double s00, double s01, double s02, double s11,
+      double s12, double s22, double maxRadius, double minRadius) {
+    this.cx = cx;
+    this.cy = cy;
+    this.cz = cz;
+    this.s00 = s00;
+    this.s01 = s01;
+    this.s02 = s02;
+    this.s11 = s11;
+    this.s12 = s12;
+    this.s22 = s22;
+    this.maxRadius = maxRadius;
+    this.minRadius = minRadius;
+  }
+
+  /**
+   * Volume of a shape
+   *
+   * @param e
+   * @param globeRadius in meters
+   *
+   * @return volume
+   */
+  public static EllipsoidVolume of(Ellipsoid e, double globeRadius) {
+    Position pos = e.getCenterPosition();
+    double lat = pos.getLatitude().radians;
+    double lon = pos.getLongitude().radians;
+    double sinLat = Math.sin(lat), cosLat = Math.cos(lat);
+    double sinLon = Math.sin(lon), cosLon = Math.cos(lon);
+
+    // local frame, columns east, north, up
+    double[][] m = { { -sinLon, -sinLat * cosLon, cosLat * cosLon }, { cosLon, -sinLat * sinLon, cosLat * sinLon },
+        { 0, cosLat, sinLat } };
+
+    // RigidShape: rotate Y by -roll, X by -tilt, Z by -heading
+    m = multiply(m, rotation(1, -e.getRoll().radians));
+    m = multiply(m, rotation(0, -e.getTilt().radians));
+    m = multiply(m, rotation(2, -e.getHeading().radians));
+
+    double[] radii = { e.getEastWestRadius(), e.getNorthSouthRadius(), e.getVerticalRadius() };
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 3; c++) {
+        m[r][c] *= radii[c];
+      }
+    }
+
+    double distance = globeRadius + pos.getElevation();
+    return new EllipsoidVolume(distance * cosLat * cosLon, distance * cosLat * sinLon, distance * sinLat,
+        dot(m[0], m[0]), dot(m[0], m[1]), dot(m[0], m[2]), dot(m[1], m[1]), dot(m[1], m[2]), dot(m[2], m[2]),
+        Math.max(radii[0], Math.max(radii[1], radii[2])), Math.min(radii[0], Math.min(radii[1], radii[2])));
+  }
+
+  /**
+   * Tells if the two volumes share at least one point
+   *
+   * @param other
+   *
+   * @return <code>true</code> if they overlap or touch
+   */
+  public boolean overlaps(EllipsoidVolume other) {
+    double rx = other.cx - this.cx;
+    double ry = other.cy - this.cy;
+    double rz = other.cz - this.cz;
+    double d2 = rx * rx + ry * ry + rz * rz;
+
+    double far = this.maxRadius + other.maxRadius;
+    if (d2 > far * far) {
+      return false;
+    }
+    double near = this.minRadius + other.minRadius;
+    if (d2 <= near * near) {
+      return true;
+    }
+
+    // F is concave, golden section search for its maximum, stop as soon as it goes above 1
+    double lo = 0, hi = 1;
+    double l1 = hi - PHI * (hi - lo);
+    double l2 = lo + PHI * (hi - lo);
+    double f1 = this.contact(other, l1, rx, ry, rz);
+    double f2 = this.contact(other, l2, rx, ry, rz);
+    for (int i = 0; i < ITERATIONS; i++) {
+      if (f1 > 1 || f2 > 1) {
+        return false;
+      }
+      if (f1 < f2) {
+        lo = l1;
+        l1 = l2;
+        f1 = f2;
+        l2 = lo + PHI * (hi - lo);
+        f2 = this.contact(other, l2, rx, ry, rz);
+      } else {
+        hi = l2;
+        l2 = l1;
+        f2 = f1;
+        l1 = hi - PHI * (hi - lo);
+        f1 = this.contact(other, l1, rx, ry, rz);
+      }
+    }
+    return f1 <= 1 && f2 <= 1;
+  }
+
+  /**
+   * Contact function for one value of lambda
+   *
+   * @return F(l)
+   */
+  private double contact(EllipsoidVolume o, double l, double rx, double ry, double rz) {
+    double a = 1 - l;
+    double c00 = a * this.s00 + l * o.s00;
+    double c01 = a * this.s01 + l * o.s01;
+    double c02 = a * this.s02 + l * o.s02;
+    double c11 = a * this.s11 + l * o.s11;
+    double c12 = a * this.s12 + l * o.s12;
+    double c22 = a * this.s22 + l * o.s22;
+
+    // r . C^-1 r, with the adjugate of the symmetric C
+    double i00 = c11 * c22 - c12 * c12;
+    double i01 = c02 * c12 - c01 * c22;
+    double i02 = c01 * c12 - c02 * c11;
+    double i11 = c00 * c22 - c02 * c02;
+    double i12 = c01 * c02 - c00 * c12;
+    double i22 = c00 * c11 - c01 * c01;
+    double det = c00 * i00 + c01 * i01 + c02 * i02;
+    if (det <= 0) {
+      return 0;
+    }
+    double q = rx * (i00 * rx + i01 * ry + i02 * rz) + ry * (i01 * rx + i11 * ry + i12 * rz)
+        + rz * (i02 * rx + i12 * ry + i22 * rz);
+    return l * a * q / det;
+  }
+
+  /**
+   * @param axis 0 = X, 1 = Y, 2 = Z
+   * @param angle in radians
+   * @return rotation matrix
+   */
+  private static double[][] rotation(int axis, double angle) {
+    double c = Math.cos(angle), s = Math.sin(angle);
+    switch (axis) {
+      case 0:
+        return new double[][] { { 1, 0, 0 }, { 0, c, -s }, { 0, s, c } };
+      case 1:
+        return new double[][] { { c, 0, s }, { 0, 1, 0 }, { -s, 0, c } };
+      default:
+        return new double[][] { { c, -s, 0 }, { s, c, 0 }, { 0, 0, 1 } };
+    }
+  }
+
+  /**
+   * @return a b
+   */
+  private static double[][] multiply(double[][] a, double[][] b) {
+    double[][] m = new double[3][3];
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 3; c++) {
+        m[r][c] = a[r][0] * b[0][c] + a[r][1] * b[1][c] + a[r][2] * b[2][c];
+      }
+    }
+    return m;
+  }
+
+  /**
+   * @return dot product of two rows
+   */
+  private static double dot(double[] a, double[] b) {
+    return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+  }
+}
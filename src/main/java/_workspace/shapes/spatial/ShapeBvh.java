@@ -0,0 +1,532 @@
+package _workspace.shapes.spatial;
+
+import gov.nasa.worldwind.geom.Intersection;
+import gov.nasa.worldwind.geom.Line;
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import _workspace.shapes.AbstractDomeShape;
+import _workspace.shapes.render.DomeFilter;
+
+/**
+ * Bounding volume hierarchy over the domes of a pool, in model coordinates, for ray picking.
+ * <p>
+ * Every dome is boxed by the exact axis aligned bounds of its ellipsoid, taken from its render matrix. The
+ * tree is built top-down, splitting the longest axis at the median, and rebuilt lazily after adds and
+ * removes; a moved or resized dome only refits the boxes on the path from its leaf to the root, until the
+ * refits outnumber the domes and the next pick rebuilds it.
+ * <p>
+ * {@link #pick(Line, DomeFilter)} starts with the point where the ray enters the globe, so the domes of
+ * the far side are never reached. It visits the boxes the ray crosses, nearest first, and skips the boxes
+ * entered beyond the closest hit so far; only the domes of the leaves reached get the exact ray / ellipsoid
+ * test. Works headless; not thread safe, see {@link ShapePicker}.
+ *
+ * @author viorel.florian
+ */
+public class ShapeBvh {
+
+  /** most domes in a leaf */
+  private static final int LEAF_SIZE = 4;
+
+  /** shape -> item */
+  private final Map<AbstractDomeShape, Item> items = new IdentityHashMap<AbstractDomeShape, Item>();
+
+  /** items in tree order, leaves hold ranges of it */
+  private Item[] order = new Item[0];
+
+  /** node bounds, min x y z then max x y z */
+  private double[] bounds = new double[0];
+
+  /** first child of an inner node, -1 for leaves */
+  private int[] left = new int[0];
+
+  /** second child of an inner node, first item of a leaf */
+  private int[] right = new int[0];
+
+  /** number of items of a leaf, 0 for inner nodes */
+  private int[] counts = new int[0];
+
+  /** parent node, -1 for the root */
+  private int[] parents = new int[0];
+
+  /** number of nodes */
+  private int nodeCount = 0;
+
+  /** items whose dome changed since the last pick */
+  private final List<Item> changed = new ArrayList<Item>();
+
+  /** refits since the last build */
+  private int refits = 0;
+
+  /** the tree must be built again */
+  private boolean stale = true;
+
+  /** globe of the matrices */
+  private Globe globe;
+
+  /** vertical exaggeration of the matrices */
+  private double verticalExaggeration = 1;
+
+  /**
+   * Constructs a new, empty, instance.
+   *
+   * @param globe the domes are on
+   */
+  public ShapeBvh(Globe globe) {
+    super();
+    this.globe = globe;
+  }
+
+  /**
+   * @param shape
+   */
+  public void add(AbstractDomeShape shape) {
+    if (!this.items.containsKey(shape)) {
+      this.items.put(shape, new Item(shape));
+      this.stale = true;
+    }
+  }
+
+  /**
+   * @param shape
+   */
+  public void remove(AbstractDomeShape shape) {
+    if (this.items.remove(shape) != null) {
+      this.stale = true;
+    }
+  }
+
+  /**
+   * Follows the new geometry of a dome, ignores the domes not in the tree
+   *
+   * @param shape
+   */
+  public void update(AbstractDomeShape shape) {
+    Item item = this.items.get(shape);
+    if (item != null && !item.changed) {
+      item.changed = true;
+      this.changed.add(item);
+    }
+  }
+
+  /**
+   * Removes all the domes
+   */
+  public void clear() {
+    this.items.clear();
+    this.changed.clear();
+    this.order = new Item[0];
+    this.nodeCount = 0;
+    this.stale = true;
+  }
+
+  /**
+   * Get number of domes.
+   *
+   * @return size
+   */
+  public int size() {
+    return this.items.size();
+  }
+
+  /**
+   * Get number of nodes, for checks.
+   *
+   * @return nodes of the last build, the leaves included
+   */
+  public int getNodeCount() {
+    return this.nodeCount;
+  }
+
+  /**
+   * Sets the globe and the vertical exaggeration the domes are picked on, rebuilds when they change
+   *
+   * @param globe
+   * @param verticalExaggeration
+   */
+  public void setGlobe(Globe globe, double verticalExaggeration) {
+    if (globe != this.globe || verticalExaggeration != this.verticalExaggeration) {
+      this.globe = globe;
+      this.verticalExaggeration = verticalExaggeration;
+      this.stale = true;
+    }
+  }
+
+  /**
+   * Finds the dome the ray hits first
+   *
+   * @param ray in model coordinates
+   * @param filter domes it hides are not picked, <code>null</code> for none
+   *
+   * @return nearest visible dome hit, <code>null</code> if none
+   */
+  public AbstractDomeShape pick(Line ray, DomeFilter filter) {
+    this.validate();
+    if (this.nodeCount == 0) {
+      return null;
+    }
+    Vec4 o = ray.getOrigin();
+    Vec4 d = ray.getDirection();
+    double[] origin = { o.x, o.y, o.z };
+    double[] inverse = { 1 / d.x, 1 / d.y, 1 / d.z };
+
+    AbstractDomeShape best = null;
+    // nothing behind the globe is visible
+    double bestT = this.enterGlobe(o, d, ray);
+    int[] stack = new int[64];
+    int top = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int node = stack[--top];
+      if (this.enter(node, origin, inverse) >= bestT) {
+        continue;
+      }
+      if (this.counts[node] > 0) {
+        for (int i = this.right[node]; i < this.right[node] + this.counts[node]; i++) {
+          Item item = this.order[i];
+          if (!item.shape.isVisible() || (filter != null && filter.hides(item.shape))) {
+            continue;
+          }
+          double t = item.intersect(o, d);
+          if (t < bestT) {
+            bestT = t;
+            best = item.shape;
+          }
+        }
+        continue;
+      }
+      int near = this.left[node];
+      int far = this.right[node];
+      if (this.enter(near, origin, inverse) > this.enter(far, origin, inverse)) {
+        near = far;
+        far = this.left[node];
+      }
+      if (top + 2 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      // nearest child on top
+      stack[top++] = far;
+      stack[top++] = near;
+    }
+    return best;
+  }
+
+  /**
+   * Intersects the ray with the globe lowered to its deepest elevation, so no dome sitting on the terrain
+   * is clipped
+   *
+   * @param o ray origin
+   * @param d ray direction
+   * @param ray
+   *
+   * @return distance along the ray where it enters the globe, infinite if it misses
+   */
+  private double enterGlobe(Vec4 o, Vec4 d, Line ray) {
+    if (this.globe == null) {
+      return Double.POSITIVE_INFINITY;
+    }
+    Intersection[] hits = this.globe.intersect(ray, this.globe.getMinElevation() * this.verticalExaggeration);
+    double enter = Double.POSITIVE_INFINITY;
+    if (hits == null) {
+      return enter;
+    }
+    for (Intersection hit : hits) {
+      // in units of the direction, as the box and dome distances
+      double t = hit.getIntersectionPoint().subtract3(o).dot3(d) / d.dot3(d);
+      if (t >= 0 && t < enter) {
+        enter = t;
+      }
+    }
+    return enter;
+  }
+
+  /**
+   * Slab test
+   *
+   * @return distance along the ray where it enters the box, infinite if it misses
+   */
+  private double enter(int node, double[] origin, double[] inverse) {
+    int b = node * 6;
+    double tMin = 0;
+    double tMax = Double.POSITIVE_INFINITY;
+    for (int axis = 0; axis < 3; axis++) {
+      double min = this.bounds[b + axis];
+      double max = this.bounds[b + 3 + axis];
+      if (Double.isInfinite(inverse[axis])) {
+        // parallel to the slab
+        if (origin[axis] < min || origin[axis] > max) {
+          return Double.POSITIVE_INFINITY;
+        }
+        continue;
+      }
+      double t1 = (min - origin[axis]) * inverse[axis];
+      double t2 = (max - origin[axis]) * inverse[axis];
+      tMin = Math.max(tMin, Math.min(t1, t2));
+      tMax = Math.min(tMax, Math.max(t1, t2));
+    }
+    return tMin <= tMax ? tMin : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Builds or refits the tree for the pending changes
+   */
+  private void validate() {
+    if (!this.stale && this.refits + this.changed.size() > this.items.size()) {
+      this.stale = true;
+    }
+    if (this.stale) {
+      this.build();
+      return;
+    }
+    for (Item item : this.changed) {
+      item.changed = false;
+      item.compute(this.globe, this.verticalExaggeration);
+      this.refit(item.leaf);
+    }
+    this.refits += this.changed.size();
+    this.changed.clear();
+  }
+
+  /**
+   * Builds the tree from all the domes
+   */
+  private void build() {
+    for (Item item : this.changed) {
+      item.changed = false;
+    }
+    this.changed.clear();
+    this.stale = false;
+    this.refits = 0;
+
+    int n = this.items.size();
+    this.order = this.items.values().toArray(new Item[n]);
+    for (Item item : this.order) {
+      item.compute(this.globe, this.verticalExaggeration);
+    }
+    int capacity = Math.max(1, 2 * n);
+    if (this.left.length < capacity) {
+      this.bounds = new double[capacity * 6];
+      this.left = new int[capacity];
+      this.right = new int[capacity];
+      this.counts = new int[capacity];
+      this.parents = new int[capacity];
+    }
+    this.nodeCount = 0;
+    if (n > 0) {
+      this.build(0, n, -1);
+    }
+  }
+
+  /**
+   * Builds the subtree of a range of items
+   *
+   * @return node
+   */
+  private int build(int from, int to, int parent) {
+    int node = this.nodeCount++;
+    this.parents[node] = parent;
+    if (to - from <= LEAF_SIZE) {
+      this.left[node] = -1;
+      this.right[node] = from;
+      this.counts[node] = to - from;
+      for (int i = from; i < to; i++) {
+        this.order[i].leaf = node;
+      }
+      this.fitLeaf(node);
+      return node;
+    }
+
+    // split the longest axis of the centers at the median
+    double[] extent = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+        Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+    for (int i = from; i < to; i++) {
+      for (int axis = 0; axis < 3; axis++) {
+        double c = this.order[i].center[axis];
+        extent[axis] = Math.min(extent[axis], c);
+        extent[3 + axis] = Math.max(extent[3 + axis], c);
+      }
+    }
+    int axis = 0;
+    for (int a = 1; a < 3; a++) {
+      if (extent[3 + a] - extent[a] > extent[3 + axis] - extent[axis]) {
+        axis = a;
+      }
+    }
+    Arrays.sort(this.order, from, to, new CenterComparator(axis));
+    int middle = (from + to) >>> 1;
+
+    this.counts[node] = 0;
+    this.left[node] = this.build(from, middle, node);
+    this.right[node] = this.build(middle, to, node);
+    this.fitInner(node);
+    return node;
+  }
+
+  /**
+   * Refits the boxes from a leaf up to the root
+   *
+   * @param leaf
+   */
+  private void refit(int leaf) {
+    this.fitLeaf(leaf);
+    for (int node = this.parents[leaf]; node >= 0; node = this.parents[node]) {
+      this.fitInner(node);
+    }
+  }
+
+  /**
+   * @param node leaf whose box becomes the union of its items
+   */
+  private void fitLeaf(int node) {
+    int b = node * 6;
+    Arrays.fill(this.bounds, b, b + 3, Double.POSITIVE_INFINITY);
+    Arrays.fill(this.bounds, b + 3, b + 6, Double.NEGATIVE_INFINITY);
+    for (int i = this.right[node]; i < this.right[node] + this.counts[node]; i++) {
+      Item item = this.order[i];
+      for (int axis = 0; axis < 3; axis++) {
+        this.bounds[b + axis] = Math.min(this.bounds[b + axis], item.center[axis] - item.extent[axis]);
+        this.bounds[b + 3 + axis] = Math.max(this.bounds[b + 3 + axis], item.center[axis] + item.extent[axis]);
+      }
+    }
+  }
+
+  /**
+   * @param node inner node whose box becomes the union of its children
+   */
+  private void fitInner(int node) {
+    int b = node * 6;
+    int l = this.left[node] * 6;
+    int r = this.right[node] * 6;
+    for (int axis = 0; axis < 3; axis++) {
+      this.bounds[b + axis] = Math.min(this.bounds[l + axis], this.bounds[r + axis]);
+      this.bounds[b + 3 + axis] = Math.max(this.bounds[l + 3 + axis], this.bounds[r + 3 + axis]);
+    }
+  }
+
+  /**
+   * Orders items by one coordinate of their center
+   */
+  private static final class CenterComparator implements Comparator<Item> {
+
+    /** axis, 0 to 2 */
+    private final int axis;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param axis
+     */
+    CenterComparator(int axis) {
+      this.axis = axis;
+    }
+
+    /**
+     * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public int compare(Item a, Item b) {
+      return Double.compare(a.center[this.axis], b.center[this.axis]);
+    }
+  }
+
+  /**
+   * Dome in the tree
+   */
+  private static final class Item {
+
+    /** dome */
+    final AbstractDomeShape shape;
+
+    /** model to unit sphere, row major, 3 rows */
+    final double[] inverse = new double[12];
+
+    /** center */
+    final double[] center = new double[3];
+
+    /** half size of the bounds on each axis */
+    final double[] extent = new double[3];
+
+    /** leaf holding the item */
+    int leaf;
+
+    /** waiting for a refit */
+    boolean changed;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param shape
+     */
+    Item(AbstractDomeShape shape) {
+      this.shape = shape;
+    }
+
+    /**
+     * Reads the geometry of the dome
+     *
+     * @param globe
+     * @param verticalExaggeration
+     */
+    void compute(Globe globe, double verticalExaggeration) {
+      Matrix m = this.shape.computeRenderMatrix(globe, verticalExaggeration);
+      double[] rows = { m.m11, m.m12, m.m13, m.m14, m.m21, m.m22, m.m23, m.m24, m.m31, m.m32, m.m33, m.m34 };
+      for (int r = 0; r < 3; r++) {
+        int i = r * 4;
+        this.center[r] = rows[i + 3];
+        // the unit sphere spans the length of each matrix row
+        this.extent[r] = Math.sqrt(rows[i] * rows[i] + rows[i + 1] * rows[i + 1] + rows[i + 2] * rows[i + 2]);
+      }
+      Matrix inv = m.getInverse();
+      if (inv == null) {
+        // flat dome, a zero matrix is never hit
+        Arrays.fill(this.inverse, 0);
+        return;
+      }
+      double[] inverseRows = { inv.m11, inv.m12, inv.m13, inv.m14, inv.m21, inv.m22, inv.m23, inv.m24, inv.m31,
+          inv.m32, inv.m33, inv.m34 };
+      System.arraycopy(inverseRows, 0, this.inverse, 0, 12);
+    }
+
+    /**
+     * Exact test, in the unit sphere space of the dome
+     *
+     * @param o ray origin
+     * @param d ray direction
+     *
+     * @return distance along the ray of the first hit in front of the origin, infinite if none
+     */
+    double intersect(Vec4 o, Vec4 d) {
+      double[] m = this.inverse;
+      double ox = m[0] * o.x + m[1] * o.y + m[2] * o.z + m[3];
+      double oy = m[4] * o.x + m[5] * o.y + m[6] * o.z + m[7];
+      double oz = m[8] * o.x + m[9] * o.y + m[10] * o.z + m[11];
+      double dx = m[0] * d.x + m[1] * d.y + m[2] * d.z;
+      double dy = m[4] * d.x + m[5] * d.y + m[6] * d.z;
+      double dz = m[8] * d.x + m[9] * d.y + m[10] * d.z;
+
+      // |o + t d| = 1, the transform is affine so t is the same as along the model ray
+      double a = dx * dx + dy * dy + dz * dz;
+      double b = ox * dx + oy * dy + oz * dz;
+      double c = ox * ox + oy * oy + oz * oz - 1;
+      double discriminant = b * b - a * c;
+      if (a == 0 || discriminant < 0) {
+        return Double.POSITIVE_INFINITY;
+      }
+      double root = Math.sqrt(discriminant);
+      double t = (-b - root) / a;
+      if (t < 0) {
+        // origin inside the dome
+        t = (-b + root) / a;
+      }
+      return t < 0 ? Double.POSITIVE_INFINITY : t;
+    }
+  }
+}
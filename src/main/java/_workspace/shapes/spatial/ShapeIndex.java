@@ -0,0 +1,727 @@
+package _workspace.shapes.spatial;
+
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.render.Ellipsoid;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import _workspace.shapes.IShape;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.ShapesPoolListener;
+
+/**
+ * Spatial index over the ellipsoid shapes of a pool, each workspace keeps one over its own pool.
+ * <p>
+ * A latitude / longitude quadtree of the shape centers; every node also remembers the largest
+ * shape radius below it, so footprint queries (a shape counts as soon as its footprint touches the
+ * query area) can prune whole subtrees. Radius, sector and k nearest queries are logarithmic in the
+ * number of shapes for evenly spread bases.
+ * <p>
+ * The index listens to its {@link ShapesPool}: adds, removes and moves (including drags) are applied as
+ * they happen. Distances are great circle distances, in meters, on a sphere of the globe radius.
+ *
+ * @author viorel.florian
+ */
+public class ShapeIndex implements ShapesPoolListener {
+
+  /** entries in a leaf before it is split */
+  private static final int LEAF_CAPACITY = 16;
+
+  /** deepest level, about 2 meters of latitude */
+  private static final int MAX_DEPTH = 24;
+
+  /** lock, queries read, updates write */
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** root, the whole globe */
+  private final Node root = new Node(null, -90, 90, -180, 180, 0);
+
+  /** shape -> entry */
+  private final Map<IShape, Entry> entries = new IdentityHashMap<IShape, Entry>();
+
+  /** globe radius, in meters */
+  private volatile double globeRadius;
+
+  /**
+   * Constructs a new, empty, instance.
+   *
+   * @param globeRadius in meters
+   */
+  public ShapeIndex(double globeRadius) {
+    super();
+    this.globeRadius = globeRadius;
+  }
+
+  /**
+   * Indexes the shapes of the pool and follows its changes
+   *
+   * @param pool
+   */
+  public void attach(ShapesPool pool) {
+    pool.addPoolListener(this);
+    for (IShape shape : pool.getAllShapes()) {
+      this.shapeAdded(shape);
+    }
+  }
+
+  /**
+   * Stops following the pool
+   *
+   * @param pool
+   */
+  public void detach(ShapesPool pool) {
+    pool.removePoolListener(this);
+  }
+
+  /**
+   * Get globeRadius.
+   *
+   * @return globeRadius, in meters
+   */
+  public double getGlobeRadius() {
+    return this.globeRadius;
+  }
+
+  /**
+   * Set globeRadius. The tree itself is in degrees, only distances change.
+   *
+   * @param globeRadius in meters
+   */
+  public void setGlobeRadius(double globeRadius) {
+    this.globeRadius = globeRadius;
+  }
+
+  /**
+   * Get number of indexed shapes.
+   *
+   * @return size
+   */
+  public int size() {
+    this.lock.readLock().lock();
+    try {
+      return this.entries.size();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Tells if the shape is indexed
+   *
+   * @param shape
+   * @return <code>true</code> if indexed
+   */
+  public boolean contains(IShape shape) {
+    this.lock.readLock().lock();
+    try {
+      return this.entries.containsKey(shape);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeAdded(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeAdded(IShape shape) {
+    if (!(shape instanceof Ellipsoid)) {
+      return;
+    }
+    this.lock.writeLock().lock();
+    try {
+      Entry entry = this.entries.get(shape);
+      if (entry == null) {
+        entry = new Entry(shape);
+        entry.read();
+        this.entries.put(shape, entry);
+        this.root.insert(entry);
+      } else {
+        this.update(entry);
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeRemoved(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeRemoved(IShape shape) {
+    this.lock.writeLock().lock();
+    try {
+      Entry entry = this.entries.remove(shape);
+      if (entry != null) {
+        entry.leaf.remove(entry);
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeChanged(_workspace.shapes.IShape)
+   */
+  @Override
+  public void shapeChanged(IShape shape) {
+    this.lock.writeLock().lock();
+    try {
+      Entry entry = this.entries.get(shape);
+      if (entry != null) {
+        this.update(entry);
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Moves the entry if its center or radius changed, under the write lock
+   *
+   * @param entry
+   */
+  private void update(Entry entry) {
+    Ellipsoid e = (Ellipsoid) entry.shape;
+    Position pos = e.getCenterPosition();
+    double lat = latitude(pos);
+    double lon = longitude(pos);
+    double radius = boundingRadius(e);
+    if (lat == entry.lat && lon == entry.lon && radius == entry.radius) {
+      return;
+    }
+
+    if (entry.leaf.contains(lat, lon)) {
+      entry.lat = lat;
+      entry.lon = lon;
+      entry.radius = radius;
+      entry.leaf.refit();
+    } else {
+      entry.leaf.remove(entry);
+      entry.lat = lat;
+      entry.lon = lon;
+      entry.radius = radius;
+      this.root.insert(entry);
+    }
+  }
+
+  /**
+   * Shapes whose footprint is within the given distance of a point
+   *
+   * @param center
+   * @param meters
+   *
+   * @return shapes, in no particular order
+   */
+  public List<IShape> withinRadius(LatLon center, double meters) {
+    List<IShape> result = new ArrayList<IShape>();
+    double lat = center.getLatitude().getDegrees();
+    double lon = normalizeLongitude(center.getLongitude().getDegrees());
+    this.lock.readLock().lock();
+    try {
+      this.withinRadius(this.root, lat, lon, meters, result);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+    return result;
+  }
+
+  /**
+   * @param node
+   * @param lat
+   * @param lon
+   * @param meters
+   * @param result
+   */
+  private void withinRadius(Node node, double lat, double lon, double meters, List<IShape> result) {
+    if (node.count == 0 || this.minDistance(node, lat, lon) - node.maxRadius > meters) {
+      return;
+    }
+    if (node.children == null) {
+      for (Entry entry : node.entries) {
+        if (this.distance(lat, lon, entry.lat, entry.lon) - entry.radius <= meters) {
+          result.add(entry.shape);
+        }
+      }
+      return;
+    }
+    for (Node child : node.children) {
+      this.withinRadius(child, lat, lon, meters, result);
+    }
+  }
+
+  /**
+   * Shapes whose footprint intersects the sector. A sector whose minimum longitude is east of its maximum
+   * one crosses the antimeridian.
+   *
+   * @param sector
+   *
+   * @return shapes, in no particular order
+   */
+  public List<IShape> intersecting(Sector sector) {
+    List<IShape> result = new ArrayList<IShape>();
+    double minLat = sector.getMinLatitude().getDegrees();
+    double maxLat = sector.getMaxLatitude().getDegrees();
+    double minLon = normalizeLongitude(sector.getMinLongitude().getDegrees());
+    double maxLon = normalizeLongitude(sector.getMaxLongitude().getDegrees());
+    this.lock.readLock().lock();
+    try {
+      if (minLon <= maxLon) {
+        this.intersecting(this.root, minLat, maxLat, minLon, maxLon, result);
+      } else {
+        // split at the antimeridian, a shape touching both halves is only reported once
+        this.intersecting(this.root, minLat, maxLat, minLon, 180, result);
+        Map<IShape, Boolean> east = new IdentityHashMap<IShape, Boolean>(result.size() * 2);
+        for (IShape shape : result) {
+          east.put(shape, Boolean.TRUE);
+        }
+        List<IShape> west = new ArrayList<IShape>();
+        this.intersecting(this.root, minLat, maxLat, -180, maxLon, west);
+        for (IShape shape : west) {
+          if (!east.containsKey(shape)) {
+            result.add(shape);
+          }
+        }
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+    return result;
+  }
+
+  /**
+   * @param node
+   * @param minLat
+   * @param maxLat
+   * @param minLon
+   * @param maxLon
+   * @param result
+   */
+  private void intersecting(Node node, double minLat, double maxLat, double minLon, double maxLon,
+      List<IShape> result) {
+    if (node.count == 0) {
+      return;
+    }
+    double latPad = this.latitudeSpan(node.maxRadius);
+    double lonPad = this.longitudeSpan(node.maxRadius, Math.max(Math.abs(node.minLat), Math.abs(node.maxLat)) + latPad);
+    if (node.minLat - latPad > maxLat || node.maxLat + latPad < minLat
+        || !overlapsLongitude(node.minLon - lonPad, node.maxLon + lonPad, minLon, maxLon)) {
+      return;
+    }
+    if (node.children == null) {
+      for (Entry entry : node.entries) {
+        double dLat = this.latitudeSpan(entry.radius);
+        double dLon = this.longitudeSpan(entry.radius, Math.abs(entry.lat));
+        if (entry.lat - dLat <= maxLat && entry.lat + dLat >= minLat
+            && overlapsLongitude(entry.lon - dLon, entry.lon + dLon, minLon, maxLon)) {
+          result.add(entry.shape);
+        }
+      }
+      return;
+    }
+    for (Node child : node.children) {
+      this.intersecting(child, minLat, maxLat, minLon, maxLon, result);
+    }
+  }
+
+  /**
+   * The k shapes whose centers are nearest to a point
+   *
+   * @param point
+   * @param k
+   *
+   * @return at most k shapes, nearest first
+   */
+  public List<IShape> nearest(LatLon point, int k) {
+    List<IShape> result = new ArrayList<IShape>(Math.max(k, 0));
+    if (k <= 0) {
+      return result;
+    }
+    double lat = point.getLatitude().getDegrees();
+    double lon = normalizeLongitude(point.getLongitude().getDegrees());
+
+    this.lock.readLock().lock();
+    try {
+      // best first: nodes are queued by the lowest distance they can hold, entries by their distance
+      PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+      queue.add(new Candidate(0, this.root, null));
+      while (!queue.isEmpty() && result.size() < k) {
+        Candidate c = queue.poll();
+        if (c.entry != null) {
+          result.add(c.entry.shape);
+        } else if (c.node.children == null) {
+          for (Entry entry : c.node.entries) {
+            queue.add(new Candidate(this.distance(lat, lon, entry.lat, entry.lon), null, entry));
+          }
+        } else {
+          for (Node child : c.node.children) {
+            if (child.count > 0) {
+              queue.add(new Candidate(this.minDistance(child, lat, lon), child, null));
+            }
+          }
+        }
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+    return result;
+  }
+
+  /**
+   * Great circle distance between two points
+   *
+   * @return distance, in meters
+   */
+  private double distance(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1))
+        * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+    return 2 * this.globeRadius * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /**
+   * Lower bound of the distance from a point to any point of the node
+   *
+   * @return distance, in meters
+   */
+  private double minDistance(Node node, double lat, double lon) {
+    double dLat = lat < node.minLat ? node.minLat - lat : lat > node.maxLat ? lat - node.maxLat : 0;
+
+    double dLon = 0;
+    if (lon < node.minLon || lon > node.maxLon) {
+      double toMin = node.minLon - lon;
+      double toMax = lon - node.maxLon;
+      toMin = toMin < 0 ? toMin + 360 : toMin;
+      toMax = toMax < 0 ? toMax + 360 : toMax;
+      dLon = Math.min(toMin, toMax);
+    }
+    // distance to the nearest bounding meridian
+    double crossTrack = dLon == 0 ? 0 : Math.asin(Math.sin(Math.toRadians(Math.min(dLon, 90)))
+        * Math.cos(Math.toRadians(lat)));
+
+    return this.globeRadius * Math.max(Math.toRadians(dLat), crossTrack);
+  }
+
+  /**
+   * @param meters
+   * @return degrees of latitude covered by the distance
+   */
+  private double latitudeSpan(double meters) {
+    return Math.toDegrees(meters / this.globeRadius);
+  }
+
+  /**
+   * @param meters
+   * @param absLat highest absolute latitude of the area, in degrees
+   * @return degrees of longitude covered by the distance
+   */
+  private double longitudeSpan(double meters, double absLat) {
+    double cos = Math.cos(Math.toRadians(Math.min(absLat, 90)));
+    if (cos < 1e-6) {
+      return 360;
+    }
+    return Math.min(360, this.latitudeSpan(meters) / cos);
+  }
+
+  /**
+   * Tells if two longitude ranges overlap, the first one may run past the antimeridian
+   *
+   * @param lo west end, may be below -180
+   * @param hi east end, may be above 180
+   * @param minLon in [-180, 180]
+   * @param maxLon in [minLon, 180]
+   * @return <code>true</code> if they overlap
+   */
+  private static boolean overlapsLongitude(double lo, double hi, double minLon, double maxLon) {
+    if (hi - lo >= 360) {
+      return true;
+    }
+    return (lo <= maxLon && hi >= minLon) || (lo + 360 <= maxLon && hi + 360 >= minLon)
+        || (lo - 360 <= maxLon && hi - 360 >= minLon);
+  }
+
+  /**
+   * Largest of the three radii, a tilted or rolled shape can lay its vertical radius flat
+   *
+   * @param e
+   * @return radius, in meters
+   */
+  private static double boundingRadius(Ellipsoid e) {
+    return Math.max(e.getVerticalRadius(), Math.max(e.getNorthSouthRadius(), e.getEastWestRadius()));
+  }
+
+  /**
+   * @param pos
+   * @return latitude in degrees
+   */
+  private static double latitude(Position pos) {
+    return Math.max(-90, Math.min(90, pos.getLatitude().getDegrees()));
+  }
+
+  /**
+   * @param pos
+   * @return normalized longitude in degrees
+   */
+  private static double longitude(Position pos) {
+    return normalizeLongitude(pos.getLongitude().getDegrees());
+  }
+
+  /**
+   * @param degrees
+   * @return longitude in [-180, 180]
+   */
+  static double normalizeLongitude(double degrees) {
+    if (degrees >= -180 && degrees <= 180) {
+      return degrees;
+    }
+    double lon = (degrees + 180) % 360;
+    return (lon < 0 ? lon + 360 : lon) - 180;
+  }
+
+  /**
+   * Indexed shape
+   */
+  private static final class Entry {
+
+    /** shape */
+    final IShape shape;
+
+    /** center latitude, in degrees */
+    double lat;
+
+    /** center longitude, in degrees */
+    double lon;
+
+    /** largest radius, in meters */
+    double radius;
+
+    /** leaf holding the entry */
+    Node leaf;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param shape
+     */
+    Entry(IShape shape) {
+      this.shape = shape;
+    }
+
+    /**
+     * Reads center and radius from the shape
+     */
+    void read() {
+      Ellipsoid e = (Ellipsoid) this.shape;
+      Position pos = e.getCenterPosition();
+      this.lat = latitude(pos);
+      this.lon = longitude(pos);
+      this.radius = boundingRadius(e);
+    }
+  }
+
+  /**
+   * Quadtree node
+   */
+  private static final class Node {
+
+    /** parent, <code>null</code> for the root */
+    final Node parent;
+
+    /** bounds, in degrees */
+    final double minLat, maxLat, minLon, maxLon;
+
+    /** depth */
+    final int depth;
+
+    /** entries, only for leaves */
+    List<Entry> entries = new ArrayList<Entry>();
+
+    /** children, <code>null</code> for leaves */
+    Node[] children;
+
+    /** entries in this subtree */
+    int count;
+
+    /** largest radius in this subtree */
+    double maxRadius;
+
+    /**
+     * Constructs a new instance.
+     */
+    Node(Node parent, double minLat, double maxLat, double minLon, double maxLon, int depth) {
+      this.parent = parent;
+      this.minLat = minLat;
+      this.maxLat = maxLat;
+      this.minLon = minLon;
+      this.maxLon = maxLon;
+      this.depth = depth;
+    }
+
+    /**
+     * @return <code>true</code> if the point is inside the bounds
+     */
+    boolean contains(double lat, double lon) {
+      return lat >= this.minLat && lat <= this.maxLat && lon >= this.minLon && lon <= this.maxLon;
+    }
+
+    /**
+     * @return child holding the point
+     */
+    Node childFor(double lat, double lon) {
+      int i = (lat >= (this.minLat + this.maxLat) / 2 ? 2 : 0) + (lon >= (this.minLon + this.maxLon) / 2 ? 1 : 0);
+      return this.children[i];
+    }
+
+    /**
+     * Inserts below this node
+     *
+     * @param entry
+     */
+    void insert(Entry entry) {
+      Node node = this;
+      while (node.children != null) {
+        node.count++;
+        node.maxRadius = Math.max(node.maxRadius, entry.radius);
+        node = node.childFor(entry.lat, entry.lon);
+      }
+      node.count++;
+      node.maxRadius = Math.max(node.maxRadius, entry.radius);
+      node.entries.add(entry);
+      entry.leaf = node;
+      if (node.entries.size() > LEAF_CAPACITY && node.depth < MAX_DEPTH) {
+        node.split();
+      }
+    }
+
+    /**
+     * Turns this leaf into four children
+     */
+    private void split() {
+      double midLat = (this.minLat + this.maxLat) / 2;
+      double midLon = (this.minLon + this.maxLon) / 2;
+      this.children = new Node[] { new Node(this, this.minLat, midLat, this.minLon, midLon, this.depth + 1),
+          new Node(this, this.minLat, midLat, midLon, this.maxLon, this.depth + 1),
+          new Node(this, midLat, this.maxLat, this.minLon, midLon, this.depth + 1),
+          new Node(this, midLat, this.maxLat, midLon, this.maxLon, this.depth + 1) };
+      List<Entry> moved = this.entries;
+      this.entries = null;
+      for (Entry entry : moved) {
+        this.childFor(entry.lat, entry.lon).insert(entry);
+      }
+    }
+
+    /**
+     * Removes an entry of this leaf, collapses the highest ancestor that became small enough
+     *
+     * @param entry
+     */
+    void remove(Entry entry) {
+      this.entries.remove(entry);
+      entry.leaf = null;
+      Node collapse = null;
+      for (Node n = this; n != null; n = n.parent) {
+        n.count--;
+        if (n.children != null && n.count <= LEAF_CAPACITY / 2) {
+          collapse = n;
+        }
+      }
+      if (collapse != null) {
+        collapse.collapse();
+        collapse.refit();
+      } else {
+        this.refit();
+      }
+    }
+
+    /**
+     * Recomputes the largest radius of this node and of its ancestors, after a radius shrank or an entry left
+     */
+    void refit() {
+      for (Node n = this; n != null; n = n.parent) {
+        double max = 0;
+        if (n.children == null) {
+          for (Entry entry : n.entries) {
+            max = Math.max(max, entry.radius);
+          }
+        } else {
+          for (Node child : n.children) {
+            max = Math.max(max, child.maxRadius);
+          }
+        }
+        if (max == n.maxRadius && n != this) {
+          // the ancestors only depend on this value
+          break;
+        }
+        n.maxRadius = max;
+      }
+    }
+
+    /**
+     * Pulls all entries of the subtree back into this node
+     */
+    private void collapse() {
+      List<Entry> all = new ArrayList<Entry>(this.count);
+      this.collect(all);
+      this.children = null;
+      this.entries = all;
+      this.maxRadius = 0;
+      for (Entry entry : all) {
+        entry.leaf = this;
+        this.maxRadius = Math.max(this.maxRadius, entry.radius);
+      }
+    }
+
+    /**
+     * @param into
+     */
+    private void collect(List<Entry> into) {
+      if (this.children == null) {
+        into.addAll(this.entries);
+        return;
+      }
+      for (Node child : this.children) {
+        child.collect(into);
+      }
+    }
+  }
+
+  /**
+   * Queued node or entry of a nearest query
+   */
+  private static final class Candidate implements Comparable<Candidate> {
+
+    /** distance, in meters */
+    final double distance;
+
+    /** node, or <code>null</code> */
+    final Node node;
+
+    /** entry, or <code>null</code> */
+    final Entry entry;
+
+    /**
+     * Constructs a new instance.
+     */
+    Candidate(double distance, Node node, Entry entry) {
+      this.distance = distance;
+      this.node = node;
+      this.entry = entry;
+    }
+
+    /**
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(Candidate o) {
+      return Double.compare(this.distance, o.distance);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package _workspace.shapes.spatial;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Line;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.awt.Point;
+
+import _workspace.shapes.AbstractDomeShape;
+import _workspace.shapes.IShape;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.ShapesPoolListener;
+import _workspace.shapes.render.DomeFilter;
+
+/**
+ * Finds the dome under the cursor without a pick pass.
+ * <p>
+ * The cursor becomes a ray from the eye through the screen point, which is tested against a
+ * {@link ShapeBvh} of the domes of the pool: the cost of a pick grows with the log of the number of domes and
+ * nothing is drawn. The picker follows the pool of its workspace; picks come from the event thread, pool
+ * changes from any thread.
+ *
+ * @author viorel.florian
+ */
+public class ShapePicker implements ShapesPoolListener {
+
+  /** domes of the pool */
+  private final ShapeBvh bvh;
+
+  /** domes it hides are not picked, <code>null</code> for none */
+  private volatile DomeFilter filter;
+
+  /**
+   * Constructs a new, empty, instance.
+   *
+   * @param globe the domes are on
+   */
+  public ShapePicker(Globe globe) {
+    super();
+    this.bvh = new ShapeBvh(globe);
+  }
+
+  /**
+   * Follows the pool, adding the domes already in it
+   *
+   * @param pool
+   */
+  public void attach(ShapesPool pool) {
+    pool.addPoolListener(this);
+    for (IShape shape : pool.getAllShapes()) {
+      this.shapeAdded(shape);
+    }
+  }
+
+  /**
+   * Stops following the pool and forgets its domes
+   *
+   * @param pool
+   */
+  public void detach(ShapesPool pool) {
+    pool.removePoolListener(this);
+    synchronized (this) {
+      this.bvh.clear();
+    }
+  }
+
+  /**
+   * Set filter.
+   *
+   * @param filter domes it hides are not picked, <code>null</code> for none
+   */
+  public void setFilter(DomeFilter filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Get filter.
+   *
+   * @return filter, <code>null</code> for none
+   */
+  public DomeFilter getFilter() {
+    return this.filter;
+  }
+
+  /**
+   * Sets the globe and the vertical exaggeration the domes are drawn on
+   *
+   * @param globe
+   * @param verticalExaggeration
+   */
+  public synchronized void setGlobe(Globe globe, double verticalExaggeration) {
+    this.bvh.setGlobe(globe, verticalExaggeration);
+  }
+
+  /**
+   * @param ray in model coordinates
+   * @return nearest dome hit, <code>null</code> if none
+   */
+  public synchronized AbstractDomeShape pick(Line ray) {
+    return this.bvh.pick(ray, this.filter);
+  }
+
+  /**
+   * @param view
+   * @param point on screen, AWT coordinates
+   *
+   * @return dome under the point, <code>null</code> if none
+   */
+  public AbstractDomeShape pick(View view, Point point) {
+    if (point == null) {
+      return null;
+    }
+    Line ray = view.computeRayFromScreenPoint(point.x, point.y);
+    return ray == null ? null : this.pick(ray);
+  }
+
+  /**
+   * Get number of domes.
+   *
+   * @return size
+   */
+  public synchronized int size() {
+    return this.bvh.size();
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeAdded(_workspace.shapes.IShape)
+   */
+  @Override
+  public synchronized void shapeAdded(IShape shape) {
+    if (shape instanceof AbstractDomeShape) {
+      this.bvh.add((AbstractDomeShape) shape);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeRemoved(_workspace.shapes.IShape)
+   */
+  @Override
+  public synchronized void shapeRemoved(IShape shape) {
+    if (shape instanceof AbstractDomeShape) {
+      this.bvh.remove((AbstractDomeShape) shape);
+    }
+  }
+
+  /**
+   * @see _workspace.shapes.ShapesPoolListener#shapeChanged(_workspace.shapes.IShape)
+   */
+  @Override
+  public synchronized void shapeChanged(IShape shape) {
+    if (shape instanceof AbstractDomeShape) {
+      this.bvh.update((AbstractDomeShape) shape);
+    }
+  }
+}
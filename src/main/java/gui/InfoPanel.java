@@ -10,6 +10,8 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
 
+import utility.LogSink;
+
 /**
  * @author Viorel Florian
  *
@@ -29,6 +31,15 @@ public class InfoPanel extends JPanel {
 	/** scrl - scrollpane containing the text pane  
 	 * */
 	public static JScrollPane scrl = new JScrollPane(mbcOutput);
+
+	/** log lines waiting for the EDT */
+	private static final int PENDING_LINES = 4096;
+
+	/** log lines kept in mbcOutput */
+	private static final int MAX_LINES = 5000;
+
+	/** logSink - Logger output to mbcOutput */
+	private static final LogSink logSink = new LogSink(mbcOutput, PENDING_LINES, MAX_LINES);
 	
 
 	/**
@@ -53,4 +64,13 @@ public class InfoPanel extends JPanel {
     return mbcOutput;
   }
 
+  /**
+   * Get logSink.
+   * 
+   * @return logSink
+   */
+  public static LogSink getLogSink() {
+    return logSink;
+  }
+
 }
@@ -1,7 +1,10 @@
 package gui;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.event.ActionListener;
 
+import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JProgressBar;
 import javax.swing.UIManager;
@@ -24,7 +27,8 @@ public class ProgressDialog extends JFrame {
 
 	boolean keepRunning = false;
 
-	// TODO JButton cancelButton = new JButton("Cancel process...");
+	/** cancelButton, only shown when a cancel listener is set */
+	JButton cancelButton = new JButton("Cancel process...");
 
 	public ProgressDialog(JFrame f) {
 		super("Patience is a virtue...");
@@ -58,10 +62,40 @@ public class ProgressDialog extends JFrame {
 		// pBar.setValue(0);
 		pBar.setIndeterminate(true);
 		
-		this.add(this.pBar);
+		this.setLayout(new BorderLayout());
+		this.add(this.pBar, BorderLayout.CENTER);
+		this.cancelButton.setVisible(false);
+		this.add(this.cancelButton, BorderLayout.EAST);
 		this.pack();
 	}
 
+	/**
+	 * Shows a cancel button that notifies the given listener
+	 * 
+	 * @param l
+	 */
+	public void setCancelListener(ActionListener l) {
+		for (ActionListener old : this.cancelButton.getActionListeners()) {
+			this.cancelButton.removeActionListener(old);
+		}
+		this.cancelButton.addActionListener(l);
+		this.cancelButton.setVisible(l != null);
+		this.pack();
+	}
+
+	/**
+	 * Switches the bar to determinate mode and shows the progress
+	 * 
+	 * @param done
+	 * @param total
+	 */
+	public void setProgress(int done, int total) {
+		this.pBar.setIndeterminate(false);
+		this.pBar.setMaximum(Math.max(total, 1));
+		this.pBar.setValue(done);
+		this.pBar.setString(done + " / " + total);
+	}
+
 	/**
 	 * 
 	 */
@@ -3,6 +3,7 @@ package gui;
 import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.avlist.AVKey;
 import utility.MyLogger;
+import _workspace.WorkspaceModelPool;
 
 
 public class StartMe {
@@ -32,29 +33,9 @@ public class StartMe {
         Configuration.setValue(AVKey.INITIAL_ALTITUDE, 5000e3);  // 50000km
         MyLogger.getLogger().info("Settings made");
         
-        final ProgressDialog progressDialog = new ProgressDialog(null);
-        
-/*        @SuppressWarnings("rawtypes")
-        SwingWorker sw = new SwingWorker() {
-
-            @Override
-            protected Object doInBackground() throws Exception {
-                try {
-                    progressDialog.start();
-                    
-                    BaseFrame.getInstance();
-                    progressDialog.stop();
-                } catch (Exception e) {
-                    //Exception e1 = new Exception("Error while workspace creation.", e);
-                    MyLogger.error(this, "Error while workspace creation.",e);
-                    
-                }
-                return null;
-            }
-        };
-        
-        sw.execute();*/
         BaseFrame.getInstance();
+        // File > New takes this one
+        WorkspaceModelPool.getInstance().prewarm();
 		
 
 	}
@@ -65,7 +65,7 @@ public class AddConnectorDome extends AbstractIntToolbarAct {
 				d = new ConnectorDomeShape(selectedIntFr.getWwGLCanvas());
 								
 				this.lastDome = d;
-				MyLogger.info(this, "" + d.getIdentifier() + " added");
+				MyLogger.info(this, "{} added", d.getIdentifier());
 			} else
 				MyLogger.error(this, "No suitable workspace was found"); 
 		} catch (Exception e) {
@@ -63,7 +63,7 @@ public class AddDome extends AbstractIntToolbarAct {
 				d = new DomeShape(selectedIntFr.getWwGLCanvas());
 
 				this.lastDome = d;
-				MyLogger.info(this, "" + d.getIdentifier() + " added");
+				MyLogger.info(this, "{} added", d.getIdentifier());
 			} else
 				MyLogger.error(this, "No suitable workspace was found"); // new
 																			// NullPointerException()
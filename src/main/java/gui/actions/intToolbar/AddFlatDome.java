@@ -68,7 +68,7 @@ public class AddFlatDome extends AbstractIntToolbarAct {
 				//((DomeShape)d).setVerticalRadius(diam);
 								
 				this.lastDome = d;
-				MyLogger.info(this, "" + d.getIdentifier() + " added");
+				MyLogger.info(this, "{} added", d.getIdentifier());
 			} else
 				MyLogger.error(this, "No suitable workspace was found"); 
 		} catch (Exception e) {
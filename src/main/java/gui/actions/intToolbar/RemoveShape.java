@@ -60,8 +60,7 @@ public class RemoveShape extends AbstractIntToolbarAct {
 			try {
 				if (lastshape != null) {
 					lastshape.removeMe();
-					MyLogger.info(this, "" + lastshape.getIdentifier()
-							+ " removed");
+					MyLogger.info(this, "{} removed", lastshape.getIdentifier());
 				} else
 					MyLogger.getLogger().error("No component selected");
 
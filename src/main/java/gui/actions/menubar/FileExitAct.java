@@ -13,6 +13,9 @@ import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
 
 import utility.MyLogger;
+import utility.tasks.TaskService;
+import _workspace.WorkspaceModelPool;
+import _workspace.shapes.render.UnitMeshCache;
 
 /**
  * @author Viorel Florian
@@ -55,6 +58,9 @@ public class FileExitAct extends AbstractAction {
 		"Are you sure you wish to exit?") == JOptionPane.YES_OPTION) {
 			//f.setVisible(false);
 			//f.dispose();
+			MyLogger.info(this, TaskService.getInstance().toString());
+			MyLogger.info(this, WorkspaceModelPool.getInstance().toString());
+			MyLogger.info(this, UnitMeshCache.getInstance().toString());
 			MyLogger.info(this, "Application closed on request of user");
 			System.exit(0);
 		}
@@ -2,7 +2,11 @@ package gui.actions.menubar;
 
 import gov.nasa.worldwind.Configuration;
 
+import gui.BaseFrame;
+import gui.ProgressDialog;
+
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
@@ -12,13 +16,21 @@ import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JFileChooser;
 import javax.swing.KeyStroke;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
-import _workspace.shapes.ShapeLoaderFromFile;
+import utility.MyLogger;
+import utility.tasks.Task;
+import utility.tasks.TaskListener;
+import utility.tasks.TaskService;
+import _workspace.MoonWorkspaceFactory;
+import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.ShapeLoadPipeline;
+import _workspace.shapes.layout.LayoutFormat;
 
 /**
  * @author Viorel Florian
  *         <p>
- *         Defines the action for File->Save item
+ *         Defines the action for File->Open item
  */
 public class FileLoadAct extends AbstractAction {
   /**
@@ -55,31 +67,74 @@ public class FileLoadAct extends AbstractAction {
     {
         this.fileChooser = new JFileChooser();
         this.fileChooser.setCurrentDirectory(new File(Configuration.getCurrentWorkingDirectory()));
+        this.fileChooser.setFileFilter(new FileNameExtensionFilter("Moon base layout (*." + LayoutFormat.EXTENSION
+            + ")", LayoutFormat.EXTENSION));
     }
 
-    this.fileChooser.setDialogTitle("Choose Airspace File Directory");
-    this.fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+    this.fileChooser.setDialogTitle("Choose layout file or legacy .mbc directory");
+    this.fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
     this.fileChooser.setMultiSelectionEnabled(false);
     int status = this.fileChooser.showOpenDialog(null);
     if (status != JFileChooser.APPROVE_OPTION)
         return;
 
-    final File dir = this.fileChooser.getSelectedFile();
-    if (dir == null)
+    final File selected = this.fileChooser.getSelectedFile();
+    if (selected == null)
         return;
-    
-    
-    File[] files = dir.listFiles(new FilenameFilter()
-    {
-        public boolean accept(File dir, String name)
-        {
-            return name.endsWith(".mbc");
-        }
-    });
-    
-    for (File file : files) {
-      ShapeLoaderFromFile.loadShape(file);
+
+    MoonWorkspaceInternalFrame workspace = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
+    if (workspace == null) {
+      MyLogger.error(this, "No suitable workspace was found");
+      return;
+    }
+
+    ShapeLoadPipeline pipeline;
+    if (selected.isFile()) {
+      pipeline = ShapeLoadPipeline.forLayout(workspace, selected);
+    } else {
+      // legacy import, one .mbc file per shape
+      File[] files = selected.listFiles(new FilenameFilter()
+      {
+          public boolean accept(File dir, String name)
+          {
+              return name.endsWith("." + LayoutFormat.LEGACY_EXTENSION);
+          }
+      });
+      if (files == null) {
+        MyLogger.error(this, "Directory could not be read: " + selected);
+        return;
+      }
+      pipeline = ShapeLoadPipeline.forLegacyFiles(workspace, files);
     }
+    this.run(pipeline);
+  }
+
+  /**
+   * Runs the pipeline behind a cancellable progress dialog
+   *
+   * @param pipeline
+   */
+  private void run(final ShapeLoadPipeline pipeline) {
+    final ProgressDialog progressDialog = new ProgressDialog(BaseFrame.getInstance());
+    progressDialog.setCancelListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        pipeline.cancel();
+      }
+    });
+    pipeline.addTaskListener(new TaskListener() {
+      @Override
+      public void progressChanged(Task<?> task, int done, int total) {
+        progressDialog.setProgress(done, total);
+      }
+
+      @Override
+      public void taskFinished(Task<?> task) {
+        progressDialog.stop();
+      }
+    });
+    progressDialog.start();
+    TaskService.getInstance().submit(pipeline);
   }
 
 }// EOF
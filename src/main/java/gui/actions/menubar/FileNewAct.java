@@ -1,6 +1,7 @@
 
 package gui.actions.menubar;
 
+import gov.nasa.worldwind.Model;
 import gui.ProgressDialog;
 
 import java.awt.event.ActionEvent;
@@ -11,10 +12,13 @@ import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JFrame;
 import javax.swing.KeyStroke;
-import javax.swing.SwingWorker;
 
 import utility.MyLogger;
+import utility.tasks.Task;
+import utility.tasks.TaskCategory;
+import utility.tasks.TaskService;
 import _workspace.MoonWorkspaceFactory;
+import _workspace.WorkspaceModelPool;
 
 /**
  * @author Viorel Florian
@@ -57,29 +61,43 @@ public class FileNewAct extends AbstractAction  {
 	public void actionPerformed(ActionEvent arg0) {
 		MyLogger.info(this, "New has been pressed");
 		// TODO remove this
-		final ProgressDialog progressDialog = new ProgressDialog(this.f);
+		// a prewarmed workspace opens at once, no need for the dialog
+		final ProgressDialog progressDialog = WorkspaceModelPool.getInstance().isReady() ? null
+				: new ProgressDialog(this.f);
+		if (progressDialog != null) {
+			progressDialog.start();
+		}
 
-		@SuppressWarnings("rawtypes")
-		SwingWorker sw = new SwingWorker() {
+		// only the model is built in the background, the frame and its canvas belong to the event thread
+		TaskService.getInstance().submit(new Task<Model>(TaskCategory.WORKSPACE, "Workspace creation") {
 
 			@Override
-			protected Object doInBackground() throws Exception {
+			protected Model call() throws Exception {
+				return WorkspaceModelPool.getInstance().take();
+			}
+
+			@Override
+			protected void succeeded(Model model) {
 				try {
-					progressDialog.start();
-					
-					MoonWorkspaceFactory.getInstance().newMoonWorkspace();
+					MoonWorkspaceFactory.getInstance().newMoonWorkspace(model);
+				} catch (RuntimeException e) {
+					this.failed(e);
+					return;
+				}
+				if (progressDialog != null) {
+					progressDialog.stop();
+				}
+			}
+
+			@Override
+			protected void failed(Throwable cause) {
+				if (progressDialog != null) {
 					progressDialog.stop();
-				} catch (Exception e) {
-					//Exception e1 = new Exception("Error while workspace creation.", e);
-					MyLogger.error(this, "Error while workspace creation.",e);
-					
 				}
-				return null;
+				MyLogger.error(FileNewAct.this, "Error while workspace creation.", cause);
 			}
-		};
+		});
 
-		sw.execute();
-		
 	}
 
 }
@@ -6,21 +6,28 @@ import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.File;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JFileChooser;
 import javax.swing.KeyStroke;
-
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+import utility.MyLogger;
+import utility.tasks.Task;
+import utility.tasks.TaskCategory;
+import utility.tasks.TaskService;
+import _workspace.MoonWorkspaceFactory;
+import _workspace.MoonWorkspaceInternalFrame;
 import _workspace.shapes.IShape;
-import _workspace.shapes.ShapesPool;
+import _workspace.shapes.layout.LayoutFormat;
+import _workspace.shapes.layout.LayoutSession;
 
 /**
  * @author Viorel Florian
  *         <p>
- *         Defines the action for File->Save item
+ *         Defines the action for File->Save item, saves the shapes of the last selected workspace
  */
 public class FileSaveAct extends AbstractAction {
   /**
@@ -54,37 +61,114 @@ public class FileSaveAct extends AbstractAction {
    */
   @Override
   public void actionPerformed(ActionEvent arg0) {
+    MoonWorkspaceInternalFrame workspace = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
+    if (workspace == null) {
+      MyLogger.error(this, "No suitable workspace was found");
+      return;
+    }
+
     if (this.fileChooser == null) {
       this.fileChooser = new JFileChooser();
       this.fileChooser.setCurrentDirectory(new File(Configuration.getCurrentWorkingDirectory()));
+      this.fileChooser.setFileFilter(new FileNameExtensionFilter("Moon base layout (*." + LayoutFormat.EXTENSION
+          + ")", LayoutFormat.EXTENSION));
     }
 
-    this.fileChooser.setDialogTitle("Choose Directory to Place components");
-    this.fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+    LayoutSession session = workspace.getLayoutSession();
+    File bound = session.getBaseFile();
+    if (bound != null) {
+      this.fileChooser.setSelectedFile(bound);
+    }
+
+    this.fileChooser.setDialogTitle("Choose layout file");
+    this.fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
     this.fileChooser.setMultiSelectionEnabled(false);
     int status = this.fileChooser.showSaveDialog(null);
     if (status != JFileChooser.APPROVE_OPTION)
       return;
 
-    final File dir = this.fileChooser.getSelectedFile();
-    if (dir == null)
+    File file = this.fileChooser.getSelectedFile();
+    if (file == null)
       return;
 
-    if (!dir.exists()) {
-      // noinspection ResultOfMethodCallIgnored
-      dir.mkdirs();
+    if (!file.getName().endsWith("." + LayoutFormat.EXTENSION)) {
+      file = new File(file.getParentFile(), file.getName() + "." + LayoutFormat.EXTENSION);
     }
 
-    Set<Entry<String, IShape>> allShapes = ShapesPool.getInstance().getAllShapesEntries();
+    List<IShape> shapes = workspace.getShapesPool().getAllShapes();
+    this.save(session, session.prepareSave(file, shapes));
+  }
+
+  /**
+   * Writes a save prepared on the event thread, in the background
+   *
+   * @param session
+   * @param save
+   */
+  private void save(final LayoutSession session, final LayoutSession.Save save) {
+    TaskService.getInstance().submit(new Task<Integer>(TaskCategory.IO, "Save") {
+
+      @Override
+      protected Integer call() throws Exception {
+        return Integer.valueOf(save.run());
+      }
+
+      @Override
+      protected void succeeded(Integer written) {
+        if (save.getTarget() == null) {
+          // another file was bound since the snapshot, its shapes are dirty again
+          MyLogger.info(FileSaveAct.this, "Layout changes deferred to the next save");
+          return;
+        }
+        String file = save.getTarget().getName();
+        if (save.isIncremental()) {
+          MyLogger.event(FileSaveAct.this, "Layout saved", "file", file, "changes", written);
+          if (session.needsCompaction()) {
+            FileSaveAct.this.compact(session);
+          }
+        } else {
+          MyLogger.event(FileSaveAct.this, "Layout saved", "file", file, "components", written);
+        }
+      }
+
+      @Override
+      protected void failed(Throwable cause) {
+        MyLogger.error(FileSaveAct.this, "Layout could not be saved", cause);
+      }
+
+      @Override
+      protected void cancelled() {
+        save.abandon();
+      }
+    });
+  }
 
-    for (Entry<String, IShape> entry : allShapes) {
-      IShape dome = entry.getValue();
-      
-      File newFile = new File(dir.getAbsolutePath(), dome.getIdentifier() + "." + "mbc");
-      dome.saveMe(newFile, dome.getIdentifier());
-      
-    }
-      
+  /**
+   * Folds the journal back into the layout file, in the background
+   *
+   * @param session
+   */
+  private void compact(final LayoutSession session) {
+    TaskService.getInstance().submit(new Task<Integer>(TaskCategory.IO, "Compaction") {
+
+      @Override
+      protected Integer call() throws Exception {
+        return Integer.valueOf(session.compact());
+      }
+
+      @Override
+      protected void succeeded(Integer components) {
+        if (components.intValue() >= 0) {
+          MyLogger.event(FileSaveAct.this, "Layout compacted", "file", session.getBaseFile().getName(), "components",
+              components);
+        }
+      }
+
+      @Override
+      protected void failed(Throwable cause) {
+        MyLogger.error(FileSaveAct.this, "Layout could not be compacted", cause);
+      }
+    });
   }
 
 }// EOF
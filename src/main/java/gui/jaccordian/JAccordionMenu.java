@@ -426,7 +426,7 @@ public class JAccordionMenu extends JPanel implements ActionListener {
       this.centerPanel.removeAll();
       JAcordionBar jab = (JAcordionBar) e.getSource();
       String jabName = jab.getName();
-      MyLogger.info(this, "Source of the event is " + jabName);
+      MyLogger.info(this, "Source of the event is {}", jabName);
       sortAll(jabName);
       this.centerPanel.add(jab.getAsocPanel(), BorderLayout.CENTER);
       this.centerPanel.validate();
@@ -3,9 +3,6 @@
  */
 package gui.jaccordian.jAccordionPanels;
 
-import gov.nasa.worldwind.geom.Angle;
-import gov.nasa.worldwind.render.Ellipsoid;
-
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 
@@ -16,7 +13,7 @@ import javax.swing.JSlider;
 import utility.MyLogger;
 import _workspace.MoonWorkspaceFactory;
 import _workspace.MoonWorkspaceInternalFrame;
-import _workspace.shapes.ShapeListener;
+import _workspace.shapes.BatchTransform;
 
 /**
  * TODO DESCRIPTION
@@ -58,28 +55,19 @@ public class ChangeHeadingPanel extends JPanel {
 
   }
 
-  // TODO works only on mouse over
   /**
-   * @param newHeading new tilt
+   * Turns the selected components
+   * 
+   * @param newHeading new heading, in degrees
    */
   public static void headingTo(double newHeading) {
-    Object obj = null;
-
-    obj = ShapeListener.lastSelectedObj;
-    // String s = ShapeListener.lastSelectedObj.toString();
-    //MyLogger.getLogger().error(obj);
-
-    if (obj == null) {
-      MyLogger.error(getInstance(), "No component selected");
-      return;
-
-    }
-    if (obj instanceof Ellipsoid) {
-      //((Ellipsoid) obj).setTilt(Angle.fromDegrees(tilt));
-      ((Ellipsoid) obj).setHeading(Angle.fromDegrees(newHeading));
-      
+    try {
+      if (BatchTransform.orient(newHeading, Double.NaN, Double.NaN).applyToSelection() == 0) {
+        MyLogger.error(getInstance(), "No component selected");
+      }
+    } catch (Exception e) {
+      MyLogger.error(getInstance(), "Components could not be turned", e);
     }
-
   }
 
   /**
@@ -3,9 +3,6 @@
  */
 package gui.jaccordian.jAccordionPanels;
 
-import gov.nasa.worldwind.geom.Angle;
-import gov.nasa.worldwind.render.Ellipsoid;
-
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 
@@ -14,7 +11,7 @@ import javax.swing.JPanel;
 import javax.swing.JSlider;
 
 import utility.MyLogger;
-import _workspace.shapes.ShapeListener;
+import _workspace.shapes.BatchTransform;
 
 /**
  * TODO DESCRIPTION
@@ -56,28 +53,19 @@ public class ChangeRollPanel extends JPanel {
 
   }
 
-  // TODO works only on mouse over
   /**
-   * @param tilt new tilt
+   * Rolls the selected components
+   * 
+   * @param roll new roll, in degrees
    */
-  public static void rollTo(double tilt) {
-    Object obj = null;
-
-    obj = ShapeListener.lastSelectedObj;
-    // String s = ShapeListener.lastSelectedObj.toString();
-    //MyLogger.getLogger().error(obj);
-
-    if (obj == null) {
-      MyLogger.error(getInstance(), "No component selected");
-      return;
-
-    }
-    if (obj instanceof Ellipsoid) {
-      //((Ellipsoid) obj).setTilt(Angle.fromDegrees(tilt));
-      ((Ellipsoid) obj).setRoll(Angle.fromDegrees(tilt));
-      
+  public static void rollTo(double roll) {
+    try {
+      if (BatchTransform.orient(Double.NaN, Double.NaN, roll).applyToSelection() == 0) {
+        MyLogger.error(getInstance(), "No component selected");
+      }
+    } catch (Exception e) {
+      MyLogger.error(getInstance(), "Components could not be rolled", e);
     }
-
   }
 
   /**
@@ -3,9 +3,6 @@
  */
 package gui.jaccordian.jAccordionPanels;
 
-import gov.nasa.worldwind.geom.Angle;
-import gov.nasa.worldwind.render.Ellipsoid;
-
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 
@@ -14,7 +11,7 @@ import javax.swing.JPanel;
 import javax.swing.JSlider;
 
 import utility.MyLogger;
-import _workspace.shapes.ShapeListener;
+import _workspace.shapes.BatchTransform;
 
 /**
  * TODO DESCRIPTION
@@ -56,27 +53,19 @@ public class ChangeTiltPanel extends JPanel {
 
   }
 
-  // TODO works only on mouse over
   /**
-   * @param tilt new tilt
+   * Tilts the selected components
+   * 
+   * @param tilt new tilt, in degrees
    */
   public static void tiltTo(double tilt) {
-    Object obj = null;
-
-    obj = ShapeListener.lastSelectedObj;
-    // String s = ShapeListener.lastSelectedObj.toString();
-    MyLogger.getLogger().error(obj);
-
-    if (obj == null) {
-      MyLogger.error(getInstance(), "No component selected");
-      return;
-
-    }
-    if (obj instanceof Ellipsoid) {
-      ((Ellipsoid) obj).setTilt(Angle.fromDegrees(tilt));
-      
+    try {
+      if (BatchTransform.orient(Double.NaN, tilt, Double.NaN).applyToSelection() == 0) {
+        MyLogger.error(getInstance(), "No component selected");
+      }
+    } catch (Exception e) {
+      MyLogger.error(getInstance(), "Components could not be tilted", e);
     }
-
   }
 
   /**
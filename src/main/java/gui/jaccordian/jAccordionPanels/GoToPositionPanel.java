@@ -17,6 +17,7 @@ import javax.swing.JFormattedTextField;
 import javax.swing.JPanel;
 
 import _workspace.MoonWorkspaceFactory;
+import _workspace.MoonWorkspaceInternalFrame;
 
 /**
  * TODO DESCRIPTION
@@ -104,11 +105,12 @@ public class GoToPositionPanel extends JPanel {
    * @param pos
    */
   public void goTo(Position pos) {
-    View v = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr().getWwGLCanvas().getView();
+    MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
+    View v = selectedIntFr.getWwGLCanvas().getView();
     // v.setEyePosition(pos);
+    // the view already belongs to the canvas, setting it again would only reset it
     v.goTo(pos, 6000e3);
-    MoonWorkspaceFactory.getInstance().getLastSelectedIntFr().getWwGLCanvas().setView(v);
-    MoonWorkspaceFactory.getInstance().getLastSelectedIntFr().getWwGLCanvas().redraw();
+    selectedIntFr.getRedrawScheduler().requestRedraw();
 
   }
 
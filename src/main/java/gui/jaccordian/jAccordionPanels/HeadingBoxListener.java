@@ -34,7 +34,7 @@ public class HeadingBoxListener implements ActionListener {
         ChangeHeadingPanel.getInstance().getSlider().setValue(ChangeHeadingPanel.getInstance().getSizeBoxValue());
         ChangeHeadingPanel.headingTo(ChangeHeadingPanel.getInstance().getSizeBoxValue());
         try {
-          selectedIntFr.getWwGLCanvas().redraw();
+          selectedIntFr.getRedrawScheduler().requestRedraw();
         } catch (Exception ee) {
           MyLogger.error(this, "No component present", ee);
         }
@@ -5,37 +5,30 @@
  */
 package gui.jaccordian.jAccordionPanels;
 
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ChangeListener;
-
-import utility.MyLogger;
-import _workspace.MoonWorkspaceFactory;
-import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.BatchTransform;
 
 /**
- * TODO DESCRIPTION
+ * Turns the selected components, previews while the slider moves
  * 
  * @author viorel.florian
  */
 
-public class HeadingSliderChangeListener implements ChangeListener {
-
+public class HeadingSliderChangeListener extends SliderTransformListener {
 
   /**
-   * @see javax.swing.event.ChangeListener#stateChanged(javax.swing.event.ChangeEvent)
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#showValue(int)
    */
   @Override
-  public void stateChanged(ChangeEvent e) {
-    MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
-
-    ChangeHeadingPanel.getInstance().setSizeBoxValue(ChangeHeadingPanel.getInstance().getSlider().getValue());
-    // sizeBox.setValue(sizeBoxValue);
+  protected void showValue(int value) {
+    ChangeHeadingPanel.getInstance().setSizeBoxValue(value);
     ChangeHeadingPanel.getInstance().getSizeBox().setValue(ChangeHeadingPanel.getInstance().getSizeBoxValue());
-    ChangeHeadingPanel.headingTo(ChangeHeadingPanel.getInstance().getSizeBoxValue());
-    try {
-      selectedIntFr.getWwGLCanvas().redraw();
-    } catch (Exception ee) {
-      MyLogger.error(this, "No component present", ee);
-    }
+  }
+
+  /**
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#transformFor(int)
+   */
+  @Override
+  protected BatchTransform transformFor(int value) {
+    return BatchTransform.orient(value, Double.NaN, Double.NaN);
   }
 }
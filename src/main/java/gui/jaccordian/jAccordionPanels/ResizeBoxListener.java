@@ -37,7 +37,7 @@ public class ResizeBoxListener implements ActionListener {
         ResizePanel.getSlider().setValue(ResizePanel.getSizeBoxValue());
         ResizePanel.getInstance().resizeTo(ResizePanel.getSizeBoxValue());
         try{
-        selectedIntFr.getWwGLCanvas().redraw();
+        selectedIntFr.getRedrawScheduler().requestRedraw();
         } catch (Exception e) {
           MyLogger.error(this, "No world wind window/ or component", e);
         }
@@ -1,7 +1,5 @@
 package gui.jaccordian.jAccordionPanels;
 
-import gov.nasa.worldwind.render.Ellipsoid;
-
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 
@@ -10,10 +8,7 @@ import javax.swing.JPanel;
 import javax.swing.JSlider;
 
 import utility.MyLogger;
-import _workspace.shapes.ConnectorDomeShape;
-import _workspace.shapes.DomeShape;
-import _workspace.shapes.FlatDomeShape;
-import _workspace.shapes.ShapeListener;
+import _workspace.shapes.BatchTransform;
 
 /**
  * @author Viorel Florian
@@ -63,38 +58,19 @@ public class ResizePanel extends JPanel {
 
   }
 
-  // TODO works only on mouse over
   /**
+   * Resizes the selected components, each keeps the proportions of its kind
+   * 
    * @param ns - new size
    */
   public void resizeTo(double ns) {
-    Object obj = null;
-
-    obj = ShapeListener.lastSelectedObj;
-
-    if (obj == null) {
-      MyLogger.error(this, "No component selected");
-      return;
-
+    try {
+      if (BatchTransform.resize(ns * 100).applyToSelection() == 0) {
+        MyLogger.error(this, "No component selected");
+      }
+    } catch (Exception e) {
+      MyLogger.error(this, "Components could not be resized", e);
     }
-    if (obj instanceof DomeShape) {
-      ((Ellipsoid) obj).setEastWestRadius(ns * 100);
-      ((Ellipsoid) obj).setNorthSouthRadius(ns * 100);
-      ((Ellipsoid) obj).setVerticalRadius(ns * 100);
-    }
-    if (obj instanceof FlatDomeShape) {
-    	((Ellipsoid) obj).setEastWestRadius(ns * 100);
-    	((Ellipsoid) obj).setNorthSouthRadius(ns * 100);
-    	((Ellipsoid) obj).setVerticalRadius(ns * 100 / 2);
-    }
-    if (obj instanceof ConnectorDomeShape) {
-    	((Ellipsoid) obj).setEastWestRadius(ns * 100 / 3.5);
-    	((Ellipsoid) obj).setNorthSouthRadius(ns * 100);
-    	((Ellipsoid) obj).setVerticalRadius(ns * 100 / 3.5);
-    }
-    
-    
-
   }
 
   /**
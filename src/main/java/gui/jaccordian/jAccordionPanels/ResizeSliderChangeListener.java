@@ -5,20 +5,15 @@
  */
 package gui.jaccordian.jAccordionPanels;
 
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ChangeListener;
-
-import utility.MyLogger;
-import _workspace.MoonWorkspaceFactory;
-import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.BatchTransform;
 
 /**
- * TODO DESCRIPTION
+ * Resizes the selected components, previews while the slider moves
  * 
  * @author viorel.florian
  */
 
-public class ResizeSliderChangeListener implements ChangeListener {
+public class ResizeSliderChangeListener extends SliderTransformListener {
 
   /**
    * Constructs a new instance.
@@ -28,20 +23,19 @@ public class ResizeSliderChangeListener implements ChangeListener {
   }
 
   /**
-   * @see javax.swing.event.ChangeListener#stateChanged(javax.swing.event.ChangeEvent)
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#showValue(int)
    */
   @Override
-  public void stateChanged(ChangeEvent e) {
-    MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
-
-    ResizePanel.setSizeBoxValue(ResizePanel.getSlider().getValue());
-    // sizeBox.setValue(sizeBoxValue);
+  protected void showValue(int value) {
+    ResizePanel.setSizeBoxValue(value);
     ResizePanel.getInstance().getSizeBox().setValue(ResizePanel.getSizeBoxValue());
-    ResizePanel.getInstance().resizeTo(ResizePanel.getSizeBoxValue());
-    try {
-      selectedIntFr.getWwGLCanvas().redraw();
-    } catch (Exception ee) {
-      MyLogger.error(this, "No component present", ee);
-    }
+  }
+
+  /**
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#transformFor(int)
+   */
+  @Override
+  protected BatchTransform transformFor(int value) {
+    return BatchTransform.resize(value * 100);
   }
 }
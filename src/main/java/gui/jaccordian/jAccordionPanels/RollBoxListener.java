@@ -34,7 +34,7 @@ public class RollBoxListener implements ActionListener {
         ChangeRollPanel.getSlider().setValue(ChangeRollPanel.getSizeBoxValue());
         ChangeRollPanel.rollTo(ChangeRollPanel.getSizeBoxValue());
         try {
-          selectedIntFr.getWwGLCanvas().redraw();
+          selectedIntFr.getRedrawScheduler().requestRedraw();
         } catch (Exception ee) {
           MyLogger.error(this, "No component present", ee);
         }
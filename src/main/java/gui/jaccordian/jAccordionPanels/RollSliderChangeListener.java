@@ -5,38 +5,30 @@
  */
 package gui.jaccordian.jAccordionPanels;
 
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ChangeListener;
-
-import utility.MyLogger;
-import _workspace.MoonWorkspaceFactory;
-import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.BatchTransform;
 
 /**
- * TODO DESCRIPTION
+ * Rolls the selected components, previews while the slider moves
  * 
  * @author viorel.florian
  */
 
-public class RollSliderChangeListener implements ChangeListener {
+public class RollSliderChangeListener extends SliderTransformListener {
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see javax.swing.event.ChangeListener#stateChanged(javax.swing.event.ChangeEvent )
+  /**
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#showValue(int)
    */
   @Override
-  public void stateChanged(ChangeEvent e) {
-    MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
-
-    ChangeRollPanel.setSizeBoxValue(ChangeRollPanel.getSlider().getValue());
-    // sizeBox.setValue(sizeBoxValue);
+  protected void showValue(int value) {
+    ChangeRollPanel.setSizeBoxValue(value);
     ChangeRollPanel.getSizeBox().setValue(ChangeRollPanel.getSizeBoxValue());
-    ChangeRollPanel.rollTo(ChangeRollPanel.getSizeBoxValue());
-    try {
-      selectedIntFr.getWwGLCanvas().redraw();
-    } catch (Exception ee) {
-      MyLogger.error(this, "No component present", ee);
-    }
+  }
+
+  /**
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#transformFor(int)
+   */
+  @Override
+  protected BatchTransform transformFor(int value) {
+    return BatchTransform.orient(Double.NaN, Double.NaN, value);
   }
 }
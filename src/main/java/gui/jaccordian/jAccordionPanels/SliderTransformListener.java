@@ -0,0 +1,109 @@
+package gui.jaccordian.jAccordionPanels;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JSlider;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import utility.MyLogger;
+import _workspace.MoonWorkspaceFactory;
+import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.BatchTransform;
+
+/**
+ * Slider listener of the edit panels, previews while the slider moves and commits on release.
+ * <p>
+ * While the knob is dragged ({@link JSlider#getValueIsAdjusting()}) only the latest value is kept and
+ * applied as a preview {@link BatchTransform}, at most once per redraw interval of the workspace. When the
+ * knob is released, or the value changes from the keyboard, the transform is committed once.
+ *
+ * @author viorel.florian
+ */
+public abstract class SliderTransformListener implements ChangeListener {
+
+  /** preview interval used without a workspace, in milliseconds */
+  private static final int DEFAULT_INTERVAL = 16;
+
+  /** one shot timer applying the latest preview */
+  private final Timer previewTimer;
+
+  /** value waiting for the preview timer */
+  private int pendingValue;
+
+  /**
+   * Constructs a new instance.
+   */
+  protected SliderTransformListener() {
+    super();
+    this.previewTimer = new Timer(DEFAULT_INTERVAL, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        SliderTransformListener.this.apply(SliderTransformListener.this.pendingValue, true);
+      }
+    });
+    this.previewTimer.setRepeats(false);
+  }
+
+  /**
+   * Shows the new value in the panel
+   *
+   * @param value slider value
+   */
+  protected abstract void showValue(int value);
+
+  /**
+   * @param value slider value
+   * @return transform for that value
+   */
+  protected abstract BatchTransform transformFor(int value);
+
+  /**
+   * @see javax.swing.event.ChangeListener#stateChanged(javax.swing.event.ChangeEvent)
+   */
+  @Override
+  public void stateChanged(ChangeEvent e) {
+    JSlider slider = (JSlider) e.getSource();
+    int value = slider.getValue();
+    this.showValue(value);
+
+    if (slider.getValueIsAdjusting()) {
+      this.pendingValue = value;
+      if (!this.previewTimer.isRunning()) {
+        this.previewTimer.setInitialDelay(this.previewInterval());
+        this.previewTimer.start();
+      }
+    } else {
+      this.previewTimer.stop();
+      this.apply(value, false);
+    }
+  }
+
+  /**
+   * @return redraw interval of the last selected workspace, in milliseconds
+   */
+  private int previewInterval() {
+    MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
+    return selectedIntFr == null ? DEFAULT_INTERVAL : selectedIntFr.getRedrawScheduler().getInterval();
+  }
+
+  /**
+   * Applies the transform to the selection of the last selected workspace
+   *
+   * @param value slider value
+   * @param preview <code>true</code> while the slider moves
+   */
+  void apply(int value, boolean preview) {
+    BatchTransform transform = this.transformFor(value);
+    transform.setPreview(preview);
+    try {
+      if (transform.applyToSelection() == 0 && !preview) {
+        MyLogger.error(this, "No component selected");
+      }
+    } catch (Exception ee) {
+      MyLogger.error(this, "No component present", ee);
+    }
+  }
+}
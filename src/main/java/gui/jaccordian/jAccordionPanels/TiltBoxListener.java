@@ -34,7 +34,7 @@ public class TiltBoxListener implements ActionListener {
         ChangeTiltPanel.getSlider().setValue(ChangeTiltPanel.getSizeBoxValue());
         ChangeTiltPanel.tiltTo(ChangeTiltPanel.getSizeBoxValue());
         try {
-          selectedIntFr.getWwGLCanvas().redraw();
+          selectedIntFr.getRedrawScheduler().requestRedraw();
         } catch (Exception ee) {
           MyLogger.error(this, "No component present", ee);
         }
@@ -5,38 +5,30 @@
  */
 package gui.jaccordian.jAccordionPanels;
 
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ChangeListener;
-
-import utility.MyLogger;
-import _workspace.MoonWorkspaceFactory;
-import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.BatchTransform;
 
 /**
- * TODO DESCRIPTION
+ * Tilts the selected components, previews while the slider moves
  * 
  * @author viorel.florian
  */
 
-public class TiltSliderChangeListener implements ChangeListener {
+public class TiltSliderChangeListener extends SliderTransformListener {
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see javax.swing.event.ChangeListener#stateChanged(javax.swing.event.ChangeEvent )
+  /**
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#showValue(int)
    */
   @Override
-  public void stateChanged(ChangeEvent e) {
-    MoonWorkspaceInternalFrame selectedIntFr = MoonWorkspaceFactory.getInstance().getLastSelectedIntFr();
-
-    ChangeTiltPanel.setSizeBoxValue(ChangeTiltPanel.getSlider().getValue());
-    // sizeBox.setValue(sizeBoxValue);
+  protected void showValue(int value) {
+    ChangeTiltPanel.setSizeBoxValue(value);
     ChangeTiltPanel.getSizeBox().setValue(ChangeTiltPanel.getSizeBoxValue());
-    ChangeTiltPanel.tiltTo(ChangeTiltPanel.getSizeBoxValue());
-    try {
-      selectedIntFr.getWwGLCanvas().redraw();
-    } catch (Exception ee) {
-      MyLogger.error(this, "No component present", ee);
-    }
+  }
+
+  /**
+   * @see gui.jaccordian.jAccordionPanels.SliderTransformListener#transformFor(int)
+   */
+  @Override
+  protected BatchTransform transformFor(int value) {
+    return BatchTransform.orient(Double.NaN, value, Double.NaN);
   }
 }
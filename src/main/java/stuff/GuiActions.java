@@ -1,5 +1,6 @@
 package stuff;
 
+import gov.nasa.worldwind.Model;
 import gui.BaseFrame;
 import gui.ProgressDialog;
 
@@ -8,10 +9,13 @@ import java.awt.event.ActionEvent;
 import javax.swing.AbstractAction;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
-import javax.swing.SwingWorker;
 
 import utility.MyLogger;
+import utility.tasks.Task;
+import utility.tasks.TaskCategory;
+import utility.tasks.TaskService;
 import _workspace.MoonWorkspaceFactory;
+import _workspace.WorkspaceModelPool;
 
 //TODO explore EVENTHANDLER
 /**
@@ -37,27 +41,33 @@ public class GuiActions extends AbstractAction {
 			MyLogger.info(this, "New has been pressed");
 			// TODO remove this
 			final ProgressDialog progressDialog = new ProgressDialog(f);
+			progressDialog.start();
 
-			@SuppressWarnings("rawtypes")
-			SwingWorker sw = new SwingWorker() {
+			// only the model is built in the background, the frame and its canvas belong to the event thread
+			TaskService.getInstance().submit(new Task<Model>(TaskCategory.WORKSPACE, "Workspace creation") {
 
 				@Override
-				protected Object doInBackground() throws Exception {
+				protected Model call() throws Exception {
+					return WorkspaceModelPool.getInstance().take();
+				}
+
+				@Override
+				protected void succeeded(Model model) {
 					try {
-						progressDialog.start();
-						
-						MoonWorkspaceFactory.getInstance().newMoonWorkspace();
-						progressDialog.stop();
-					} catch (Exception e) {
-						//Exception e1 = new Exception("Error while workspace creation.", e);
-						MyLogger.error(this, "Error while workspace creation.",e);
-						
+						MoonWorkspaceFactory.getInstance().newMoonWorkspace(model);
+					} catch (RuntimeException e) {
+						this.failed(e);
+						return;
 					}
-					return null;
+					progressDialog.stop();
 				}
-			};
 
-			sw.execute();
+				@Override
+				protected void failed(Throwable cause) {
+					progressDialog.stop();
+					MyLogger.error(GuiActions.this, "Error while workspace creation.", cause);
+				}
+			});
 		}
 		if (e.getSource().equals(BaseFrame.getInstance().getFileExitItem())) {
 			if (JOptionPane.showConfirmDialog(null,
@@ -36,7 +36,7 @@ public class ToolbarActions extends AbstractAction {
 			if (selectedIntFr != null) {
 				DomeShape d = new DomeShape(selectedIntFr.wwGLCanvas);
 				this.lastDome = d;
-				MyLogger.info(this, "" + d.getIdentifier() + " added");
+				MyLogger.info(this, "{} added", d.getIdentifier());
 			} else
 				MyLogger.error(this, "No suitable workspace was found"); //new NullPointerException() can be added
 		}
@@ -60,7 +60,7 @@ public class ToolbarActions extends AbstractAction {
           if (selectedIntFr != null) {
               
             String lastDomeIdentifier = this.lastDome.getIdentifier();
-              MyLogger.info(this, "Expected last dome: " + lastDomeIdentifier + " VS found last dome: " + ShapesPool.getInstance().getShape(lastDomeIdentifier).getIdentifier());
+              MyLogger.info(this, "Expected last dome: " + lastDomeIdentifier + " VS found last dome: " + selectedIntFr.getShapesPool().getShape(lastDomeIdentifier).getIdentifier());
               selectedIntFr.wwGLCanvas.redrawNow();
               MyLogger.info(this, "CompoundConnector added");
           } else
@@ -0,0 +1,161 @@
+package utility;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.log4j.Layout;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+ * Log4j layout writing every message as one JSON object per line.
+ * <p>
+ * All lines have <code>time</code> (UTC), <code>level</code> and <code>thread</code>. A {@link LogEvent}
+ * adds <code>source</code>, <code>event</code> and its key / value pairs, numbers and booleans unquoted;
+ * any other message is written as <code>message</code>. A logged throwable goes to <code>exception</code>.
+ *
+ * @author viorel.florian
+ */
+public class JsonLineLayout extends Layout {
+
+  /** time format, appenders call the layout under their own lock */
+  private final SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+
+  /**
+   * Constructs a new instance.
+   */
+  public JsonLineLayout() {
+    super();
+    this.time.setTimeZone(TimeZone.getTimeZone("UTC"));
+  }
+
+  /**
+   * @see org.apache.log4j.Layout#format(org.apache.log4j.spi.LoggingEvent)
+   */
+  @Override
+  public String format(LoggingEvent event) {
+    StringBuilder json = new StringBuilder(128);
+    json.append("{\"time\":");
+    string(json, this.time.format(new Date(event.getTimeStamp())));
+    json.append(",\"level\":");
+    string(json, event.getLevel().toString());
+    json.append(",\"thread\":");
+    string(json, event.getThreadName());
+
+    Object message = event.getMessage();
+    if (message instanceof LogEvent) {
+      LogEvent e = (LogEvent) message;
+      if (e.getSource() != null) {
+        json.append(",\"source\":");
+        string(json, e.getSource().getSimpleName());
+      }
+      json.append(",\"event\":");
+      string(json, e.getName());
+      for (int i = 0; i < e.size(); i++) {
+        json.append(',');
+        string(json, e.getKey(i));
+        json.append(':');
+        value(json, e.getValue(i));
+      }
+    } else {
+      json.append(",\"message\":");
+      string(json, event.getRenderedMessage());
+    }
+
+    ThrowableInformation thrown = event.getThrowableInformation();
+    if (thrown != null) {
+      StringBuilder trace = new StringBuilder();
+      for (String line : thrown.getThrowableStrRep()) {
+        trace.append(line).append('\n');
+      }
+      json.append(",\"exception\":");
+      string(json, trace.toString());
+    }
+    return json.append('}').append(LINE_SEP).toString();
+  }
+
+  /**
+   * Appends a value, numbers and booleans as they are, anything else as a string
+   *
+   * @param json
+   * @param value
+   */
+  private static void value(StringBuilder json, Object value) {
+    if (value == null) {
+      json.append("null");
+    } else if (value instanceof Boolean || value instanceof Number && isFinite((Number) value)) {
+      json.append(value);
+    } else {
+      string(json, value.toString());
+    }
+  }
+
+  /**
+   * @param n
+   * @return <code>false</code> for NaN and infinities, JSON has no literal for them
+   */
+  private static boolean isFinite(Number n) {
+    double d = n.doubleValue();
+    return !Double.isNaN(d) && !Double.isInfinite(d);
+  }
+
+  /**
+   * Appends a quoted, escaped string
+   *
+   * @param json
+   * @param s
+   */
+  private static void string(StringBuilder json, String s) {
+    if (s == null) {
+      json.append("null");
+      return;
+    }
+    json.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", Integer.valueOf(c)));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+
+  /**
+   * The exception is part of the JSON object
+   *
+   * @see org.apache.log4j.Layout#ignoresThrowable()
+   */
+  @Override
+  public boolean ignoresThrowable() {
+    return false;
+  }
+
+  /**
+   * @see org.apache.log4j.spi.OptionHandler#activateOptions()
+   */
+  @Override
+  public void activateOptions() {
+    // no options
+  }
+}
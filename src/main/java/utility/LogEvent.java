@@ -0,0 +1,97 @@
+package utility;
+
+/**
+ * Structured log message: an event name and key / value pairs.
+ * <p>
+ * Pattern layouts print it as text, {@link JsonLineLayout} writes the pairs as JSON members.
+ *
+ * @author viorel.florian
+ */
+public final class LogEvent {
+
+  /** class that logged, may be <code>null</code> */
+  private final Class<?> source;
+
+  /** event name */
+  private final String name;
+
+  /** key, value, key, value... */
+  private final Object[] keyValues;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param source class that logged, may be <code>null</code>
+   * @param name
+   * @param keyValues key, value, key, value... a key without value is ignored
+   */
+  public LogEvent(Class<?> source, String name, Object... keyValues) {
+    super();
+    this.source = source;
+    this.name = name;
+    this.keyValues = keyValues;
+  }
+
+  /**
+   * Get source.
+   *
+   * @return class that logged, may be <code>null</code>
+   */
+  public Class<?> getSource() {
+    return this.source;
+  }
+
+  /**
+   * Get name.
+   *
+   * @return event name
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Get number of key / value pairs.
+   *
+   * @return pairs
+   */
+  public int size() {
+    return this.keyValues.length / 2;
+  }
+
+  /**
+   * Get key of a pair.
+   *
+   * @param i
+   *
+   * @return key
+   */
+  public String getKey(int i) {
+    return String.valueOf(this.keyValues[2 * i]);
+  }
+
+  /**
+   * Get value of a pair.
+   *
+   * @param i
+   *
+   * @return value, may be <code>null</code>
+   */
+  public Object getValue(int i) {
+    return this.keyValues[2 * i + 1];
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    text.append(this.source == null ? " - " : " [" + this.source.getSimpleName().trim() + "] - ");
+    text.append(this.name);
+    for (int i = 0; i < this.size(); i++) {
+      text.append(i == 0 ? ": " : ", ").append(this.getKey(i)).append('=').append(this.getValue(i));
+    }
+    return text.toString();
+  }
+}
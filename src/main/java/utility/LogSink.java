@@ -0,0 +1,181 @@
+package utility;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+/**
+ * Asynchronous, bounded log output to a text pane.
+ * <p>
+ * Any thread may {@link #append(String)}: the line goes into a lock-free ring buffer and the call returns at
+ * once. A single consumer, on the Event Dispatch Thread, drains the buffer and inserts all pending lines at
+ * the end of the document in one edit. The document keeps at most <code>maxLines</code> lines, the oldest
+ * are removed. When producers outrun the EDT and the ring is full, lines are dropped for the pane only (the
+ * log4j appenders still get them) and a count of the dropped lines is shown instead.
+ *
+ * @author viorel.florian
+ */
+public class LogSink {
+
+  /** pane written to */
+  private final JTextPane pane;
+
+  /** lines kept in the pane */
+  private final int maxLines;
+
+  /** pending lines, a slot is <code>null</code> until its producer has published it */
+  private final AtomicReferenceArray<String> ring;
+
+  /** capacity - 1, the capacity is a power of two */
+  private final int mask;
+
+  /** next sequence to claim, producers */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** next sequence to read, written by the consumer only */
+  private final AtomicLong head = new AtomicLong();
+
+  /** lines dropped since the last drain */
+  private final AtomicLong dropped = new AtomicLong();
+
+  /** a drain is queued on the EDT */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  /** drains the ring, on the EDT */
+  private final Runnable drain = new Runnable() {
+    @Override
+    public void run() {
+      LogSink.this.drain();
+    }
+  };
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param pane
+   * @param capacity pending lines, rounded up to a power of two
+   * @param maxLines lines kept in the pane
+   */
+  public LogSink(JTextPane pane, int capacity, int maxLines) {
+    super();
+    this.pane = pane;
+    this.maxLines = Math.max(1, maxLines);
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.ring = new AtomicReferenceArray<String>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Queues a line, returns at once
+   *
+   * @param line
+   */
+  public void append(String line) {
+    if (line == null) {
+      line = "null";
+    }
+    long seq;
+    do {
+      seq = this.tail.get();
+      if (seq - this.head.get() > this.mask) {
+        this.dropped.incrementAndGet();
+        this.schedule();
+        return;
+      }
+    } while (!this.tail.compareAndSet(seq, seq + 1));
+
+    this.ring.lazySet((int) seq & this.mask, line);
+    this.schedule();
+  }
+
+  /**
+   * Queues a drain on the EDT, unless one is already queued
+   */
+  private void schedule() {
+    if (this.scheduled.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(this.drain);
+    }
+  }
+
+  /**
+   * Moves the published lines to the pane, on the EDT
+   */
+  void drain() {
+    // lines published from now on queue the next drain
+    this.scheduled.set(false);
+
+    StringBuilder batch = new StringBuilder();
+    int lines = 0;
+    long seq = this.head.get();
+    for (;;) {
+      int slot = (int) seq & this.mask;
+      String line = this.ring.get(slot);
+      if (line == null) {
+        // not claimed, or claimed but not yet published
+        break;
+      }
+      this.ring.set(slot, null);
+      this.head.lazySet(++seq);
+      batch.append('\n').append(line);
+      lines++;
+    }
+    long lost = this.dropped.getAndSet(0);
+    if (lost > 0) {
+      batch.append("\n - ").append(lost).append(" log lines dropped");
+      lines++;
+    }
+    if (lines == 0) {
+      return;
+    }
+
+    Document doc = this.pane.getDocument();
+    try {
+      // the very first line needs no separator
+      doc.insertString(doc.getLength(), doc.getLength() == 0 ? batch.substring(1) : batch.toString(), null);
+      this.trim(doc);
+    } catch (BadLocationException e) {
+      // offsets come from the document itself
+      throw new IllegalStateException(e);
+    }
+    this.pane.setCaretPosition(doc.getLength());
+  }
+
+  /**
+   * Removes the oldest lines over the cap
+   *
+   * @param doc
+   *
+   * @throws BadLocationException
+   */
+  private void trim(Document doc) throws BadLocationException {
+    Element root = doc.getDefaultRootElement();
+    int excess = root.getElementCount() - this.maxLines;
+    if (excess > 0) {
+      doc.remove(0, root.getElement(excess - 1).getEndOffset());
+    }
+  }
+
+  /**
+   * Get number of lines waiting for the EDT.
+   *
+   * @return pending lines
+   */
+  public int getPendingCount() {
+    return (int) (this.tail.get() - this.head.get());
+  }
+
+  /**
+   * Get maxLines.
+   *
+   * @return lines kept in the pane
+   */
+  public int getMaxLines() {
+    return this.maxLines;
+  }
+}
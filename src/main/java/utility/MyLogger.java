@@ -7,9 +7,17 @@ import gui.InfoPanel;
 
 import java.net.URL;
 
+import org.apache.log4j.Level;
 import org.apache.log4j.PropertyConfigurator;
 
 /**
+ * Application log, written by log4j and shown in the info panel.
+ * <p>
+ * Messages are only built when their level is enabled. The template methods take <code>{}</code>
+ * placeholders and format nothing while the level is off; with up to two arguments they do not allocate
+ * either. {@link #event(Object, String, Object...)} logs a {@link LogEvent}, name plus key / value pairs,
+ * that {@link JsonLineLayout} writes as one JSON object per line.
+ * 
  * @author Administrator
  * 
  */
@@ -18,7 +26,7 @@ public class MyLogger {
   private static final String LOG_FILENAME = "log.properties";
 
   /** */
-  private static org.apache.log4j.Logger log;
+  private static volatile org.apache.log4j.Logger log;
 
   /**
    * 
@@ -26,12 +34,37 @@ public class MyLogger {
    */
   public static org.apache.log4j.Logger getLogger() {
 
-    if (log == null) {
-      log = org.apache.log4j.Logger.getLogger(MyLogger.class);
-      URL logURL = MyLogger.class.getResource(LOG_FILENAME);
-      PropertyConfigurator.configure(logURL);
+    org.apache.log4j.Logger _log = log;
+    if (_log == null) {
+      synchronized (MyLogger.class) {
+        _log = log;
+        if (_log == null) {
+          _log = org.apache.log4j.Logger.getLogger(MyLogger.class);
+          URL logURL = MyLogger.class.getResource(LOG_FILENAME);
+          PropertyConfigurator.configure(logURL);
+          log = _log;
+        }
+      }
     }
-    return log;
+    return _log;
+  }
+
+  /**
+   * Tells if info messages are logged
+   * 
+   * @return <code>true</code> if enabled
+   */
+  public static boolean isInfoEnabled() {
+    return getLogger().isInfoEnabled();
+  }
+
+  /**
+   * Tells if error messages are logged
+   * 
+   * @return <code>true</code> if enabled
+   */
+  public static boolean isErrorEnabled() {
+    return getLogger().isEnabledFor(Level.ERROR);
   }
 
   /**
@@ -41,7 +74,48 @@ public class MyLogger {
    * @return
    */
   private static String getFormatedMessage(Object obj, Object message) {
-    return " [" + obj.getClass().getSimpleName().trim() + "] - " + message;
+    Class<?> source = sourceClass(obj);
+    if (source == null) {
+      return " - " + message;
+    }
+    return " [" + source.getSimpleName().trim() + "] - " + message;
+  }
+
+  /**
+   * 
+   * @param obj
+   * @return class logging, <code>null</code> if unknown
+   */
+  static Class<?> sourceClass(Object obj) {
+    if (obj == null) {
+      return null;
+    }
+    return obj instanceof Class ? (Class<?>) obj : obj.getClass();
+  }
+
+  /**
+   * Replaces the <code>{}</code> placeholders of the template with the arguments, in order. Placeholders
+   * without argument are left as they are, extra arguments are ignored.
+   * 
+   * @param template
+   * @param args
+   * @return message
+   */
+  static String format(String template, Object... args) {
+    if (template == null) {
+      return null;
+    }
+    StringBuilder text = new StringBuilder(template.length() + 16 * args.length);
+    int from = 0;
+    for (Object arg : args) {
+      int at = template.indexOf("{}", from);
+      if (at < 0) {
+        break;
+      }
+      text.append(template, from, at).append(arg);
+      from = at + 2;
+    }
+    return text.append(template, from, template.length()).toString();
   }
 
   /**
@@ -50,9 +124,52 @@ public class MyLogger {
    * @param text
    */
   public static void info(Object source, String text) {
-    String t = getFormatedMessage(source, text);
-    getLogger().info(t);
-    appendToMbcOutput(t);
+    if (isInfoEnabled()) {
+      String t = getFormatedMessage(source, text);
+      getLogger().info(t);
+      appendToMbcOutput(t);
+    }
+  }
+
+  /**
+   * Info message, formatted only when info is enabled
+   * 
+   * @param source
+   * @param template text with one <code>{}</code> placeholder
+   * @param arg
+   */
+  public static void info(Object source, String template, Object arg) {
+    if (isInfoEnabled()) {
+      info(source, format(template, arg));
+    }
+  }
+
+  /**
+   * Info message, formatted only when info is enabled
+   * 
+   * @param source
+   * @param template text with two <code>{}</code> placeholders
+   * @param arg1
+   * @param arg2
+   */
+  public static void info(Object source, String template, Object arg1, Object arg2) {
+    if (isInfoEnabled()) {
+      info(source, format(template, arg1, arg2));
+    }
+  }
+
+  /**
+   * Info message, formatted only when info is enabled. The argument array is built by the caller, guard
+   * hot paths with {@link #isInfoEnabled()}.
+   * 
+   * @param source
+   * @param template text with <code>{}</code> placeholders
+   * @param args
+   */
+  public static void info(Object source, String template, Object... args) {
+    if (isInfoEnabled()) {
+      info(source, format(template, args));
+    }
   }
 
   /**
@@ -61,9 +178,11 @@ public class MyLogger {
    * @param text
    */
   public static void error(Object source, String text) {
-    String t = getFormatedMessage(source, text);
-    getLogger().error(t);
-    appendToMbcOutput(t);
+    if (isErrorEnabled()) {
+      String t = getFormatedMessage(source, text);
+      getLogger().error(t);
+      appendToMbcOutput(t);
+    }
   }
 
   /**
@@ -73,11 +192,26 @@ public class MyLogger {
    * @param t 
    */
   public static void error(Object source, String text, Throwable trw) {
-    String t = getFormatedMessage(source, text);
+    if (isErrorEnabled()) {
+      String t = getFormatedMessage(source, text);
 
-    getLogger().error(t, trw);
-    appendToMbcOutput(t);
+      getLogger().error(t, trw);
+      appendToMbcOutput(t);
+    }
+  }
 
+  /**
+   * Error message, formatted only when error is enabled
+   * 
+   * @param source
+   * @param template text with one <code>{}</code> placeholder
+   * @param arg
+   * @param trw cause, may be <code>null</code>
+   */
+  public static void error(Object source, String template, Object arg, Throwable trw) {
+    if (isErrorEnabled()) {
+      error(source, format(template, arg), trw);
+    }
   }
 
   /**
@@ -86,19 +220,34 @@ public class MyLogger {
    * @param t 
    */
   public static void error(Object source, Throwable trw) {
-    String t = getFormatedMessage(source, trw.getMessage());
-    getLogger().error(getFormatedMessage(source, trw.getMessage()), trw);
-    appendToMbcOutput(t);
+    if (isErrorEnabled()) {
+      String t = getFormatedMessage(source, trw.getMessage());
+      getLogger().error(t, trw);
+      appendToMbcOutput(t);
+    }
   }
 
   /**
-   * appends text to the info panel
+   * Structured info message, created only when info is enabled
+   * 
+   * @param source
+   * @param name what happened, e.g. "Layout saved"
+   * @param keyValues key, value, key, value...
+   */
+  public static void event(Object source, String name, Object... keyValues) {
+    if (isInfoEnabled()) {
+      LogEvent e = new LogEvent(sourceClass(source), name, keyValues);
+      getLogger().info(e);
+      appendToMbcOutput(e.toString());
+    }
+  }
+
+  /**
+   * appends text to the info panel, asynchronously
    * @param newTxt 
    */
   private static void appendToMbcOutput(String newTxt) {
-    String oldtxt = InfoPanel.getMbcOutput().getText();
-    InfoPanel.getMbcOutput().setText(oldtxt + "\n" + newTxt);
-
+    InfoPanel.getLogSink().append(newTxt);
   }
 
   // EOF
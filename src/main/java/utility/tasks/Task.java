@@ -0,0 +1,272 @@
+package utility.tasks;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import utility.MyLogger;
+
+/**
+ * Unit of background work run by the {@link TaskService}.
+ * <p>
+ * {@link #call()} runs on a worker thread. Everything else a subclass overrides (progress, success,
+ * failure, cancellation) is called on the Event Dispatch Thread, as are the {@link TaskListener}s.
+ * Progress updates are coalesced: when the worker reports faster than the EDT can follow, only the latest
+ * value is delivered. {@link #cancel()} interrupts the worker, long tasks should also poll
+ * {@link #isCancelled()}.
+ *
+ * @param <T> result type
+ *
+ * @author viorel.florian
+ */
+public abstract class Task<T> {
+
+  /** category */
+  private final TaskCategory category;
+
+  /** name, for the log */
+  private final String name;
+
+  /** the work, wrapped so that completion is seen whatever the outcome */
+  private final FutureTask<T> future;
+
+  /** listeners */
+  private final List<TaskListener> listeners = new CopyOnWriteArrayList<TaskListener>();
+
+  /** latest progress, done in the high half, total in the low half */
+  private volatile long progress = 0;
+
+  /** a progress delivery is queued on the EDT */
+  private final AtomicBoolean progressQueued = new AtomicBoolean();
+
+  /** the task was handed to the service */
+  private final AtomicBoolean submitted = new AtomicBoolean();
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param category
+   * @param name for the log
+   */
+  protected Task(TaskCategory category, String name) {
+    super();
+    this.category = category;
+    this.name = name;
+    this.future = new FutureTask<T>(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        return Task.this.call();
+      }
+    }) {
+      @Override
+      protected void done() {
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            Task.this.finish();
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * The work, on a worker thread
+   *
+   * @return result
+   *
+   * @throws Exception
+   */
+  protected abstract T call() throws Exception;
+
+  /**
+   * Reports progress, from the worker
+   *
+   * @param done
+   * @param total
+   */
+  protected void setProgress(int done, int total) {
+    this.progress = ((long) done << 32) | (total & 0xFFFFFFFFL);
+    if (this.progressQueued.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(new Runnable() {
+        @Override
+        public void run() {
+          Task.this.deliverProgress();
+        }
+      });
+    }
+  }
+
+  /**
+   * Hands the latest progress to the task and its listeners, on the EDT
+   */
+  private void deliverProgress() {
+    this.progressQueued.set(false);
+    long p = this.progress;
+    int done = (int) (p >>> 32);
+    int total = (int) p;
+    this.progress(done, total);
+    for (TaskListener listener : this.listeners) {
+      listener.progressChanged(this, done, total);
+    }
+  }
+
+  /**
+   * Calls the completion callbacks, on the EDT
+   */
+  private void finish() {
+    if (this.future.isCancelled()) {
+      this.cancelled();
+    } else {
+      try {
+        this.succeeded(this.future.get());
+      } catch (ExecutionException e) {
+        this.failed(e.getCause());
+      } catch (InterruptedException e) {
+        this.failed(e);
+      }
+    }
+    for (TaskListener listener : this.listeners) {
+      listener.taskFinished(this);
+    }
+  }
+
+  /**
+   * Progress, on the EDT
+   *
+   * @param done
+   * @param total
+   */
+  protected void progress(int done, int total) {
+    // nothing by default
+  }
+
+  /**
+   * Success, on the EDT
+   *
+   * @param result
+   */
+  protected void succeeded(T result) {
+    // nothing by default
+  }
+
+  /**
+   * Failure, on the EDT, logs the cause by default
+   *
+   * @param cause
+   */
+  protected void failed(Throwable cause) {
+    MyLogger.error(this, this.name + " failed", cause);
+  }
+
+  /**
+   * Cancellation, on the EDT, logs by default
+   */
+  protected void cancelled() {
+    MyLogger.info(this, "{} cancelled", this.name);
+  }
+
+  /**
+   * Add a listener, called on the EDT
+   *
+   * @param listener
+   */
+  public void addTaskListener(TaskListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Remove a listener
+   *
+   * @param listener
+   */
+  public void removeTaskListener(TaskListener listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Cancels the task, interrupting its worker if it is running
+   *
+   * @return <code>false</code> if the task had already completed
+   */
+  public boolean cancel() {
+    return this.future.cancel(true);
+  }
+
+  /**
+   * Tells if the task was cancelled
+   *
+   * @return <code>true</code> if cancelled
+   */
+  public boolean isCancelled() {
+    return this.future.isCancelled();
+  }
+
+  /**
+   * Tells if the task completed, whatever the outcome
+   *
+   * @return <code>true</code> if done
+   */
+  public boolean isDone() {
+    return this.future.isDone();
+  }
+
+  /**
+   * Waits for the result, never call it on the EDT
+   *
+   * @return result
+   *
+   * @throws InterruptedException
+   * @throws ExecutionException if the task failed
+   * @throws CancellationException if the task was cancelled
+   */
+  public T get() throws InterruptedException, ExecutionException {
+    return this.future.get();
+  }
+
+  /**
+   * Get category.
+   *
+   * @return category
+   */
+  public TaskCategory getCategory() {
+    return this.category;
+  }
+
+  /**
+   * Get name.
+   *
+   * @return name
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Marks the task as submitted
+   *
+   * @return the runnable doing the work
+   *
+   * @throws IllegalStateException if it was already submitted
+   */
+  Runnable submitted() {
+    if (!this.submitted.compareAndSet(false, true)) {
+      throw new IllegalStateException("Task already submitted: " + this.name);
+    }
+    return this.future;
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return this.name;
+  }
+}
@@ -0,0 +1,39 @@
+package utility.tasks;
+
+/**
+ * Kinds of background work, each with its own concurrency bound in the {@link TaskService}
+ *
+ * @author viorel.florian
+ */
+public enum TaskCategory {
+
+  /** file reads and writes: loading, saving, compaction */
+  IO(4),
+
+  /** CPU bound work: parsing, analysis */
+  COMPUTE(Math.max(1, Runtime.getRuntime().availableProcessors())),
+
+  /** workspace creation, one at a time */
+  WORKSPACE(1);
+
+  /** tasks of this category running at the same time */
+  private final int maxConcurrent;
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param maxConcurrent
+   */
+  private TaskCategory(int maxConcurrent) {
+    this.maxConcurrent = maxConcurrent;
+  }
+
+  /**
+   * Get maxConcurrent.
+   *
+   * @return tasks of this category running at the same time
+   */
+  public int getMaxConcurrent() {
+    return this.maxConcurrent;
+  }
+}
@@ -0,0 +1,25 @@
+package utility.tasks;
+
+/**
+ * Follows a {@link Task} from outside, all calls are made on the Event Dispatch Thread
+ *
+ * @author viorel.florian
+ */
+public interface TaskListener {
+
+  /**
+   * The task reported progress
+   *
+   * @param task
+   * @param done
+   * @param total
+   */
+  public void progressChanged(Task<?> task, int done, int total);
+
+  /**
+   * The task succeeded, failed or was cancelled, its own completion callbacks have run
+   *
+   * @param task
+   */
+  public void taskFinished(Task<?> task);
+}
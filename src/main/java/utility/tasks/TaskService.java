@@ -0,0 +1,281 @@
+package utility.tasks;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utility.MyLogger;
+
+/**
+ * Runs the background work of the application.
+ * <p>
+ * Work runs on virtual threads when the JVM has them (Java 21 and later, looked up by reflection so the
+ * code still runs on older JVMs), on a cached pool of daemon platform threads otherwise. Each
+ * {@link TaskCategory} is a lane with its own concurrency bound: work over the bound waits in the lane's
+ * queue, without holding a thread. Per lane counters tell how much work went through and how long it
+ * kept a thread busy.
+ *
+ * @author viorel.florian
+ */
+public final class TaskService {
+
+  /** service instance */
+  private static final TaskService instance = new TaskService();
+
+  /**
+   * Get instance
+   *
+   * @return service singleton instance
+   */
+  public static TaskService getInstance() {
+    return instance;
+  }
+
+  /** runs the work */
+  private final ExecutorService executor;
+
+  /** work runs on virtual threads */
+  private final boolean virtual;
+
+  /** lanes */
+  private final Map<TaskCategory, Lane> lanes = new EnumMap<TaskCategory, Lane>(TaskCategory.class);
+
+  /**
+   * Constructs a new instance.
+   */
+  private TaskService() {
+    super();
+    ExecutorService virtualThreads = newVirtualThreadExecutor();
+    this.virtual = virtualThreads != null;
+    this.executor = this.virtual ? virtualThreads : newPlatformThreadExecutor();
+    for (TaskCategory category : TaskCategory.values()) {
+      this.lanes.put(category, new Lane(category));
+    }
+    MyLogger.info(this, "Background tasks run on {} threads", this.virtual ? "virtual" : "platform");
+  }
+
+  /**
+   * One virtual thread per task
+   *
+   * @return executor, <code>null</code> if the JVM has no virtual threads
+   */
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (Exception e) {
+      // preview builds refuse when preview features are off
+      return null;
+    }
+  }
+
+  /**
+   * Cached pool of daemon threads, the lanes bound the concurrency
+   *
+   * @return executor
+   */
+  private static ExecutorService newPlatformThreadExecutor() {
+    final AtomicInteger count = new AtomicInteger();
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mbc-task-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  /**
+   * Starts a task, returns at once
+   *
+   * @param task not yet submitted
+   *
+   * @return the task
+   */
+  public <T> Task<T> submit(Task<T> task) {
+    this.lanes.get(task.getCategory()).execute(task.submitted());
+    return task;
+  }
+
+  /**
+   * Runs a plain piece of work in a lane, without callbacks. Meant for the parts of a larger task.
+   *
+   * @param category
+   * @param work
+   *
+   * @return future of the result
+   */
+  public <V> Future<V> submit(TaskCategory category, Callable<V> work) {
+    FutureTask<V> future = new FutureTask<V>(work);
+    this.lanes.get(category).execute(future);
+    return future;
+  }
+
+  /**
+   * Tells if the work runs on virtual threads
+   *
+   * @return <code>true</code> if virtual
+   */
+  public boolean isVirtual() {
+    return this.virtual;
+  }
+
+  /**
+   * Get number of pieces of work submitted to a lane.
+   *
+   * @param category
+   *
+   * @return submitted
+   */
+  public long getSubmittedCount(TaskCategory category) {
+    return this.lanes.get(category).submitted.get();
+  }
+
+  /**
+   * Get number of pieces of work of a lane that ran to the end, or were cancelled while waiting.
+   *
+   * @param category
+   *
+   * @return completed
+   */
+  public long getCompletedCount(TaskCategory category) {
+    return this.lanes.get(category).completed.get();
+  }
+
+  /**
+   * Get time the work of a lane kept threads busy.
+   *
+   * @param category
+   *
+   * @return busy time, in milliseconds
+   */
+  public long getBusyMillis(TaskCategory category) {
+    return TimeUnit.NANOSECONDS.toMillis(this.lanes.get(category).busyNanos.get());
+  }
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder("Tasks on ").append(this.virtual ? "virtual" : "platform")
+        .append(" threads");
+    for (Lane lane : this.lanes.values()) {
+      text.append(", ").append(lane);
+    }
+    return text.toString();
+  }
+
+  /**
+   * Work of one category, at most {@link TaskCategory#getMaxConcurrent()} running
+   */
+  private final class Lane {
+
+    /** category */
+    private final TaskCategory category;
+
+    /** work over the bound */
+    private final Queue<Runnable> waiting = new ArrayDeque<Runnable>();
+
+    /** running, guarded by this */
+    private int running = 0;
+
+    /** submitted */
+    final AtomicLong submitted = new AtomicLong();
+
+    /** completed */
+    final AtomicLong completed = new AtomicLong();
+
+    /** busy time */
+    final AtomicLong busyNanos = new AtomicLong();
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param category
+     */
+    Lane(TaskCategory category) {
+      this.category = category;
+    }
+
+    /**
+     * Runs the work now, or queues it when the lane is full
+     *
+     * @param work
+     */
+    synchronized void execute(Runnable work) {
+      this.submitted.incrementAndGet();
+      if (this.running < this.category.getMaxConcurrent()) {
+        this.running++;
+        this.start(work);
+      } else {
+        this.waiting.add(work);
+      }
+    }
+
+    /**
+     * Hands the work to a thread, under the lane lock
+     *
+     * @param work
+     */
+    private void start(final Runnable work) {
+      try {
+        TaskService.this.executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            long start = System.nanoTime();
+            try {
+              work.run();
+            } finally {
+              Lane.this.busyNanos.addAndGet(System.nanoTime() - start);
+              Lane.this.completed.incrementAndGet();
+              Lane.this.next();
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        this.running--;
+        MyLogger.error(TaskService.this, "Task rejected", e);
+      }
+    }
+
+    /**
+     * Starts the next waiting work, if any
+     */
+    synchronized void next() {
+      Runnable work = this.waiting.poll();
+      if (work == null) {
+        this.running--;
+      } else {
+        this.start(work);
+      }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+      return this.category + ": " + this.completed.get() + "/" + this.submitted.get() + " done, " + this.running
+          + " running, " + this.waiting.size() + " waiting, " + TimeUnit.NANOSECONDS.toMillis(this.busyNanos.get())
+          + " ms busy";
+    }
+  }
+}
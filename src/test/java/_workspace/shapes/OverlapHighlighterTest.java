@@ -0,0 +1,79 @@
+package _workspace.shapes;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Position;
+
+import org.junit.Test;
+
+import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.shapes.spatial.CollisionDetector;
+import _workspace.shapes.spatial.ShapeIndex;
+
+/**
+ * Domes are highlighted while they overlap, over the selection highlight
+ *
+ * @author viorel.florian
+ */
+public class OverlapHighlighterTest {
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /**
+   * @param latitude
+   * @return detached dome, 100 m wide
+   */
+  private static DomeShape dome(double latitude) {
+    return new DomeShape((MoonWorkspaceInternalFrame) null, Position.fromDegrees(latitude, 0, 0), 100, 100, 100,
+        0, 0, 0);
+  }
+
+  /**
+   * Moving a dome onto another one highlights both, moving it away clears both, the selection highlight
+   * stays
+   *
+   * @throws Exception
+   */
+  @Test
+  public void overlappingDomesAreHighlightedUntilMovedApart() throws Exception {
+    ShapesPool pool = new ShapesPool();
+    ShapeIndex index = new ShapeIndex(MOON_RADIUS);
+    index.attach(pool);
+    CollisionDetector detector = new CollisionDetector(pool, index);
+    OverlapHighlighter highlighter = new OverlapHighlighter(detector, null);
+
+    DomeShape still = dome(0);
+    DomeShape dragged = dome(1);
+    pool.addShape(still);
+    pool.addShape(dragged);
+    dragged.setHighlighted(true);
+    assertFalse(still.isHighlighted());
+
+    // 50 m north of the other one
+    dragged.setCenterPosition(Position.fromDegrees(50 / MOON_RADIUS * 180 / Math.PI, 0, 0));
+    pool.fireShapeChanged(dragged);
+    assertTrue(still.isConflicting());
+    assertTrue(still.isHighlighted());
+    assertTrue(dragged.isConflicting());
+    assertTrue(dragged.getHighlightAttributes() != null);
+    assertSame(still.getHighlightAttributes(), dragged.getHighlightAttributes());
+
+    // deselected while in conflict, still flagged
+    dragged.setHighlighted(false);
+    assertTrue(dragged.isHighlighted());
+    dragged.setHighlighted(true);
+
+    dragged.setCenterPosition(Position.fromDegrees(1, 0, 0));
+    pool.fireShapeChanged(dragged);
+    assertFalse(still.isConflicting());
+    assertFalse(still.isHighlighted());
+    assertFalse(dragged.isConflicting());
+    assertTrue("selected", dragged.isHighlighted());
+
+    highlighter.dispose();
+    detector.detach();
+    index.detach(pool);
+  }
+}
@@ -0,0 +1,319 @@
+package _workspace.shapes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Shapes pool lookups by identifier and by handle, and the pool used from several threads at once, as the
+ * loaders, autosave and the EDT do
+ *
+ * @author viorel.florian
+ */
+public class ShapesPoolTest {
+
+  /** threads running at once */
+  private static final int THREADS = 8;
+
+  /** identifiers each thread works on */
+  private static final int SHAPES = 500;
+
+  /**
+   * @param identifier
+   * @return dome with that identifier
+   */
+  static DomeShape named(String identifier) {
+    DomeShape dome = TestDomes.dome(0, 0, 100);
+    dome.setIdentifier(identifier);
+    return dome;
+  }
+
+  /**
+   * Runs the tasks together, each on its own thread
+   *
+   * @param tasks
+   * @return results, in the order of the tasks
+   * @throws Exception the first failure of a task
+   */
+  static <T> List<T> runTogether(List<Callable<T>> tasks) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+    final CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<T>> futures = new ArrayList<Future<T>>();
+      for (final Callable<T> task : tasks) {
+        futures.add(executor.submit(new Callable<T>() {
+          @Override
+          public T call() throws Exception {
+            start.await();
+            return task.call();
+          }
+        }));
+      }
+      start.countDown();
+      List<T> results = new ArrayList<T>();
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Identifiers are found, taken and removed whatever their case, the case added is kept
+   *
+   * @throws Exception
+   */
+  @Test
+  public void lookupIgnoresCase() throws Exception {
+    ShapesPool pool = new ShapesPool();
+    DomeShape dome = named("Dome 01");
+    pool.addShape(dome);
+
+    assertSame(dome, pool.getShape("Dome 01"));
+    assertSame(dome, pool.getShape("dome 01"));
+    assertSame(dome, pool.getShape("DOME 01"));
+    assertSame(dome, pool.getShape(IdentifierKey.of("dOmE 01")));
+    assertNull(pool.getShape("Dome 1"));
+    assertEquals("DOME 01", pool.getAllShapesEntries().iterator().next().getKey());
+    try {
+      pool.addShape(named("DOME 01"));
+      fail("identifier taken twice");
+    } catch (Exception e) {
+      // taken
+    }
+    try {
+      pool.getShape("");
+      fail("empty identifier");
+    } catch (Exception e) {
+      // empty
+    }
+
+    // case only renames keep the shape where it is
+    pool.updateIdentifier("dome 01", "DOME 01");
+    assertSame(dome, pool.getShape("Dome 01"));
+    assertSame(dome, pool.removeShape("dOME 01"));
+    assertEquals(0, pool.size());
+  }
+
+  /**
+   * Handles find their shape until it is removed, survive renames and are given again to later shapes
+   *
+   * @throws Exception
+   */
+  @Test
+  public void handlesFollowTheirShape() throws Exception {
+    ShapesPool pool = new ShapesPool();
+    DomeShape a = named("Dome A");
+    DomeShape b = named("Dome B");
+    int ha = pool.addShape(a);
+    int hb = pool.addShape(b);
+    assertTrue(ha >= 0 && hb >= 0 && ha != hb);
+    assertEquals(ha, pool.getHandle("dome a"));
+    assertSame(a, pool.getShape(ha));
+    assertSame(b, pool.getShape(hb));
+    assertNull(pool.getShape(ShapesPool.NO_HANDLE));
+    assertNull(pool.getShape(1 << 20));
+    assertEquals(ShapesPool.NO_HANDLE, pool.getHandle("Dome C"));
+
+    pool.updateIdentifier("Dome A", "Dome C");
+    a.setIdentifier("Dome C");
+    assertEquals(ha, pool.getHandle("Dome C"));
+    assertEquals(ShapesPool.NO_HANDLE, pool.getHandle("Dome A"));
+    assertSame(a, pool.getShape(ha));
+
+    assertSame(a, pool.removeShape(ha));
+    assertNull(pool.getShape(ha));
+    assertNull(pool.getShape("Dome C"));
+    // stale handle
+    assertNull(pool.removeShape(ha));
+
+    DomeShape c = named("Dome D");
+    assertEquals("handle given again", ha, pool.addShape(c));
+    assertSame(c, pool.getShape(ha));
+    assertSame(b, pool.getShape(hb));
+    assertNull(pool.removeShape("Dome A"));
+    assertEquals(2, pool.size());
+  }
+
+  /**
+   * Handles stay dense over the chunks of the handle table, including after many removals
+   *
+   * @throws Exception
+   */
+  @Test
+  public void handlesStayDense() throws Exception {
+    ShapesPool pool = new ShapesPool();
+    int count = 5000;
+    int[] handles = new int[count];
+    List<IShape> shapes = new ArrayList<IShape>();
+    for (int i = 0; i < count; i++) {
+      DomeShape dome = named("Dome " + i);
+      shapes.add(dome);
+      handles[i] = pool.addShape(dome);
+    }
+    Set<Integer> seen = new HashSet<Integer>();
+    for (int i = 0; i < count; i++) {
+      assertTrue(handles[i] < count);
+      assertTrue(seen.add(Integer.valueOf(handles[i])));
+      assertSame(shapes.get(i), pool.getShape(handles[i]));
+    }
+
+    for (int i = 0; i < count; i += 3) {
+      pool.removeShape(handles[i]);
+    }
+    List<IShape> again = new ArrayList<IShape>();
+    for (int i = 0; i < count; i += 3) {
+      again.add(named("Again " + i));
+    }
+    assertEquals(again.size(), pool.addShapes(again).size());
+    for (IShape shape : again) {
+      int handle = pool.getHandle(shape.getIdentifier());
+      assertTrue("handle " + handle, handle >= 0 && handle < count);
+      assertSame(shape, pool.getShape(handle));
+    }
+    assertNull(pool.getShape(count));
+    assertEquals(count, pool.size());
+  }
+
+  /**
+   * Threads racing to add the same identifiers: each identifier is taken exactly once, listeners hear
+   * about each shape added
+   *
+   * @throws Exception
+   */
+  @Test
+  public void concurrentAddsTakeEachIdentifierOnce() throws Exception {
+    final ShapesPool pool = new ShapesPool();
+    final AtomicInteger heard = new AtomicInteger();
+    pool.addPoolListener(new ShapesPoolListener() {
+      @Override
+      public void shapeAdded(IShape shape) {
+        heard.incrementAndGet();
+      }
+
+      @Override
+      public void shapeRemoved(IShape shape) {
+        heard.decrementAndGet();
+      }
+
+      @Override
+      public void shapeChanged(IShape shape) {
+        // not changed
+      }
+    });
+
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int t = 0; t < THREADS; t++) {
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          int added = 0;
+          for (int i = 0; i < SHAPES; i++) {
+            try {
+              pool.addShape(named("Dome " + i));
+              added++;
+            } catch (Exception e) {
+              // taken by another thread
+            }
+          }
+          return Integer.valueOf(added);
+        }
+      });
+    }
+    int added = 0;
+    for (Integer count : runTogether(tasks)) {
+      added += count.intValue();
+    }
+
+    assertEquals(SHAPES, added);
+    assertEquals(SHAPES, pool.size());
+    assertEquals(SHAPES, heard.get());
+    assertEquals(SHAPES, pool.getAllShapes().size());
+    for (int i = 0; i < SHAPES; i++) {
+      assertNotNull(pool.getShape("Dome " + i));
+    }
+  }
+
+  /**
+   * Threads adding and removing their own shapes while another one takes snapshots: nothing is lost, no
+   * snapshot fails, every shape left is found
+   *
+   * @throws Exception
+   */
+  @Test
+  public void concurrentAddsAndRemoves() throws Exception {
+    final ShapesPool pool = new ShapesPool();
+    final AtomicInteger done = new AtomicInteger();
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int t = 0; t < THREADS; t++) {
+      final String prefix = "T" + t + " ";
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          try {
+            for (int i = 0; i < SHAPES; i++) {
+              pool.addShape(named(prefix + i));
+            }
+            // every other one goes, then half of them come back
+            for (int i = 0; i < SHAPES; i += 2) {
+              assertNotNull(pool.removeShape(prefix + i));
+            }
+            for (int i = 0; i < SHAPES; i += 4) {
+              pool.addShape(named(prefix + i));
+            }
+            return Integer.valueOf(0);
+          } finally {
+            done.incrementAndGet();
+          }
+        }
+      });
+    }
+    tasks.add(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        int snapshots = 0;
+        while (done.get() < THREADS) {
+          for (IShape shape : pool.getAllShapes()) {
+            assertNotNull(shape);
+          }
+          pool.getAllShapesEntries();
+          snapshots++;
+        }
+        return Integer.valueOf(snapshots);
+      }
+    });
+    runTogether(tasks);
+
+    assertEquals(THREADS * (SHAPES / 2 + SHAPES / 4), pool.size());
+    for (int t = 0; t < THREADS; t++) {
+      for (int i = 0; i < SHAPES; i++) {
+        IShape shape = pool.getShape("T" + t + " " + i);
+        if (i % 2 == 1 || i % 4 == 0) {
+          assertNotNull(shape);
+        } else {
+          assertNull(shape);
+        }
+      }
+    }
+    assertEquals(pool.size(), pool.clear());
+    assertTrue(pool.getAllShapes().isEmpty());
+  }
+}
@@ -0,0 +1,46 @@
+package _workspace.shapes;
+
+import gov.nasa.worldwind.geom.Position;
+import _workspace.MoonWorkspaceInternalFrame;
+
+/**
+ * Builds domes without a workspace, for the tests of the packages below this one.
+ *
+ * @author viorel.florian
+ */
+public final class TestDomes {
+
+  /**
+   * Not instantiable
+   */
+  private TestDomes() {
+    super();
+  }
+
+  /**
+   * @param lat degrees
+   * @param lon degrees
+   * @param radius meters, all three radii
+   * @return dome on the surface, not oriented
+   */
+  public static DomeShape dome(double lat, double lon, double radius) {
+    return dome(lat, lon, radius, radius, radius, 0, 0, 0);
+  }
+
+  /**
+   * @param lat degrees
+   * @param lon degrees
+   * @param northSouthRadius meters
+   * @param verticalRadius meters
+   * @param eastWestRadius meters
+   * @param heading degrees
+   * @param tilt degrees
+   * @param roll degrees
+   * @return dome on the surface
+   */
+  public static DomeShape dome(double lat, double lon, double northSouthRadius, double verticalRadius,
+      double eastWestRadius, double heading, double tilt, double roll) {
+    return new DomeShape((MoonWorkspaceInternalFrame) null, Position.fromDegrees(lat, lon, 0), northSouthRadius,
+        verticalRadius, eastWestRadius, heading, tilt, roll);
+  }
+}
@@ -0,0 +1,145 @@
+package _workspace.shapes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import _workspace.MoonWorkspaceInternalFrame;
+import _workspace.WorkspaceShapes;
+
+/**
+ * Opens and closes workspaces over and over and checks that nothing of a closed workspace stays
+ * reachable. Only the parts that run without a display are built and released, through the
+ * {@link WorkspaceShapes} that {@link _workspace.MoonWorkspaceInternalFrame} uses as well.
+ *
+ * @author viorel.florian
+ */
+public class WorkspaceLeakTest {
+
+  /** workspaces opened and closed */
+  private static final int WORKSPACES = 100;
+
+  /** shapes loaded in each workspace */
+  private static final int SHAPES = 500;
+
+  /** most heap a closed workspace may leave behind, all of them together */
+  private static final long HEAP_SLACK = 8L << 20;
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /**
+   * Opens a workspace and loads its shapes in bulk, as the load pipeline does
+   *
+   * @param globe
+   * @param seed offsets the shapes of each workspace
+   * @return workspace
+   */
+  private static WorkspaceShapes open(Globe globe, int seed) {
+    WorkspaceShapes workspace = new WorkspaceShapes(globe, null);
+    List<IShape> shapes = new ArrayList<IShape>(SHAPES);
+    for (int i = 0; i < SHAPES; i++) {
+      Position pos = Position.fromDegrees((i % 25) * 0.01, (i / 25) * 0.01 + seed * 0.001, 0);
+      shapes.add(new DomeShape((MoonWorkspaceInternalFrame) null, pos, 100, 100, 100, 0, 0, 0));
+    }
+    workspace.getCollisionDetector().beginBulk();
+    try {
+      assertEquals(SHAPES, workspace.getPool().addShapes(shapes).size());
+    } finally {
+      workspace.getCollisionDetector().endBulk();
+    }
+    return workspace;
+  }
+
+  /**
+   * Release leaves nothing wired to the pool, the parts that follow it forget its shapes
+   */
+  @Test
+  public void releaseUnwiresEverything() {
+    Globe globe = new EllipsoidalGlobe(MOON_RADIUS, MOON_RADIUS, 0, null);
+    WorkspaceShapes workspace = open(globe, 0);
+    IShape first = workspace.getPool().getAllShapes().get(0);
+    workspace.getSelection().add(first);
+    assertTrue(workspace.getPool().getPoolListenerCount() > 0);
+
+    assertEquals(SHAPES, workspace.release());
+    assertEquals(0, workspace.getPool().getPoolListenerCount());
+    assertEquals(0, workspace.getPool().size());
+    assertTrue(workspace.getSelection().isEmpty());
+    assertFalse(((DomeShape) first).isHighlighted());
+    assertFalse(workspace.getIndex().contains(first));
+    assertTrue(workspace.getCollisionDetector().getOverlapping().isEmpty());
+    assertEquals(0, workspace.getClusterLayer().getTree().size());
+  }
+
+  /**
+   * Closed workspaces, their pools and their shapes can be collected, and the heap does not grow with
+   * the number of workspaces opened
+   *
+   * @throws Exception
+   */
+  @Test
+  public void closedWorkspacesBecomeUnreachable() throws Exception {
+    Globe globe = new EllipsoidalGlobe(MOON_RADIUS, MOON_RADIUS, 0, null);
+    List<WeakReference<Object>> closed = new ArrayList<WeakReference<Object>>();
+    long baseline = 0;
+
+    for (int i = 0; i < WORKSPACES; i++) {
+      WorkspaceShapes workspace = open(globe, i);
+      closed.add(new WeakReference<Object>(workspace));
+      closed.add(new WeakReference<Object>(workspace.getPool()));
+      closed.add(new WeakReference<Object>(workspace.getPool().getAllShapes().get(0)));
+      workspace.release();
+      workspace = null;
+      if (i == 9) {
+        // after the class loading and the warm up
+        baseline = usedHeap(closed);
+      }
+    }
+
+    long used = usedHeap(closed);
+    for (WeakReference<Object> ref : closed) {
+      assertTrue("a closed workspace is still reachable", ref.get() == null);
+    }
+    assertTrue("heap grew by " + (used - baseline) + " bytes", used - baseline < HEAP_SLACK);
+  }
+
+  /**
+   * Collects until the referents are gone, or gives up after a while
+   *
+   * @param refs
+   * @return heap in use afterwards, in bytes
+   * @throws InterruptedException
+   */
+  private static long usedHeap(List<WeakReference<Object>> refs) throws InterruptedException {
+    for (int attempt = 0; attempt < 50 && !allCleared(refs); attempt++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * @param refs
+   * @return <code>true</code> if no referent is left
+   */
+  private static boolean allCleared(List<WeakReference<Object>> refs) {
+    for (WeakReference<Object> ref : refs) {
+      if (ref.get() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,194 @@
+package _workspace.shapes.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Frustum;
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.TestDomes;
+import _workspace.shapes.cluster.ShapeClusterTree.Cluster;
+import _workspace.shapes.render.LodView;
+
+/**
+ * Clusters of the domes seen from near and far, the tree kept up to date incrementally
+ *
+ * @author viorel.florian
+ */
+public class ShapeClusterTreeTest {
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /** viewport width, in pixels */
+  private static final int WIDTH = 1000;
+
+  /** 90 degrees wide: a pixel is 2 / WIDTH meters at distance 1 */
+  private static final Angle FIELD_OF_VIEW = Angle.fromDegrees(90);
+
+  /** nodes smaller than this on screen are clusters */
+  private static final double CLUSTER_PIXELS = 64;
+
+  /** globe */
+  private final Globe globe = new EllipsoidalGlobe(MOON_RADIUS, MOON_RADIUS, 0, null);
+
+  /**
+   * Seen from far the domes make one cluster at their centroid, seen from near none
+   */
+  @Test
+  public void cutFollowsTheDistance() {
+    ShapeClusterTree tree = new ShapeClusterTree();
+    List<DomeShape> domes = new ArrayList<DomeShape>();
+    double sumLat = 0;
+    double sumLon = 0;
+    for (int i = 0; i < 100; i++) {
+      double lat = 0.01 + (i % 10) * 0.01;
+      double lon = 0.01 + (i / 10) * 0.01;
+      DomeShape dome = TestDomes.dome(lat, lon, 100);
+      tree.add(dome);
+      domes.add(dome);
+      sumLat += lat;
+      sumLon += lon;
+    }
+    assertEquals(100, tree.size());
+
+    List<Cluster> clusters = new ArrayList<Cluster>();
+    assertEquals(100, tree.cut(view(0, 500000), this.globe, CLUSTER_PIXELS, clusters));
+    assertEquals(1, clusters.size());
+    assertEquals(100, clusters.get(0).getCount());
+    assertEquals(sumLat / 100, clusters.get(0).getCenter().getLatitude().degrees, 1e-9);
+    assertEquals(sumLon / 100, clusters.get(0).getCenter().getLongitude().degrees, 1e-9);
+    assertTrue(tree.isClustered(domes.get(42)));
+
+    // 300 meters apart, each dome alone in its cell
+    assertEquals(0, tree.cut(view(0, 1000), this.globe, CLUSTER_PIXELS, clusters));
+    assertTrue(clusters.isEmpty());
+    assertFalse(tree.isClustered(domes.get(42)));
+
+    // beyond the horizon
+    assertEquals(0, tree.cut(view(180, 500000), this.globe, CLUSTER_PIXELS, clusters));
+  }
+
+  /**
+   * Domes on both sides of the antimeridian are never averaged together, which would put the marker on
+   * the other side of the globe
+   */
+  @Test
+  public void antimeridianSplitsClusters() {
+    ShapeClusterTree tree = new ShapeClusterTree();
+    for (int i = 0; i < 5; i++) {
+      tree.add(TestDomes.dome(0.05 + i * 0.01, 179.995 - i * 0.01, 100));
+      tree.add(TestDomes.dome(0.05 + i * 0.01, -179.995 + i * 0.01, 100));
+    }
+    // 540 is 180, normalized
+    DomeShape wrapped = TestDomes.dome(0.06, 539.99, 100);
+    tree.add(wrapped);
+
+    List<Cluster> clusters = new ArrayList<Cluster>();
+    assertEquals(11, tree.cut(view(180, 500000), this.globe, CLUSTER_PIXELS, clusters));
+    assertEquals(2, clusters.size());
+    for (Cluster cluster : clusters) {
+      assertTrue(cluster.toString(), Math.abs(cluster.getCenter().getLongitude().degrees) > 179.9);
+    }
+    assertEquals(11, clusters.get(0).getCount() + clusters.get(1).getCount());
+    assertTrue(tree.isClustered(wrapped));
+  }
+
+  /**
+   * Adds, removes and moves leave the tree as it would be built from scratch, and an emptied tree keeps
+   * its root only
+   */
+  @Test
+  public void incrementalUpdatesMatchARebuild() {
+    Random random = new Random(11);
+    ShapeClusterTree tree = new ShapeClusterTree();
+    List<DomeShape> domes = new ArrayList<DomeShape>();
+    for (int i = 0; i < 600; i++) {
+      DomeShape dome = TestDomes.dome(0.01 + random.nextDouble() * 0.8, 0.01 + random.nextDouble() * 0.8, 100);
+      tree.add(dome);
+      domes.add(dome);
+    }
+    for (int i = 0; i < 200; i++) {
+      tree.remove(domes.remove(random.nextInt(domes.size())));
+    }
+    for (int i = 0; i < 200; i++) {
+      DomeShape dome = domes.get(random.nextInt(domes.size()));
+      Position pos = dome.getCenterPosition();
+      if (random.nextBoolean()) {
+        // within its cell, or next door
+        dome.setCenterPosition(Position.fromDegrees(pos.getLatitude().degrees + 0.0005,
+            pos.getLongitude().degrees, 0));
+      } else {
+        dome.setCenterPosition(Position.fromDegrees(0.01 + random.nextDouble() * 0.8,
+            0.01 + random.nextDouble() * 0.8, 0));
+      }
+      if (random.nextBoolean()) {
+        tree.update(dome);
+      } else {
+        // adding again moves it
+        tree.add(dome);
+      }
+    }
+    // a shape that was never added is ignored
+    tree.update(TestDomes.dome(0.5, 0.5, 100));
+    assertEquals(400, tree.size());
+
+    ShapeClusterTree rebuilt = new ShapeClusterTree();
+    for (DomeShape dome : domes) {
+      rebuilt.add(dome);
+    }
+    assertEquals(rebuilt.getNodeCount(), tree.getNodeCount());
+    int compared = 0;
+    for (double height : new double[] { 20000, 50000, 200000, 800000 }) {
+      List<Cluster> expected = new ArrayList<Cluster>();
+      List<Cluster> actual = new ArrayList<Cluster>();
+      assertEquals(rebuilt.cut(view(0, height), this.globe, CLUSTER_PIXELS, expected),
+          tree.cut(view(0, height), this.globe, CLUSTER_PIXELS, actual));
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+        assertEquals(expected.get(i).getCenter().getLatitude().degrees,
+            actual.get(i).getCenter().getLatitude().degrees, 1e-9);
+        assertEquals(expected.get(i).getCenter().getLongitude().degrees,
+            actual.get(i).getCenter().getLongitude().degrees, 1e-9);
+      }
+      compared += expected.size();
+    }
+    assertTrue(compared > 1);
+
+    for (DomeShape dome : domes) {
+      tree.remove(dome);
+    }
+    assertEquals(0, tree.size());
+    assertEquals(1, tree.getNodeCount());
+    rebuilt.clear();
+    assertEquals(1, rebuilt.getNodeCount());
+  }
+
+  /**
+   * @param longitude 0 or 180 degrees
+   * @param height above the surface, in meters
+   * @return view straight down at latitude 0 and the given longitude, clipped at the horizon
+   */
+  private static LodView view(double longitude, double height) {
+    Matrix modelview = Matrix.fromTranslation(0, 0, -(MOON_RADIUS + height)).multiply(
+        Matrix.fromRotationY(Angle.fromDegrees(longitude)));
+    double horizon = Math.sqrt(height * (2 * MOON_RADIUS + height));
+    Frustum frustum = Frustum.fromPerspective(FIELD_OF_VIEW, WIDTH, WIDTH, 1, horizon).transformBy(
+        modelview.getTranspose());
+    Vec4 eye = new Vec4(0, 0, 0).transformBy4(modelview.getInverse());
+    return new LodView(eye, frustum, 2 * FIELD_OF_VIEW.tanHalfAngle() / WIDTH);
+  }
+}
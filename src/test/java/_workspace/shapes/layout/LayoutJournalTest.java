@@ -0,0 +1,119 @@
+package _workspace.shapes.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Journal replay, repair of a torn journal and compaction
+ *
+ * @author viorel.florian
+ */
+public class LayoutJournalTest {
+
+  /** */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * @param identifiers
+   * @return layout of plain domes, the latitude of each is its position
+   */
+  static ShapeLayout layoutOf(String... identifiers) {
+    ShapeLayout layout = new ShapeLayout();
+    for (int i = 0; i < identifiers.length; i++) {
+      layout.add(ShapeKind.DOME, identifiers[i], i, 2 * i, 0, 100, 100, 100, 0, 0, 0);
+    }
+    return layout;
+  }
+
+  /**
+   * Records replace, add and remove rows, identifiers matched case insensitive
+   *
+   * @throws Exception
+   */
+  @Test
+  public void replayAppliesRecordsInOrder() throws Exception {
+    File base = this.folder.newFile("base.mbcl");
+    LayoutWriter.write(layoutOf("Dome 01", "Dome 02", "Dome 03"), base);
+
+    ShapeLayout moved = new ShapeLayout();
+    moved.add(ShapeKind.FLAT_DOME, "dome 02", 5, 6, 7, 50, 50, 25, 10, 0, 0);
+    moved.add(ShapeKind.DOME, "Dome 04", 8, 9, 0, 100, 100, 100, 0, 0, 0);
+    assertEquals(2, LayoutJournal.append(base, moved, Collections.<String> emptyList()));
+    assertEquals(1, LayoutJournal.append(base, new ShapeLayout(), Arrays.asList("DOME 01")));
+
+    ShapeLayout replayed = LayoutJournal.replay(LayoutReader.read(base), LayoutJournal.journalFile(base));
+    assertEquals(3, replayed.size());
+    assertEquals("dome 02", replayed.getIdentifier(0));
+    assertEquals(ShapeKind.FLAT_DOME, replayed.getKind(0));
+    assertEquals(7, replayed.getElevation(0), 0);
+    assertEquals("Dome 03", replayed.getIdentifier(1));
+    assertEquals("Dome 04", replayed.getIdentifier(2));
+    assertEquals(9, replayed.getLongitude(2), 0);
+  }
+
+  /**
+   * A record torn by a crash is cut before the next append, so the records after it are read
+   *
+   * @throws Exception
+   */
+  @Test
+  public void appendAfterTornRecordIsReplayed() throws Exception {
+    File base = this.folder.newFile("torn.mbcl");
+    LayoutWriter.write(layoutOf("Dome 01"), base);
+    LayoutJournal.append(base, layoutOf("Dome 02"), Collections.<String> emptyList());
+    File journal = LayoutJournal.journalFile(base);
+    long complete = journal.length();
+    LayoutJournal.append(base, layoutOf("Dome 03"), Collections.<String> emptyList());
+
+    // crash in the middle of the second record
+    RandomAccessFile file = new RandomAccessFile(journal, "rw");
+    try {
+      file.setLength(complete + 20);
+    } finally {
+      file.close();
+    }
+    assertEquals(2, LayoutJournal.replay(LayoutReader.read(base), journal).size());
+
+    assertEquals(20, LayoutJournal.repair(base));
+    assertEquals(complete, journal.length());
+    assertEquals(0, LayoutJournal.repair(base));
+    LayoutJournal.append(base, layoutOf("Dome 04"), Collections.<String> emptyList());
+
+    ShapeLayout replayed = LayoutJournal.replay(LayoutReader.read(base), journal);
+    assertEquals(3, replayed.size());
+    assertEquals("Dome 04", replayed.getIdentifier(2));
+  }
+
+  /**
+   * A journal torn in its header is emptied, the next append writes the header again
+   *
+   * @throws Exception
+   */
+  @Test
+  public void tornHeaderIsEmptied() throws Exception {
+    File base = this.folder.newFile("header.mbcl");
+    LayoutWriter.write(layoutOf("Dome 01"), base);
+    File journal = LayoutJournal.journalFile(base);
+    RandomAccessFile file = new RandomAccessFile(journal, "rw");
+    try {
+      file.writeShort(LayoutJournal.MAGIC >>> 16);
+    } finally {
+      file.close();
+    }
+
+    assertEquals(2, LayoutJournal.repair(base));
+    assertTrue(journal.length() == 0);
+    LayoutJournal.append(base, layoutOf("Dome 02"), Collections.<String> emptyList());
+    assertEquals(2, LayoutJournal.replay(LayoutReader.read(base), journal).size());
+  }
+}
@@ -0,0 +1,207 @@
+package _workspace.shapes.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Binary layout files written then read back, and corrupted files rejected before anything is allocated
+ *
+ * @author viorel.florian
+ */
+public class LayoutReaderTest {
+
+  /** */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** offset of the string count in the header */
+  static final int STRING_COUNT_OFFSET = 10;
+
+  /**
+   * @return every kind, a shared identifier, non ASCII and empty identifiers, a distinct value in every
+   *         column
+   */
+  static ShapeLayout sample() {
+    ShapeLayout layout = new ShapeLayout();
+    layout.add(ShapeKind.DOME, "Dome 01", 1.5, -2.5, 3.5, 4.5, 5.5, 6.5, 7.5, 8.5, 9.5);
+    layout.add(ShapeKind.FLAT_DOME, "Coupole été 月", -89.9, 179.9, -1200, 10, 20, 5, 359, -30, 45);
+    layout.add(ShapeKind.CONNECTOR_DOME, "Dome 01", 0, -180, 0, 0.25, 0.5, 0.125, 0, 0, -0.0);
+    layout.add(ShapeKind.DOME, "", 45, 90, 1e-9, 1e6, 1e6, 1e6, 180, 90, -90);
+    return layout;
+  }
+
+  /**
+   * @param expected
+   * @param actual
+   */
+  static void assertSameTable(ShapeTable expected, ShapeTable actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getKind(i), actual.getKind(i));
+      assertEquals(expected.getIdentifier(i), actual.getIdentifier(i));
+      assertEquals(expected.getLatitude(i), actual.getLatitude(i), 0);
+      assertEquals(expected.getLongitude(i), actual.getLongitude(i), 0);
+      assertEquals(expected.getElevation(i), actual.getElevation(i), 0);
+      assertEquals(expected.getNsRadius(i), actual.getNsRadius(i), 0);
+      assertEquals(expected.getEwRadius(i), actual.getEwRadius(i), 0);
+      assertEquals(expected.getVertRadius(i), actual.getVertRadius(i), 0);
+      assertEquals(expected.getHeading(i), actual.getHeading(i), 0);
+      assertEquals(expected.getTilt(i), actual.getTilt(i), 0);
+      assertEquals(expected.getRoll(i), actual.getRoll(i), 0);
+    }
+  }
+
+  /**
+   * Overwrites an int of a file
+   *
+   * @param file
+   * @param offset
+   * @param value
+   * @throws IOException
+   */
+  static void poke(File file, long offset, int value) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.seek(offset);
+      raf.writeInt(value);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @param file
+   * @param length
+   * @throws IOException
+   */
+  static void truncate(File file, long length) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(length);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Every column of every row comes back as written
+   *
+   * @throws Exception
+   */
+  @Test
+  public void roundTrip() throws Exception {
+    File file = this.folder.newFile("layout.mbcl");
+    ShapeLayout layout = sample();
+    LayoutWriter.write(layout, file);
+    assertSameTable(layout, LayoutReader.read(file));
+
+    // the shared identifier is stored once
+    int strings = 0;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      raf.seek(STRING_COUNT_OFFSET);
+      strings = raf.readInt();
+    } finally {
+      raf.close();
+    }
+    assertEquals(3, strings);
+  }
+
+  /**
+   * Empty layouts, and layouts replaced through a temporary file, read back too
+   *
+   * @throws Exception
+   */
+  @Test
+  public void emptyAndReplacedLayouts() throws Exception {
+    File file = this.folder.newFile("empty.mbcl");
+    LayoutWriter.write(new ShapeLayout(), file);
+    assertEquals(0, LayoutReader.read(file).size());
+
+    ShapeLayout layout = sample();
+    assertEquals(file, LayoutWriter.replace(layout, file));
+    assertFalse(LayoutWriter.tmpFile(file).exists());
+    assertSameTable(layout, LayoutReader.read(file));
+  }
+
+  /**
+   * A string count larger than the file is rejected before the string table is allocated
+   *
+   * @throws Exception
+   */
+  @Test
+  public void hugeStringCountIsRejected() throws Exception {
+    File file = this.folder.newFile("strings.mbcl");
+    LayoutWriter.write(sample(), file);
+    poke(file, STRING_COUNT_OFFSET, Integer.MAX_VALUE);
+    assertRejected(file, "header");
+
+    poke(file, STRING_COUNT_OFFSET, -1);
+    assertRejected(file, "header");
+  }
+
+  /**
+   * Shape counts, magic numbers, versions, string indices and kinds that make no sense are rejected
+   *
+   * @throws Exception
+   */
+  @Test
+  public void corruptedFilesAreRejected() throws Exception {
+    File file = this.folder.newFile("corrupted.mbcl");
+    ShapeLayout layout = sample();
+
+    LayoutWriter.write(layout, file);
+    poke(file, 6, Integer.MAX_VALUE);
+    assertRejected(file, "header");
+
+    LayoutWriter.write(layout, file);
+    poke(file, 0, 0x12345678);
+    assertRejected(file, "Not a layout");
+
+    LayoutWriter.write(layout, file);
+    poke(file, 4, 0x7fff0000);
+    assertRejected(file, "version");
+
+    // the identifier column ends where the doubles start
+    LayoutWriter.write(layout, file);
+    long doubles = file.length() - 8L * LayoutFormat.DOUBLE_COLUMNS * layout.size();
+    poke(file, doubles - 4, 3);
+    assertRejected(file, "string index");
+
+    LayoutWriter.write(layout, file);
+    poke(file, doubles - 4L * layout.size() - 4, 0x7f7f7f7f);
+    assertRejected(file, "Corrupted layout file");
+
+    LayoutWriter.write(layout, file);
+    truncate(file, file.length() - 1);
+    try {
+      LayoutReader.read(file);
+      fail("truncated file read");
+    } catch (IOException e) {
+      // end of file
+    }
+  }
+
+  /**
+   * @param file
+   * @param message part of the expected message
+   */
+  private static void assertRejected(File file, String message) {
+    try {
+      LayoutReader.read(file);
+      fail("corrupted file read");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(message));
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package _workspace.shapes.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.IShape;
+import _workspace.shapes.TestDomes;
+
+/**
+ * Incremental saves, compaction and the journal of a session, compaction running next to the saves included
+ *
+ * @author viorel.florian
+ */
+public class LayoutSessionTest {
+
+  /** */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * @param identifier
+   * @param latitude degrees
+   * @return dome named after the identifier
+   */
+  private static DomeShape named(String identifier, double latitude) {
+    DomeShape dome = TestDomes.dome(latitude, 0, 100);
+    dome.setIdentifier(identifier);
+    return dome;
+  }
+
+  /**
+   * @param count
+   * @return domes "Dome 00" ... one hundredth of a degree apart
+   */
+  private static List<IShape> domes(int count) {
+    List<IShape> shapes = new ArrayList<IShape>();
+    for (int i = 0; i < count; i++) {
+      shapes.add(named(String.format("Dome %02d", Integer.valueOf(i)), i * 0.01));
+    }
+    return shapes;
+  }
+
+  /**
+   * @param shapes
+   * @return identifier (upper case) -> latitude
+   */
+  private static Map<String, Double> expected(List<IShape> shapes) {
+    Map<String, Double> map = new HashMap<String, Double>();
+    for (IShape shape : shapes) {
+      map.put(LayoutJournal.key(shape.getIdentifier()),
+          Double.valueOf(((DomeShape) shape).getCenterPosition().getLatitude().degrees));
+    }
+    return map;
+  }
+
+  /**
+   * @param base
+   * @return identifier (upper case) -> latitude, journals applied
+   * @throws Exception
+   */
+  private static Map<String, Double> content(File base) throws Exception {
+    ShapeTable table = LayoutJournal.open(base);
+    try {
+      Map<String, Double> map = new HashMap<String, Double>();
+      for (int i = 0; i < table.size(); i++) {
+        assertNull("identifier saved twice", map.put(LayoutJournal.key(table.getIdentifier(i)),
+            Double.valueOf(table.getLatitude(i))));
+      }
+      return map;
+    } finally {
+      if (table instanceof Closeable) {
+        ((Closeable) table).close();
+      }
+    }
+  }
+
+  /**
+   * Changes after a full save are appended, then folded into the base file by a compaction
+   *
+   * @throws Exception
+   */
+  @Test
+  public void incrementalSavesAreCompacted() throws Exception {
+    File file = new File(this.folder.getRoot(), "base.mbcl");
+    LayoutSession session = new LayoutSession();
+    List<IShape> shapes = domes(5);
+    LayoutSession.Save full = session.prepareSave(file, shapes);
+    assertFalse(full.isIncremental());
+    assertEquals(5, full.run());
+    assertTrue(session.isBoundTo(file));
+
+    ((DomeShape) shapes.get(1)).setCenterPosition(Position.fromDegrees(7, 0, 0));
+    shapes.remove(3);
+    shapes.add(named("Dome 10", 8));
+    LayoutSession.Save save = session.prepareSave(file, shapes);
+    assertTrue(save.isIncremental());
+    // the moved and the added dome, then the removal
+    assertEquals(3, save.run());
+    assertEquals(file, save.getTarget());
+    assertEquals(0, session.prepareSave(file, shapes).run());
+    assertEquals(5, LayoutReader.read(file).size());
+    assertEquals(expected(shapes), content(file));
+
+    assertEquals(5, session.compact());
+    assertFalse(LayoutJournal.journalFile(file).exists());
+    assertFalse(LayoutJournal.compactingFile(file).exists());
+    assertFalse(LayoutWriter.compactFile(file).exists());
+    assertEquals(expected(shapes), content(file));
+    assertEquals(-1, session.compact());
+  }
+
+  /**
+   * A compaction writes apart from the temporary file of a full save of the same file, which may be half
+   * written at that moment
+   *
+   * @throws Exception
+   */
+  @Test
+  public void compactionKeepsOffTheFullSaveFile() throws Exception {
+    File file = new File(this.folder.getRoot(), "apart.mbcl");
+    LayoutSession session = new LayoutSession();
+    List<IShape> shapes = domes(4);
+    session.prepareSave(file, shapes).run();
+    ((DomeShape) shapes.get(2)).setCenterPosition(Position.fromDegrees(3, 0, 0));
+    session.prepareSave(file, shapes).run();
+
+    File halfWritten = LayoutWriter.tmpFile(file);
+    LayoutWriter.write(LayoutJournalTest.layoutOf("Dome 00"), halfWritten);
+    long length = halfWritten.length();
+    assertEquals(4, session.compact());
+    assertTrue(halfWritten.isFile());
+    assertEquals(length, halfWritten.length());
+    assertEquals(expected(shapes), content(file));
+  }
+
+  /**
+   * A journal set aside by a compaction that crashed is folded by the next one, with the journal written
+   * since
+   *
+   * @throws Exception
+   */
+  @Test
+  public void crashedCompactionIsResumed() throws Exception {
+    File file = new File(this.folder.getRoot(), "crashed.mbcl");
+    LayoutSession session = new LayoutSession();
+    List<IShape> shapes = domes(3);
+    session.prepareSave(file, shapes).run();
+    ((DomeShape) shapes.get(0)).setCenterPosition(Position.fromDegrees(5, 0, 0));
+    session.prepareSave(file, shapes).run();
+    assertTrue(LayoutJournal.journalFile(file).renameTo(LayoutJournal.compactingFile(file)));
+    ((DomeShape) shapes.get(2)).setCenterPosition(Position.fromDegrees(6, 0, 0));
+    session.prepareSave(file, shapes).run();
+    assertEquals(expected(shapes), content(file));
+
+    assertEquals(3, session.compact());
+    assertFalse(LayoutJournal.compactingFile(file).exists());
+    // the journal written after the crash stays, on top of the compacted file
+    assertEquals(expected(shapes), content(file));
+    assertEquals(3, session.compact());
+    assertFalse(LayoutJournal.journalFile(file).exists());
+    assertEquals(expected(shapes), content(file));
+  }
+
+  /**
+   * A session bound to a loaded file cuts a torn record before appending, so its own records are read
+   *
+   * @throws Exception
+   */
+  @Test
+  public void tornJournalIsRepairedBeforeAppend() throws Exception {
+    File file = new File(this.folder.getRoot(), "torn.mbcl");
+    List<IShape> shapes = domes(3);
+    LayoutWriter.write(ShapeLayout.fromShapes(shapes), file);
+    LayoutJournal.append(file, LayoutJournalTest.layoutOf("Dome 00"), new ArrayList<String>());
+    File journal = LayoutJournal.journalFile(file);
+    long complete = journal.length();
+    LayoutJournal.append(file, LayoutJournalTest.layoutOf("Dome 01"), new ArrayList<String>());
+    RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+    try {
+      // crash in the middle of the second record
+      raf.setLength(complete + 11);
+    } finally {
+      raf.close();
+    }
+
+    LayoutSession session = new LayoutSession();
+    Map<String, IShape> loaded = new HashMap<String, IShape>();
+    for (IShape shape : shapes) {
+      loaded.put(shape.getIdentifier(), shape);
+    }
+    session.bind(file, loaded);
+    ((DomeShape) shapes.get(0)).setCenterPosition(Position.fromDegrees(9, 0, 0));
+    shapes.add(named("Dome 03", 4));
+    assertEquals(2, session.prepareSave(file, shapes).run());
+
+    assertEquals(expected(shapes), content(file));
+    assertEquals(4, session.compact());
+    assertEquals(expected(shapes), content(file));
+  }
+
+  /**
+   * Compactions running next to full and incremental saves never lose a save nor leave a temporary file
+   * behind: the compaction gives up when a full save replaced the file meanwhile
+   *
+   * @throws Exception
+   */
+  @Test
+  public void compactionRacesWithSaves() throws Exception {
+    for (int round = 0; round < 40; round++) {
+      File file = new File(this.folder.getRoot(), "race" + round + ".mbcl");
+      final LayoutSession session = new LayoutSession();
+      List<IShape> shapes = domes(200);
+      session.prepareSave(file, shapes).run();
+      for (int i = 0; i < 20; i++) {
+        ((DomeShape) shapes.get(i)).setCenterPosition(Position.fromDegrees(10 + i, 0, 0));
+        session.prepareSave(file, shapes).run();
+      }
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      Thread compaction = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            session.compact();
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      });
+      compaction.start();
+      start.countDown();
+
+      ((DomeShape) shapes.get(30)).setCenterPosition(Position.fromDegrees(40, 0, 0));
+      session.prepareSave(file, shapes).run();
+      Map<String, Double> before = expected(shapes);
+      if (round % 2 == 0) {
+        // saved as another file while the compaction may still be reading the old journal
+        File other = new File(this.folder.getRoot(), "race" + round + "-as.mbcl");
+        shapes.add(named("Dome X", 50));
+        LayoutSession.Save full = session.prepareSave(other, shapes);
+        assertFalse(full.isIncremental());
+        full.run();
+        assertEquals(other, session.getBaseFile());
+      }
+      ((DomeShape) shapes.get(31)).setCenterPosition(Position.fromDegrees(41, 0, 0));
+      session.prepareSave(session.getBaseFile(), shapes).run();
+      compaction.join();
+
+      assertNull(String.valueOf(failure.get()), failure.get());
+      File base = session.getBaseFile();
+      assertEquals(expected(shapes), content(base));
+      if (!base.equals(file)) {
+        // left as it was when the other file was bound
+        assertEquals(before, content(file));
+        assertEquals(Arrays.asList(), leftovers(file));
+      }
+      session.compact();
+      assertEquals(expected(shapes), content(base));
+      assertEquals(Arrays.asList(), leftovers(base));
+      assertFalse(LayoutJournal.journalFile(base).exists());
+    }
+  }
+
+  /**
+   * @param base
+   * @return temporary files left next to the base file
+   */
+  private List<String> leftovers(File base) {
+    List<String> names = new ArrayList<String>();
+    for (String name : this.folder.getRoot().list()) {
+      if (name.startsWith(base.getName()) && name.endsWith(".tmp")) {
+        names.add(name);
+      }
+    }
+    return names;
+  }
+}
@@ -0,0 +1,128 @@
+package _workspace.shapes.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Layout files read through the mapped view, which must agree with {@link LayoutReader}
+ *
+ * @author viorel.florian
+ */
+public class MappedLayoutTest {
+
+  /** */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The mapped view decodes the values and identifiers written, as the sequential reader does
+   *
+   * @throws Exception
+   */
+  @Test
+  public void readsWhatWasWritten() throws Exception {
+    File file = this.folder.newFile("layout.mbcl");
+    ShapeLayout layout = LayoutReaderTest.sample();
+    LayoutWriter.write(layout, file);
+
+    MappedLayout mapped = MappedLayout.open(file);
+    try {
+      LayoutReaderTest.assertSameTable(layout, mapped);
+      LayoutReaderTest.assertSameTable(LayoutReader.read(file), mapped);
+      LayoutReaderTest.assertSameTable(layout, ShapeLayout.copyOf(mapped));
+    } finally {
+      mapped.close();
+    }
+
+    LayoutWriter.write(new ShapeLayout(), file);
+    mapped = MappedLayout.open(file);
+    try {
+      assertEquals(0, mapped.size());
+    } finally {
+      mapped.close();
+    }
+  }
+
+  /**
+   * A closed view releases its mapping, cannot be read any more and can be closed again
+   *
+   * @throws Exception
+   */
+  @Test
+  public void closeReleasesTheMapping() throws Exception {
+    File file = this.folder.newFile("closed.mbcl");
+    LayoutWriter.write(LayoutReaderTest.sample(), file);
+    MappedLayout mapped = MappedLayout.open(file);
+    mapped.close();
+    mapped.close();
+    try {
+      mapped.getLatitude(0);
+      fail("read after close");
+    } catch (NullPointerException e) {
+      // closed
+    }
+
+    // nothing holds the file any more
+    ShapeLayout replacement = LayoutJournalTest.layoutOf("Dome 09");
+    assertEquals(file, LayoutWriter.replace(replacement, file));
+    LayoutReaderTest.assertSameTable(replacement, LayoutReader.read(file));
+  }
+
+  /**
+   * Corrupted headers, string tables and columns fail at open, not in the getters
+   *
+   * @throws Exception
+   */
+  @Test
+  public void corruptedFilesAreRejected() throws Exception {
+    File file = this.folder.newFile("corrupted.mbcl");
+    ShapeLayout layout = LayoutReaderTest.sample();
+
+    LayoutWriter.write(layout, file);
+    LayoutReaderTest.poke(file, LayoutReaderTest.STRING_COUNT_OFFSET, Integer.MAX_VALUE);
+    assertRejected(file, "header");
+
+    // fits the file, but the strings run past its end
+    LayoutWriter.write(layout, file);
+    LayoutReaderTest.poke(file, LayoutReaderTest.STRING_COUNT_OFFSET, (int) (file.length() / 2 - 7));
+    assertRejected(file, "Truncated");
+
+    LayoutWriter.write(layout, file);
+    LayoutReaderTest.poke(file, 0, 0x12345678);
+    assertRejected(file, "Not a layout");
+
+    LayoutWriter.write(layout, file);
+    long doubles = file.length() - 8L * LayoutFormat.DOUBLE_COLUMNS * layout.size();
+    LayoutReaderTest.poke(file, doubles - 4, -1);
+    assertRejected(file, "string index");
+
+    LayoutWriter.write(layout, file);
+    LayoutReaderTest.poke(file, doubles - 4L * layout.size() - 4, 0x7f7f7f7f);
+    assertRejected(file, "Corrupted layout file");
+
+    LayoutWriter.write(layout, file);
+    LayoutReaderTest.truncate(file, file.length() - 1);
+    assertRejected(file, "Truncated");
+  }
+
+  /**
+   * @param file
+   * @param message part of the expected message
+   */
+  private static void assertRejected(File file, String message) {
+    try {
+      MappedLayout.open(file).close();
+      fail("corrupted file mapped");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(message));
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package _workspace.shapes.render;
+
+import static org.junit.Assert.assertEquals;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.airspaces.Geometry;
+
+import java.nio.FloatBuffer;
+
+import org.junit.Test;
+
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.TestDomes;
+
+/**
+ * Expands dome instances headless and checks the arrays the CPU renderer would draw.
+ *
+ * @author viorel.florian
+ */
+public class CpuDomeRendererTest {
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /** globe */
+  private final Globe globe = new EllipsoidalGlobe(MOON_RADIUS, MOON_RADIUS, 0, null);
+
+  /**
+   * Every vertex and normal of every instance is the unit mesh transformed by its slot
+   */
+  @Test
+  public void expandTransformsTheUnitMesh() {
+    DomeInstances instances = new DomeInstances();
+    DomeShape a = TestDomes.dome(5, 5, 100);
+    DomeShape b = TestDomes.dome(5.01, 5, 140, 30, 80, 25, 10, 5);
+    instances.add(a);
+    instances.add(b);
+    instances.update(this.globe, 1);
+    Geometry mesh = UnitMeshCache.getInstance().get(UnitMeshCache.Kind.SPHERE, 2, a);
+
+    CpuDomeRenderer renderer = new CpuDomeRenderer();
+    assertEquals(2, renderer.expand(instances, mesh));
+    assertEquals(2, renderer.getCount());
+    assertExpanded(renderer, instances, mesh);
+
+    // nothing changed, nothing transformed
+    assertEquals(0, renderer.expand(instances, mesh));
+  }
+
+  /**
+   * After a move only the dirty slots are transformed again, and after a removal the compacted slot
+   */
+  @Test
+  public void expandFollowsTheDirtySlots() {
+    DomeInstances instances = new DomeInstances();
+    DomeShape[] domes = new DomeShape[3];
+    for (int i = 0; i < domes.length; i++) {
+      domes[i] = TestDomes.dome(-20, i * 0.01, 100 + i * 10, 50, 100, i * 30, 0, 0);
+      instances.add(domes[i]);
+    }
+    instances.update(this.globe, 1);
+    Geometry mesh = UnitMeshCache.getInstance().get(UnitMeshCache.Kind.SPHERE, 2, domes[0]);
+    CpuDomeRenderer renderer = new CpuDomeRenderer();
+    renderer.expand(instances, mesh);
+
+    domes[1].setCenterPosition(Position.fromDegrees(-20.01, 0.01, 0));
+    instances.update(this.globe, 1);
+    assertEquals(1, renderer.expand(instances, mesh));
+    assertExpanded(renderer, instances, mesh);
+
+    instances.remove(domes[0]);
+    assertEquals(1, renderer.expand(instances, mesh));
+    assertEquals(2, renderer.getCount());
+    assertExpanded(renderer, instances, mesh);
+  }
+
+  /**
+   * @param renderer
+   * @param instances
+   * @param mesh
+   */
+  private static void assertExpanded(CpuDomeRenderer renderer, DomeInstances instances, Geometry mesh) {
+    FloatBuffer unitVertices = (FloatBuffer) mesh.getBuffer(Geometry.VERTEX);
+    FloatBuffer unitNormals = (FloatBuffer) mesh.getBuffer(Geometry.NORMAL);
+    int n = mesh.getCount(Geometry.VERTEX);
+    float[] expected = new float[3];
+    for (int slot = 0; slot < instances.size(); slot++) {
+      for (int v = 0; v < n; v++) {
+        int i = v * 3;
+        int j = (slot * n + v) * 3;
+        instances.transform(slot, unitVertices.get(i), unitVertices.get(i + 1), unitVertices.get(i + 2),
+            expected, 0);
+        for (int k = 0; k < 3; k++) {
+          assertEquals(expected[k], renderer.getVertices().get(j + k), 0f);
+        }
+        instances.transformNormal(slot, unitNormals.get(i), unitNormals.get(i + 1), unitNormals.get(i + 2),
+            expected, 0);
+        for (int k = 0; k < 3; k++) {
+          assertEquals(expected[k], renderer.getNormals().get(j + k), 0f);
+        }
+      }
+    }
+  }
+}
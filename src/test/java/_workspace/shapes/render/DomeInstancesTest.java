@@ -0,0 +1,150 @@
+package _workspace.shapes.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.Globe;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.TestDomes;
+
+/**
+ * Checks the instance data of the domes against the render matrices WorldWind computes.
+ *
+ * @author viorel.florian
+ */
+public class DomeInstancesTest {
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /** globe */
+  private final Globe globe = new EllipsoidalGlobe(MOON_RADIUS, MOON_RADIUS, 0, null);
+
+  /**
+   * Points of the unit sphere land where the render matrix puts them, relative to the origin
+   */
+  @Test
+  public void transformMatchesRenderMatrix() {
+    DomeInstances instances = new DomeInstances();
+    DomeShape first = TestDomes.dome(10, 20, 100);
+    DomeShape oriented = TestDomes.dome(10.01, 20.02, 120, 40, 70, 30, 15, 50);
+    instances.add(first);
+    instances.add(oriented);
+    assertEquals(2, instances.update(this.globe, 1));
+
+    Matrix m = oriented.computeRenderMatrix(this.globe, 1);
+    Vec4 origin = instances.getOrigin();
+    float[] out = new float[3];
+    float[][] points = { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 }, { 0.6f, -0.48f, 0.64f } };
+    for (float[] p : points) {
+      Vec4 expected = new Vec4(p[0], p[1], p[2], 1).transformBy4(m).subtract3(origin);
+      instances.transform(1, p[0], p[1], p[2], out, 0);
+      assertEquals(expected.x, out[0], 1e-2);
+      assertEquals(expected.y, out[1], 1e-2);
+      assertEquals(expected.z, out[2], 1e-2);
+    }
+    assertEquals(120f, instances.getRadius(1), 0f);
+  }
+
+  /**
+   * Normals go through the inverse transpose of the render matrix, not the matrix itself
+   */
+  @Test
+  public void normalsUseTheInverseTranspose() {
+    DomeInstances instances = new DomeInstances();
+    DomeShape dome = TestDomes.dome(-35, 140, 150, 25, 60, 40, 20, 10);
+    instances.add(dome);
+    instances.update(this.globe, 1);
+
+    Matrix m = dome.computeRenderMatrix(this.globe, 1);
+    Matrix inverseTranspose = m.getInverse().getTranspose();
+    float[] out = new float[3];
+    float[][] normals = { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 }, { 0.48f, 0.6f, -0.64f } };
+    for (float[] n : normals) {
+      Vec4 expected = new Vec4(n[0], n[1], n[2]).transformBy3(inverseTranspose);
+      instances.transformNormal(0, n[0], n[1], n[2], out, 0);
+      double scale = expected.getLength3();
+      assertEquals(expected.x / scale, out[0] / scale, 1e-5);
+      assertEquals(expected.y / scale, out[1] / scale, 1e-5);
+      assertEquals(expected.z / scale, out[2] / scale, 1e-5);
+    }
+
+    // the matrix itself would tilt the normals of a flattened dome
+    instances.transformNormal(0, 0.48f, 0.6f, -0.64f, out, 0);
+    Vec4 transformed = new Vec4(out[0], out[1], out[2]).normalize3();
+    Vec4 wrong = new Vec4(0.48, 0.6, -0.64).transformBy3(m).normalize3();
+    assertTrue(wrong.dot3(transformed) < 0.9);
+  }
+
+  /**
+   * A removed dome gives its slot to the last one, whose data moves along and is uploaded again
+   */
+  @Test
+  public void removeCompactsTheSlots() {
+    DomeInstances instances = new DomeInstances();
+    DomeShape[] domes = new DomeShape[4];
+    for (int i = 0; i < domes.length; i++) {
+      domes[i] = TestDomes.dome(0, i * 0.01, 100 + i);
+      instances.add(domes[i]);
+    }
+    instances.update(this.globe, 1);
+    instances.clearDirty();
+    int n = DomeInstances.FLOATS_PER_INSTANCE;
+    float[] last = Arrays.copyOfRange(instances.getData(), 3 * n, 4 * n);
+
+    assertTrue(instances.remove(domes[1]));
+    assertFalse(instances.remove(domes[1]));
+    assertFalse(instances.contains(domes[1]));
+    assertEquals(3, instances.size());
+    assertSame(domes[3], instances.getShape(1));
+    assertTrue(Arrays.equals(last, Arrays.copyOfRange(instances.getData(), n, 2 * n)));
+    assertEquals(103f, instances.getRadius(1), 0f);
+    assertEquals(1, instances.getDirtyFrom());
+    assertEquals(2, instances.getDirtyTo());
+    // moved, not recomputed
+    assertEquals(0, instances.update(this.globe, 1));
+
+    // the last slot goes without moving anything
+    instances.clearDirty();
+    assertTrue(instances.remove(domes[2]));
+    assertEquals(2, instances.size());
+    assertEquals(Integer.MAX_VALUE, instances.getDirtyFrom());
+  }
+
+  /**
+   * Only the domes that changed are computed again, highlighted ones get an empty transform
+   */
+  @Test
+  public void updateComputesChangedSlotsOnly() {
+    DomeInstances instances = new DomeInstances();
+    DomeShape a = TestDomes.dome(0, 0, 100);
+    DomeShape b = TestDomes.dome(0, 0.01, 100);
+    instances.add(a);
+    instances.add(b);
+    assertEquals(2, instances.update(this.globe, 1));
+    assertEquals(0, instances.update(this.globe, 1));
+
+    b.setCenterPosition(Position.fromDegrees(0, 0.02, 0));
+    assertEquals(1, instances.update(this.globe, 1));
+
+    b.setHighlighted(true);
+    assertEquals(1, instances.update(this.globe, 1));
+    float[] out = new float[3];
+    instances.transform(1, 1, 1, 1, out, 0);
+    assertEquals(0f, out[0] * out[0] + out[1] * out[1] + out[2] * out[2], 0f);
+    assertEquals(0f, instances.getRadius(1), 0f);
+
+    // a new exaggeration moves everything
+    assertEquals(2, instances.update(this.globe, 2));
+  }
+}
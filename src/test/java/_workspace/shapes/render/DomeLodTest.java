@@ -0,0 +1,132 @@
+package _workspace.shapes.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Frustum;
+import gov.nasa.worldwind.geom.Matrix;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.Globe;
+
+import org.junit.Test;
+
+import _workspace.shapes.AbstractDomeShape;
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.TestDomes;
+
+/**
+ * Checks the levels of detail the domes get, without any view or GL.
+ *
+ * @author viorel.florian
+ */
+public class DomeLodTest {
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /** viewport width, in pixels */
+  private static final int WIDTH = 1000;
+
+  /** eye height above the surface, in meters */
+  private static final double EYE_HEIGHT = 1000;
+
+  /** 90 degrees wide: a pixel is 2 / WIDTH meters at distance 1 */
+  private static final Angle FIELD_OF_VIEW = Angle.fromDegrees(90);
+
+  /**
+   * Spheres in front of the eye, from far to near, go through the culled, point and detail buckets
+   */
+  @Test
+  public void selectBySizeOnScreen() {
+    LodView view = LodView.perspective(FIELD_OF_VIEW, WIDTH, WIDTH, 1, 100000);
+    DomeLod lod = new DomeLod();
+
+    // 0.5 pixels
+    assertEquals(DomeLod.CULLED, lod.select(view, 0, 0, -2000, 1));
+    // 3.3 pixels
+    assertEquals(DomeLod.PROXY, lod.select(view, 0, 0, -300, 1));
+    // 111 pixels, 3.5 edges of 16 pixels per radius
+    assertEquals(2, lod.select(view, 0, 0, -100, 10));
+    // 1000 pixels
+    assertEquals(DomeLod.MAX_DETAIL, lod.select(view, 0, 0, -20, 10));
+    // behind the eye, beside the frustum, not drawn
+    assertEquals(DomeLod.CULLED, lod.select(view, new Vec4(0, 0, 100), 10));
+    assertEquals(DomeLod.CULLED, lod.select(view, 500, 0, -100, 10));
+    assertEquals(DomeLod.CULLED, lod.select(view, 0, 0, -100, 0));
+
+    lod.setProxyPixels(2);
+    assertEquals(DomeLod.MIN_DETAIL, lod.select(view, 0, 0, -300, 1));
+  }
+
+  /**
+   * Detail grows by one each time the size on screen doubles, within the bounds
+   */
+  @Test
+  public void detailForPixels() {
+    DomeLod lod = new DomeLod();
+    assertEquals(DomeLod.MIN_DETAIL, lod.detailFor(10));
+    assertEquals(1, lod.detailFor(64));
+    assertEquals(2, lod.detailFor(65));
+    assertEquals(3, lod.detailFor(256));
+    assertEquals(4, lod.detailFor(257));
+    assertEquals(DomeLod.MAX_DETAIL, lod.detailFor(1e6));
+  }
+
+  /**
+   * Domes seen from above get their buckets, the drawn slots come sorted by detail
+   */
+  @Test
+  public void classifyDomesSeenFromAbove() {
+    Globe globe = new EllipsoidalGlobe(MOON_RADIUS, MOON_RADIUS, 0, null);
+    DomeInstances instances = new DomeInstances();
+    // latitude and longitude 0 is the model point 0, 0, MOON_RADIUS, right below the eye
+    DomeShape large = TestDomes.dome(0, 0, 100);
+    DomeShape small = TestDomes.dome(0.002, 0, 5);
+    DomeShape tiny = TestDomes.dome(-0.002, 0, 0.5);
+    DomeShape near = TestDomes.dome(0, 0.002, 900);
+    DomeShape away = TestDomes.dome(10, 0, 100);
+    DomeShape hidden = TestDomes.dome(0, -0.002, 100);
+    final DomeShape filtered = TestDomes.dome(0.001, 0.001, 100);
+    DomeShape medium = TestDomes.dome(-0.001, -0.001, 100);
+    hidden.setVisible(false);
+    DomeShape[] domes = { large, small, tiny, near, away, hidden, filtered, medium };
+    for (DomeShape dome : domes) {
+      instances.add(dome);
+    }
+    instances.update(globe, 1);
+
+    DomeLod lod = new DomeLod();
+    lod.classify(instances, view(), new DomeFilter() {
+      @Override
+      public boolean hides(AbstractDomeShape shape) {
+        return shape == filtered;
+      }
+    });
+
+    assertEquals(4, lod.getCulledCount());
+    assertEquals(1, lod.getProxyCount());
+    assertSame(small, instances.getShape(lod.getProxies()[0]));
+    assertEquals(3, lod.getMeshCount());
+    assertEquals(2, lod.getCount(2));
+    assertEquals(1, lod.getCount(DomeLod.MAX_DETAIL));
+    assertSame(large, instances.getShape(lod.getOrder()[lod.getStart(2)]));
+    assertSame(medium, instances.getShape(lod.getOrder()[lod.getStart(2) + 1]));
+    assertSame(near, instances.getShape(lod.getOrder()[lod.getStart(DomeLod.MAX_DETAIL)]));
+
+    // classified again from scratch, without the filter
+    lod.classify(instances, view(), null);
+    assertEquals(3, lod.getCulledCount());
+    assertEquals(3, lod.getCount(2));
+  }
+
+  /**
+   * @return eye EYE_HEIGHT above the model point 0, 0, MOON_RADIUS, looking down at it
+   */
+  private static LodView view() {
+    Matrix modelview = Matrix.fromTranslation(0, 0, -(MOON_RADIUS + EYE_HEIGHT));
+    Frustum frustum = Frustum.fromPerspective(FIELD_OF_VIEW, WIDTH, WIDTH, 1, 100000).transformBy(
+        modelview.getTranspose());
+    return new LodView(new Vec4(0, 0, MOON_RADIUS + EYE_HEIGHT), frustum, 2 * FIELD_OF_VIEW.tanHalfAngle() / WIDTH);
+  }
+}
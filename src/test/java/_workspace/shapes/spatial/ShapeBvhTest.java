@@ -0,0 +1,126 @@
+package _workspace.shapes.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Line;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.Globe;
+
+import org.junit.Test;
+
+import _workspace.shapes.AbstractDomeShape;
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.TestDomes;
+import _workspace.shapes.render.DomeFilter;
+
+/**
+ * Picks domes with rays cast down from above the surface, without any view.
+ *
+ * @author viorel.florian
+ */
+public class ShapeBvhTest {
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /** globe */
+  private final Globe globe = new EllipsoidalGlobe(MOON_RADIUS, MOON_RADIUS, 0, null);
+
+  /**
+   * The ray hits the dome it meets first, a filter hands the pick to the next one
+   */
+  @Test
+  public void picksTheNearestHit() {
+    ShapeBvh bvh = new ShapeBvh(this.globe);
+    DomeShape ground = TestDomes.dome(0, 0, 100);
+    final DomeShape raised = TestDomes.dome(0, 0, 50);
+    raised.setCenterPosition(Position.fromDegrees(0, 0, 300));
+    bvh.add(ground);
+    bvh.add(raised);
+
+    assertSame(raised, bvh.pick(this.rayDown(0, 0), null));
+    assertSame(ground, bvh.pick(this.rayDown(0, 0), new DomeFilter() {
+      @Override
+      public boolean hides(AbstractDomeShape shape) {
+        return shape == raised;
+      }
+    }));
+    raised.setVisible(false);
+    assertSame(ground, bvh.pick(this.rayDown(0, 0), null));
+    assertNull(bvh.pick(this.rayDown(0, 0.01), null));
+  }
+
+  /**
+   * A dome on the far side of the globe, straight along the ray, is never picked
+   */
+  @Test
+  public void farSideIsClippedByTheGlobe() {
+    ShapeBvh bvh = new ShapeBvh(this.globe);
+    DomeShape far = TestDomes.dome(0, 180, 500);
+    bvh.add(far);
+
+    // goes through the globe and would leave it right inside the far dome
+    Line through = this.rayDown(0, 0);
+    assertNull(bvh.pick(through, null));
+
+    // seen from its own side
+    assertSame(far, bvh.pick(this.rayDown(0, 180), null));
+
+    DomeShape near = TestDomes.dome(0, 0, 500);
+    bvh.add(near);
+    assertSame(near, bvh.pick(through, null));
+  }
+
+  /**
+   * Moved domes are found at their new place once the tree is told, removed domes are gone
+   */
+  @Test
+  public void refitsAfterMoves() {
+    ShapeBvh bvh = new ShapeBvh(this.globe);
+    DomeShape[] domes = new DomeShape[64];
+    for (int i = 0; i < domes.length; i++) {
+      domes[i] = TestDomes.dome((i % 8) * 0.02, (i / 8) * 0.02, 100);
+      bvh.add(domes[i]);
+    }
+    assertSame(domes[9], bvh.pick(this.rayDown(0.02, 0.02), null));
+    assertTrue(bvh.getNodeCount() > 1);
+    int nodes = bvh.getNodeCount();
+
+    // a short move, within the same leaf
+    domes[9].setCenterPosition(Position.fromDegrees(0.03, 0.02, 0));
+    bvh.update(domes[9]);
+    assertNull(bvh.pick(this.rayDown(0.02, 0.02), null));
+    assertSame(domes[9], bvh.pick(this.rayDown(0.03, 0.02), null));
+
+    // across the whole field
+    domes[0].setCenterPosition(Position.fromDegrees(0.15, 0.15, 0));
+    bvh.update(domes[0]);
+    assertSame(domes[0], bvh.pick(this.rayDown(0.15, 0.15), null));
+    assertNull(bvh.pick(this.rayDown(0, 0), null));
+    assertEquals("refit, not rebuilt", nodes, bvh.getNodeCount());
+
+    bvh.remove(domes[0]);
+    assertEquals(63, bvh.size());
+    assertNull(bvh.pick(this.rayDown(0.15, 0.15), null));
+    assertSame(domes[1], bvh.pick(this.rayDown(0.02, 0), null));
+
+    bvh.clear();
+    assertNull(bvh.pick(this.rayDown(0.02, 0), null));
+  }
+
+  /**
+   * @param lat degrees
+   * @param lon degrees
+   * @return ray from 5 km above the point, straight down
+   */
+  private Line rayDown(double lat, double lon) {
+    Vec4 top = this.globe.computePointFromPosition(Angle.fromDegrees(lat), Angle.fromDegrees(lon), 5000);
+    Vec4 surface = this.globe.computePointFromPosition(Angle.fromDegrees(lat), Angle.fromDegrees(lon), 0);
+    return new Line(top, surface.subtract3(top).normalize3());
+  }
+}
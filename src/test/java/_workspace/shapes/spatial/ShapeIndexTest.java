@@ -0,0 +1,228 @@
+package _workspace.shapes.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import _workspace.shapes.DomeShape;
+import _workspace.shapes.IShape;
+import _workspace.shapes.ShapesPool;
+import _workspace.shapes.TestDomes;
+
+/**
+ * Quadtree queries checked against a brute force scan of the same domes, while domes are added, removed
+ * and moved, near the antimeridian too
+ *
+ * @author viorel.florian
+ */
+public class ShapeIndexTest {
+
+  /** globe radius, in meters */
+  private static final double MOON_RADIUS = 1737400;
+
+  /** queries compared after each step */
+  private static final int QUERIES = 100;
+
+  /** random, with a fixed seed */
+  private final Random random = new Random(7);
+
+  /**
+   * @return a point in one of the two crowded areas
+   */
+  private Position randomPosition() {
+    double lat = 10 + this.random.nextDouble() * 2;
+    double lon = this.random.nextBoolean() ? 20 + this.random.nextDouble() * 2 : 179 + this.random.nextDouble() * 2;
+    return Position.fromDegrees(lat, lon > 180 ? lon - 360 : lon, 0);
+  }
+
+  /**
+   * Radius, sector and nearest queries match a full scan while the pool changes
+   *
+   * @throws Exception
+   */
+  @Test
+  public void queriesMatchAFullScan() throws Exception {
+    ShapesPool pool = new ShapesPool();
+    ShapeIndex index = new ShapeIndex(MOON_RADIUS);
+    index.attach(pool);
+    List<DomeShape> domes = new ArrayList<DomeShape>();
+    for (int i = 0; i < 3000; i++) {
+      Position pos = this.randomPosition();
+      DomeShape dome = TestDomes.dome(pos.getLatitude().degrees, pos.getLongitude().degrees,
+          50 + this.random.nextDouble() * 450);
+      dome.setIdentifier("Dome " + i);
+      pool.addShape(dome);
+      domes.add(dome);
+    }
+    assertEquals(3000, index.size());
+    this.assertMatches(index, domes);
+
+    // removals
+    for (int i = 0; i < 1000; i++) {
+      DomeShape dome = domes.remove(this.random.nextInt(domes.size()));
+      pool.removeShape(dome.getIdentifier());
+      assertFalse(index.contains(dome));
+    }
+    assertEquals(2000, index.size());
+    this.assertMatches(index, domes);
+
+    // short and long moves, resizes; shapes without a workspace do not tell the pool themselves
+    for (int i = 0; i < 1000; i++) {
+      DomeShape dome = domes.get(this.random.nextInt(domes.size()));
+      if (this.random.nextBoolean()) {
+        Position pos = dome.getCenterPosition();
+        dome.setCenterPosition(Position.fromDegrees(pos.getLatitude().degrees + 0.001,
+            pos.getLongitude().degrees - 0.001, 0));
+      } else {
+        dome.setCenterPosition(this.randomPosition());
+      }
+      if (this.random.nextInt(4) == 0) {
+        dome.setEastWestRadius(10 + this.random.nextDouble() * 2000);
+      }
+      index.shapeChanged(dome);
+    }
+    assertEquals(2000, index.size());
+    this.assertMatches(index, domes);
+
+    index.detach(pool);
+    pool.clear();
+    assertEquals(2000, index.size());
+  }
+
+  /**
+   * Sectors and radii across the antimeridian find the domes on both sides, each once
+   *
+   * @throws Exception
+   */
+  @Test
+  public void antimeridianIsCrossed() throws Exception {
+    ShapeIndex index = new ShapeIndex(MOON_RADIUS);
+    DomeShape east = TestDomes.dome(0, 179.99, 100);
+    DomeShape west = TestDomes.dome(0, -179.99, 100);
+    // its footprint covers both sides
+    DomeShape across = TestDomes.dome(0.5, 180, 1000);
+    DomeShape far = TestDomes.dome(0, 0, 100);
+    for (DomeShape dome : new DomeShape[] { east, west, across, far }) {
+      index.shapeAdded(dome);
+    }
+
+    List<IShape> found = index.intersecting(Sector.fromDegrees(-1, 1, 179.9, -179.9));
+    assertEquals(3, found.size());
+    assertTrue(found.contains(east) && found.contains(west) && found.contains(across));
+    assertEquals(Collections.<IShape> singletonList(across), index.intersecting(Sector.fromDegrees(0.4, 0.6,
+        -179.999, -179.99)));
+
+    // 0.02 degrees apart, 606 meters between the centers
+    found = index.withinRadius(LatLon.fromDegrees(0, 179.99), 600);
+    assertEquals(2, found.size());
+    assertTrue(found.contains(east) && found.contains(west));
+    assertEquals(west, index.nearest(LatLon.fromDegrees(0, 180.001), 1).get(0));
+    assertEquals(3, index.nearest(LatLon.fromDegrees(0, -179.99), 3).size());
+    assertFalse(index.nearest(LatLon.fromDegrees(0, -179.99), 3).contains(far));
+
+    // moved across the line, then back
+    east.setCenterPosition(Position.fromDegrees(0, -179.98, 0));
+    index.shapeChanged(east);
+    assertTrue(index.intersecting(Sector.fromDegrees(-1, 1, -180, -179.9)).contains(east));
+    assertFalse(index.intersecting(Sector.fromDegrees(-1, 1, 179.9, 180)).contains(east));
+    index.shapeRemoved(east);
+    assertFalse(index.withinRadius(LatLon.fromDegrees(0, -179.98), 10).contains(east));
+  }
+
+  /**
+   * @param index
+   * @param domes all the indexed domes
+   */
+  private void assertMatches(ShapeIndex index, List<DomeShape> domes) {
+    for (int q = 0; q < QUERIES; q++) {
+      Position center = this.randomPosition();
+      double lat = center.getLatitude().degrees;
+      double lon = center.getLongitude().degrees;
+
+      // radius
+      double meters = this.random.nextDouble() * 5000;
+      Map<IShape, Boolean> expected = new IdentityHashMap<IShape, Boolean>();
+      for (DomeShape dome : domes) {
+        double gap = this.distance(lat, lon, dome) - radius(dome) - meters;
+        if (Math.abs(gap) < 1e-3) {
+          // too close to call, either way is right
+          continue;
+        }
+        if (gap < 0) {
+          expected.put(dome, Boolean.TRUE);
+        }
+      }
+      int matched = 0;
+      for (IShape shape : index.withinRadius(center, meters)) {
+        DomeShape dome = (DomeShape) shape;
+        if (expected.containsKey(dome)) {
+          matched++;
+        } else {
+          assertTrue("not within radius", Math.abs(this.distance(lat, lon, dome) - radius(dome) - meters) < 1e-3);
+        }
+      }
+      assertEquals(expected.size(), matched);
+
+      // nearest, compared by distance as ties may come in any order
+      int k = 1 + this.random.nextInt(20);
+      List<Double> distances = new ArrayList<Double>();
+      for (DomeShape dome : domes) {
+        distances.add(Double.valueOf(this.distance(lat, lon, dome)));
+      }
+      Collections.sort(distances);
+      List<IShape> nearest = index.nearest(center, k);
+      assertEquals(Math.min(k, domes.size()), nearest.size());
+      for (int i = 0; i < nearest.size(); i++) {
+        assertEquals(distances.get(i).doubleValue(), this.distance(lat, lon, (DomeShape) nearest.get(i)), 1e-6);
+      }
+
+      // sectors, the footprint of every dome found touches the sector
+      double size = this.random.nextDouble() * 0.5;
+      Sector sector = Sector.fromDegrees(lat - size, lat + size, lon - size, lon + size);
+      List<IShape> inSector = index.intersecting(sector);
+      for (DomeShape dome : domes) {
+        if (sector.contains(dome.getCenterPosition())) {
+          assertTrue("center in the sector", inSector.contains(dome));
+        }
+      }
+      for (IShape shape : inSector) {
+        DomeShape dome = (DomeShape) shape;
+        Position pos = dome.getCenterPosition();
+        double dLat = Math.max(0, Math.max(sector.getMinLatitude().degrees - pos.getLatitude().degrees,
+            pos.getLatitude().degrees - sector.getMaxLatitude().degrees));
+        assertTrue("footprint away from the sector", Math.toRadians(dLat) * MOON_RADIUS <= radius(dome) + 1e-6);
+      }
+    }
+  }
+
+  /**
+   * @param dome
+   * @return largest radius
+   */
+  private static double radius(DomeShape dome) {
+    return Math.max(dome.getVerticalRadius(), Math.max(dome.getNorthSouthRadius(), dome.getEastWestRadius()));
+  }
+
+  /**
+   * @param lat
+   * @param lon
+   * @param dome
+   * @return great circle distance to the center of the dome, in meters
+   */
+  private double distance(double lat, double lon, DomeShape dome) {
+    LatLon center = dome.getCenterPosition();
+    return LatLon.greatCircleDistance(LatLon.fromDegrees(lat, lon), center).radians * MOON_RADIUS;
+  }
+}